@@ -35,6 +35,7 @@ public class Controller {
 
     public void controllerStart() throws IOException, ClassNotFoundException {
         int n1 = v.viewGeral();
+        EstatisticasLeitura est;
         switch(n1) {
             case 1:
                 controllerLog();
@@ -43,19 +44,28 @@ public class Controller {
                 controllerSign();
                 break;
             case 3:
-                lerS(this.s,lerLogs());
+                est = carregaLogs(this.s,"logs_apresentacao.txt");
                 this.s.freeAll();
+                this.s.abreDiario("teste");
+                v.showEstatisticas(est.toString());
                 controllerStart();
 
                 break;
             case 4:
-                this.s = Sistema.carrega("teste");
+                this.s = Sistema.recupera("teste");
                 v.limpa();
                 controllerStart();
                 break;
+            case 5:
+                est = carregaLogsParalelo(this.s,"logs_apresentacao.txt");
+                this.s.freeAll();
+                this.s.abreDiario("teste");
+                v.showEstatisticas(est.toString());
+                controllerStart();
+                break;
             case 0:
                 v.finish();
-                s.grava("teste");
+                s.gravaIncremental("teste");
                 break;
         }
     }
@@ -114,7 +124,7 @@ public class Controller {
                 break;
             case 0:
                 v.finish();
-                s.grava("teste");
+                s.gravaIncremental("teste");
                 break;
         }
     }
@@ -201,7 +211,7 @@ public class Controller {
             case 0:
                 v.finish();
                 this.s.freeAll();
-                s.grava("teste");
+                s.gravaIncremental("teste");
                 break;
             case 1:
                 List<String> ret = new ArrayList<>();
@@ -226,10 +236,9 @@ public class Controller {
                 break;
             case 2:
                 int cla = v.classificaçao();
-                int e1 = u.getEncomendas().size()-1;
-                String id = u.getEncomendas().get(e1).getId();
+                String id = s.estafetaDaUltimaEncomenda(u.getId());
 
-                s.classificarTransportadora(id,cla);
+                if(id != null) s.classificarTransportadora(id,cla);
 
                 u1 = new ViewUtilizador();
                 t1 = u1.menuU();
@@ -258,7 +267,7 @@ public class Controller {
             case 0:
                 v.finish();
                 this.s.freeAll();
-                s.grava("teste");
+                s.gravaIncremental("teste");
 
                 break;
             case 1:
@@ -277,10 +286,11 @@ public class Controller {
             case 0:
                 v.finish();
                 this.s.freeAll();
-                s.grava("teste");
+                s.gravaIncremental("teste");
                 break;
             case 1:
                 int f = v.atualizafila();
+                s.setFilaDeEspera(l.getId(),f);
                 l.setFilaDeEspera(f);
 
                 ViewLoja l1 = new ViewLoja();
@@ -302,7 +312,7 @@ public class Controller {
             case 0:
                 v.finish();
                 this.s.freeAll();
-                s.grava("teste");
+                s.gravaIncremental("teste");
                 break;
             case 1:
                 v.showS(s.totalFaturadoEmpresa(t.getId()));
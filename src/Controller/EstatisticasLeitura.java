@@ -0,0 +1,128 @@
+package Controller;
+
+import java.io.Serializable;
+
+public class EstatisticasLeitura implements Serializable {
+    private long linhas;
+    private long nanos;
+    private long heapPico;
+
+    /**
+     * Construtor por omissão.
+     */
+    public EstatisticasLeitura() {
+        this.linhas = 0;
+        this.nanos = 0;
+        this.heapPico = 0;
+    }
+
+    /**
+     * Construtor parametrizado.
+     * @param linhas Número de linhas lidas.
+     * @param nanos Tempo total da leitura em nanosegundos.
+     * @param heapPico Maior ocupação de heap observada durante a leitura, em bytes.
+     */
+    public EstatisticasLeitura(long linhas, long nanos, long heapPico) {
+        this.linhas = linhas;
+        this.nanos = nanos;
+        this.heapPico = heapPico;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param e Recebe um objeto da classe EstatisticasLeitura.
+     */
+    public EstatisticasLeitura(EstatisticasLeitura e) {
+        this.linhas = e.getLinhas();
+        this.nanos = e.getNanos();
+        this.heapPico = e.getHeapPico();
+    }
+
+    /**
+     * Método que dá o número de linhas lidas.
+     * @return Devolve esse número.
+     */
+    public long getLinhas() {
+        return this.linhas;
+    }
+
+    /**
+     * Método que dá o tempo total da leitura.
+     * @return Devolve o tempo em nanosegundos.
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * Método que dá a maior ocupação de heap observada durante a leitura.
+     * @return Devolve o valor em bytes.
+     */
+    public long getHeapPico() {
+        return this.heapPico;
+    }
+
+    /**
+     * Função que calcula o débito da leitura.
+     * @return Devolve o número de linhas lidas por segundo.
+     */
+    public double linhasPorSegundo() {
+        if (this.nanos == 0) return 0;
+        return this.linhas * 1e9 / this.nanos;
+    }
+
+    /**
+     * Função que regista mais uma linha lida.
+     */
+    public void addLinha() {
+        this.linhas++;
+    }
+
+    /**
+     * Função que regista mais n linhas lidas.
+     * @param n Número de linhas.
+     */
+    public void addLinhas(long n) {
+        this.linhas += n;
+    }
+
+    /**
+     * Função que define o tempo total da leitura.
+     * @param nanos Tempo em nanosegundos.
+     */
+    public void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * Função que mede a heap ocupada no momento e atualiza o pico, se for caso disso.
+     */
+    public void amostraHeap() {
+        Runtime r = Runtime.getRuntime();
+        long usada = r.totalMemory() - r.freeMemory();
+        if (usada > this.heapPico) this.heapPico = usada;
+    }
+
+    /**
+     * Função que traduz a classe EstatisticasLeitura.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Linhas lidas: ").append(this.linhas)
+                .append("\nTempo: ").append(this.nanos / 1000000).append(" ms")
+                .append("\nLinhas por segundo: ").append((long) linhasPorSegundo())
+                .append("\nPico de heap: ").append(this.heapPico / (1024 * 1024)).append(" MB");
+        return sb.toString();
+    }
+
+    /**
+     * Função que faz um clone da classe EstatisticasLeitura.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public EstatisticasLeitura clone() {
+        return new EstatisticasLeitura(this);
+    }
+}
@@ -1,11 +1,22 @@
 package Controller;
 
 import Models.*;
-import jdk.jshell.execution.Util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 public class Ficheiro implements Serializable{
+    private static final byte[][] TIPOS = {
+            "Utilizador".getBytes(StandardCharsets.UTF_8),
+            "Voluntario".getBytes(StandardCharsets.UTF_8),
+            "Transportadora".getBytes(StandardCharsets.UTF_8),
+            "Loja".getBytes(StandardCharsets.UTF_8),
+            "Encomenda".getBytes(StandardCharsets.UTF_8),
+            "Aceite".getBytes(StandardCharsets.UTF_8)
+    };
 
 
     /**
@@ -29,52 +40,190 @@ public class Ficheiro implements Serializable{
         return logs;
     }
 
+    /**
+     * Função que lê o ficheiro de logs em streaming, registando cada linha no Sistema à medida que é lida.
+     * Ao contrário de lerLogs, nunca guarda o ficheiro inteiro em memória.
+     * @param s Recebe um Sistema.
+     * @param ficheiro Nome do ficheiro de logs.
+     * @return Devolve as estatísticas da leitura (linhas por segundo e pico de heap).
+     * @throws IOException Exception.
+     */
+    public static EstatisticasLeitura carregaLogs(Sistema s, String ficheiro) throws IOException {
+        EstatisticasLeitura est = new EstatisticasLeitura();
+        long inicio = System.nanoTime();
+        est.amostraHeap();
+        try (BufferedReader lerLogs = new BufferedReader(new InputStreamReader(new FileInputStream(ficheiro), StandardCharsets.UTF_8), 1 << 16)) {
+            String linha = lerLogs.readLine();
+            while (linha != null) {
+                lerLinha(s, linha);
+                est.addLinha();
+                if ((est.getLinhas() & 0xFFF) == 0) est.amostraHeap();
+                linha = lerLogs.readLine();
+            }
+        }
+        est.amostraHeap();
+        est.setNanos(System.nanoTime() - inicio);
+        return est;
+    }
+
+    /**
+     * Função que lê o ficheiro de logs em paralelo, usando todos os processadores disponíveis.
+     * @param s Recebe um Sistema.
+     * @param ficheiro Nome do ficheiro de logs.
+     * @return Devolve as estatísticas da leitura.
+     * @throws IOException Exception.
+     */
+    public static EstatisticasLeitura carregaLogsParalelo(Sistema s, String ficheiro) throws IOException {
+        LeitorParalelo leitor = new LeitorParalelo(ficheiro, Runtime.getRuntime().availableProcessors());
+        return leitor.carrega(s);
+    }
+
     /**
      * Função que lê linha a linha e regista os várias classes pertencentes ao Sistema.
      * @param s Recebe um Sistema.
      * @param logs Recebe um array de Strings.
      */
     public static void lerS(Sistema s, String[] logs) {
-        String[] p1;
-        String[] p2;
         for (String log : logs) { //lê cada linha do array de strings.
             if (log == null) break;
-            p1 = log.split(":");
-            p2 = p1[1].split(",");
-            switch (p1[0]) {
-                case "Utilizador":
-                    s.registaUtilizador(p2[0],p2[1],Double.parseDouble(p2[2]),Double.parseDouble(p2[3]));
-                    break;
-
-                case "Voluntario":
-                    s.registaVoluntario(p2[0],p2[1],Double.parseDouble(p2[2]),Double.parseDouble(p2[3]),Double.parseDouble(p2[4]));
-                    break;
-
-                case "Transportadora":
-                    s.registaTransportadora(p2[0],p2[1],Double.parseDouble(p2[2]),Double.parseDouble(p2[3]),Integer.parseInt(p2[4]),Double.parseDouble(p2[5]),Double.parseDouble(p2[6]));
-                    break;
-
-                case "Loja":
-                    s.registaLoja(p2[0],p2[1],Double.parseDouble(p2[2]),Double.parseDouble(p2[3]));
-                    break;
+            lerLinha(s, log);
+        }
+    }
 
-                case "Encomenda":
-                    Encomenda e = s.fazerEncomenda2(p2[0],p2[1],p2[2],Double.parseDouble(p2[3]),false);
+    /**
+     * Função que interpreta uma linha de logs e regista a respetiva entidade no Sistema.
+     * Linhas sem o separador ':' (cabeçalhos, linhas vazias) são ignoradas.
+     * @param s Recebe um Sistema.
+     * @param log Recebe a linha a interpretar.
+     */
+    public static void lerLinha(Sistema s, String log) {
+        Consumer<Sistema> registo = interpreta(log);
+        if (registo != null) registo.accept(s);
+    }
 
-                    for (int i = 4; i < p2.length; i += 4){
-                        e.addProduto(p2[i],p2[i+1],Double.parseDouble(p2[i+2]),Double.parseDouble(p2[i+3]));
+    /**
+     * Função que interpreta uma linha de logs sem tocar no Sistema.
+     * Todo o parsing é feito aqui, pelo que pode correr em paralelo; o registo devolvido só faz as inserções.
+     * @param log Recebe a linha a interpretar.
+     * @return Devolve o registo a aplicar ao Sistema, ou null se a linha não tiver nada a registar.
+     */
+    public static Consumer<Sistema> interpreta(String log) {
+        int sep = log.indexOf(':');
+        if (sep < 0) return null;
+        String tipo = log.substring(0, sep);
+        String[] p2 = log.substring(sep + 1).split(",");
+        switch (tipo) {
+            case "Utilizador": {
+                double x = Double.parseDouble(p2[2]), y = Double.parseDouble(p2[3]);
+                return s -> s.registaUtilizador(p2[0],p2[1],x,y);
+            }
+            case "Voluntario": {
+                double x = Double.parseDouble(p2[2]), y = Double.parseDouble(p2[3]), r = Double.parseDouble(p2[4]);
+                return s -> s.registaVoluntario(p2[0],p2[1],x,y,r);
+            }
+            case "Transportadora": {
+                double x = Double.parseDouble(p2[2]), y = Double.parseDouble(p2[3]);
+                int nif = Integer.parseInt(p2[4]);
+                double r = Double.parseDouble(p2[5]), pkm = Double.parseDouble(p2[6]);
+                return s -> s.registaTransportadora(p2[0],p2[1],x,y,nif,r,pkm);
+            }
+            case "Loja": {
+                double x = Double.parseDouble(p2[2]), y = Double.parseDouble(p2[3]);
+                return s -> s.registaLoja(p2[0],p2[1],x,y);
+            }
+            case "Encomenda": {
+                double peso = Double.parseDouble(p2[3]);
+                int n = (p2.length - 4) / 4;
+                Produto[] prods = new Produto[n];
+                double[] qu = new double[2 * n];
+                for (int i = 0; i < n; i++) {
+                    prods[i] = CatalogoProdutos.produto(p2[4 + 4*i], p2[4 + 4*i + 1]);
+                    qu[2*i] = Double.parseDouble(p2[4 + 4*i + 2]);
+                    qu[2*i+1] = Double.parseDouble(p2[4 + 4*i + 3]);
+                }
+                return s -> {
+                    Encomenda e = s.fazerEncomenda2(p2[0],p2[1],p2[2],peso,false);
+                    for (int i = 0; i < n; i++){
+                        e.addProduto(prods[i],qu[2*i],qu[2*i+1]);
                     }
                     s.finalizarEncomenda(e);
-                    break;
-
-                case "Aceite":
+                };
+            }
+            case "Aceite":
+                return s -> {
                     Voluntario v = s.aceitaEncomendaV(p2[0]);
                     if (v == null) {
                         Transportadora t = s.aceitaEncomendaT(p2[0]);
                     }
-                    break;
+                };
+        }
+        return null;
+    }
+
+    /**
+     * Função que interpreta a próxima linha de um Tokenizador sem tocar no Sistema.
+     * Faz o mesmo que interpreta(String), mas lê os números diretamente dos bytes e só cria Strings
+     * para códigos e nomes. No fim o tokenizador fica no início da linha seguinte.
+     * @param t Recebe o tokenizador.
+     * @return Devolve o registo a aplicar ao Sistema, ou null se a linha não tiver nada a registar.
+     */
+    public static Consumer<Sistema> interpreta(Tokenizador t) {
+        Consumer<Sistema> ret = null;
+        switch (t.proximoTipo(TIPOS)) {
+            case 0: {
+                String id = t.proximaString(), nome = t.proximaString();
+                double x = t.proximoDouble(), y = t.proximoDouble();
+                ret = s -> s.registaUtilizador(id,nome,x,y);
+                break;
+            }
+            case 1: {
+                String id = t.proximaString(), nome = t.proximaString();
+                double x = t.proximoDouble(), y = t.proximoDouble(), r = t.proximoDouble();
+                ret = s -> s.registaVoluntario(id,nome,x,y,r);
+                break;
+            }
+            case 2: {
+                String id = t.proximaString(), nome = t.proximaString();
+                double x = t.proximoDouble(), y = t.proximoDouble();
+                int nif = t.proximoInt();
+                double r = t.proximoDouble(), pkm = t.proximoDouble();
+                ret = s -> s.registaTransportadora(id,nome,x,y,nif,r,pkm);
+                break;
+            }
+            case 3: {
+                String id = t.proximaString(), nome = t.proximaString();
+                double x = t.proximoDouble(), y = t.proximoDouble();
+                ret = s -> s.registaLoja(id,nome,x,y);
+                break;
+            }
+            case 4: {
+                String id = t.proximaString(), user = t.proximaString(), loja = t.proximaString();
+                double peso = t.proximoDouble();
+                List<LinhaEncomenda> linhas = new ArrayList<>();
+                while (!t.fimDeLinha()) {
+                    Produto p = CatalogoProdutos.produto(t.proximaString(), t.proximaString());
+                    double q = t.proximoDouble(), u = t.proximoDouble();
+                    linhas.add(new LinhaEncomenda(p,q,u));
+                }
+                ret = s -> {
+                    Encomenda e = s.fazerEncomenda2(id,user,loja,peso,false);
+                    e.setLE(linhas);
+                    s.finalizarEncomenda(e);
+                };
+                break;
+            }
+            case 5: {
+                String id = t.proximaString();
+                ret = s -> {
+                    Voluntario v = s.aceitaEncomendaV(id);
+                    if (v == null) {
+                        Transportadora tr = s.aceitaEncomendaT(id);
+                    }
+                };
+                break;
             }
         }
+        t.saltaLinha();
+        return ret;
     }
 }
-
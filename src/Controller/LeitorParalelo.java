@@ -0,0 +1,154 @@
+package Controller;
+
+import Models.Sistema;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+public class LeitorParalelo implements Serializable {
+    private static final int TAMANHO_BLOCO = 4 << 20;
+
+    private final String ficheiro;
+    private final int paralelismo;
+
+    /**
+     * Construtor parametrizado.
+     * @param ficheiro Nome do ficheiro de logs.
+     * @param paralelismo Número de threads do fork-join pool.
+     */
+    public LeitorParalelo(String ficheiro, int paralelismo) {
+        this.ficheiro = ficheiro;
+        this.paralelismo = Math.max(1, paralelismo);
+    }
+
+    /**
+     * Função que lê o ficheiro de logs em paralelo.
+     * O ficheiro é partido em blocos de bytes alinhados com '\n' e cada bloco é mapeado em memória e
+     * interpretado por um Tokenizador numa thread do pool.
+     * Os registos são depois aplicados ao Sistema pela ordem do ficheiro, numa única thread, de modo que
+     * as definições continuam a vir antes das encomendas e cada encomenda antes do respetivo Aceite.
+     * Enquanto uma janela de blocos é aplicada, a janela seguinte já está a ser interpretada.
+     * As linhas contadas são as do ficheiro, como em Ficheiro.carregaLogs, e não só as que têm registos.
+     * @param s Recebe um Sistema.
+     * @return Devolve as estatísticas da leitura.
+     * @throws IOException Exception.
+     */
+    public EstatisticasLeitura carrega(Sistema s) throws IOException {
+        EstatisticasLeitura est = new EstatisticasLeitura();
+        long inicio = System.nanoTime();
+        est.amostraHeap();
+        ForkJoinPool pool = new ForkJoinPool(this.paralelismo);
+        try (FileChannel canal = FileChannel.open(Paths.get(this.ficheiro), StandardOpenOption.READ)) {
+            List<long[]> blocos = divideBlocos(canal);
+            int janela = 2 * this.paralelismo;
+            List<Bloco> atual = submeteJanela(pool, canal, blocos, 0, janela);
+            for (int i = 0; i < blocos.size(); i += janela) {
+                List<Bloco> seguinte = submeteJanela(pool, canal, blocos, i + janela, janela);
+                for (Bloco b : atual) {
+                    for (Consumer<Sistema> registo : b.join()) registo.accept(s);
+                    est.addLinhas(b.linhas);
+                }
+                est.amostraHeap();
+                atual = seguinte;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        est.setNanos(System.nanoTime() - inicio);
+        return est;
+    }
+
+    /**
+     * Função que submete ao pool os blocos de uma janela.
+     * @param pool Fork-join pool.
+     * @param canal Canal do ficheiro.
+     * @param blocos Lista de blocos (início, fim).
+     * @param de Índice do primeiro bloco da janela.
+     * @param n Tamanho da janela.
+     * @return Devolve as tarefas submetidas, pela ordem do ficheiro.
+     */
+    private static List<Bloco> submeteJanela(ForkJoinPool pool, FileChannel canal, List<long[]> blocos, int de, int n) {
+        List<Bloco> ret = new ArrayList<>();
+        for (int i = de; i < blocos.size() && i < de + n; i++) {
+            Bloco b = new Bloco(canal, blocos.get(i)[0], blocos.get(i)[1]);
+            pool.execute(b);
+            ret.add(b);
+        }
+        return ret;
+    }
+
+    /**
+     * Função que divide o ficheiro em blocos de aproximadamente TAMANHO_BLOCO bytes,
+     * acabando cada bloco imediatamente a seguir a um '\n'.
+     * @param canal Canal do ficheiro.
+     * @return Devolve a lista de blocos (início, fim).
+     * @throws IOException Exception.
+     */
+    private static List<long[]> divideBlocos(FileChannel canal) throws IOException {
+        List<long[]> ret = new ArrayList<>();
+        long tamanho = canal.size();
+        ByteBuffer aux = ByteBuffer.allocate(4096);
+        long inicio = 0;
+        while (inicio < tamanho) {
+            long fim = Math.min(inicio + TAMANHO_BLOCO, tamanho);
+            while (fim < tamanho) {
+                aux.clear();
+                int lidos = canal.read(aux, fim);
+                int i = 0;
+                while (i < lidos && aux.get(i) != '\n') i++;
+                fim += i;
+                if (i < lidos) {
+                    fim++;
+                    break;
+                }
+            }
+            ret.add(new long[]{inicio, fim});
+            inicio = fim;
+        }
+        return ret;
+    }
+
+    /**
+     * Tarefa que interpreta as linhas de um bloco do ficheiro.
+     */
+    private static class Bloco extends RecursiveTask<List<Consumer<Sistema>>> {
+        private final FileChannel canal;
+        private final long inicio;
+        private final long fim;
+        private long linhas;
+
+        Bloco(FileChannel canal, long inicio, long fim) {
+            this.canal = canal;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected List<Consumer<Sistema>> compute() {
+            List<Consumer<Sistema>> ret = new ArrayList<>();
+            MappedByteBuffer buf;
+            try {
+                buf = this.canal.map(FileChannel.MapMode.READ_ONLY, this.inicio, this.fim - this.inicio);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            Tokenizador t = new Tokenizador(buf);
+            while (t.temMais()) {
+                Consumer<Sistema> registo = Ficheiro.interpreta(t);
+                if (registo != null) ret.add(registo);
+                this.linhas++;
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package Controller;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class Tokenizador implements Serializable {
+    private static final double[] POTENCIAS = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long LIMITE_EXATO = 1L << 53;
+
+    private final ByteBuffer buf;
+    private final int fim;
+    private int pos;
+    private byte[] aux;
+
+    /**
+     * Construtor parametrizado.
+     * O tokenizador lê diretamente os bytes do buffer (tipicamente um MappedByteBuffer), sem o copiar.
+     * @param buf Buffer com linhas de logs completas, codificadas em UTF-8.
+     */
+    public Tokenizador(ByteBuffer buf) {
+        this.buf = buf;
+        this.pos = buf.position();
+        this.fim = buf.limit();
+        this.aux = new byte[128];
+    }
+
+    /**
+     * Função que verifica se ainda há bytes por ler.
+     * @return Devolve true se não tiver chegado ao fim do buffer.
+     */
+    public boolean temMais() {
+        return this.pos < this.fim;
+    }
+
+    /**
+     * Função que verifica se a linha atual já foi toda lida.
+     * @return Devolve true se estiver no fim da linha ou do buffer.
+     */
+    public boolean fimDeLinha() {
+        return this.pos >= this.fim || this.buf.get(this.pos) == '\n' || this.buf.get(this.pos) == '\r';
+    }
+
+    /**
+     * Função que avança até ao início da linha seguinte, ignorando o que faltar ler da linha atual.
+     */
+    public void saltaLinha() {
+        while (this.pos < this.fim && this.buf.get(this.pos) != '\n') this.pos++;
+        if (this.pos < this.fim) this.pos++;
+    }
+
+    /**
+     * Função que lê o tipo de registo de uma linha (o texto antes de ':') e o compara com os tipos conhecidos.
+     * Se a linha não tiver ':' o tokenizador fica no fim da linha.
+     * @param tipos Nomes dos tipos conhecidos, em bytes.
+     * @return Devolve o índice do tipo lido, ou -1 se não for nenhum dos conhecidos.
+     */
+    public int proximoTipo(byte[][] tipos) {
+        int inicio = this.pos;
+        while (this.pos < this.fim) {
+            byte b = this.buf.get(this.pos);
+            if (b == ':' || b == '\n' || b == '\r') break;
+            this.pos++;
+        }
+        if (fimDeLinha()) return -1;
+        int len = this.pos - inicio;
+        this.pos++;
+        for (int t = 0; t < tipos.length; t++) {
+            if (tipos[t].length != len) continue;
+            int i = 0;
+            while (i < len && tipos[t][i] == this.buf.get(inicio + i)) i++;
+            if (i == len) return t;
+        }
+        return -1;
+    }
+
+    /**
+     * Função que lê o próximo campo como String. Só deve ser usada para códigos e nomes.
+     * @return Devolve o campo lido.
+     */
+    public String proximaString() {
+        int inicio = this.pos;
+        int len = fimDoCampo() - inicio;
+        if (len > this.aux.length) this.aux = new byte[Math.max(len, 2 * this.aux.length)];
+        for (int i = 0; i < len; i++) this.aux[i] = this.buf.get(inicio + i);
+        saltaSeparador();
+        return new String(this.aux, 0, len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Função que lê o próximo campo como double, diretamente a partir dos bytes.
+     * Números com até 15 algarismos significativos e sem expoente são convertidos sem criar objetos;
+     * os restantes (incluindo campos sem nenhum algarismo, como "-" ou ".") recorrem a Double.parseDouble,
+     * para dar exatamente o mesmo resultado e a mesma exceção.
+     * @return Devolve o valor lido.
+     */
+    public double proximoDouble() {
+        int inicio = this.pos;
+        int fimCampo = fimDoCampo();
+        int i = inicio;
+        boolean negativo = false;
+        if (i < fimCampo && (this.buf.get(i) == '-' || this.buf.get(i) == '+')) {
+            negativo = this.buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int decimais = 0, algarismos = 0;
+        boolean ponto = false, digito = false, simples = i < fimCampo;
+        for (; i < fimCampo && simples; i++) {
+            byte b = this.buf.get(i);
+            if (b >= '0' && b <= '9') {
+                digito = true;
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) algarismos++;
+                if (ponto) decimais++;
+            } else if (b == '.' && !ponto) ponto = true;
+            else simples = false;
+        }
+        saltaSeparador();
+        if (simples && digito && algarismos <= 15 && mantissa < LIMITE_EXATO && decimais < POTENCIAS.length) {
+            double ret = mantissa / POTENCIAS[decimais];
+            return negativo ? -ret : ret;
+        }
+        return Double.parseDouble(texto(inicio, fimCampo));
+    }
+
+    /**
+     * Função que lê o próximo campo como int, diretamente a partir dos bytes.
+     * @return Devolve o valor lido.
+     */
+    public int proximoInt() {
+        int inicio = this.pos;
+        int fimCampo = fimDoCampo();
+        int i = inicio;
+        boolean negativo = false;
+        if (i < fimCampo && (this.buf.get(i) == '-' || this.buf.get(i) == '+')) {
+            negativo = this.buf.get(i) == '-';
+            i++;
+        }
+        long ret = 0;
+        boolean simples = i < fimCampo && fimCampo - i <= 10;
+        for (; i < fimCampo && simples; i++) {
+            byte b = this.buf.get(i);
+            if (b >= '0' && b <= '9') ret = ret * 10 + (b - '0');
+            else simples = false;
+        }
+        saltaSeparador();
+        if (negativo) ret = -ret;
+        if (simples && ret >= Integer.MIN_VALUE && ret <= Integer.MAX_VALUE) return (int) ret;
+        return Integer.parseInt(texto(inicio, fimCampo));
+    }
+
+    /**
+     * Função auxiliar que encontra o fim do campo atual (a próxima ',' ou o fim da linha).
+     * @return Devolve a posição a seguir ao último byte do campo.
+     */
+    private int fimDoCampo() {
+        while (this.pos < this.fim) {
+            byte b = this.buf.get(this.pos);
+            if (b == ',' || b == '\n' || b == '\r') break;
+            this.pos++;
+        }
+        return this.pos;
+    }
+
+    /**
+     * Função auxiliar que salta a ',' que separa dois campos, se for essa a posição atual.
+     */
+    private void saltaSeparador() {
+        if (this.pos < this.fim && this.buf.get(this.pos) == ',') this.pos++;
+    }
+
+    /**
+     * Função auxiliar que cria uma String com um intervalo do buffer. Só é usada nos casos raros
+     * em que os números não podem ser convertidos diretamente.
+     * @param inicio Posição inicial.
+     * @param fim Posição final.
+     * @return Devolve o texto desse intervalo.
+     */
+    private String texto(int inicio, int fim) {
+        byte[] b = new byte[fim - inicio];
+        for (int i = 0; i < b.length; i++) b[i] = this.buf.get(inicio + i);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
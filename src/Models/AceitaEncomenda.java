@@ -2,8 +2,10 @@ package Models;
 
 import java.io.Serializable;
 
-public class AceitaEncomenda implements Serializable {
-    private String e;
+public final class AceitaEncomenda implements Serializable {
+    private static final long serialVersionUID = -2273794656583178267L;
+
+    private final String e;
 
     /**
      * Construtor por cópia.
@@ -36,14 +38,6 @@ public class AceitaEncomenda implements Serializable {
         return this.e;
     }
 
-    /**
-     * Método que define o código de uma Encomenda.
-     * @param e Recebe uma String do código.
-     */
-    public void setE(String e) {
-        this.e = e;
-    }
-
     /**
      * Função que traduz a classe AceitaEncomenda.
      * @return Devolve uma String com a respetiva tradução.
@@ -69,11 +63,21 @@ public class AceitaEncomenda implements Serializable {
     }
 
     /**
-     * Função que faz um clone da classe AceitaEncomenda.
+     * Função que dá o hash da classe AceitaEncomenda, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        return this.e.hashCode();
+    }
+
+    /**
+     * Função que faz um clone da classe AceitaEncomenda. Como não tem nada que se possa alterar,
+     * o clone é o próprio objeto.
      * @return Devolve esse clone.
      */
     @Override
     public AceitaEncomenda clone() {
-        return new AceitaEncomenda(this);
+        return this;
     }
 }
@@ -0,0 +1,124 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CacheDistancias implements Serializable {
+    private final int capacidade;
+    private final Lru cache;
+    private long acertos;
+    private long falhas;
+
+    /**
+     * Construtor parametrizado.
+     * @param capacidade Número máximo de pares guardados; quando é atingido sai o par usado há mais tempo.
+     */
+    public CacheDistancias(int capacidade) {
+        this.capacidade = capacidade;
+        this.cache = new Lru(capacidade);
+        this.acertos = 0;
+        this.falhas = 0;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param c Recebe um objeto da classe CacheDistancias.
+     */
+    public CacheDistancias(CacheDistancias c) {
+        this.capacidade = c.capacidade;
+        this.cache = new Lru(c.capacidade);
+        this.cache.putAll(c.cache);
+        this.acertos = c.acertos;
+        this.falhas = c.falhas;
+    }
+
+    /**
+     * Função que dá a distância de uma loja a um utilizador. Como nenhum dos dois muda de posição,
+     * a distância é calculada uma vez e guardada pelo par de ids. Pode ser chamada por várias threads.
+     * @param loja Loja.
+     * @param util Utilizador.
+     * @return Devolve a distância.
+     */
+    public synchronized double distancia(Loja loja, Utilizador util) {
+        Object chave = chave(loja.getId(), util.getId());
+        Double d = this.cache.get(chave);
+        if (d != null) {
+            this.acertos++;
+            return d;
+        }
+        this.falhas++;
+        double ret = loja.getGps().distancia(util.getGps());
+        this.cache.put(chave, ret);
+        return ret;
+    }
+
+    /**
+     * Função que dá a chave de um par loja/utilizador. Quando os dois ids têm o formato letra + número
+     * a chave é um long com os dois códigos (ver Id), sem construir Strings; senão junta os dois ids.
+     * @param loja Id da loja.
+     * @param util Id do utilizador.
+     * @return Devolve a chave.
+     */
+    private static Object chave(String loja, String util) {
+        int l = Id.codifica(loja), u = Id.codifica(util);
+        if (l == Id.INVALIDO || u == Id.INVALIDO) return loja + ':' + util;
+        return ((long) l << 32) | u;
+    }
+
+    /**
+     * Método que dá o número de pares guardados.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.cache.size();
+    }
+
+    /**
+     * Método que dá a fração dos pedidos que já estavam guardados.
+     * @return Devolve essa fração, entre 0 e 1.
+     */
+    public double taxaDeAcerto() {
+        long total = this.acertos + this.falhas;
+        return total == 0 ? 0 : (double) this.acertos / total;
+    }
+
+    /**
+     * Função que traduz a classe CacheDistancias.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        return "CacheDistancias{" +
+                "pares=" + tamanho() +
+                ", acertos=" + acertos +
+                ", falhas=" + falhas +
+                '}';
+    }
+
+    /**
+     * Função que faz um clone da classe CacheDistancias.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public CacheDistancias clone() {
+        return new CacheDistancias(this);
+    }
+
+    /**
+     * Mapa por ordem de acesso que descarta a entrada usada há mais tempo quando fica cheio.
+     */
+    private static class Lru extends LinkedHashMap<Object,Double> {
+        private final int capacidade;
+
+        Lru(int capacidade) {
+            super(16, 0.75f, true);
+            this.capacidade = capacidade;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object,Double> mais) {
+            return size() > this.capacidade;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CatalogoProdutos {
+    private static final Map<String,Produto> porCodigo = new ConcurrentHashMap<>();
+    private static final Map<String,Produto> outros = new HashMap<>();
+    private static final List<Produto> porId = new ArrayList<>();
+
+    /**
+     * Função que dá o produto do catálogo com este código e descrição, criando-o se ainda não existir.
+     * Todas as linhas de encomenda do mesmo produto ficam assim a partilhar o mesmo objeto,
+     * em vez de cada uma guardar as suas próprias Strings. Pode ser chamada por várias threads.
+     * @param codigo String que representa o código do produto.
+     * @param nome String que representa a descrição.
+     * @return Devolve o produto.
+     */
+    public static Produto produto(String codigo, String nome) {
+        Produto p = porCodigo.get(codigo);
+        if (p != null && p.getNome().equals(nome)) return p;
+        return regista(codigo, nome);
+    }
+
+    /**
+     * Função que dá o produto com um dado número.
+     * @param id Número do produto no catálogo.
+     * @return Devolve o produto.
+     */
+    public static synchronized Produto produto(int id) {
+        return porId.get(id);
+    }
+
+    /**
+     * Método que dá o número de produtos diferentes no catálogo.
+     * @return Devolve esse número.
+     */
+    public static synchronized int tamanho() {
+        return porId.size();
+    }
+
+    /**
+     * Função que acrescenta um produto ao catálogo. Em geral cada código tem uma só descrição;
+     * os códigos que aparecem com mais do que uma ficam guardados à parte pelo par código/descrição.
+     * @param codigo String que representa o código do produto.
+     * @param nome String que representa a descrição.
+     * @return Devolve o produto, novo ou já existente.
+     */
+    private static synchronized Produto regista(String codigo, String nome) {
+        Produto p = porCodigo.get(codigo);
+        if (p != null && p.getNome().equals(nome)) return p;
+        String chave = codigo + '\n' + nome;
+        Produto ret = outros.get(chave);
+        if (ret != null) return ret;
+        ret = new Produto(porId.size(), codigo, nome);
+        porId.add(ret);
+        if (p == null) porCodigo.put(codigo, ret);
+        else outros.put(chave, ret);
+        return ret;
+    }
+}
@@ -0,0 +1,181 @@
+package Models;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Classificacao implements Serializable {
+    /**
+     * Classificação máxima; as classificações vão de 0 a MAXIMO.
+     */
+    public static final int MAXIMO = 10;
+
+    /**
+     * Número de classificações fictícias, a meio da escala, que mediaAjustada junta às verdadeiras.
+     */
+    private static final int PESO_NEUTRO = 2;
+
+    private int numero;
+    private long soma;
+    private final int[] histograma;
+
+    /**
+     * Construtor por omissão.
+     */
+    public Classificacao() {
+        this.numero = 0;
+        this.soma = 0;
+        this.histograma = new int[MAXIMO + 1];
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param c Recebe um objeto da classe Classificacao.
+     */
+    public Classificacao(Classificacao c) {
+        this.numero = c.numero;
+        this.soma = c.soma;
+        this.histograma = c.histograma.clone();
+    }
+
+    /**
+     * Função que junta uma classificação.
+     * @param valor Classificação, de 0 a MAXIMO.
+     * @return Devolve true se foi aceite, false se estiver fora da escala.
+     */
+    public boolean adiciona(int valor) {
+        if (valor < 0 || valor > MAXIMO) return false;
+        this.numero++;
+        this.soma += valor;
+        this.histograma[valor]++;
+        return true;
+    }
+
+    /**
+     * Método que dá o número de classificações.
+     * @return Devolve esse número.
+     */
+    public int getNumero() {
+        return this.numero;
+    }
+
+    /**
+     * Método que dá a soma das classificações.
+     * @return Devolve essa soma.
+     */
+    public long getSoma() {
+        return this.soma;
+    }
+
+    /**
+     * Método que dá quantas vezes foi dada uma classificação.
+     * @param valor Classificação, de 0 a MAXIMO.
+     * @return Devolve esse número, ou 0 se o valor estiver fora da escala.
+     */
+    public int vezes(int valor) {
+        if (valor < 0 || valor > MAXIMO) return 0;
+        return this.histograma[valor];
+    }
+
+    /**
+     * Método que dá a média das classificações.
+     * @return Devolve a média, ou 0 se ainda não houver classificações.
+     */
+    public double getMedia() {
+        return this.numero == 0 ? 0 : (double) this.soma / this.numero;
+    }
+
+    /**
+     * Função que dá a média usada para comparar estafetas: junta às verdadeiras PESO_NEUTRO classificações
+     * a meio da escala, para que um estafeta sem classificações fique no meio e uma só nota não o ponha à frente
+     * de outro com muitas.
+     * @return Devolve essa média.
+     */
+    public double mediaAjustada() {
+        return (this.soma + PESO_NEUTRO * MAXIMO / 2.0) / (this.numero + PESO_NEUTRO);
+    }
+
+    /**
+     * Função que verifica se o objeto recebido é idêntico ao da classe Classificacao.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean que corresponde à verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        Classificacao c = (Classificacao) o;
+        return c.numero == this.numero &&
+                Arrays.equals(c.histograma, this.histograma);
+    }
+
+    /**
+     * Função que dá o hash da classe Classificacao, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.histograma);
+    }
+
+    /**
+     * Função que traduz a classe Classificacao.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Classificações: ").append(this.numero)
+                .append(", média: ").append(String.format("%.2f", getMedia()))
+                .append(", por valor: ").append(Arrays.toString(this.histograma));
+        return sb.toString();
+    }
+
+    /**
+     * Função que faz um clone da classe Classificacao.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public Classificacao clone() {
+        return new Classificacao(this);
+    }
+
+    /**
+     * Função que dá as classificações como uma lista, por ordem de valor, que é como os estafetas as guardavam
+     * antes desta classe (ver a serialização de Voluntario e Transportadora).
+     * @return Devolve essa lista.
+     */
+    List<Integer> valores() {
+        List<Integer> ret = new ArrayList<>(this.numero);
+        for (int v = 0; v <= MAXIMO; v++)
+            for (int k = 0; k < this.histograma[v]; k++) ret.add(v);
+        return ret;
+    }
+
+    /**
+     * Função que escreve a classificação no formato binário (ver Sistema.grava).
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveInt(this.numero);
+        o.escreveLong(this.soma);
+        o.escreveInts(this.histograma, MAXIMO + 1);
+    }
+
+    /**
+     * Função que lê uma classificação escrita por escreve.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve a classificação lida.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Classificacao le(EntradaBinaria in) throws IOException {
+        Classificacao c = new Classificacao();
+        c.numero = in.leInt();
+        c.soma = in.leLong();
+        in.leInts(c.histograma, MAXIMO + 1);
+        return c;
+    }
+}
@@ -0,0 +1,158 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public interface CriterioSelecao extends Serializable {
+
+    /**
+     * Função que dá o custo de atribuir uma encomenda a um estafeta; quanto menor, melhor.
+     * @param e Estafeta candidato.
+     * @param tempoLoja Tempo que a loja demora a ter o pedido pronto.
+     * @param loja Coordenadas gps da loja.
+     * @param distLojaUtil Distância da loja ao utilizador, que é a mesma para todos os candidatos.
+     * @return Devolve o custo.
+     */
+    double custo(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil);
+
+    /**
+     * Função que escolhe os k candidatos de menor custo, guardando apenas k deles de cada vez.
+     * Em caso de empate fica o que aparece primeiro na lista de candidatos.
+     * @param candidatos Estafetas que podem fazer a entrega.
+     * @param k Número máximo de estafetas a devolver.
+     * @param tempoLoja Tempo que a loja demora a ter o pedido pronto.
+     * @param loja Coordenadas gps da loja.
+     * @param distLojaUtil Distância da loja ao utilizador.
+     * @return Devolve os melhores estafetas, do melhor para o pior.
+     */
+    default <T extends Estafeta> List<T> melhores(List<T> candidatos, int k, int tempoLoja, GPS loja, double distLojaUtil) {
+        PriorityQueue<double[]> piores = new PriorityQueue<>(
+                (a, b) -> a[0] != b[0] ? Double.compare(b[0], a[0]) : Double.compare(b[1], a[1]));
+        for (int i = 0; i < candidatos.size(); i++) {
+            double c = custo(candidatos.get(i), tempoLoja, loja, distLojaUtil);
+            if (piores.size() < k) piores.add(new double[]{c, i});
+            else if (c < piores.peek()[0]) {
+                piores.poll();
+                piores.add(new double[]{c, i});
+            }
+        }
+        List<T> ret = new ArrayList<>(piores.size());
+        while (!piores.isEmpty()) ret.add(candidatos.get((int) piores.poll()[1]));
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    /**
+     * Função que calcula o tempo de entrega de uma encomenda por um estafeta:
+     * o estafeta espera pela loja se esta demorar mais a preparar o pedido do que ele a lá chegar.
+     * @param e Estafeta.
+     * @param tempoLoja Tempo que a loja demora a ter o pedido pronto.
+     * @param loja Coordenadas gps da loja.
+     * @param distLojaUtil Distância da loja ao utilizador.
+     * @return Devolve o tempo de entrega.
+     */
+    static int tempoDeEntrega(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil) {
+        int ida = e.tempoDeIda(loja);
+        if (tempoLoja > ida) return tempoLoja + e.tempoDeVolta(distLojaUtil);
+        return ida + e.tempoDeVolta(distLojaUtil);
+    }
+
+    /**
+     * Critério que escolhe o estafeta que entrega mais cedo.
+     */
+    class MenorTempo implements CriterioSelecao {
+        public double custo(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil) {
+            return tempoDeEntrega(e, tempoLoja, loja, distLojaUtil);
+        }
+    }
+
+    /**
+     * Critério que escolhe o estafeta que cobra menos pela entrega.
+     */
+    class MenorPreco implements CriterioSelecao {
+        public double custo(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil) {
+            return e.precoEntrega(loja, distLojaUtil);
+        }
+    }
+
+    /**
+     * Critério que soma o tempo de entrega e o preço, cada um multiplicado pelo seu peso.
+     */
+    class Ponderado implements CriterioSelecao {
+        private final double pesoTempo;
+        private final double pesoPreco;
+
+        /**
+         * Construtor parametrizado.
+         * @param pesoTempo Peso de cada minuto de entrega.
+         * @param pesoPreco Peso de cada unidade do preço.
+         */
+        public Ponderado(double pesoTempo, double pesoPreco) {
+            this.pesoTempo = pesoTempo;
+            this.pesoPreco = pesoPreco;
+        }
+
+        /**
+         * Método que dá o peso de cada minuto de entrega.
+         * @return Devolve esse peso.
+         */
+        public double getPesoTempo() {
+            return this.pesoTempo;
+        }
+
+        /**
+         * Método que dá o peso de cada unidade do preço.
+         * @return Devolve esse peso.
+         */
+        public double getPesoPreco() {
+            return this.pesoPreco;
+        }
+
+        public double custo(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil) {
+            return this.pesoTempo * tempoDeEntrega(e, tempoLoja, loja, distLojaUtil)
+                    + this.pesoPreco * e.precoEntrega(loja, distLojaUtil);
+        }
+    }
+
+    /**
+     * Critério que parte de outro e dá vantagem aos estafetas mais bem classificados:
+     * cada ponto de média (de 0 a 10) desconta o peso indicado ao custo do critério base.
+     */
+    class ComClassificacao implements CriterioSelecao {
+        private final CriterioSelecao base;
+        private final double pesoPorPonto;
+
+        /**
+         * Construtor parametrizado.
+         * @param base Critério de que se parte.
+         * @param pesoPorPonto Desconto no custo por cada ponto de classificação média.
+         */
+        public ComClassificacao(CriterioSelecao base, double pesoPorPonto) {
+            this.base = base;
+            this.pesoPorPonto = pesoPorPonto;
+        }
+
+        /**
+         * Método que dá o critério de que se parte.
+         * @return Devolve esse critério.
+         */
+        public CriterioSelecao getBase() {
+            return this.base;
+        }
+
+        /**
+         * Método que dá o desconto por cada ponto de classificação média.
+         * @return Devolve esse desconto.
+         */
+        public double getPesoPorPonto() {
+            return this.pesoPorPonto;
+        }
+
+        public double custo(Estafeta e, int tempoLoja, GPS loja, double distLojaUtil) {
+            return this.base.custo(e, tempoLoja, loja, distLojaUtil) - this.pesoPorPonto * e.mediaAjustada();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package Models;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+public class Diario implements Closeable {
+    private static final int MAGIA = 0x50504F44;
+    private static final int VERSAO = 1;
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int MAXIMO_REGISTO = 1 << 26;
+
+    /**
+     * Tipo dos registos com um produto do catálogo; os outros tipos são escolhidos por quem usa o diário.
+     */
+    private static final int PRODUTO = 0;
+
+    private final SaidaBinaria saida;
+    private final ReentrantLock lock;
+    private final Condition sincronizado;
+    private final BitSet produtosEscritos;
+    private long escritos;
+    private long duraveis;
+    private boolean aSincronizar;
+    private long sincronizacoes;
+
+    /*
+     * Diário de escrita antecipada: cada alteração ao Sistema é acrescentada ao fim do ficheiro como um registo
+     * (comprimento, CRC32, tipo e conteúdo). Os registos são escritos para o buffer da SaidaBinaria pela ordem em que
+     * as alterações são feitas e confirma espera até chegarem ao disco. Só uma thread de cada vez chama o force;
+     * as que chegam entretanto esperam por ela e a seguinte leva de uma vez todos os registos acumulados
+     * (group commit), de modo que várias alterações seguidas custam um só fsync.
+     * O cabeçalho tem a geração do diário, que é a do estado gravado a que os registos se aplicam.
+     */
+
+    /**
+     * Construtor parametrizado. Abre um diário para escrever depois dos registos que já tem.
+     * @param ficheiro Caminho do ficheiro.
+     * @param geracao Geração do diário.
+     * @param fim Posição a seguir ao último registo válido (ver repete), ou um valor negativo para começar um diário vazio.
+     * @throws IOException Se não for possível abrir ou escrever o ficheiro.
+     */
+    public Diario(Path ficheiro, long geracao, long fim) throws IOException {
+        this.saida = new SaidaBinaria(ficheiro, Math.max(fim, 0));
+        this.lock = new ReentrantLock();
+        this.sincronizado = this.lock.newCondition();
+        this.produtosEscritos = new BitSet();
+        this.escritos = 0;
+        this.duraveis = 0;
+        this.aSincronizar = false;
+        this.sincronizacoes = 0;
+        if (fim < TAMANHO_CABECALHO) {
+            escreveCabecalho(geracao);
+            this.saida.sincroniza();
+        }
+    }
+
+    /**
+     * Função que apaga os registos e começa uma nova geração, depois de o estado ter sido gravado por inteiro.
+     * Os registos ainda por confirmar ficam confirmados, porque já fazem parte do estado gravado.
+     * @param ficheiro Caminho do ficheiro.
+     * @param geracao Nova geração.
+     * @return Devolve o novo diário; este fica fechado.
+     * @throws IOException Se não for possível escrever o ficheiro.
+     */
+    public Diario reinicia(Path ficheiro, long geracao) throws IOException {
+        this.lock.lock();
+        try {
+            while (this.aSincronizar) this.sincronizado.awaitUninterruptibly();
+            this.duraveis = this.escritos;
+            this.sincronizado.signalAll();
+            this.saida.close();
+        } finally {
+            this.lock.unlock();
+        }
+        return new Diario(ficheiro, geracao, -1);
+    }
+
+    private void escreveCabecalho(long geracao) throws IOException {
+        this.saida.escreveInt(MAGIA);
+        this.saida.escreveInt(VERSAO);
+        this.saida.escreveLong(geracao);
+    }
+
+    /**
+     * Conteúdo de um registo, escrito quando o registo é acrescentado.
+     */
+    public interface Conteudo {
+        /**
+         * Função que escreve o conteúdo do registo.
+         * @param o SaidaBinaria em memória onde escrever.
+         * @throws IOException Se a escrita falhar.
+         */
+        void escreve(SaidaBinaria o) throws IOException;
+    }
+
+    /**
+     * Função que acrescenta um registo ao diário, sem esperar que chegue ao disco.
+     * Deve ser chamada com o lock que ordena a alteração registada, para que os registos fiquem pela ordem das alterações.
+     * @param tipo Tipo do registo, diferente de 0.
+     * @param conteudo Conteúdo do registo.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void acrescenta(int tipo, Conteudo conteudo) throws IOException {
+        SaidaBinaria o = new SaidaBinaria();
+        conteudo.escreve(o);
+        acrescenta(tipo, o.bytes());
+    }
+
+    /**
+     * Função que acrescenta registos com os produtos de umas linhas de encomenda que ainda não estejam no diário,
+     * para que os registos seguintes se possam referir a eles pelo número no CatalogoProdutos.
+     * @param linhas Linhas de encomenda.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void acrescentaProdutos(List<LinhaEncomenda> linhas) throws IOException {
+        this.lock.lock();
+        try {
+            for (LinhaEncomenda l : linhas) {
+                Produto p = l.getProduto();
+                if (this.produtosEscritos.get(p.getId())) continue;
+                SaidaBinaria o = new SaidaBinaria();
+                o.escreveInt(p.getId());
+                o.escreveString(p.getCodigo());
+                o.escreveString(p.getNome());
+                acrescenta(PRODUTO, o.bytes());
+                this.produtosEscritos.set(p.getId());
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void acrescenta(int tipo, byte[] conteudo) throws IOException {
+        int crc = crc(tipo, conteudo);
+        this.lock.lock();
+        try {
+            this.saida.escreveInt(conteudo.length);
+            this.saida.escreveInt(crc);
+            this.saida.escreveInt(tipo);
+            this.saida.escreveBytes(conteudo);
+            this.escritos++;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Função que espera até que todos os registos acrescentados até agora estejam no disco.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void confirma() throws IOException {
+        this.lock.lock();
+        try {
+            long alvo = this.escritos;
+            while (this.duraveis < alvo) {
+                if (this.aSincronizar) {
+                    this.sincronizado.awaitUninterruptibly();
+                    continue;
+                }
+                this.aSincronizar = true;
+                long ate = this.escritos;
+                boolean ok = false;
+                try {
+                    this.saida.despeja();
+                    this.lock.unlock();
+                    try {
+                        this.saida.forca();
+                        ok = true;
+                    } finally {
+                        this.lock.lock();
+                    }
+                } finally {
+                    this.aSincronizar = false;
+                    if (ok) {
+                        this.duraveis = Math.max(this.duraveis, ate);
+                        this.sincronizacoes++;
+                    }
+                    this.sincronizado.signalAll();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Função que calcula o CRC32 do tipo e do conteúdo de um registo.
+     */
+    private static int crc(int tipo, byte[] conteudo) {
+        CRC32 c = new CRC32();
+        c.update(tipo >>> 24);
+        c.update(tipo >>> 16);
+        c.update(tipo >>> 8);
+        c.update(tipo);
+        c.update(conteudo);
+        return (int) c.getValue();
+    }
+
+    /**
+     * Método que dá o número de registos acrescentados desde que o diário foi aberto.
+     * @return Devolve esse número.
+     */
+    public long getRegistos() {
+        this.lock.lock();
+        try {
+            return this.escritos;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Método que dá o número de vezes que o diário foi forçado para o disco desde que foi aberto.
+     * Com várias threads a escrever é menor do que o número de registos confirmados.
+     * @return Devolve esse número.
+     */
+    public long getSincronizacoes() {
+        this.lock.lock();
+        try {
+            return this.sincronizacoes;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Função que confirma os registos que faltam e fecha o ficheiro.
+     * @throws IOException Se a escrita falhar.
+     */
+    @Override
+    public void close() throws IOException {
+        confirma();
+        this.saida.close();
+    }
+
+    /**
+     * Ação aplicada a cada registo lido por repete.
+     */
+    public interface Registo {
+        /**
+         * Função que aplica um registo.
+         * @param tipo Tipo do registo.
+         * @param conteudo Conteúdo do registo.
+         * @param produtos Produtos pelo número que tinham no catálogo de quem escreveu o diário.
+         * @throws IOException Se o conteúdo não puder ser lido.
+         */
+        void aplica(int tipo, EntradaBinaria conteudo, Produto[] produtos) throws IOException;
+    }
+
+    /**
+     * Função que lê os registos de um diário, pela ordem em que foram escritos, e aplica cada um.
+     * Para no primeiro registo incompleto ou com o CRC errado, que é o que fica de uma escrita interrompida.
+     * @param ficheiro Caminho do ficheiro.
+     * @param geracao Geração do estado gravado; um diário de outra geração é ignorado.
+     * @param acao Ação a aplicar a cada registo.
+     * @return Devolve a posição a seguir ao último registo válido, ou -1 se o diário não existir ou for de outra geração.
+     * @throws IOException Se a leitura ou a ação falharem.
+     */
+    public static long repete(Path ficheiro, long geracao, Registo acao) throws IOException {
+        if (!Files.exists(ficheiro)) return -1;
+        try (EntradaBinaria in = new EntradaBinaria(ficheiro)) {
+            try {
+                if (in.leInt() != MAGIA || in.leInt() != VERSAO || in.leLong() != geracao) return -1;
+            } catch (EOFException e) {
+                return -1;
+            }
+            Produto[] produtos = new Produto[0];
+            long fim = in.posicao();
+            while (true) {
+                int tipo;
+                byte[] conteudo;
+                try {
+                    int n = in.leInt();
+                    int crc = in.leInt();
+                    tipo = in.leInt();
+                    if (n < 0 || n > MAXIMO_REGISTO) break;
+                    conteudo = in.leBytes(n);
+                    if (crc(tipo, conteudo) != crc) break;
+                } catch (EOFException e) {
+                    break;
+                }
+                EntradaBinaria e = new EntradaBinaria(conteudo);
+                if (tipo == PRODUTO) {
+                    int id = e.leInt();
+                    String codigo = e.leString();
+                    if (id >= produtos.length) produtos = Arrays.copyOf(produtos, Math.max(id + 1, produtos.length * 2));
+                    produtos[id] = CatalogoProdutos.produto(codigo, e.leString());
+                } else {
+                    acao.aplica(tipo, e, produtos);
+                }
+                fim = in.posicao();
+            }
+            return fim;
+        }
+    }
+}
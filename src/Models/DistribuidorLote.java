@@ -0,0 +1,117 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class DistribuidorLote implements Serializable {
+    /**
+     * Custo de um par encomenda/estafeta que não é possível (fora do raio, sem certificado médico, ...).
+     */
+    public static final double INVIAVEL = 1e12;
+
+    /**
+     * Custo de deixar uma encomenda por atribuir; qualquer par possível é preferível.
+     */
+    public static final double SEM_ESTAFETA = 1e9;
+
+    /**
+     * Função que resolve a atribuição de custo mínimo (algoritmo húngaro) entre encomendas e vagas de estafetas.
+     * Cada encomenda pode ficar sem estafeta, pelo que o número de vagas pode ser menor que o de encomendas.
+     * @param custo Matriz n x m com o custo de dar a encomenda i à vaga j, ou INVIAVEL.
+     * @return Devolve, para cada encomenda, a vaga atribuída ou -1 se ficar por atribuir.
+     */
+    public static int[] resolve(double[][] custo) {
+        int n = custo.length;
+        int m = n == 0 ? 0 : custo[0].length;
+        int cols = m + n;
+        double[] u = new double[n + 1], v = new double[cols + 1];
+        int[] p = new int[cols + 1], caminho = new int[cols + 1];
+        double[] minimo = new double[cols + 1];
+        boolean[] usado = new boolean[cols + 1];
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minimo, Double.POSITIVE_INFINITY);
+            Arrays.fill(usado, false);
+            do {
+                usado[j0] = true;
+                int i0 = p[j0], j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+                for (int j = 1; j <= cols; j++) {
+                    if (usado[j]) continue;
+                    double c = (j <= m ? custo[i0 - 1][j - 1] : SEM_ESTAFETA) - u[i0] - v[j];
+                    if (c < minimo[j]) {
+                        minimo[j] = c;
+                        caminho[j] = j0;
+                    }
+                    if (minimo[j] < delta) {
+                        delta = minimo[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (usado[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else minimo[j] -= delta;
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = caminho[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        int[] ret = new int[n];
+        Arrays.fill(ret, -1);
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0 && custo[p[j] - 1][j - 1] < INVIAVEL) ret[p[j] - 1] = j - 1;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que faz a atribuição uma a uma, pela ordem das encomendas, dando a cada uma a vaga livre mais barata.
+     * É o que acontece quando as encomendas são aceites individualmente e serve de comparação.
+     * @param custo Matriz n x m com o custo de dar a encomenda i à vaga j, ou INVIAVEL.
+     * @return Devolve, para cada encomenda, a vaga atribuída ou -1 se ficar por atribuir.
+     */
+    public static int[] guloso(double[][] custo) {
+        int n = custo.length;
+        int m = n == 0 ? 0 : custo[0].length;
+        boolean[] ocupada = new boolean[m];
+        int[] ret = new int[n];
+        for (int i = 0; i < n; i++) {
+            ret[i] = -1;
+            for (int j = 0; j < m; j++) {
+                if (!ocupada[j] && custo[i][j] < INVIAVEL && (ret[i] < 0 || custo[i][j] < custo[i][ret[i]])) ret[i] = j;
+            }
+            if (ret[i] >= 0) ocupada[ret[i]] = true;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que soma o custo de uma atribuição.
+     * @param custo Matriz de custos.
+     * @param atribuicao Vaga atribuída a cada encomenda, ou -1.
+     * @return Devolve o custo total das encomendas atribuídas.
+     */
+    public static double custoTotal(double[][] custo, int[] atribuicao) {
+        double ret = 0;
+        for (int i = 0; i < atribuicao.length; i++) if (atribuicao[i] >= 0) ret += custo[i][atribuicao[i]];
+        return ret;
+    }
+
+    /**
+     * Função que conta as encomendas atribuídas.
+     * @param atribuicao Vaga atribuída a cada encomenda, ou -1.
+     * @return Devolve o número de encomendas com estafeta.
+     */
+    public static int atribuidas(int[] atribuicao) {
+        int ret = 0;
+        for (int a : atribuicao) if (a >= 0) ret++;
+        return ret;
+    }
+}
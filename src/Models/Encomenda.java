@@ -1,5 +1,6 @@
 package Models;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -7,6 +8,8 @@ import java.util.List;
 import java.util.Objects;
 
 public class Encomenda implements Serializable {
+    private static final long serialVersionUID = -7714445648223107568L;
+
     private String id;
     private String user;
     private String loja;
@@ -67,7 +70,7 @@ public class Encomenda implements Serializable {
         this.user = e.getUser();
         this.loja = e.getLoja();
         this.peso = e.getPeso();
-        this.produtos = e.getLE();
+        this.produtos = new ArrayList<>(e.getLE());
         this.precoEntrega = e.getPrecoEntrega();
         this.tempoDeEspera = e.getTempoEntrega();
         this.qPedidoEntregue = e.getQPedidoEntregue();
@@ -213,8 +216,17 @@ public class Encomenda implements Serializable {
      * @param valorU Souble correspondente ao valor unitário.
      */
     public void addProduto(String codP, String desP, double quantP, double valorU) {
-        LinhaEncomenda lenc = new LinhaEncomenda(codP,desP,quantP,valorU);
-        this.produtos.add(lenc);
+        addProduto(CatalogoProdutos.produto(codP,desP),quantP,valorU);
+    }
+
+    /**
+     * Função que adiciona uma linha de encomenda de um produto do catálogo.
+     * @param produto Produto do catálogo.
+     * @param quantP Double representante da quantidade de uma linha de encomenda.
+     * @param valorU Double correspondente ao valor unitário.
+     */
+    public void addProduto(Produto produto, double quantP, double valorU) {
+        this.produtos.add(new LinhaEncomenda(produto,quantP,valorU));
     }
 
     /**
@@ -285,4 +297,53 @@ public class Encomenda implements Serializable {
         return new Encomenda(this);
     }
 
+    /**
+     * Função que escreve a encomenda no formato binário (ver Sistema.grava). Os produtos são escritos
+     * pelo seu número no CatalogoProdutos.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveString(this.id);
+        o.escreveString(this.user);
+        o.escreveString(this.loja);
+        o.escreveDouble(this.peso);
+        o.escreveInt(this.tempoDeEspera);
+        o.escreveDouble(this.precoEntrega);
+        o.escreveData(this.qPedidoEntregue);
+        o.escreveBoolean(this.encomendaMedica);
+        o.escreveInt(this.produtos.size());
+        for (LinhaEncomenda l : this.produtos) {
+            o.escreveInt(l.getProduto().getId());
+            o.escreveDouble(l.getQ());
+            o.escreveDouble(l.getU());
+        }
+    }
+
+    /**
+     * Função que lê uma encomenda escrita por escreve.
+     * @param in Ficheiro de onde ler.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @return Devolve a encomenda lida.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Encomenda le(EntradaBinaria in, Produto[] produtos) throws IOException {
+        Encomenda e = new Encomenda();
+        e.id = in.leString();
+        e.user = in.leString();
+        e.loja = in.leString();
+        e.peso = in.leDouble();
+        e.tempoDeEspera = in.leInt();
+        e.precoEntrega = in.leDouble();
+        e.qPedidoEntregue = in.leData();
+        e.encomendaMedica = in.leBoolean();
+        int n = in.leInt();
+        e.produtos = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Produto p = produtos[in.leInt()];
+            double q = in.leDouble();
+            e.produtos.add(new LinhaEncomenda(p, q, in.leDouble()));
+        }
+        return e;
+    }
 }
@@ -0,0 +1,305 @@
+package Models;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+public class EntradaBinaria implements Closeable {
+    private static final int TAMANHO_BUFFER = 1 << 16;
+
+    private final FileChannel canal;
+    private final ByteBuffer buffer;
+    private long fimSecao;
+
+    /**
+     * Construtor parametrizado.
+     * @param ficheiro Caminho do ficheiro a ler.
+     * @throws IOException Se não for possível abrir o ficheiro.
+     */
+    public EntradaBinaria(Path ficheiro) throws IOException {
+        this.canal = FileChannel.open(ficheiro, StandardOpenOption.READ);
+        this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        this.buffer.limit(0);
+        this.fimSecao = -1;
+    }
+
+    /**
+     * Construtor parametrizado. Lê de bytes em memória, por exemplo escritos por SaidaBinaria.bytes().
+     * @param bytes Bytes a ler.
+     */
+    public EntradaBinaria(byte[] bytes) {
+        this.canal = null;
+        this.buffer = ByteBuffer.wrap(bytes);
+        this.fimSecao = -1;
+    }
+
+    /**
+     * Função que lê o cabeçalho da próxima secção.
+     * @return Devolve o tipo da secção.
+     * @throws IOException Se a leitura falhar ou o ficheiro acabar.
+     */
+    public int proximaSecao() throws IOException {
+        int tipo = leInt();
+        long comprimento = leLong();
+        this.fimSecao = posicao() + comprimento;
+        return tipo;
+    }
+
+    /**
+     * Função que salta o que falta ler da secção atual, por exemplo uma secção de um tipo desconhecido
+     * escrita por uma versão mais recente.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void saltaSecao() throws IOException {
+        long falta = this.fimSecao - posicao();
+        if (falta <= this.buffer.remaining() || this.canal == null) {
+            this.buffer.position(this.buffer.position() + (int) falta);
+        } else {
+            this.canal.position(this.fimSecao);
+            this.buffer.limit(0);
+        }
+    }
+
+    /**
+     * Função que verifica que a secção atual foi lida até ao fim.
+     * @throws IOException Se tiver sido lido a mais ou a menos.
+     */
+    public void fimDaSecao() throws IOException {
+        if (posicao() != this.fimSecao)
+            throw new IOException("Secção com comprimento errado: faltam " + (this.fimSecao - posicao()) + " bytes");
+    }
+
+    /**
+     * Função que lê um int.
+     * @return Devolve o valor lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    public int leInt() throws IOException {
+        precisa(4);
+        return this.buffer.getInt();
+    }
+
+    /**
+     * Função que lê um long.
+     * @return Devolve o valor lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    public long leLong() throws IOException {
+        precisa(8);
+        return this.buffer.getLong();
+    }
+
+    /**
+     * Função que lê um double.
+     * @return Devolve o valor lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    public double leDouble() throws IOException {
+        precisa(8);
+        return this.buffer.getDouble();
+    }
+
+    /**
+     * Função que lê um boolean escrito num byte.
+     * @return Devolve o valor lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    public boolean leBoolean() throws IOException {
+        precisa(1);
+        return this.buffer.get() != 0;
+    }
+
+    /**
+     * Função que lê uma String escrita por SaidaBinaria.escreveString.
+     * @return Devolve a String, ou null.
+     * @throws IOException Se a leitura falhar.
+     */
+    public String leString() throws IOException {
+        int n = leInt();
+        if (n < 0) return null;
+        return new String(leBytes(n), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Função que lê n bytes.
+     * @param n Número de bytes.
+     * @return Devolve os bytes lidos.
+     * @throws IOException Se a leitura falhar.
+     */
+    public byte[] leBytes(int n) throws IOException {
+        byte[] ret = new byte[n];
+        int i = 0;
+        while (i < n) {
+            if (!this.buffer.hasRemaining()) enche(1);
+            int k = Math.min(this.buffer.remaining(), n - i);
+            this.buffer.get(ret, i, k);
+            i += k;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que lê uma coordenada escrita por SaidaBinaria.escreveGps.
+     * @return Devolve a coordenada.
+     * @throws IOException Se a leitura falhar.
+     */
+    public GPS leGps() throws IOException {
+        double x = leDouble();
+        return new GPS(x, leDouble());
+    }
+
+    /**
+     * Função que lê uma data escrita por SaidaBinaria.escreveData.
+     * @return Devolve a data.
+     * @throws IOException Se a leitura falhar.
+     */
+    public LocalDateTime leData() throws IOException {
+        return HistoricoEncomendas.deNanos(leLong());
+    }
+
+    /**
+     * Função que lê n valores seguidos para as primeiras n posições de um array.
+     * @param v Array onde guardar os valores.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leInts(int[] v, int n) throws IOException {
+        leInts(v, 0, n);
+    }
+
+    /**
+     * Função que lê n valores seguidos para um array, a partir de uma posição.
+     * @param v Array onde guardar os valores.
+     * @param desde Posição do array onde guardar o primeiro valor.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leInts(int[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            precisa(4);
+            int k = Math.min(this.buffer.remaining() / 4, n - i);
+            this.buffer.asIntBuffer().get(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 4);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que lê n valores seguidos para as primeiras n posições de um array.
+     * @param v Array onde guardar os valores.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leLongs(long[] v, int n) throws IOException {
+        leLongs(v, 0, n);
+    }
+
+    /**
+     * Função que lê n valores seguidos para um array, a partir de uma posição.
+     * @param v Array onde guardar os valores.
+     * @param desde Posição do array onde guardar o primeiro valor.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leLongs(long[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            precisa(8);
+            int k = Math.min(this.buffer.remaining() / 8, n - i);
+            this.buffer.asLongBuffer().get(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 8);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que lê n valores seguidos para as primeiras n posições de um array.
+     * @param v Array onde guardar os valores.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leDoubles(double[] v, int n) throws IOException {
+        leDoubles(v, 0, n);
+    }
+
+    /**
+     * Função que lê n valores seguidos para um array, a partir de uma posição.
+     * @param v Array onde guardar os valores.
+     * @param desde Posição do array onde guardar o primeiro valor.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leDoubles(double[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            precisa(8);
+            int k = Math.min(this.buffer.remaining() / 8, n - i);
+            this.buffer.asDoubleBuffer().get(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 8);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que lê n valores seguidos para as primeiras n posições de um array.
+     * @param v Array onde guardar os valores.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leBooleans(boolean[] v, int n) throws IOException {
+        leBooleans(v, 0, n);
+    }
+
+    /**
+     * Função que lê n valores seguidos para um array, a partir de uma posição.
+     * @param v Array onde guardar os valores.
+     * @param desde Posição do array onde guardar o primeiro valor.
+     * @param n Número de valores.
+     * @throws IOException Se a leitura falhar.
+     */
+    public void leBooleans(boolean[] v, int desde, int n) throws IOException {
+        for (int i = 0; i < n; i++) v[desde + i] = leBoolean();
+    }
+
+    /**
+     * Método que dá a posição no ficheiro do próximo byte a ler.
+     * @return Devolve essa posição.
+     * @throws IOException Se não for possível ler a posição do canal.
+     */
+    public long posicao() throws IOException {
+        if (this.canal == null) return this.buffer.position();
+        return this.canal.position() - this.buffer.remaining();
+    }
+
+    /**
+     * Função que garante que há pelo menos n bytes por ler no buffer.
+     */
+    private void precisa(int n) throws IOException {
+        if (this.buffer.remaining() < n) enche(n);
+    }
+
+    private void enche(int n) throws IOException {
+        if (this.canal == null) throw new EOFException("Fim inesperado dos dados");
+        this.buffer.compact();
+        while (this.buffer.position() < n) {
+            if (this.canal.read(this.buffer) < 0) throw new EOFException("Fim inesperado do ficheiro");
+        }
+        this.buffer.flip();
+    }
+
+    /**
+     * Função que fecha o ficheiro.
+     * @throws IOException Se não for possível fechar.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.canal != null) this.canal.close();
+    }
+}
@@ -0,0 +1,122 @@
+package Models;
+
+public interface Estafeta {
+
+    /**
+     * Método que dá o código do estafeta.
+     * @return Devolve esse código.
+     */
+    String getId();
+
+    /**
+     * Método que dá as coordenadas do estafeta.
+     * @return Devolve essas coordenadas.
+     */
+    GPS getGps();
+
+    /**
+     * Método que dá o raio de ação do estafeta.
+     * @return Devolve esse raio.
+     */
+    double getRaio();
+
+    /**
+     * Função que verifica se o estafeta está livre para ir buscar uma encomenda.
+     * @return True se estiver livre, false caso contrário.
+     */
+    boolean isLivre();
+
+    /**
+     * Função que verifica se o estafeta está livre para transportar encomendas médicas.
+     * @return True se estiver livre para transportar medicamentos, false caso contrário.
+     */
+    boolean getLivreMed();
+
+    /**
+     * Função que verifica se o estafeta tem certificado para transportar medicamentos.
+     * @return True se tiver, false caso contrário.
+     */
+    boolean aceitoTransporteMedicamentos();
+
+    /**
+     * Função que verifica se uma loja e um utilizador estão dentro do raio de ação do estafeta.
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     * @return True se estiverem, false caso contrário.
+     */
+    boolean dentroDoRaio(GPS loja, GPS util);
+
+    /**
+     * Função que calcula o tempo que o estafeta demora a chegar à loja.
+     * @param loja Coordenadas gps da loja.
+     * @return Tempo calculado.
+     */
+    int tempoDeIda(GPS loja);
+
+    /**
+     * Função que calcula o tempo que o estafeta demora da loja até à casa do utilizador.
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     * @return Tempo calculado.
+     */
+    int tempoDeVolta(GPS loja, GPS util);
+
+    /**
+     * Função que calcula o tempo que o estafeta demora da loja até à casa do utilizador,
+     * a partir da distância entre os dois, já conhecida.
+     * @param distLojaUtil Distância da loja ao utilizador.
+     * @return Tempo calculado.
+     */
+    int tempoDeVolta(double distLojaUtil);
+
+    /**
+     * Função que calcula o preço que o estafeta cobra pela entrega.
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     * @return Preço da entrega.
+     */
+    double precoEntrega(GPS loja, GPS util);
+
+    /**
+     * Função que calcula o preço que o estafeta cobra pela entrega, a partir da distância
+     * da loja ao utilizador, já conhecida.
+     * @param loja Coordenadas gps da loja.
+     * @param distLojaUtil Distância da loja ao utilizador.
+     * @return Preço da entrega.
+     */
+    double precoEntrega(GPS loja, double distLojaUtil);
+
+    /**
+     * Função que dá o número de encomendas que o estafeta ainda pode aceitar antes de ficar ocupado.
+     * @return Número de encomendas, 0 se estiver ocupado.
+     */
+    int capacidadeLivre();
+
+    /**
+     * Função que aceita uma encomenda.
+     * @param e Encomenda a aceitar.
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     */
+    void aceitaEncomenda(Encomenda e, GPS loja, GPS util);
+
+    /**
+     * Função que aceita uma encomenda que o Sistema já guardou no histórico partilhado.
+     * @param linha Número da linha no HistoricoEncomendas.
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     */
+    void aceitaEncomenda(int linha, GPS loja, GPS util);
+
+    /**
+     * Método que dá a média das classificações do estafeta, ajustada para que estafetas com poucas
+     * classificações fiquem perto do meio da escala. Serve para ordenar candidatos sem copiar nada.
+     * @return Devolve essa média.
+     */
+    double mediaAjustada();
+
+    /**
+     * Função que torna o estafeta livre para transportar encomendas.
+     */
+    void tornaLivre();
+}
@@ -0,0 +1,87 @@
+package Models;
+
+import java.io.Serializable;
+
+public class EstatisticasGravacao implements Serializable {
+    private long pausa;
+    private long duracao;
+    private long bytes;
+
+    /**
+     * Construtor por omissão.
+     */
+    public EstatisticasGravacao() {
+        this.pausa = 0;
+        this.duracao = 0;
+        this.bytes = 0;
+    }
+
+    /**
+     * Construtor parametrizado.
+     * @param pausa Tempo em que o Sistema esteve parado para tirar a fotografia do estado, em nanosegundos.
+     * @param duracao Tempo total da gravação, até o ficheiro estar no sítio, em nanosegundos.
+     * @param bytes Tamanho do ficheiro gravado.
+     */
+    public EstatisticasGravacao(long pausa, long duracao, long bytes) {
+        this.pausa = pausa;
+        this.duracao = duracao;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param e Recebe um objeto da classe EstatisticasGravacao.
+     */
+    public EstatisticasGravacao(EstatisticasGravacao e) {
+        this.pausa = e.getPausa();
+        this.duracao = e.getDuracao();
+        this.bytes = e.getBytes();
+    }
+
+    /**
+     * Método que dá o tempo em que o Sistema esteve parado, isto é, em que nenhuma encomenda pôde ser
+     * feita ou aceite por causa da gravação.
+     * @return Devolve o tempo em nanosegundos.
+     */
+    public long getPausa() {
+        return this.pausa;
+    }
+
+    /**
+     * Método que dá o tempo total da gravação.
+     * @return Devolve o tempo em nanosegundos.
+     */
+    public long getDuracao() {
+        return this.duracao;
+    }
+
+    /**
+     * Método que dá o tamanho do ficheiro gravado.
+     * @return Devolve o tamanho em bytes.
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Função que traduz a classe EstatisticasGravacao.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pausa: ").append(this.pausa / 1000).append(" us")
+                .append("\nTempo da gravação: ").append(this.duracao / 1000000).append(" ms")
+                .append("\nTamanho: ").append(this.bytes / 1024).append(" KB");
+        return sb.toString();
+    }
+
+    /**
+     * Função que faz um clone da classe EstatisticasGravacao.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public EstatisticasGravacao clone() {
+        return new EstatisticasGravacao(this);
+    }
+}
@@ -0,0 +1,97 @@
+package Models;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+public class Evento implements Comparable<Evento>, Serializable {
+    private final LocalDateTime quando;
+    private final String estafeta;
+    private final String encomenda;
+    private final long seq;
+
+    /**
+     * Construtor parametrizado.
+     * @param quando Momento em que o evento acontece.
+     * @param estafeta Id do estafeta a que diz respeito (pode ser null).
+     * @param encomenda Id da encomenda a que diz respeito.
+     * @param seq Número de ordem, que desempata eventos no mesmo momento.
+     */
+    public Evento(LocalDateTime quando, String estafeta, String encomenda, long seq) {
+        this.quando = quando;
+        this.estafeta = estafeta;
+        this.encomenda = encomenda;
+        this.seq = seq;
+    }
+
+    /**
+     * Método que dá o momento do evento.
+     * @return Devolve esse momento.
+     */
+    public LocalDateTime getQuando() {
+        return this.quando;
+    }
+
+    /**
+     * Método que dá o id do estafeta do evento.
+     * @return Devolve esse id.
+     */
+    public String getEstafeta() {
+        return this.estafeta;
+    }
+
+    /**
+     * Método que dá o id da encomenda do evento.
+     * @return Devolve esse id.
+     */
+    public String getEncomenda() {
+        return this.encomenda;
+    }
+
+    /**
+     * Função que ordena os eventos por momento e, no mesmo momento, pela ordem em que foram criados.
+     * @param o Evento a comparar.
+     * @return Devolve o resultado da comparação.
+     */
+    public int compareTo(Evento o) {
+        int c = this.quando.compareTo(o.quando);
+        return c != 0 ? c : Long.compare(this.seq, o.seq);
+    }
+
+    /**
+     * Função que traduz a classe Evento.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        return "Evento{" +
+                "quando=" + quando +
+                ", estafeta='" + estafeta + '\'' +
+                ", encomenda='" + encomenda + '\'' +
+                '}';
+    }
+
+    /**
+     * Função que escreve o evento no formato binário (ver Sistema.grava).
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveData(this.quando);
+        o.escreveString(this.estafeta);
+        o.escreveString(this.encomenda);
+        o.escreveLong(this.seq);
+    }
+
+    /**
+     * Função que lê um evento escrito por escreve.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve o evento lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Evento le(EntradaBinaria in) throws IOException {
+        LocalDateTime quando = in.leData();
+        String estafeta = in.leString(), encomenda = in.leString();
+        return new Evento(quando, estafeta, encomenda, in.leLong());
+    }
+}
@@ -0,0 +1,394 @@
+package Models;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+public class FilaEncomendas implements Serializable {
+    private static final int NORMAL = 0;
+    private static final int MEDICA = 1;
+
+    private final Map<String,Entrada> porId;
+    private final List<TreeSet<Entrada>> ordem;
+    private long sequencia;
+    private final int[] profundidade;
+    private final int[] profundidadeMax;
+    private final long[] retiradas;
+    private final long[] esperaTotal;
+
+    /**
+     * Construtor por omissão.
+     */
+    public FilaEncomendas() {
+        this.porId = new LinkedHashMap<>();
+        this.ordem = Arrays.asList(new TreeSet<>(), new TreeSet<>());
+        this.sequencia = 0;
+        this.profundidade = new int[2];
+        this.profundidadeMax = new int[2];
+        this.retiradas = new long[2];
+        this.esperaTotal = new long[2];
+    }
+
+    /**
+     * Construtor por cópia. As encomendas são copiadas e mantêm a sua prioridade.
+     * @param f Recebe um objeto da classe FilaEncomendas.
+     */
+    public FilaEncomendas(FilaEncomendas f) {
+        this();
+        for (Entrada en : f.porId.values()) {
+            Entrada nova = new Entrada(en.encomenda.clone(), en.tempoLoja, en.seq);
+            this.porId.put(nova.id, nova);
+            this.ordem.get(classe(nova.medica)).add(nova);
+        }
+        this.sequencia = f.sequencia;
+        System.arraycopy(f.profundidade, 0, this.profundidade, 0, 2);
+        System.arraycopy(f.profundidadeMax, 0, this.profundidadeMax, 0, 2);
+        System.arraycopy(f.retiradas, 0, this.retiradas, 0, 2);
+        System.arraycopy(f.esperaTotal, 0, this.esperaTotal, 0, 2);
+    }
+
+    /**
+     * Função que coloca uma encomenda na fila. Se já lá existir uma com o mesmo id, é substituída.
+     * A prioridade é fixada neste momento: primeiro as médicas, depois as mais antigas
+     * e, em caso de empate, as de lojas que têm o pedido pronto mais cedo.
+     * @param e Encomenda a colocar.
+     * @param tempoLoja Tempo que a loja demora a ter o pedido pronto.
+     */
+    public void adiciona(Encomenda e, int tempoLoja) {
+        Entrada antiga = this.porId.remove(e.getId());
+        if (antiga != null) {
+            this.ordem.get(classe(antiga.medica)).remove(antiga);
+            this.profundidade[classe(antiga.medica)]--;
+        }
+        Entrada en = new Entrada(e, tempoLoja, this.sequencia++);
+        this.porId.put(en.id, en);
+        int c = classe(en.medica);
+        this.ordem.get(c).add(en);
+        this.profundidade[c]++;
+        this.profundidadeMax[c] = Math.max(this.profundidadeMax[c], this.profundidade[c]);
+    }
+
+    /**
+     * Função que retira uma encomenda da fila, contando o tempo que esperou.
+     * @param id Id da encomenda.
+     * @param agora Momento em que sai da fila.
+     * @return Devolve a encomenda retirada, ou null se não estiver na fila.
+     */
+    public Encomenda remove(String id, LocalDateTime agora) {
+        Entrada en = this.porId.remove(id);
+        if (en == null) return null;
+        int c = classe(en.medica);
+        this.ordem.get(c).remove(en);
+        this.profundidade[c]--;
+        this.retiradas[c]++;
+        this.esperaTotal[c] += Math.max(0, Duration.between(en.pedido, agora).toMillis());
+        return en.encomenda;
+    }
+
+    /**
+     * Método que dá uma encomenda da fila a partir do seu id.
+     * @param id Id da encomenda.
+     * @return Devolve a encomenda (sem a copiar), ou null se não estiver na fila.
+     */
+    public Encomenda get(String id) {
+        Entrada en = this.porId.get(id);
+        return en == null ? null : en.encomenda;
+    }
+
+    /**
+     * Método que dá a encomenda mais urgente, sem a retirar da fila.
+     * @return Devolve essa encomenda (sem a copiar), ou null se a fila estiver vazia.
+     */
+    public Encomenda primeira() {
+        for (TreeSet<Entrada> classe : List.of(this.ordem.get(MEDICA), this.ordem.get(NORMAL))) {
+            if (!classe.isEmpty()) return classe.first().encomenda;
+        }
+        return null;
+    }
+
+    /**
+     * Método que dá as encomendas da fila, da mais urgente para a menos urgente.
+     * @return Devolve uma lista com as encomendas (sem as copiar).
+     */
+    public List<Encomenda> porPrioridade() {
+        List<Encomenda> ret = porPrioridade(true);
+        ret.addAll(porPrioridade(false));
+        return ret;
+    }
+
+    /**
+     * Método que dá as encomendas de uma classe, da mais urgente para a menos urgente.
+     * @param medica True para as encomendas médicas, false para as restantes.
+     * @return Devolve uma lista com as encomendas (sem as copiar).
+     */
+    public List<Encomenda> porPrioridade(boolean medica) {
+        TreeSet<Entrada> classe = this.ordem.get(classe(medica));
+        List<Encomenda> ret = new ArrayList<>(classe.size());
+        for (Entrada en : classe) ret.add(en.encomenda);
+        return ret;
+    }
+
+    /**
+     * Método que dá as encomendas da fila pela ordem em que chegaram.
+     * @return Devolve uma lista com as encomendas (sem as copiar).
+     */
+    public List<Encomenda> porChegada() {
+        List<Encomenda> ret = new ArrayList<>(this.porId.size());
+        for (Entrada en : this.porId.values()) ret.add(en.encomenda);
+        return ret;
+    }
+
+    /**
+     * Método que dá o número de encomendas na fila.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.porId.size();
+    }
+
+    /**
+     * Método que dá o número de encomendas de uma classe na fila.
+     * @param medica True para as encomendas médicas, false para as restantes.
+     * @return Devolve esse número.
+     */
+    public int profundidade(boolean medica) {
+        return this.profundidade[classe(medica)];
+    }
+
+    /**
+     * Método que dá o maior número de encomendas de uma classe que esteve na fila ao mesmo tempo.
+     * @param medica True para as encomendas médicas, false para as restantes.
+     * @return Devolve esse número.
+     */
+    public int profundidadeMaxima(boolean medica) {
+        return this.profundidadeMax[classe(medica)];
+    }
+
+    /**
+     * Método que dá o tempo médio que as encomendas de uma classe esperaram na fila.
+     * @param medica True para as encomendas médicas, false para as restantes.
+     * @return Devolve esse tempo em milissegundos, ou 0 se nenhuma tiver saído.
+     */
+    public double esperaMedia(boolean medica) {
+        int c = classe(medica);
+        return this.retiradas[c] == 0 ? 0 : (double) this.esperaTotal[c] / this.retiradas[c];
+    }
+
+    /**
+     * Função auxiliar que dá o índice de uma classe nos contadores.
+     * @param medica True para as encomendas médicas.
+     * @return Devolve o índice.
+     */
+    private static int classe(boolean medica) {
+        return medica ? MEDICA : NORMAL;
+    }
+
+    /**
+     * Função que traduz a fila, com as métricas de cada classe.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Encomendas por enviar: ").append(tamanho());
+        for (boolean med : new boolean[]{true, false}) {
+            sb.append(med ? "\nMédicas" : "\nNormais")
+                    .append(" - na fila: ").append(profundidade(med))
+                    .append(", máximo: ").append(profundidadeMaxima(med))
+                    .append(", saíram: ").append(this.retiradas[classe(med)])
+                    .append(", espera média (ms): ").append(String.format("%.1f", esperaMedia(med)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Função que verifica se um objeto recebido é idêntico ao da classe FilaEncomendas.
+     * Só são comparadas as encomendas na fila.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean com a respetiva verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FilaEncomendas f = (FilaEncomendas) o;
+        return porChegada().equals(f.porChegada());
+    }
+
+    /**
+     * Função que dá o hash da classe FilaEncomendas, coerente com o equals (só usa os ids das encomendas).
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        return this.porId.keySet().hashCode();
+    }
+
+    /**
+     * Função que faz um clone da classe FilaEncomendas.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public FilaEncomendas clone() {
+        return new FilaEncomendas(this);
+    }
+
+    /**
+     * Função que escreve a fila no formato binário (ver Sistema.grava): as encomendas por ordem de chegada,
+     * com a chave de prioridade que tinham, e as métricas de cada classe.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveInt(this.porId.size());
+        for (Entrada en : this.porId.values()) {
+            o.escreveInt(en.tempoLoja);
+            o.escreveLong(en.seq);
+            en.encomenda.escreve(o);
+        }
+        o.escreveLong(this.sequencia);
+        o.escreveInts(this.profundidadeMax, 2);
+        o.escreveLongs(this.retiradas, 2);
+        o.escreveLongs(this.esperaTotal, 2);
+    }
+
+    /**
+     * Função que escreve só as encomendas com os ids dados (ver Sistema.gravaIncremental): primeiro os ids das que
+     * já não estão na fila e depois, no formato de escreve, as que estão, com as métricas de cada classe.
+     * @param o Ficheiro onde escrever.
+     * @param ids Ids das encomendas que entraram ou saíram da fila.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o, Collection<String> ids) throws IOException {
+        List<String> saidas = new ArrayList<>();
+        List<Entrada> presentes = new ArrayList<>();
+        for (String id : ids) {
+            Entrada en = this.porId.get(id);
+            if (en == null) saidas.add(id);
+            else presentes.add(en);
+        }
+        presentes.sort(Comparator.comparingLong(en -> en.seq));
+        o.escreveInt(saidas.size());
+        for (String id : saidas) o.escreveString(id);
+        o.escreveInt(presentes.size());
+        for (Entrada en : presentes) {
+            o.escreveInt(en.tempoLoja);
+            o.escreveLong(en.seq);
+            en.encomenda.escreve(o);
+        }
+        o.escreveLong(this.sequencia);
+        o.escreveInts(this.profundidadeMax, 2);
+        o.escreveLongs(this.retiradas, 2);
+        o.escreveLongs(this.esperaTotal, 2);
+    }
+
+    /**
+     * Função que lê uma fila escrita por escreve.
+     * @param in Ficheiro de onde ler.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @return Devolve a fila lida.
+     * @throws IOException Se a leitura falhar.
+     */
+    static FilaEncomendas le(EntradaBinaria in, Produto[] produtos) throws IOException {
+        FilaEncomendas f = new FilaEncomendas();
+        f.leEntradas(in, produtos);
+        return f;
+    }
+
+    /**
+     * Função que aplica a esta fila as alterações escritas por escreve(o, ids).
+     * @param in Ficheiro de onde ler.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @throws IOException Se a leitura falhar.
+     */
+    void leAlteracoes(EntradaBinaria in, Produto[] produtos) throws IOException {
+        for (int i = in.leInt(); i > 0; i--) tira(in.leString());
+        leEntradas(in, produtos);
+    }
+
+    /**
+     * Função que lê entradas no formato de escreve e as põe na fila, substituindo as que tenham o mesmo id,
+     * e depois as métricas de cada classe. A ordem de chegada é a dos números de sequência gravados, por isso
+     * uma entrada que substitui outra com o mesmo número fica no lugar dela e as restantes ficam no lugar
+     * que tinham quando foram gravadas, mesmo que o delta não as traga pela ordem de porId.
+     */
+    private void leEntradas(EntradaBinaria in, Produto[] produtos) throws IOException {
+        int n = in.leInt();
+        for (int i = 0; i < n; i++) {
+            int tempoLoja = in.leInt();
+            long seq = in.leLong();
+            Entrada en = new Entrada(Encomenda.le(in, produtos), tempoLoja, seq);
+            tira(en.id);
+            this.porId.put(en.id, en);
+            this.ordem.get(classe(en.medica)).add(en);
+            this.profundidade[classe(en.medica)]++;
+        }
+        if (n > 0) ordenaPorChegada();
+        this.sequencia = in.leLong();
+        in.leInts(this.profundidadeMax, 2);
+        in.leLongs(this.retiradas, 2);
+        in.leLongs(this.esperaTotal, 2);
+    }
+
+    /**
+     * Função que põe porId pela ordem dos números de sequência, que é a ordem de chegada (adiciona dá sempre
+     * um número maior do que os que já estão na fila). Só reconstrói o mapa se estiver fora de ordem.
+     */
+    private void ordenaPorChegada() {
+        long anterior = Long.MIN_VALUE;
+        boolean ordenada = true;
+        for (Entrada en : this.porId.values()) {
+            if (en.seq < anterior) {
+                ordenada = false;
+                break;
+            }
+            anterior = en.seq;
+        }
+        if (ordenada) return;
+        List<Entrada> entradas = new ArrayList<>(this.porId.values());
+        entradas.sort(Comparator.comparingLong(en -> en.seq));
+        this.porId.clear();
+        for (Entrada en : entradas) this.porId.put(en.id, en);
+    }
+
+    /**
+     * Função que tira uma entrada da fila sem contar a espera, como se nunca lá tivesse estado.
+     */
+    private void tira(String id) {
+        Entrada en = this.porId.remove(id);
+        if (en == null) return;
+        this.ordem.get(classe(en.medica)).remove(en);
+        this.profundidade[classe(en.medica)]--;
+    }
+
+    /**
+     * Entrada da fila: a encomenda e a chave de prioridade calculada quando entrou.
+     */
+    private static class Entrada implements Comparable<Entrada>, Serializable {
+        private final String id;
+        private final Encomenda encomenda;
+        private final boolean medica;
+        private final LocalDateTime pedido;
+        private final int tempoLoja;
+        private final long seq;
+
+        Entrada(Encomenda e, int tempoLoja, long seq) {
+            this.id = e.getId();
+            this.encomenda = e;
+            this.medica = e.getEncomendaMedica();
+            this.pedido = e.getQPedidoEntregue();
+            this.tempoLoja = tempoLoja;
+            this.seq = seq;
+        }
+
+        public int compareTo(Entrada o) {
+            if (this.medica != o.medica) return this.medica ? -1 : 1;
+            int c = this.pedido.compareTo(o.pedido);
+            if (c != 0) return c;
+            if (this.tempoLoja != o.tempoLoja) return Integer.compare(this.tempoLoja, o.tempoLoja);
+            return Long.compare(this.seq, o.seq);
+        }
+    }
+}
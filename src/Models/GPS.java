@@ -2,9 +2,11 @@ package Models;
 
 import java.io.Serializable;
 
-public class GPS implements Serializable {
-    private double x;
-    private double y;
+public final class GPS implements Serializable {
+    private static final long serialVersionUID = -7174219493840076044L;
+
+    private final double x;
+    private final double y;
 
     /**
      * COnstrutor por cópia.
@@ -42,27 +44,32 @@ public class GPS implements Serializable {
     }
 
     /**
-     * Método que define o valor da latitude.
+     * Método que dá o valor da longitude.
      * @return Devolve esse valor.
      */
-    public void setX(double x){
-        this.x = x;
+    public double getY(){
+        return this.y;
     }
 
     /**
-     * Método que dá o valor da longitude.
-     * @return Devolve esse valor.
+     * Função que calcula a distância a outra coordenada.
+     * @param g Outra coordenada.
+     * @return Devolve a distância entre os dois pontos.
      */
-    public double getY(){
-        return this.y;
+    public double distancia(GPS g){
+        return Math.sqrt(distanciaQuadrado(g));
     }
 
     /**
-     * Método que define o valor da latitude.
-     * @return Devolve esse valor.
+     * Função que calcula o quadrado da distância a outra coordenada.
+     * Serve para comparar distâncias (por exemplo com um raio ao quadrado) sem calcular a raiz.
+     * @param g Outra coordenada.
+     * @return Devolve o quadrado da distância entre os dois pontos.
      */
-    public void setY(double y){
-        this.y = y;
+    public double distanciaQuadrado(GPS g){
+        double dx = g.getX() - this.x;
+        double dy = g.getY() - this.y;
+        return dx * dx + dy * dy;
     }
 
     /**
@@ -79,6 +86,15 @@ public class GPS implements Serializable {
                 le.getY()==(this.y);
     }
 
+    /**
+     * Função que dá o hash da classe GPS, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode(){
+        return 31 * Double.hashCode(this.x) + Double.hashCode(this.y);
+    }
+
     /**
      * Função que traduz a classe GPS.
      * @return Devolve uma String com a respetiva tradução.
@@ -92,11 +108,12 @@ public class GPS implements Serializable {
     }
 
     /**
-     * Função que faz um clone da classe GPS.
+     * Função que faz um clone da classe GPS. Como uma coordenada não muda depois de criada,
+     * o clone é o próprio objeto.
      * @return Devolve esse clone.
      */
     @Override
     public GPS clone(){
-        return new GPS(this);
+        return this;
     }
 }
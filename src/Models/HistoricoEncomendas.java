@@ -0,0 +1,831 @@
+package Models;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class HistoricoEncomendas implements Serializable {
+    private int tamanho;
+    private String[] ids;
+    private int[] utilizador;
+    private int[] loja;
+    private int[] estafeta;
+    private double[] peso;
+    private double[] precoEntrega;
+    private int[] tempoDeEspera;
+    private long[] entregue;
+    private boolean[] medica;
+    private int[] inicioProdutos;
+
+    private int numeroProdutos;
+    private Produto[] produto;
+    private double[] quantidade;
+    private double[] valorUnitario;
+
+    private List<String> codigos;
+    private transient Map<String,Integer> codigoDe;
+
+    private static final int MAGIA_SEGMENTO = 0x50504F48;
+    private static final int UTILIZADOR = 0;
+    private static final int LOJA = 1;
+    private static final int ESTAFETA = 2;
+    private static final int PESO = 3;
+    private static final int PRECO_ENTREGA = 4;
+    private static final int TEMPO_DE_ESPERA = 5;
+    private static final int ENTREGUE = 6;
+    private static final int MEDICA = 7;
+    private static final int INICIO_PRODUTOS = 8;
+    private static final int PRODUTO = 9;
+    private static final int QUANTIDADE = 10;
+    private static final int VALOR_UNITARIO = 11;
+    private static final int FIM_IDS = 12;
+    private static final int IDS = 13;
+
+    /**
+     * Número de bits das posições dentro de uma janela do segmento (janelas de 1 GB).
+     */
+    static final int BITS_JANELA = 30;
+
+    private transient ByteBuffer[] segmento;
+    private transient int bitsJanela;
+    private transient long[] coluna;
+    private transient Produto[] produtosSegmento;
+    private transient int linhasSegmento;
+    private transient int produtosNoSegmento;
+
+    /*
+     * Cada encomenda entregue é guardada uma só vez, numa linha destes arrays; o Sistema, os utilizadores
+     * e os estafetas só guardam os números das linhas (IndicesHistorico). As linhas nunca mudam depois de
+     * escritas. Os ids de utilizadores, lojas e estafetas são guardados pelo seu código (ver Id); os poucos ids
+     * que não têm o formato letra + número ficam em codigos e são guardados como -(posição + 2).
+     * Os produtos da linha i estão nas posições inicioProdutos[i] .. inicioProdutos[i+1]-1.
+     *
+     * As primeiras linhasSegmento linhas (e os primeiros produtosNoSegmento produtos) podem estar num segmento,
+     * um ficheiro escrito por escreveSegmento e mapeado em memória (ver abreSegmento): cada coluna ocupa uma zona
+     * de tamanho fixo, que começa em coluna[...], e os ids vêm no fim, com a posição onde acaba cada um em FIM_IDS.
+     * Como um ByteBuffer só chega a 2 GB, o ficheiro é mapeado em janelas de 2^bitsJanela bytes; cada janela tem
+     * mais 8 bytes da seguinte, para que qualquer número comece e acabe na janela onde começa.
+     * Assim qualquer linha é lida do ficheiro sem ler as anteriores. Os arrays só guardam as linhas seguintes, na
+     * posição linha - linhasSegmento (e os produtos na posição j - produtosNoSegmento); inicioProdutos guarda
+     * sempre posições absolutas. Os métodos utilizador(i), loja(i), ... escondem esta divisão.
+     */
+
+    /**
+     * Construtor por omissão.
+     */
+    public HistoricoEncomendas() {
+        this.tamanho = 0;
+        this.ids = new String[16];
+        this.utilizador = new int[16];
+        this.loja = new int[16];
+        this.estafeta = new int[16];
+        this.peso = new double[16];
+        this.precoEntrega = new double[16];
+        this.tempoDeEspera = new int[16];
+        this.entregue = new long[16];
+        this.medica = new boolean[16];
+        this.inicioProdutos = new int[17];
+        this.numeroProdutos = 0;
+        this.produto = new Produto[64];
+        this.quantidade = new double[64];
+        this.valorUnitario = new double[64];
+        this.codigos = new ArrayList<>();
+        this.codigoDe = new HashMap<>();
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param h Recebe um objeto da classe HistoricoEncomendas.
+     */
+    public HistoricoEncomendas(HistoricoEncomendas h) {
+        synchronized (h) {
+            int n = Math.max(h.tamanho - h.linhasSegmento, 16), m = Math.max(h.numeroProdutos - h.produtosNoSegmento, 64);
+            this.tamanho = h.tamanho;
+            this.ids = Arrays.copyOf(h.ids, n);
+            this.utilizador = Arrays.copyOf(h.utilizador, n);
+            this.loja = Arrays.copyOf(h.loja, n);
+            this.estafeta = Arrays.copyOf(h.estafeta, n);
+            this.peso = Arrays.copyOf(h.peso, n);
+            this.precoEntrega = Arrays.copyOf(h.precoEntrega, n);
+            this.tempoDeEspera = Arrays.copyOf(h.tempoDeEspera, n);
+            this.entregue = Arrays.copyOf(h.entregue, n);
+            this.medica = Arrays.copyOf(h.medica, n);
+            this.inicioProdutos = Arrays.copyOf(h.inicioProdutos, n + 1);
+            this.numeroProdutos = h.numeroProdutos;
+            this.produto = Arrays.copyOf(h.produto, m);
+            this.quantidade = Arrays.copyOf(h.quantidade, m);
+            this.valorUnitario = Arrays.copyOf(h.valorUnitario, m);
+            this.codigos = new ArrayList<>(h.codigos);
+            this.codigoDe = new HashMap<>(h.codigoDe);
+            partilhaSegmento(h);
+        }
+    }
+
+    /**
+     * Função que guarda uma encomenda entregue numa nova linha.
+     * @param e Encomenda entregue.
+     * @param est Id do estafeta que a entregou (pode ser null).
+     * @return Devolve o número da linha, que é o que o Sistema e as entidades guardam.
+     */
+    public synchronized int adiciona(Encomenda e, String est) {
+        int i = this.tamanho - this.linhasSegmento;
+        if (i == this.ids.length) cresceLinhas(i * 2);
+        List<LinhaEncomenda> produtos = e.getLE();
+        int j = this.numeroProdutos - this.produtosNoSegmento;
+        if (j + produtos.size() > this.produto.length)
+            cresceProdutos(Math.max(this.produto.length * 2, j + produtos.size()));
+        this.ids[i] = e.getId();
+        this.utilizador[i] = codigo(e.getUser());
+        this.loja[i] = codigo(e.getLoja());
+        this.estafeta[i] = codigo(est);
+        this.peso[i] = e.getPeso();
+        this.precoEntrega[i] = e.getPrecoEntrega();
+        this.tempoDeEspera[i] = e.getTempoEntrega();
+        this.entregue[i] = paraNanos(e.getQPedidoEntregue());
+        this.medica[i] = e.getEncomendaMedica();
+        for (LinhaEncomenda l : produtos) {
+            this.produto[j] = l.getProduto();
+            this.quantidade[j] = l.getQ();
+            this.valorUnitario[j] = l.getU();
+            j++;
+        }
+        this.numeroProdutos += produtos.size();
+        this.inicioProdutos[i + 1] = this.numeroProdutos;
+        return this.tamanho++;
+    }
+
+    /**
+     * Função que refaz a encomenda guardada numa linha.
+     * @param linha Número da linha.
+     * @return Devolve uma Encomenda nova, que pode ser alterada à vontade.
+     */
+    public synchronized Encomenda get(int linha) {
+        if (linha < 0 || linha >= this.tamanho) throw new IndexOutOfBoundsException(linha);
+        int inicio = inicioProdutos(linha), fim = inicioProdutos(linha + 1);
+        List<LinhaEncomenda> produtos = new ArrayList<>(fim - inicio);
+        for (int j = inicio; j < fim; j++)
+            produtos.add(new LinhaEncomenda(produto(j), quantidade(j), valorUnitario(j)));
+        Encomenda ret = new Encomenda(id(linha), texto(utilizador(linha)),
+                texto(loja(linha)), peso(linha), new ArrayList<>(),
+                deNanos(entregue(linha)), tempoDeEspera(linha), precoEntrega(linha), medica(linha));
+        ret.setLE(produtos);
+        return ret;
+    }
+
+    /**
+     * Função que refaz as encomendas de uma lista de linhas, pela mesma ordem.
+     * @param indices Linhas a refazer.
+     * @return Devolve a lista de encomendas.
+     */
+    public synchronized List<Encomenda> encomendas(IndicesHistorico indices) {
+        List<Encomenda> ret = new ArrayList<>(indices.tamanho());
+        for (int i = 0; i < indices.tamanho(); i++) ret.add(get(indices.get(i)));
+        return ret;
+    }
+
+    /**
+     * Método que dá o id da encomenda de uma linha.
+     * @param linha Número da linha.
+     * @return Devolve esse id.
+     */
+    public synchronized String getId(int linha) {
+        if (linha < 0 || linha >= this.tamanho) throw new IndexOutOfBoundsException(linha);
+        return id(linha);
+    }
+
+    /**
+     * Método que dá o id do estafeta que entregou a encomenda de uma linha.
+     * @param linha Número da linha.
+     * @return Devolve esse id, ou null se não for conhecido.
+     */
+    public synchronized String getEstafeta(int linha) {
+        if (linha < 0 || linha >= this.tamanho) throw new IndexOutOfBoundsException(linha);
+        return texto(estafeta(linha));
+    }
+
+    /**
+     * Método que dá o número de encomendas guardadas.
+     * @return Devolve esse número.
+     */
+    public synchronized int tamanho() {
+        return this.tamanho;
+    }
+
+    /**
+     * Função que dá o código com que um id é guardado nas colunas.
+     * @param id Id de um utilizador, loja ou estafeta.
+     * @return Devolve o código do id, -(posição em codigos + 2) se não tiver o formato letra + número, ou -1 se for null.
+     */
+    private int codigo(String id) {
+        if (id == null) return -1;
+        int ret = Id.codifica(id);
+        if (ret != Id.INVALIDO) return ret;
+        Integer c = this.codigoDe.get(id);
+        if (c == null) {
+            c = this.codigos.size();
+            this.codigos.add(id);
+            this.codigoDe.put(id, c);
+        }
+        return -(c + 2);
+    }
+
+    /**
+     * Função inversa de codigo.
+     * @param c Código guardado nas colunas.
+     * @return Devolve o id, ou null.
+     */
+    private String texto(int c) {
+        if (c >= 0) return Id.texto(c);
+        if (c == -1) return null;
+        return this.codigos.get(-c - 2);
+    }
+
+    /*
+     * Colunas de uma linha ou de um produto, lidas do segmento ou dos arrays.
+     */
+
+    private String id(int i) {
+        if (i >= this.linhasSegmento) return this.ids[i - this.linhasSegmento];
+        int inicio = i == 0 ? 0 : fimId(i - 1), fim = segInt(this.coluna[FIM_IDS] + 4L * i);
+        if (fim < 0) return null;
+        byte[] b = new byte[fim - inicio];
+        segBytes(this.coluna[IDS] + inicio, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Função que dá a posição onde acaba o id de uma linha do segmento; um id null é guardado como -(fim + 1).
+     */
+    private int fimId(int i) {
+        int fim = segInt(this.coluna[FIM_IDS] + 4L * i);
+        return fim < 0 ? -fim - 1 : fim;
+    }
+
+    private ByteBuffer janela(long p) {
+        return this.segmento[(int) (p >>> this.bitsJanela)];
+    }
+
+    private int dentro(long p) {
+        return (int) (p & ((1L << this.bitsJanela) - 1));
+    }
+
+    private int segInt(long p) {
+        return janela(p).getInt(dentro(p));
+    }
+
+    private long segLong(long p) {
+        return janela(p).getLong(dentro(p));
+    }
+
+    private double segDouble(long p) {
+        return janela(p).getDouble(dentro(p));
+    }
+
+    private byte segByte(long p) {
+        return janela(p).get(dentro(p));
+    }
+
+    /**
+     * Função que copia bytes do segmento, que podem passar de uma janela para a seguinte.
+     */
+    private void segBytes(long p, byte[] b) {
+        int i = 0;
+        while (i < b.length) {
+            ByteBuffer j = janela(p + i);
+            int o = dentro(p + i), n = Math.min(b.length - i, j.limit() - o);
+            j.get(o, b, i, n);
+            i += n;
+        }
+    }
+
+    private int utilizador(int i) {
+        return i < this.linhasSegmento ? segInt(this.coluna[UTILIZADOR] + 4L * i) : this.utilizador[i - this.linhasSegmento];
+    }
+
+    private int loja(int i) {
+        return i < this.linhasSegmento ? segInt(this.coluna[LOJA] + 4L * i) : this.loja[i - this.linhasSegmento];
+    }
+
+    private int estafeta(int i) {
+        return i < this.linhasSegmento ? segInt(this.coluna[ESTAFETA] + 4L * i) : this.estafeta[i - this.linhasSegmento];
+    }
+
+    private double peso(int i) {
+        return i < this.linhasSegmento ? segDouble(this.coluna[PESO] + 8L * i) : this.peso[i - this.linhasSegmento];
+    }
+
+    private double precoEntrega(int i) {
+        return i < this.linhasSegmento ? segDouble(this.coluna[PRECO_ENTREGA] + 8L * i) : this.precoEntrega[i - this.linhasSegmento];
+    }
+
+    private int tempoDeEspera(int i) {
+        return i < this.linhasSegmento ? segInt(this.coluna[TEMPO_DE_ESPERA] + 4L * i) : this.tempoDeEspera[i - this.linhasSegmento];
+    }
+
+    private long entregue(int i) {
+        return i < this.linhasSegmento ? segLong(this.coluna[ENTREGUE] + 8L * i) : this.entregue[i - this.linhasSegmento];
+    }
+
+    private boolean medica(int i) {
+        return i < this.linhasSegmento ? segByte(this.coluna[MEDICA] + i) != 0 : this.medica[i - this.linhasSegmento];
+    }
+
+    /**
+     * Função que dá a primeira posição dos produtos de uma linha; a linha tamanho dá o fim dos da última.
+     */
+    private int inicioProdutos(int i) {
+        return i < this.linhasSegmento ? segInt(this.coluna[INICIO_PRODUTOS] + 4L * i) : this.inicioProdutos[i - this.linhasSegmento];
+    }
+
+    private Produto produto(int j) {
+        return j < this.produtosNoSegmento ? this.produtosSegmento[segInt(this.coluna[PRODUTO] + 4L * j)] : this.produto[j - this.produtosNoSegmento];
+    }
+
+    private double quantidade(int j) {
+        return j < this.produtosNoSegmento ? segDouble(this.coluna[QUANTIDADE] + 8L * j) : this.quantidade[j - this.produtosNoSegmento];
+    }
+
+    private double valorUnitario(int j) {
+        return j < this.produtosNoSegmento ? segDouble(this.coluna[VALOR_UNITARIO] + 8L * j) : this.valorUnitario[j - this.produtosNoSegmento];
+    }
+
+    /**
+     * Função que dá uma vista das linhas escritas até agora, que partilha os arrays com este histórico.
+     * Como as linhas nunca mudam depois de escritas e os arrays, quando crescem, são substituídos por cópias,
+     * a vista pode ser lida noutra thread enquanto este histórico continua a receber encomendas.
+     * @return Devolve a vista, que não deve ser alterada.
+     */
+    synchronized HistoricoEncomendas vista() {
+        HistoricoEncomendas ret = new HistoricoEncomendas();
+        ret.tamanho = this.tamanho;
+        ret.ids = this.ids;
+        ret.utilizador = this.utilizador;
+        ret.loja = this.loja;
+        ret.estafeta = this.estafeta;
+        ret.peso = this.peso;
+        ret.precoEntrega = this.precoEntrega;
+        ret.tempoDeEspera = this.tempoDeEspera;
+        ret.entregue = this.entregue;
+        ret.medica = this.medica;
+        ret.inicioProdutos = this.inicioProdutos;
+        ret.numeroProdutos = this.numeroProdutos;
+        ret.produto = this.produto;
+        ret.quantidade = this.quantidade;
+        ret.valorUnitario = this.valorUnitario;
+        ret.codigos = new ArrayList<>(this.codigos);
+        ret.partilhaSegmento(this);
+        return ret;
+    }
+
+    private void partilhaSegmento(HistoricoEncomendas h) {
+        this.segmento = h.segmento;
+        this.bitsJanela = h.bitsJanela;
+        this.coluna = h.coluna;
+        this.produtosSegmento = h.produtosSegmento;
+        this.linhasSegmento = h.linhasSegmento;
+        this.produtosNoSegmento = h.produtosNoSegmento;
+    }
+
+    private void cresceLinhas(int n) {
+        this.ids = Arrays.copyOf(this.ids, n);
+        this.utilizador = Arrays.copyOf(this.utilizador, n);
+        this.loja = Arrays.copyOf(this.loja, n);
+        this.estafeta = Arrays.copyOf(this.estafeta, n);
+        this.peso = Arrays.copyOf(this.peso, n);
+        this.precoEntrega = Arrays.copyOf(this.precoEntrega, n);
+        this.tempoDeEspera = Arrays.copyOf(this.tempoDeEspera, n);
+        this.entregue = Arrays.copyOf(this.entregue, n);
+        this.medica = Arrays.copyOf(this.medica, n);
+        this.inicioProdutos = Arrays.copyOf(this.inicioProdutos, n + 1);
+    }
+
+    private void cresceProdutos(int n) {
+        this.produto = Arrays.copyOf(this.produto, n);
+        this.quantidade = Arrays.copyOf(this.quantidade, n);
+        this.valorUnitario = Arrays.copyOf(this.valorUnitario, n);
+    }
+
+    /**
+     * Função que converte uma data em nanossegundos desde 1970, tomando-a como UTC, sem perder precisão.
+     * @param t Data.
+     * @return Devolve o número de nanossegundos.
+     */
+    static long paraNanos(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + t.getNano();
+    }
+
+    /**
+     * Função inversa de paraNanos.
+     * @param n Número de nanossegundos desde 1970.
+     * @return Devolve a data.
+     */
+    static LocalDateTime deNanos(long n) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(n, 1_000_000_000L), (int) Math.floorMod(n, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * Função que escreve o histórico no formato binário (ver Sistema.grava): cada coluna é escrita de seguida,
+     * só com as posições ocupadas, e os produtos pelo seu número no CatalogoProdutos.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    synchronized void escreve(SaidaBinaria o) throws IOException {
+        escreve(o, 0);
+    }
+
+    /**
+     * Função que escreve só as linhas a partir de uma dada, no mesmo formato de escreve; como as linhas não mudam,
+     * é o que falta a quem já tem as anteriores (ver Sistema.gravaIncremental).
+     * @param o Ficheiro onde escrever.
+     * @param desde Primeira linha a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    synchronized void escreve(SaidaBinaria o, int desde) throws IOException {
+        int n = this.tamanho - desde, p = inicioProdutos(desde), m = this.numeroProdutos - p;
+        o.escreveInt(n);
+        o.escreveInt(m);
+        for (int i = desde; i < this.tamanho; i++) o.escreveString(id(i));
+        if (desde < this.linhasSegmento) {
+            escreveColunas(o, desde, p);
+        } else {
+            int i = desde - this.linhasSegmento, j = p - this.produtosNoSegmento;
+            o.escreveInts(this.utilizador, i, n);
+            o.escreveInts(this.loja, i, n);
+            o.escreveInts(this.estafeta, i, n);
+            o.escreveDoubles(this.peso, i, n);
+            o.escreveDoubles(this.precoEntrega, i, n);
+            o.escreveInts(this.tempoDeEspera, i, n);
+            o.escreveLongs(this.entregue, i, n);
+            o.escreveBooleans(this.medica, i, n);
+            o.escreveInts(this.inicioProdutos, i, n + 1);
+            for (int k = j; k < j + m; k++) o.escreveInt(this.produto[k].getId());
+            o.escreveDoubles(this.quantidade, j, m);
+            o.escreveDoubles(this.valorUnitario, j, m);
+        }
+        o.escreveInt(this.codigos.size());
+        for (String c : this.codigos) o.escreveString(c);
+    }
+
+    /**
+     * Função que escreve as colunas das linhas a partir de uma dada, uma posição de cada vez, quando algumas
+     * estão no segmento; é o formato de escreve e de escreveSegmento.
+     */
+    private void escreveColunas(SaidaBinaria o, int desde, int p) throws IOException {
+        for (int i = desde; i < this.tamanho; i++) o.escreveInt(utilizador(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveInt(loja(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveInt(estafeta(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveDouble(peso(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveDouble(precoEntrega(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveInt(tempoDeEspera(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveLong(entregue(i));
+        for (int i = desde; i < this.tamanho; i++) o.escreveBoolean(medica(i));
+        for (int i = desde; i <= this.tamanho; i++) o.escreveInt(inicioProdutos(i));
+        for (int j = p; j < this.numeroProdutos; j++) o.escreveInt(produto(j).getId());
+        for (int j = p; j < this.numeroProdutos; j++) o.escreveDouble(quantidade(j));
+        for (int j = p; j < this.numeroProdutos; j++) o.escreveDouble(valorUnitario(j));
+    }
+
+    /**
+     * Função que escreve o histórico inteiro num segmento, um ficheiro que pode depois ser mapeado em memória
+     * e lido linha a linha (ver abreSegmento): MAGIA_SEGMENTO, o número de linhas e de produtos, as colunas
+     * pela ordem de escreve, a posição onde acaba cada id, os ids em UTF-8 e os ids fora do formato.
+     * Os produtos são escritos pelo seu número no CatalogoProdutos, como em escreve.
+     * @param o Ficheiro onde escrever.
+     * @return Devolve o número de linhas escritas.
+     * @throws IOException Se a escrita falhar.
+     */
+    synchronized int escreveSegmento(SaidaBinaria o) throws IOException {
+        o.escreveInt(MAGIA_SEGMENTO);
+        o.escreveInt(this.tamanho);
+        o.escreveInt(this.numeroProdutos);
+        escreveColunas(o, 0, 0);
+        byte[][] bytes = new byte[this.tamanho][];
+        int fim = 0;
+        for (int i = 0; i < this.tamanho; i++) {
+            String id = id(i);
+            if (id == null) {
+                o.escreveInt(-fim - 1);
+                continue;
+            }
+            bytes[i] = id.getBytes(StandardCharsets.UTF_8);
+            if (fim > Integer.MAX_VALUE - bytes[i].length) throw new IOException("Os ids do histórico passam de 2 GB");
+            fim += bytes[i].length;
+            o.escreveInt(fim);
+        }
+        for (byte[] b : bytes) if (b != null) o.escreveBytes(b);
+        o.escreveInt(this.codigos.size());
+        for (String c : this.codigos) o.escreveString(c);
+        return this.tamanho;
+    }
+
+    /**
+     * Função que põe num histórico vazio as linhas de um segmento escrito por escreveSegmento.
+     * Mapeado, o ficheiro não é lido agora: cada linha é lida dele quando é pedida, e as linhas acrescentadas
+     * depois ficam nos arrays. O ficheiro não pode ser alterado enquanto o histórico (ou uma cópia) o usar.
+     * Lido, as linhas vão todas para os arrays, como em leMais.
+     * @param ficheiro Caminho do segmento.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @param mapeia true para mapear o ficheiro, false para o ler já.
+     * @throws IOException Se a leitura falhar ou o ficheiro não for um segmento.
+     */
+    synchronized void abreSegmento(Path ficheiro, Produto[] produtos, boolean mapeia) throws IOException {
+        abreSegmento(ficheiro, produtos, mapeia, BITS_JANELA);
+    }
+
+    /**
+     * Função igual a abreSegmento, com o tamanho das janelas do mapeamento escolhido por quem chama.
+     * @param ficheiro Caminho do segmento.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @param mapeia true para mapear o ficheiro, false para o ler já.
+     * @param bitsJanela Número de bits das posições dentro de uma janela, entre 4 e BITS_JANELA.
+     * @throws IOException Se a leitura falhar ou o ficheiro não for um segmento.
+     */
+    synchronized void abreSegmento(Path ficheiro, Produto[] produtos, boolean mapeia, int bitsJanela) throws IOException {
+        if (this.tamanho > 0) throw new IllegalStateException("O segmento tem de ser o início do histórico");
+        if (!mapeia) {
+            try (EntradaBinaria in = new EntradaBinaria(ficheiro)) {
+                if (in.leInt() != MAGIA_SEGMENTO) throw new IOException("O ficheiro " + ficheiro + " não é um segmento do histórico");
+                leSegmento(in, produtos);
+            }
+            return;
+        }
+        ByteBuffer[] b;
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ)) {
+            long tamanho = canal.size(), janela = 1L << bitsJanela;
+            if (tamanho < 12) throw new IOException("O ficheiro " + ficheiro + " não é um segmento do histórico");
+            b = new ByteBuffer[(int) ((tamanho + janela - 1) >>> bitsJanela)];
+            for (int i = 0; i < b.length; i++) {
+                long inicio = i * janela;
+                b[i] = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(janela + 8, tamanho - inicio));
+            }
+        }
+        this.segmento = b;
+        this.bitsJanela = bitsJanela;
+        if (segInt(0) != MAGIA_SEGMENTO) {
+            this.segmento = null;
+            throw new IOException("O ficheiro " + ficheiro + " não é um segmento do histórico");
+        }
+        int n = segInt(4), m = segInt(8);
+        long[] c = new long[IDS + 1];
+        c[UTILIZADOR] = 12;
+        c[LOJA] = c[UTILIZADOR] + 4L * n;
+        c[ESTAFETA] = c[LOJA] + 4L * n;
+        c[PESO] = c[ESTAFETA] + 4L * n;
+        c[PRECO_ENTREGA] = c[PESO] + 8L * n;
+        c[TEMPO_DE_ESPERA] = c[PRECO_ENTREGA] + 8L * n;
+        c[ENTREGUE] = c[TEMPO_DE_ESPERA] + 4L * n;
+        c[MEDICA] = c[ENTREGUE] + 8L * n;
+        c[INICIO_PRODUTOS] = c[MEDICA] + n;
+        c[PRODUTO] = c[INICIO_PRODUTOS] + 4L * (n + 1);
+        c[QUANTIDADE] = c[PRODUTO] + 4L * m;
+        c[VALOR_UNITARIO] = c[QUANTIDADE] + 8L * m;
+        c[FIM_IDS] = c[VALOR_UNITARIO] + 8L * m;
+        c[IDS] = c[FIM_IDS] + 4L * n;
+        this.coluna = c;
+        this.produtosSegmento = produtos;
+        this.linhasSegmento = n;
+        this.produtosNoSegmento = m;
+        this.tamanho = n;
+        this.numeroProdutos = m;
+        this.inicioProdutos[0] = m;
+        // os ids fora do formato, no fim do ficheiro, são poucos e lidos já
+        long p = c[IDS] + (n == 0 ? 0 : fimId(n - 1));
+        int k = segInt(p);
+        p += 4;
+        for (int i = 0; i < k; i++) {
+            byte[] t = new byte[segInt(p)];
+            segBytes(p + 4, t);
+            codigo(new String(t, StandardCharsets.UTF_8));
+            p += 4 + t.length;
+        }
+    }
+
+    /**
+     * Função que lê para os arrays as linhas de um segmento, a seguir à MAGIA_SEGMENTO.
+     */
+    private void leSegmento(EntradaBinaria in, Produto[] produtos) throws IOException {
+        int n = in.leInt(), m = in.leInt();
+        cresceLinhas(Math.max(n, 16));
+        cresceProdutos(Math.max(m, 64));
+        in.leInts(this.utilizador, n);
+        in.leInts(this.loja, n);
+        in.leInts(this.estafeta, n);
+        in.leDoubles(this.peso, n);
+        in.leDoubles(this.precoEntrega, n);
+        in.leInts(this.tempoDeEspera, n);
+        in.leLongs(this.entregue, n);
+        in.leBooleans(this.medica, n);
+        in.leInts(this.inicioProdutos, n + 1);
+        for (int j = 0; j < m; j++) this.produto[j] = produtos[in.leInt()];
+        in.leDoubles(this.quantidade, m);
+        in.leDoubles(this.valorUnitario, m);
+        int[] fim = new int[n];
+        in.leInts(fim, n);
+        int total = n == 0 ? 0 : fim[n - 1] < 0 ? -fim[n - 1] - 1 : fim[n - 1];
+        byte[] b = in.leBytes(total);
+        for (int i = 0, inicio = 0; i < n; i++) {
+            if (fim[i] < 0) continue;
+            this.ids[i] = new String(b, inicio, fim[i] - inicio, StandardCharsets.UTF_8);
+            inicio = fim[i];
+        }
+        this.tamanho = n;
+        this.numeroProdutos = m;
+        for (int k = in.leInt(); k > 0; k--) codigo(in.leString());
+    }
+
+    /**
+     * Função que passa para os arrays as linhas que estão no segmento, que deixa de ser usado.
+     */
+    private void materializa() {
+        if (this.segmento == null) return;
+        int n = this.tamanho, m = this.numeroProdutos, l = this.linhasSegmento, q = this.produtosNoSegmento;
+        String[] ids = new String[Math.max(n, 16)];
+        int[] utilizador = new int[ids.length], loja = new int[ids.length], estafeta = new int[ids.length];
+        int[] tempoDeEspera = new int[ids.length], inicioProdutos = new int[ids.length + 1];
+        double[] peso = new double[ids.length], precoEntrega = new double[ids.length];
+        long[] entregue = new long[ids.length];
+        boolean[] medica = new boolean[ids.length];
+        for (int i = 0; i < n; i++) {
+            ids[i] = id(i);
+            utilizador[i] = utilizador(i);
+            loja[i] = loja(i);
+            estafeta[i] = estafeta(i);
+            peso[i] = peso(i);
+            precoEntrega[i] = precoEntrega(i);
+            tempoDeEspera[i] = tempoDeEspera(i);
+            entregue[i] = entregue(i);
+            medica[i] = medica(i);
+            inicioProdutos[i] = inicioProdutos(i);
+        }
+        inicioProdutos[n] = inicioProdutos(n);
+        Produto[] produto = new Produto[Math.max(m, 64)];
+        double[] quantidade = new double[produto.length], valorUnitario = new double[produto.length];
+        for (int j = 0; j < m; j++) {
+            produto[j] = produto(j);
+            quantidade[j] = quantidade(j);
+            valorUnitario[j] = valorUnitario(j);
+        }
+        this.ids = ids;
+        this.utilizador = utilizador;
+        this.loja = loja;
+        this.estafeta = estafeta;
+        this.peso = peso;
+        this.precoEntrega = precoEntrega;
+        this.tempoDeEspera = tempoDeEspera;
+        this.entregue = entregue;
+        this.medica = medica;
+        this.inicioProdutos = inicioProdutos;
+        this.produto = produto;
+        this.quantidade = quantidade;
+        this.valorUnitario = valorUnitario;
+        this.segmento = null;
+        this.coluna = null;
+        this.produtosSegmento = null;
+        this.linhasSegmento = 0;
+        this.produtosNoSegmento = 0;
+    }
+
+    /**
+     * Função que lê um histórico escrito por escreve.
+     * @param in Ficheiro de onde ler.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @return Devolve o histórico lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    static HistoricoEncomendas le(EntradaBinaria in, Produto[] produtos) throws IOException {
+        HistoricoEncomendas ret = new HistoricoEncomendas();
+        ret.leMais(in, produtos);
+        return ret;
+    }
+
+    /**
+     * Função que acrescenta as linhas escritas por escreve(o, desde) a seguir às que já estão no histórico.
+     * @param in Ficheiro de onde ler.
+     * @param produtos Produtos pelo número que tinham no catálogo de quem gravou.
+     * @throws IOException Se a leitura falhar ou as linhas não continuarem as que o histórico já tem.
+     */
+    synchronized void leMais(EntradaBinaria in, Produto[] produtos) throws IOException {
+        int n = in.leInt(), m = in.leInt();
+        int desde = this.tamanho - this.linhasSegmento, p = this.numeroProdutos - this.produtosNoSegmento;
+        if (desde + n > this.ids.length) cresceLinhas(Math.max(desde + n, 16));
+        if (p + m > this.produto.length) cresceProdutos(Math.max(p + m, 64));
+        for (int i = desde; i < desde + n; i++) this.ids[i] = in.leString();
+        in.leInts(this.utilizador, desde, n);
+        in.leInts(this.loja, desde, n);
+        in.leInts(this.estafeta, desde, n);
+        in.leDoubles(this.peso, desde, n);
+        in.leDoubles(this.precoEntrega, desde, n);
+        in.leInts(this.tempoDeEspera, desde, n);
+        in.leLongs(this.entregue, desde, n);
+        in.leBooleans(this.medica, desde, n);
+        in.leInts(this.inicioProdutos, desde, n + 1);
+        if (this.inicioProdutos[desde] != this.numeroProdutos || this.inicioProdutos[desde + n] != this.numeroProdutos + m)
+            throw new IOException("As linhas lidas não continuam o histórico");
+        for (int j = p; j < p + m; j++) this.produto[j] = produtos[in.leInt()];
+        in.leDoubles(this.quantidade, p, m);
+        in.leDoubles(this.valorUnitario, p, m);
+        this.tamanho += n;
+        this.numeroProdutos += m;
+        int k = in.leInt();
+        for (int i = 0; i < k; i++) codigo(in.leString());
+    }
+
+    /**
+     * Grava só as posições ocupadas dos arrays, com as linhas do segmento, a partir de uma cópia: este histórico
+     * (e as vistas que partilham os seus arrays) não muda.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        HistoricoEncomendas c = new HistoricoEncomendas(this);
+        c.materializa();
+        c.cresceLinhas(Math.max(c.tamanho, 1));
+        c.cresceProdutos(Math.max(c.numeroProdutos, 1));
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("tamanho", c.tamanho);
+        f.put("ids", c.ids);
+        f.put("utilizador", c.utilizador);
+        f.put("loja", c.loja);
+        f.put("estafeta", c.estafeta);
+        f.put("peso", c.peso);
+        f.put("precoEntrega", c.precoEntrega);
+        f.put("tempoDeEspera", c.tempoDeEspera);
+        f.put("entregue", c.entregue);
+        f.put("medica", c.medica);
+        f.put("inicioProdutos", c.inicioProdutos);
+        f.put("numeroProdutos", c.numeroProdutos);
+        f.put("produto", c.produto);
+        f.put("quantidade", c.quantidade);
+        f.put("valorUnitario", c.valorUnitario);
+        f.put("codigos", c.codigos);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.codigoDe = new HashMap<>();
+        for (int i = 0; i < this.codigos.size(); i++) this.codigoDe.put(this.codigos.get(i), i);
+    }
+
+    /**
+     * Função que verifica se o objeto recebido é idêntico ao da classe HistoricoEncomendas.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean que corresponde à verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        HistoricoEncomendas h = (HistoricoEncomendas) o;
+        int n = tamanho();
+        if (h.tamanho() != n) return false;
+        for (int i = 0; i < n; i++)
+            if (!h.get(i).equals(get(i))) return false;
+        return true;
+    }
+
+    /**
+     * Função que dá o hash da classe HistoricoEncomendas, coerente com o equals (só usa os ids, por ordem).
+     * @return Devolve esse hash.
+     */
+    @Override
+    public synchronized int hashCode() {
+        int ret = 1;
+        for (int i = 0; i < this.tamanho; i++) ret = 31 * ret + Objects.hashCode(getId(i));
+        return ret;
+    }
+
+    /**
+     * Função que traduz a classe HistoricoEncomendas.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public synchronized String toString() {
+        return "HistoricoEncomendas{" +
+                "encomendas=" + tamanho +
+                ", linhasDeProdutos=" + numeroProdutos +
+                ", idsForaDoFormato=" + codigos.size() +
+                '}';
+    }
+
+    /**
+     * Função que faz um clone da classe HistoricoEncomendas.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public HistoricoEncomendas clone() {
+        return new HistoricoEncomendas(this);
+    }
+}
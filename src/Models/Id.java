@@ -0,0 +1,78 @@
+package Models;
+
+public class Id {
+    /**
+     * Valor devolvido para ids que não seguem o formato letra + número (por exemplo "s12a" ou "u007").
+     */
+    public static final int INVALIDO = -1;
+
+    private static final int BITS_ORDINAL = 26;
+    private static final int MAX_ORDINAL = (1 << BITS_ORDINAL) - 1;
+
+    /*
+     * Os ids das entidades são uma letra com o tipo ('u', 'v', 't', 'l', 'e') seguida de um número.
+     * Dentro do Sistema são guardados num int: a letra nos 5 bits de cima e o número nos 26 de baixo.
+     * O código nunca é 0 nem negativo, e a conversão para texto só é feita à entrada (logs, menus) e à saída.
+     */
+
+    private Id() {
+    }
+
+    /**
+     * Função que faz o código de um id a partir do tipo e do número.
+     * @param tipo Letra do tipo, de 'a' a 'z'.
+     * @param ordinal Número do id.
+     * @return Devolve o código, ou INVALIDO se não couber.
+     */
+    public static int de(char tipo, int ordinal) {
+        if (tipo < 'a' || tipo > 'z' || ordinal < 0 || ordinal > MAX_ORDINAL) return INVALIDO;
+        return ((tipo - 'a' + 1) << BITS_ORDINAL) | ordinal;
+    }
+
+    /**
+     * Função que converte um id em texto para o seu código, sem criar objetos.
+     * @param id Id em texto, por exemplo "u48".
+     * @return Devolve o código, ou INVALIDO se o id não for uma letra seguida de um número sem zeros à esquerda.
+     */
+    public static int codifica(String id) {
+        int n = id.length();
+        if (n < 2 || n > 9) return INVALIDO;
+        char tipo = id.charAt(0);
+        if (tipo < 'a' || tipo > 'z') return INVALIDO;
+        if (id.charAt(1) == '0' && n > 2) return INVALIDO;
+        int ordinal = 0;
+        for (int i = 1; i < n; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') return INVALIDO;
+            ordinal = ordinal * 10 + (c - '0');
+        }
+        return de(tipo, ordinal);
+    }
+
+    /**
+     * Método que dá a letra do tipo de um código.
+     * @param codigo Código válido.
+     * @return Devolve essa letra.
+     */
+    public static char tipo(int codigo) {
+        return (char) ('a' - 1 + (codigo >>> BITS_ORDINAL));
+    }
+
+    /**
+     * Método que dá o número de um código.
+     * @param codigo Código válido.
+     * @return Devolve esse número.
+     */
+    public static int ordinal(int codigo) {
+        return codigo & MAX_ORDINAL;
+    }
+
+    /**
+     * Função que converte um código de volta para o id em texto.
+     * @param codigo Código válido.
+     * @return Devolve o id, por exemplo "u48".
+     */
+    public static String texto(int codigo) {
+        return tipo(codigo) + Integer.toString(ordinal(codigo));
+    }
+}
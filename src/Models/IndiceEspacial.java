@@ -0,0 +1,176 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.*;
+
+public class IndiceEspacial<T extends Estafeta> implements Serializable {
+    private static final int MAX_CELULAS = 1024;
+
+    private final double lado;
+    private final boolean soMedicos;
+    private final Map<Long,Set<Entrada<T>>> celulas;
+    private final Set<Entrada<T>> largos;
+    private final Map<String,Entrada<T>> livres;
+    private final Map<String,Integer> ordem;
+
+    /**
+     * Construtor parametrizado.
+     * @param lado Lado de cada célula da grelha, nas mesmas unidades das coordenadas GPS.
+     * @param soMedicos Se true, a grelha só guarda os estafetas livres para transportar medicamentos.
+     */
+    public IndiceEspacial(double lado, boolean soMedicos) {
+        this.lado = lado;
+        this.soMedicos = soMedicos;
+        this.celulas = new HashMap<>();
+        this.largos = new LinkedHashSet<>();
+        this.livres = new LinkedHashMap<>();
+        this.ordem = new HashMap<>();
+    }
+
+    /**
+     * Função que regista um estafeta no índice, guardando a sua ordem de registo.
+     * O estafeta só fica na grelha enquanto estiver livre.
+     * @param e Estafeta a registar.
+     */
+    public void regista(T e) {
+        this.ordem.putIfAbsent(e.getId(), this.ordem.size());
+        atualiza(e);
+    }
+
+    /**
+     * Função que atualiza a presença de um estafeta na grelha de acordo com o seu estado:
+     * entra se estiver livre (e, numa grelha só de médicos, livre para medicamentos), sai caso contrário.
+     * @param e Estafeta cujo estado mudou.
+     */
+    public void atualiza(T e) {
+        boolean entra = e.isLivre();
+        if (this.soMedicos) entra = entra && e.getLivreMed() && e.aceitoTransporteMedicamentos();
+        if (entra) adiciona(e);
+        else remove(e);
+    }
+
+    /**
+     * Método que dá os estafetas presentes na grelha, sem os copiar.
+     * @return Devolve uma vista só de leitura, que acompanha as alterações da grelha.
+     */
+    public Collection<T> estafetas() {
+        Map<String,Entrada<T>> livres = this.livres;
+        return new AbstractCollection<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                Iterator<Entrada<T>> it = livres.values().iterator();
+                return new Iterator<T>() {
+                    public boolean hasNext() { return it.hasNext(); }
+                    public T next() { return it.next().estafeta; }
+                };
+            }
+
+            @Override
+            public int size() {
+                return livres.size();
+            }
+        };
+    }
+
+    /**
+     * Método que dá o número de estafetas livres na grelha.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.livres.size();
+    }
+
+    /**
+     * Função que dá os estafetas livres cujo raio de ação abrange a loja e o utilizador.
+     * Só são testados os estafetas registados na célula da loja (e os de raio demasiado grande para a grelha).
+     * @param loja Coordenadas gps da loja.
+     * @param util Coordenadas gps do utilizador.
+     * @return Devolve os estafetas encontrados, pela ordem em que foram registados.
+     */
+    public List<T> candidatos(GPS loja, GPS util) {
+        List<Entrada<T>> encontrados = new ArrayList<>();
+        Set<Entrada<T>> celula = this.celulas.get(chave(celula(loja.getX()), celula(loja.getY())));
+        if (celula != null) {
+            for (Entrada<T> en : celula) if (en.estafeta.dentroDoRaio(loja, util)) encontrados.add(en);
+        }
+        for (Entrada<T> en : this.largos) if (en.estafeta.dentroDoRaio(loja, util)) encontrados.add(en);
+        encontrados.sort(Comparator.comparingInt(en -> en.ordem));
+        List<T> ret = new ArrayList<>(encontrados.size());
+        for (Entrada<T> en : encontrados) ret.add(en.estafeta);
+        return ret;
+    }
+
+    /**
+     * Função auxiliar que coloca um estafeta em todas as células tocadas pelo quadrado que envolve o seu raio.
+     * @param e Estafeta a adicionar.
+     */
+    private void adiciona(T e) {
+        if (this.livres.containsKey(e.getId())) return;
+        double x = e.getGps().getX(), y = e.getGps().getY(), r = e.getRaio();
+        Entrada<T> en = new Entrada<>(e, this.ordem.getOrDefault(e.getId(), Integer.MAX_VALUE),
+                celula(x - r), celula(x + r), celula(y - r), celula(y + r));
+        this.livres.put(e.getId(), en);
+        if ((long) (en.cx1 - en.cx0 + 1) * (en.cy1 - en.cy0 + 1) > MAX_CELULAS) {
+            this.largos.add(en);
+            return;
+        }
+        for (int cx = en.cx0; cx <= en.cx1; cx++)
+            for (int cy = en.cy0; cy <= en.cy1; cy++)
+                this.celulas.computeIfAbsent(chave(cx, cy), k -> new LinkedHashSet<>()).add(en);
+    }
+
+    /**
+     * Função auxiliar que retira um estafeta da grelha.
+     * @param e Estafeta a retirar.
+     */
+    private void remove(T e) {
+        Entrada<T> en = this.livres.remove(e.getId());
+        if (en == null) return;
+        if (this.largos.remove(en)) return;
+        for (int cx = en.cx0; cx <= en.cx1; cx++)
+            for (int cy = en.cy0; cy <= en.cy1; cy++) {
+                Long k = chave(cx, cy);
+                Set<Entrada<T>> celula = this.celulas.get(k);
+                if (celula == null) continue;
+                celula.remove(en);
+                if (celula.isEmpty()) this.celulas.remove(k);
+            }
+    }
+
+    /**
+     * Função auxiliar que dá a coordenada da célula que contém um valor.
+     * @param v Coordenada GPS.
+     * @return Devolve o índice da célula.
+     */
+    private int celula(double v) {
+        return (int) Math.floor(v / this.lado);
+    }
+
+    /**
+     * Função auxiliar que junta as duas coordenadas de uma célula numa chave.
+     * @param cx Coluna da célula.
+     * @param cy Linha da célula.
+     * @return Devolve a chave.
+     */
+    private static long chave(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Entrada da grelha: o estafeta, a sua ordem de registo e o retângulo de células que ocupa.
+     */
+    private static class Entrada<T> implements Serializable {
+        private final T estafeta;
+        private final int ordem;
+        private final int cx0, cx1, cy0, cy1;
+
+        Entrada(T estafeta, int ordem, int cx0, int cx1, int cy0, int cy1) {
+            this.estafeta = estafeta;
+            this.ordem = ordem;
+            this.cx0 = cx0;
+            this.cx1 = cx1;
+            this.cy0 = cy0;
+            this.cy1 = cy1;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package Models;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class IndicesHistorico implements Serializable {
+    private int[] linhas;
+    private int tamanho;
+
+    /**
+     * Construtor por omissão.
+     */
+    public IndicesHistorico() {
+        this.linhas = new int[4];
+        this.tamanho = 0;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param i Recebe um objeto da classe IndicesHistorico.
+     */
+    public IndicesHistorico(IndicesHistorico i) {
+        this.linhas = Arrays.copyOf(i.linhas, Math.max(i.tamanho, 4));
+        this.tamanho = i.tamanho;
+    }
+
+    /**
+     * Função que acrescenta uma linha do histórico.
+     * @param linha Número da linha no HistoricoEncomendas.
+     */
+    public void adiciona(int linha) {
+        if (this.tamanho == this.linhas.length) this.linhas = Arrays.copyOf(this.linhas, this.tamanho * 2);
+        this.linhas[this.tamanho++] = linha;
+    }
+
+    /**
+     * Função que dá uma vista das linhas guardadas até agora, que partilha o array com esta lista.
+     * As posições já escritas nunca mudam e o array é substituído por uma cópia quando cresce,
+     * por isso a vista pode ser lida noutra thread enquanto esta lista continua a crescer.
+     * @return Devolve a vista, que não deve ser alterada.
+     */
+    IndicesHistorico vista() {
+        IndicesHistorico ret = new IndicesHistorico();
+        ret.linhas = this.linhas;
+        ret.tamanho = this.tamanho;
+        return ret;
+    }
+
+    /**
+     * Método que dá a i-ésima linha guardada.
+     * @param i Posição na lista.
+     * @return Devolve o número da linha no HistoricoEncomendas.
+     */
+    public int get(int i) {
+        if (i < 0 || i >= this.tamanho) throw new IndexOutOfBoundsException(i);
+        return this.linhas[i];
+    }
+
+    /**
+     * Método que dá o número de linhas guardadas.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.tamanho;
+    }
+
+    /**
+     * Função que verifica se o objeto recebido é idêntico ao da classe IndicesHistorico.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean que corresponde à verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        IndicesHistorico i = (IndicesHistorico) o;
+        return Arrays.equals(this.linhas, 0, this.tamanho, i.linhas, 0, i.tamanho);
+    }
+
+    /**
+     * Função que dá o hash da classe IndicesHistorico, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        int ret = 1;
+        for (int i = 0; i < this.tamanho; i++) ret = 31 * ret + this.linhas[i];
+        return ret;
+    }
+
+    /**
+     * Função que traduz a classe IndicesHistorico.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(Arrays.copyOf(this.linhas, this.tamanho));
+    }
+
+    /**
+     * Função que faz um clone da classe IndicesHistorico.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public IndicesHistorico clone() {
+        return new IndicesHistorico(this);
+    }
+
+    /**
+     * Função que escreve as linhas no formato binário (ver Sistema.grava).
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        escreve(o, 0);
+    }
+
+    /**
+     * Função que escreve só as linhas guardadas a partir de uma posição, no mesmo formato de escreve.
+     * @param o Ficheiro onde escrever.
+     * @param desde Primeira posição a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o, int desde) throws IOException {
+        o.escreveInt(this.tamanho - desde);
+        o.escreveInts(this.linhas, desde, this.tamanho - desde);
+    }
+
+    /**
+     * Função que lê as linhas escritas por escreve.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve o objeto lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    static IndicesHistorico le(EntradaBinaria in) throws IOException {
+        IndicesHistorico ret = new IndicesHistorico();
+        ret.leMais(in);
+        return ret;
+    }
+
+    /**
+     * Função que acrescenta as linhas escritas por escreve a seguir às que já estão guardadas.
+     * @param in Ficheiro de onde ler.
+     * @throws IOException Se a leitura falhar.
+     */
+    void leMais(EntradaBinaria in) throws IOException {
+        int n = in.leInt();
+        if (this.tamanho + n > this.linhas.length)
+            this.linhas = Arrays.copyOf(this.linhas, Math.max(this.tamanho + n, this.linhas.length * 2));
+        in.leInts(this.linhas, this.tamanho, n);
+        this.tamanho += n;
+    }
+}
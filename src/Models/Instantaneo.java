@@ -0,0 +1,57 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+public class Instantaneo<T> implements Serializable {
+    private final AtomicLong versao;
+    private transient volatile Copia<T> copia;
+
+    /**
+     * Construtor por omissão.
+     */
+    public Instantaneo() {
+        this.versao = new AtomicLong();
+        this.copia = null;
+    }
+
+    /**
+     * Função que marca a cópia guardada como desatualizada. Deve ser chamada depois de cada alteração
+     * à coleção (ou aos objetos) que a cópia representa.
+     */
+    public void invalida() {
+        this.versao.incrementAndGet();
+    }
+
+    /**
+     * Função que dá uma cópia só de leitura da coleção. A cópia só é refeita se a coleção tiver mudado
+     * desde a última vez; caso contrário é devolvida a mesma lista, sem copiar nada.
+     * Os objetos da lista são partilhados por quem a pede, por isso não devem ser alterados (use clone() para isso).
+     * @param copia Função que faz uma cópia profunda da coleção.
+     * @return Devolve a lista só de leitura.
+     */
+    public List<T> obtem(Supplier<List<T>> copia) {
+        long v = this.versao.get();
+        Copia<T> c = this.copia;
+        if (c != null && c.versao == v) return c.lista;
+        List<T> lista = Collections.unmodifiableList(copia.get());
+        this.copia = new Copia<>(v, lista);
+        return lista;
+    }
+
+    /**
+     * Cópia guardada e a versão da coleção a que corresponde.
+     */
+    private static class Copia<T> {
+        private final long versao;
+        private final List<T> lista;
+
+        Copia(long versao, List<T> lista) {
+            this.versao = versao;
+            this.lista = lista;
+        }
+    }
+}
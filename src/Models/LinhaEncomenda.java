@@ -1,33 +1,58 @@
 package Models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
-public class LinhaEncomenda implements Serializable {
-    private String p;
-    private String nome;
-    private double q;
-    private double u;
+public final class LinhaEncomenda implements Serializable {
+    private static final long serialVersionUID = 4610961351506712287L;
+
+    /*
+     * Serialização do Java: a linha é gravada com os campos que tinha antes do CatalogoProdutos (o código e a
+     * descrição do produto), para que os ficheiros gravados nesse formato continuem a poder ser lidos.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("p", String.class),
+            new ObjectStreamField("nome", String.class),
+            new ObjectStreamField("q", double.class),
+            new ObjectStreamField("u", double.class)
+    };
+
+    private final Produto produto;
+    private final double q;
+    private final double u;
+    private transient LinhaEncomenda lida;
 
     /**
      * Construtor por omissão.
      */
     public LinhaEncomenda(){
-        this.p = "";
-        this.nome = "";
+        this.produto = CatalogoProdutos.produto("", "");
         this.q = 0;
         this.u = 0;
     }
 
     /**
-     * Construtor parametrizado.
+     * Construtor parametrizado. O produto é procurado no CatalogoProdutos.
      * @param p String que representa o código de um produto.
      * @param n String que representa a descrição.
      * @param q Double representante da quantidade.
      * @param u Double representante do valor unitário.
      */
     public LinhaEncomenda(String p, String n, double q, double u){
-        this.p = p;
-        this.nome = n;
+        this(CatalogoProdutos.produto(p, n), q, u);
+    }
+
+    /**
+     * Construtor parametrizado.
+     * @param produto Produto do catálogo.
+     * @param q Double representante da quantidade.
+     * @param u Double representante do valor unitário.
+     */
+    public LinhaEncomenda(Produto produto, double q, double u){
+        this.produto = produto;
         this.q = q;
         this.u = u;
     }
@@ -37,8 +62,7 @@ public class LinhaEncomenda implements Serializable {
      * @param l Objeto da classe Linha de Encomenda.
      */
     public LinhaEncomenda(LinhaEncomenda l){
-        this.p = l.getP();
-        this.nome = l.getNome();
+        this.produto = l.getProduto();
         this.q = l.getQ();
         this.u = l.getU();
     }
@@ -48,7 +72,15 @@ public class LinhaEncomenda implements Serializable {
      * @return Devolve o código.
      */
     public String getP(){
-        return this.p;
+        return this.produto.getCodigo();
+    }
+
+    /**
+     * Método que dá o produto da linha.
+     * @return Devolve o produto do catálogo.
+     */
+    public Produto getProduto(){
+        return this.produto;
     }
 
 
@@ -57,7 +89,7 @@ public class LinhaEncomenda implements Serializable {
      * @return Devolve a String da descrição.
      */
     public String getNome(){
-        return this.nome;
+        return this.produto.getNome();
     }
 
     /**
@@ -88,12 +120,22 @@ public class LinhaEncomenda implements Serializable {
         if(o == this) return true;
         if(o == null || o.getClass() != this.getClass()) return false;
         LinhaEncomenda le = (LinhaEncomenda) o;
-        return le.getP().equals(this.p) &&
-                le.getNome().equals(this.nome) &&
+        return le.getProduto().equals(this.produto) &&
                 le.getQ()==(this.q) &&
                 le.getU()==(this.u);
     }
 
+    /**
+     * Função que dá o hash da classe LinhaEncomenda, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode(){
+        int ret = this.produto.hashCode();
+        ret = 31 * ret + Double.hashCode(this.q);
+        return 31 * ret + Double.hashCode(this.u);
+    }
+
     /**
      * Função que traduz a classe LinhaEncomenda.
      * @return Devolve uma String com a respetiva tradução.
@@ -101,19 +143,54 @@ public class LinhaEncomenda implements Serializable {
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
-        sb.append("Código do produto ").append(this.p)
-                .append("\nDescrição ").append(this.nome)
+        sb.append("Código do produto ").append(getP())
+                .append("\nDescrição ").append(getNome())
                 .append("\nQuantidade ").append(this.q)
                 .append("\nValor Unitário ").append(this.u);
         return sb.toString();
     }
 
     /**
-     * Função que faz clone da classe LinhaEncomenda.
+     * Função usada pela serialização ao gravar a linha, no formato de serialPersistentFields.
+     * @param out Stream onde a linha é escrita.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("p", getP());
+        f.put("nome", getNome());
+        f.put("q", this.q);
+        f.put("u", this.u);
+        out.writeFields();
+    }
+
+    /**
+     * Função usada pela serialização ao ler a linha. Como os campos são finais, a linha lida é construída à parte
+     * e é ela que readResolve devolve.
+     * @param in Stream de onde a linha é lida.
+     * @throws IOException Se a leitura falhar.
+     * @throws ClassNotFoundException Exception.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        this.lida = new LinhaEncomenda((String) f.get("p", ""), (String) f.get("nome", ""), f.get("q", 0.0), f.get("u", 0.0));
+    }
+
+    /**
+     * Função que, ao ler uma linha gravada, devolve a linha construída por readObject, com o produto do catálogo.
+     * @return Devolve essa linha.
+     */
+    private Object readResolve() {
+        return this.lida;
+    }
+
+    /**
+     * Função que faz clone da classe LinhaEncomenda. Uma linha não muda depois de criada,
+     * por isso pode ser partilhada e o clone é o próprio objeto.
      * @return Devolve esse clone.
      */
     @Override
     public LinhaEncomenda clone(){
-        return new LinhaEncomenda(this);
+        return this;
     }
 }
@@ -1,9 +1,12 @@
 package Models;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Random;
 
 public class Loja implements Serializable {
+    private static final long serialVersionUID = 4766064368824762521L;
+
     private String id;
     private String nome;
     private GPS g;
@@ -37,7 +40,7 @@ public class Loja implements Serializable {
     public Loja(String id, String nome,GPS g, String email, String password, int tempoAtendimento, int filaDeEspera){
         this.id = id;
         this.nome = nome;
-        this.g = new GPS(g);
+        this.g = g;
         this.email = email;
         this.password = password;
         this.filaDeEspera = filaDeEspera;
@@ -51,7 +54,7 @@ public class Loja implements Serializable {
     public Loja(Loja l){
         this.id = l.getL();
         this.nome = l.getNome();
-        this.g = new GPS(l.getGps());
+        this.g = l.getGps();
         this.email = l.getEmail();
         this.password = l.getPassword();
         this.tempoAtendimento = l.getTempoAtendimento();
@@ -192,4 +195,33 @@ public class Loja implements Serializable {
     public void setFilaDeEspera(int g){
         this.filaDeEspera = g;
     }
+
+    /**
+     * Função que escreve a loja no formato binário (ver Sistema.grava).
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveString(this.id);
+        o.escreveString(this.nome);
+        o.escreveGps(this.g);
+        o.escreveString(this.email);
+        o.escreveString(this.password);
+        o.escreveInt(this.tempoAtendimento);
+        o.escreveInt(this.filaDeEspera);
+    }
+
+    /**
+     * Função que lê uma loja escrita por escreve.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve a loja lida.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Loja le(EntradaBinaria in) throws IOException {
+        String id = in.leString(), nome = in.leString();
+        GPS g = in.leGps();
+        String email = in.leString(), password = in.leString();
+        int tempoAtendimento = in.leInt();
+        return new Loja(id, nome, g, email, password, tempoAtendimento, in.leInt());
+    }
 }
@@ -0,0 +1,176 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MapaIds<V> implements Serializable {
+    private int[] chaves;
+    private Object[] valores;
+    private int tamanho;
+    private final Map<String,V> outros;
+
+    /*
+     * Tabela de endereçamento aberto indexada pelo código do id (ver Id), sem Strings nem Integers.
+     * As chaves 0 marcam posições vazias; os códigos válidos nunca são 0. Os ids que não têm o formato
+     * letra + número ficam num HashMap à parte, para o mapa continuar a aceitar qualquer id.
+     */
+
+    /**
+     * Construtor por omissão.
+     */
+    public MapaIds() {
+        this.chaves = new int[64];
+        this.valores = new Object[64];
+        this.tamanho = 0;
+        this.outros = new HashMap<>();
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param m Recebe um objeto da classe MapaIds.
+     */
+    public MapaIds(MapaIds<V> m) {
+        this.chaves = m.chaves.clone();
+        this.valores = m.valores.clone();
+        this.tamanho = m.tamanho;
+        this.outros = new HashMap<>(m.outros);
+    }
+
+    /**
+     * Função que dá o valor associado a um id.
+     * @param id Id em texto.
+     * @return Devolve o valor, ou null se não existir.
+     */
+    public V get(String id) {
+        int c = Id.codifica(id);
+        return c == Id.INVALIDO ? this.outros.get(id) : get(c);
+    }
+
+    /**
+     * Função que dá o valor associado a um código de id.
+     * @param codigo Código do id.
+     * @return Devolve o valor, ou null se não existir.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int codigo) {
+        int mascara = this.chaves.length - 1;
+        for (int i = mistura(codigo) & mascara; this.chaves[i] != 0; i = (i + 1) & mascara)
+            if (this.chaves[i] == codigo) return (V) this.valores[i];
+        return null;
+    }
+
+    /**
+     * Função que associa um valor a um id, substituindo o que lá estivesse.
+     * @param id Id em texto.
+     * @param valor Valor a guardar.
+     */
+    public void put(String id, V valor) {
+        int c = Id.codifica(id);
+        if (c == Id.INVALIDO) this.outros.put(id, valor);
+        else put(c, valor);
+    }
+
+    /**
+     * Função que associa um valor a um código de id, substituindo o que lá estivesse.
+     * @param codigo Código do id.
+     * @param valor Valor a guardar.
+     */
+    public void put(int codigo, V valor) {
+        if (2 * (this.tamanho + 1) > this.chaves.length) cresce();
+        int mascara = this.chaves.length - 1;
+        int i = mistura(codigo) & mascara;
+        while (this.chaves[i] != 0 && this.chaves[i] != codigo) i = (i + 1) & mascara;
+        if (this.chaves[i] == 0) this.tamanho++;
+        this.chaves[i] = codigo;
+        this.valores[i] = valor;
+    }
+
+    /**
+     * Método que dá o número de ids no mapa.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.tamanho + this.outros.size();
+    }
+
+    private void cresce() {
+        int[] chaves = this.chaves;
+        Object[] valores = this.valores;
+        this.chaves = new int[chaves.length * 2];
+        this.valores = new Object[chaves.length * 2];
+        int mascara = this.chaves.length - 1;
+        for (int j = 0; j < chaves.length; j++) {
+            if (chaves[j] == 0) continue;
+            int i = mistura(chaves[j]) & mascara;
+            while (this.chaves[i] != 0) i = (i + 1) & mascara;
+            this.chaves[i] = chaves[j];
+            this.valores[i] = valores[j];
+        }
+    }
+
+    /**
+     * Espalha os códigos pela tabela: ids do mesmo tipo só diferem nos bits de baixo.
+     */
+    private static int mistura(int codigo) {
+        int h = codigo * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Função que verifica se o objeto recebido é idêntico ao da classe MapaIds.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean que corresponde à verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        MapaIds<?> m = (MapaIds<?>) o;
+        if (m.tamanho != this.tamanho || !m.outros.equals(this.outros)) return false;
+        for (int i = 0; i < this.chaves.length; i++)
+            if (this.chaves[i] != 0 && !this.valores[i].equals(m.get(this.chaves[i]))) return false;
+        return true;
+    }
+
+    /**
+     * Função que dá o hash da classe MapaIds, coerente com o equals. Só usa as chaves, porque as entidades
+     * guardadas não definem hashCode.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        int ret = this.outros.keySet().hashCode();
+        for (int chave : this.chaves) ret += chave;
+        return ret;
+    }
+
+    /**
+     * Função que traduz a classe MapaIds.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < this.chaves.length; i++) {
+            if (this.chaves[i] == 0) continue;
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(Id.texto(this.chaves[i])).append('=').append(this.valores[i]);
+        }
+        for (Map.Entry<String,V> e : this.outros.entrySet()) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Função que faz um clone da classe MapaIds.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public MapaIds<V> clone() {
+        return new MapaIds<>(this);
+    }
+}
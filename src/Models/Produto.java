@@ -0,0 +1,101 @@
+package Models;
+
+import java.io.Serializable;
+
+public final class Produto implements Serializable {
+    private final int id;
+    private final String codigo;
+    private final String nome;
+
+    /**
+     * Construtor parametrizado. Os produtos só são criados pelo CatalogoProdutos, que garante
+     * que cada par código/descrição existe uma única vez.
+     * @param id Número do produto no catálogo.
+     * @param codigo String que representa o código do produto.
+     * @param nome String que representa a descrição.
+     */
+    Produto(int id, String codigo, String nome) {
+        this.id = id;
+        this.codigo = codigo;
+        this.nome = nome;
+    }
+
+    /**
+     * Método que dá o número do produto no catálogo.
+     * @return Devolve esse número.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Método que dá o código do produto.
+     * @return Devolve o código.
+     */
+    public String getCodigo() {
+        return this.codigo;
+    }
+
+    /**
+     * Método que dá a descrição do produto.
+     * @return Devolve a descrição.
+     */
+    public String getNome() {
+        return this.nome;
+    }
+
+    /**
+     * Função que, ao ler um produto gravado, devolve o produto equivalente do catálogo,
+     * para que as linhas lidas de um ficheiro voltem a partilhar o mesmo objeto.
+     * @return Devolve o produto do catálogo.
+     */
+    private Object readResolve() {
+        return CatalogoProdutos.produto(this.codigo, this.nome);
+    }
+
+    /**
+     * Função que verifica se o objeto recebido é idêntico ao da classe Produto.
+     * @param o Recebe um objeto.
+     * @return Devolve um boolean que corresponde à verificação.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        Produto p = (Produto) o;
+        return p.getCodigo().equals(this.codigo) &&
+                p.getNome().equals(this.nome);
+    }
+
+    /**
+     * Função que dá o hash da classe Produto, coerente com o equals.
+     * @return Devolve esse hash.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.codigo.hashCode() + this.nome.hashCode();
+    }
+
+    /**
+     * Função que traduz a classe Produto.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        return "Produto{" +
+                "id=" + id +
+                ", codigo='" + codigo + '\'' +
+                ", nome='" + nome + '\'' +
+                '}';
+    }
+
+    /**
+     * Função que faz um clone da classe Produto. Um produto não muda depois de criado,
+     * por isso o clone é o próprio objeto.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public Produto clone() {
+        return this;
+    }
+}
@@ -0,0 +1,74 @@
+package Models;
+
+import java.io.Serializable;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+public class RelogioSimulado extends Clock implements Serializable {
+    private Instant agora;
+    private final ZoneId zona;
+
+    /**
+     * Construtor parametrizado.
+     * @param inicio Momento em que a simulação começa.
+     * @param zona Fuso horário usado para converter de e para LocalDateTime.
+     */
+    public RelogioSimulado(LocalDateTime inicio, ZoneId zona) {
+        this.agora = inicio.atZone(zona).toInstant();
+        this.zona = zona;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param r Recebe um objeto da classe RelogioSimulado.
+     */
+    public RelogioSimulado(RelogioSimulado r) {
+        this.agora = r.agora;
+        this.zona = r.zona;
+    }
+
+    /**
+     * Função que avança o relógio até um momento. O relógio nunca anda para trás.
+     * @param ate Momento até onde avançar.
+     */
+    public void avanca(LocalDateTime ate) {
+        Instant i = ate.atZone(this.zona).toInstant();
+        if (i.isAfter(this.agora)) this.agora = i;
+    }
+
+    /**
+     * Método que dá o momento atual da simulação.
+     * @return Devolve esse momento.
+     */
+    public LocalDateTime getAgora() {
+        return LocalDateTime.ofInstant(this.agora, this.zona);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return this.zona;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        RelogioSimulado ret = new RelogioSimulado(getAgora(), zone);
+        ret.agora = this.agora;
+        return ret;
+    }
+
+    @Override
+    public Instant instant() {
+        return this.agora;
+    }
+
+    /**
+     * Função que faz um clone da classe RelogioSimulado.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public RelogioSimulado clone() {
+        return new RelogioSimulado(this);
+    }
+}
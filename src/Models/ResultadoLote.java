@@ -0,0 +1,139 @@
+package Models;
+
+import java.io.Serializable;
+
+public class ResultadoLote implements Serializable {
+    private int encomendas;
+    private int atribuidas;
+    private int atribuidasGuloso;
+    private double custo;
+    private double custoGuloso;
+    private long nanos;
+
+    /**
+     * Construtor por omissão.
+     */
+    public ResultadoLote() {
+        this.encomendas = 0;
+        this.atribuidas = 0;
+        this.atribuidasGuloso = 0;
+        this.custo = 0;
+        this.custoGuloso = 0;
+        this.nanos = 0;
+    }
+
+    /**
+     * Construtor parametrizado.
+     * @param encomendas Número de encomendas do lote.
+     * @param atribuidas Número de encomendas atribuídas pela distribuição conjunta.
+     * @param atribuidasGuloso Número de encomendas que a distribuição uma a uma teria atribuído.
+     * @param custo Custo total da distribuição conjunta.
+     * @param custoGuloso Custo total que a distribuição uma a uma teria tido.
+     * @param nanos Tempo gasto a resolver a atribuição, em nanosegundos.
+     */
+    public ResultadoLote(int encomendas, int atribuidas, int atribuidasGuloso, double custo, double custoGuloso, long nanos) {
+        this.encomendas = encomendas;
+        this.atribuidas = atribuidas;
+        this.atribuidasGuloso = atribuidasGuloso;
+        this.custo = custo;
+        this.custoGuloso = custoGuloso;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param r Recebe um objeto da classe ResultadoLote.
+     */
+    public ResultadoLote(ResultadoLote r) {
+        this.encomendas = r.getEncomendas();
+        this.atribuidas = r.getAtribuidas();
+        this.atribuidasGuloso = r.getAtribuidasGuloso();
+        this.custo = r.getCusto();
+        this.custoGuloso = r.getCustoGuloso();
+        this.nanos = r.getNanos();
+    }
+
+    /**
+     * Método que dá o número de encomendas do lote.
+     * @return Devolve esse número.
+     */
+    public int getEncomendas() {
+        return this.encomendas;
+    }
+
+    /**
+     * Método que dá o número de encomendas atribuídas pela distribuição conjunta.
+     * @return Devolve esse número.
+     */
+    public int getAtribuidas() {
+        return this.atribuidas;
+    }
+
+    /**
+     * Método que dá o número de encomendas que a distribuição uma a uma teria atribuído.
+     * @return Devolve esse número.
+     */
+    public int getAtribuidasGuloso() {
+        return this.atribuidasGuloso;
+    }
+
+    /**
+     * Método que dá o custo total da distribuição conjunta (tempo ou preço, conforme o critério).
+     * @return Devolve esse custo.
+     */
+    public double getCusto() {
+        return this.custo;
+    }
+
+    /**
+     * Método que dá o custo total que a distribuição uma a uma teria tido.
+     * @return Devolve esse custo.
+     */
+    public double getCustoGuloso() {
+        return this.custoGuloso;
+    }
+
+    /**
+     * Método que dá o tempo gasto a resolver a atribuição.
+     * @return Devolve o tempo em nanosegundos.
+     */
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * Função que junta a este resultado o de outro lote.
+     * @param r Resultado a juntar.
+     */
+    public void junta(ResultadoLote r) {
+        this.encomendas += r.getEncomendas();
+        this.atribuidas += r.getAtribuidas();
+        this.atribuidasGuloso += r.getAtribuidasGuloso();
+        this.custo += r.getCusto();
+        this.custoGuloso += r.getCustoGuloso();
+        this.nanos += r.getNanos();
+    }
+
+    /**
+     * Função que traduz a classe ResultadoLote.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Encomendas no lote: ").append(this.encomendas)
+                .append("\nAtribuídas (conjunta / uma a uma): ").append(this.atribuidas).append(" / ").append(this.atribuidasGuloso)
+                .append("\nCusto total (conjunta / uma a uma): ").append(this.custo).append(" / ").append(this.custoGuloso)
+                .append("\nTempo de resolução: ").append(this.nanos / 1000).append(" us");
+        return sb.toString();
+    }
+
+    /**
+     * Função que faz um clone da classe ResultadoLote.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public ResultadoLote clone() {
+        return new ResultadoLote(this);
+    }
+}
@@ -0,0 +1,230 @@
+package Models;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Rota implements Serializable {
+    private String transportadora;
+    private GPS origem;
+    private double velocidade;
+    private List<Paragem> paragens;
+    private List<Encomenda> encomendas;
+    private List<Double> distanciasIsoladas;
+
+    /**
+     * Construtor parametrizado: cria uma rota vazia que parte da posição da empresa.
+     * @param t Empresa transportadora que faz a rota.
+     */
+    public Rota(Transportadora t) {
+        this.transportadora = t.getId();
+        this.origem = t.getGps();
+        this.velocidade = t.getVelocidadeMedia();
+        this.paragens = new ArrayList<>();
+        this.encomendas = new ArrayList<>();
+        this.distanciasIsoladas = new ArrayList<>();
+    }
+
+    /**
+     * Construtor por cópia.
+     * @param r Recebe um objeto da classe Rota.
+     */
+    public Rota(Rota r) {
+        this.transportadora = r.getTransportadora();
+        this.origem = r.origem;
+        this.velocidade = r.velocidade;
+        this.paragens = new ArrayList<>(r.paragens);
+        this.encomendas = new ArrayList<>();
+        for (Encomenda e : r.encomendas) this.encomendas.add(e.clone());
+        this.distanciasIsoladas = new ArrayList<>(r.distanciasIsoladas);
+    }
+
+    /**
+     * Método que dá o código da empresa que faz a rota.
+     * @return Devolve esse código.
+     */
+    public String getTransportadora() {
+        return this.transportadora;
+    }
+
+    /**
+     * Método que dá as encomendas da rota, pela ordem em que foram inseridas.
+     * @return Devolve uma cópia da lista de encomendas.
+     */
+    public List<Encomenda> getEncomendas() {
+        List<Encomenda> ret = new ArrayList<>();
+        for (Encomenda e : this.encomendas) ret.add(e.clone());
+        return ret;
+    }
+
+    /**
+     * Método que dá o número de encomendas da rota.
+     * @return Devolve esse número.
+     */
+    public int tamanho() {
+        return this.encomendas.size();
+    }
+
+    /**
+     * Função que calcula os kms da rota, desde a empresa até à última entrega.
+     * @return Devolve a distância total.
+     */
+    public double km() {
+        double ret = 0;
+        GPS atual = this.origem;
+        for (Paragem p : this.paragens) {
+            ret += atual.distancia(p.gps);
+            atual = p.gps;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que calcula os kms que a empresa faria se entregasse cada encomenda numa viagem separada.
+     * @return Devolve a soma dessas distâncias.
+     */
+    public double kmIsolados() {
+        double ret = 0;
+        for (double d : this.distanciasIsoladas) ret += d;
+        return ret;
+    }
+
+    /**
+     * Função que calcula o tempo de entrega de cada encomenda ao longo da rota.
+     * Em cada recolha a empresa espera que a loja tenha o pedido pronto.
+     * @return Devolve os tempos, pela ordem de getEncomendas.
+     */
+    public int[] tempos() {
+        int[] ret = new int[this.encomendas.size()];
+        double t = 0;
+        GPS atual = this.origem;
+        for (Paragem p : this.paragens) {
+            t += atual.distancia(p.gps) / this.velocidade;
+            atual = p.gps;
+            if (p.recolha) t = Math.max(t, p.tempoLoja);
+            else ret[p.encomenda] = (int) t;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que calcula o preço de cada encomenda: o custo da rota é dividido em proporção
+     * à distância que cada encomenda custaria sozinha.
+     * @param taxaKm Preço por km da empresa.
+     * @return Devolve os preços, pela ordem de getEncomendas.
+     */
+    public double[] precos(double taxaKm) {
+        double[] ret = new double[this.encomendas.size()];
+        double total = km() * taxaKm, isolados = kmIsolados();
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = isolados == 0 ? total / ret.length : total * this.distanciasIsoladas.get(i) / isolados;
+        }
+        return ret;
+    }
+
+    /**
+     * Função que calcula quantos kms a rota aumenta se lhe for acrescentada uma encomenda,
+     * com a recolha e a entrega nas melhores posições (a recolha sempre antes da entrega).
+     * @param loja Coordenadas da loja.
+     * @param util Coordenadas do utilizador.
+     * @return Devolve o aumento de kms.
+     */
+    public double custoInsercao(GPS loja, GPS util) {
+        return melhorInsercao(loja, util)[0];
+    }
+
+    /**
+     * Função que acrescenta uma encomenda à rota, nas posições que menos aumentam os kms.
+     * @param e Encomenda a acrescentar.
+     * @param loja Coordenadas da loja.
+     * @param util Coordenadas do utilizador.
+     * @param tempoLoja Tempo que a loja demora a ter o pedido pronto.
+     */
+    public void insere(Encomenda e, GPS loja, GPS util, int tempoLoja) {
+        double[] m = melhorInsercao(loja, util);
+        int i = (int) m[1], j = (int) m[2];
+        int idx = this.encomendas.size();
+        this.encomendas.add(e);
+        this.distanciasIsoladas.add(this.origem.distancia(loja) + loja.distancia(util));
+        this.paragens.add(j, new Paragem(util, idx, false, 0));
+        this.paragens.add(i, new Paragem(loja, idx, true, tempoLoja));
+    }
+
+    /**
+     * Função auxiliar que procura as posições de inserção de uma recolha e de uma entrega.
+     * As posições referem-se à lista de paragens antes da inserção; a entrega fica a seguir à recolha.
+     * @param loja Coordenadas da loja.
+     * @param util Coordenadas do utilizador.
+     * @return Devolve {aumento de kms, posição da recolha, posição da entrega}.
+     */
+    private double[] melhorInsercao(GPS loja, GPS util) {
+        int n = this.paragens.size();
+        double[] ret = {Double.POSITIVE_INFINITY, 0, 0};
+        for (int i = 0; i <= n; i++) {
+            GPS antesI = i == 0 ? this.origem : this.paragens.get(i - 1).gps;
+            GPS depoisI = i == n ? null : this.paragens.get(i).gps;
+            double juntas = antesI.distancia(loja) + loja.distancia(util)
+                    + (depoisI == null ? 0 : util.distancia(depoisI) - antesI.distancia(depoisI));
+            if (juntas < ret[0]) {
+                ret[0] = juntas;
+                ret[1] = i;
+                ret[2] = i;
+            }
+            if (depoisI == null) continue;
+            double recolha = antesI.distancia(loja) + loja.distancia(depoisI) - antesI.distancia(depoisI);
+            for (int j = i + 1; j <= n; j++) {
+                GPS antesJ = this.paragens.get(j - 1).gps;
+                GPS depoisJ = j == n ? null : this.paragens.get(j).gps;
+                double entrega = antesJ.distancia(util)
+                        + (depoisJ == null ? 0 : util.distancia(depoisJ) - antesJ.distancia(depoisJ));
+                if (recolha + entrega < ret[0]) {
+                    ret[0] = recolha + entrega;
+                    ret[1] = i;
+                    ret[2] = j;
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Função que traduz a classe Rota.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Rota da empresa: ").append(this.transportadora)
+                .append("\nEncomendas: ");
+        for (Encomenda e : this.encomendas) sb.append(e.getId()).append(" ");
+        sb.append("\nKms da rota: ").append(km())
+                .append("\nKms em viagens separadas: ").append(kmIsolados());
+        return sb.toString();
+    }
+
+    /**
+     * Função que faz um clone da classe Rota.
+     * @return Devolve esse clone.
+     */
+    @Override
+    public Rota clone() {
+        return new Rota(this);
+    }
+
+    /**
+     * Paragem de uma rota: recolha na loja ou entrega em casa do utilizador de uma das encomendas.
+     */
+    private static class Paragem implements Serializable {
+        private final GPS gps;
+        private final int encomenda;
+        private final boolean recolha;
+        private final int tempoLoja;
+
+        Paragem(GPS gps, int encomenda, boolean recolha, int tempoLoja) {
+            this.gps = gps;
+            this.encomenda = encomenda;
+            this.recolha = recolha;
+            this.tempoLoja = tempoLoja;
+        }
+    }
+}
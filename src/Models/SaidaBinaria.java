@@ -0,0 +1,359 @@
+package Models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+public class SaidaBinaria implements Closeable {
+    private static final int TAMANHO_BUFFER = 1 << 16;
+
+    private final FileChannel canal;
+    private ByteBuffer buffer;
+    private long inicioSecao;
+
+    /**
+     * Construtor por omissão. Escreve para memória, num buffer que cresce à medida do necessário;
+     * o que foi escrito é dado por bytes().
+     */
+    public SaidaBinaria() {
+        this.canal = null;
+        this.buffer = ByteBuffer.allocate(256);
+        this.inicioSecao = -1;
+    }
+
+    /**
+     * Construtor parametrizado. Cria (ou apaga o conteúdo de) o ficheiro.
+     * @param ficheiro Caminho do ficheiro a escrever.
+     * @throws IOException Se não for possível abrir o ficheiro.
+     */
+    public SaidaBinaria(Path ficheiro) throws IOException {
+        this.canal = FileChannel.open(ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        this.inicioSecao = -1;
+    }
+
+    /**
+     * Construtor parametrizado. Abre o ficheiro para continuar a escrever a partir de uma posição,
+     * apagando o que estiver depois dela.
+     * @param ficheiro Caminho do ficheiro a escrever.
+     * @param posicao Posição onde continuar.
+     * @throws IOException Se não for possível abrir o ficheiro.
+     */
+    public SaidaBinaria(Path ficheiro, long posicao) throws IOException {
+        this.canal = FileChannel.open(ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.canal.truncate(posicao);
+        this.canal.position(posicao);
+        this.buffer = ByteBuffer.allocateDirect(TAMANHO_BUFFER);
+        this.inicioSecao = -1;
+    }
+
+    /**
+     * Função que começa uma secção: escreve o tipo e reserva o lugar do comprimento, que só é
+     * preenchido em fechaSecao. As secções não podem estar umas dentro das outras.
+     * @param tipo Tipo da secção.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void abreSecao(int tipo) throws IOException {
+        if (this.inicioSecao >= 0) throw new IllegalStateException("Secção anterior ainda aberta");
+        escreveInt(tipo);
+        espaco(8);
+        this.inicioSecao = posicao();
+        this.buffer.putLong(0);
+    }
+
+    /**
+     * Função que acaba a secção aberta, escrevendo o seu comprimento em bytes.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void fechaSecao() throws IOException {
+        if (this.inicioSecao < 0) throw new IllegalStateException("Nenhuma secção aberta");
+        long comprimento = posicao() - this.inicioSecao - 8;
+        if (this.canal == null) {
+            this.buffer.putLong((int) this.inicioSecao, comprimento);
+            this.inicioSecao = -1;
+            return;
+        }
+        despeja();
+        ByteBuffer b = ByteBuffer.allocate(8).putLong(0, comprimento);
+        while (b.hasRemaining()) this.canal.write(b, this.inicioSecao + b.position());
+        this.inicioSecao = -1;
+    }
+
+    /**
+     * Função que escreve um int.
+     * @param v Valor a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveInt(int v) throws IOException {
+        espaco(4);
+        this.buffer.putInt(v);
+    }
+
+    /**
+     * Função que escreve um long.
+     * @param v Valor a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveLong(long v) throws IOException {
+        espaco(8);
+        this.buffer.putLong(v);
+    }
+
+    /**
+     * Função que escreve um double.
+     * @param v Valor a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveDouble(double v) throws IOException {
+        espaco(8);
+        this.buffer.putDouble(v);
+    }
+
+    /**
+     * Função que escreve um boolean num byte.
+     * @param v Valor a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveBoolean(boolean v) throws IOException {
+        espaco(1);
+        this.buffer.put(v ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Função que escreve uma String em UTF-8 precedida do seu comprimento (-1 para null).
+     * @param s String a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveString(String s) throws IOException {
+        if (s == null) {
+            escreveInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        escreveInt(b.length);
+        escreveBytes(b);
+    }
+
+    /**
+     * Função que escreve um array de bytes, sem o seu comprimento.
+     * @param b Bytes a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveBytes(byte[] b) throws IOException {
+        int i = 0;
+        while (i < b.length) {
+            if (!this.buffer.hasRemaining()) despeja();
+            int n = Math.min(this.buffer.remaining(), b.length - i);
+            this.buffer.put(b, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Função que escreve uma coordenada como dois doubles.
+     * @param g Coordenada.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveGps(GPS g) throws IOException {
+        escreveDouble(g.getX());
+        escreveDouble(g.getY());
+    }
+
+    /**
+     * Função que escreve uma data como nanossegundos desde 1970 (em UTC).
+     * @param t Data.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveData(LocalDateTime t) throws IOException {
+        escreveLong(HistoricoEncomendas.paraNanos(t));
+    }
+
+    /**
+     * Função que escreve as primeiras n posições de um array, sem o seu comprimento.
+     * @param v Array.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveInts(int[] v, int n) throws IOException {
+        escreveInts(v, 0, n);
+    }
+
+    /**
+     * Função que escreve n posições de um array a partir de uma posição, sem o seu comprimento.
+     * @param v Array.
+     * @param desde Primeira posição a escrever.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveInts(int[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            espaco(4);
+            int k = Math.min(this.buffer.remaining() / 4, n - i);
+            this.buffer.asIntBuffer().put(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 4);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que escreve as primeiras n posições de um array, sem o seu comprimento.
+     * @param v Array.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveLongs(long[] v, int n) throws IOException {
+        escreveLongs(v, 0, n);
+    }
+
+    /**
+     * Função que escreve n posições de um array a partir de uma posição, sem o seu comprimento.
+     * @param v Array.
+     * @param desde Primeira posição a escrever.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveLongs(long[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            espaco(8);
+            int k = Math.min(this.buffer.remaining() / 8, n - i);
+            this.buffer.asLongBuffer().put(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 8);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que escreve as primeiras n posições de um array, sem o seu comprimento.
+     * @param v Array.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveDoubles(double[] v, int n) throws IOException {
+        escreveDoubles(v, 0, n);
+    }
+
+    /**
+     * Função que escreve n posições de um array a partir de uma posição, sem o seu comprimento.
+     * @param v Array.
+     * @param desde Primeira posição a escrever.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveDoubles(double[] v, int desde, int n) throws IOException {
+        int i = 0;
+        while (i < n) {
+            espaco(8);
+            int k = Math.min(this.buffer.remaining() / 8, n - i);
+            this.buffer.asDoubleBuffer().put(v, desde + i, k);
+            this.buffer.position(this.buffer.position() + k * 8);
+            i += k;
+        }
+    }
+
+    /**
+     * Função que escreve as primeiras n posições de um array, sem o seu comprimento.
+     * @param v Array.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveBooleans(boolean[] v, int n) throws IOException {
+        escreveBooleans(v, 0, n);
+    }
+
+    /**
+     * Função que escreve n posições de um array a partir de uma posição, sem o seu comprimento.
+     * @param v Array.
+     * @param desde Primeira posição a escrever.
+     * @param n Número de posições a escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void escreveBooleans(boolean[] v, int desde, int n) throws IOException {
+        for (int i = 0; i < n; i++) escreveBoolean(v[desde + i]);
+    }
+
+    /**
+     * Método que dá a posição no ficheiro onde vai ser escrito o próximo byte.
+     * @return Devolve essa posição.
+     * @throws IOException Se não for possível ler a posição do canal.
+     */
+    public long posicao() throws IOException {
+        if (this.canal == null) return this.buffer.position();
+        return this.canal.position() + this.buffer.position();
+    }
+
+    /**
+     * Função que garante que há pelo menos n bytes livres no buffer.
+     */
+    private void espaco(int n) throws IOException {
+        if (this.buffer.remaining() < n) despeja();
+    }
+
+    /**
+     * Função que dá o que foi escrito por uma SaidaBinaria em memória.
+     * @return Devolve uma cópia dos bytes escritos.
+     */
+    public byte[] bytes() {
+        byte[] ret = new byte[this.buffer.position()];
+        this.buffer.duplicate().flip().get(ret);
+        return ret;
+    }
+
+    /**
+     * Função que passa para o ficheiro o que está no buffer, sem esperar que chegue ao disco.
+     * Em memória, aumenta o buffer para o dobro.
+     * @throws IOException Se a escrita falhar.
+     */
+    void despeja() throws IOException {
+        if (this.canal == null) {
+            ByteBuffer maior = ByteBuffer.allocate(this.buffer.capacity() * 2);
+            this.buffer.flip();
+            maior.put(this.buffer);
+            this.buffer = maior;
+            return;
+        }
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) this.canal.write(this.buffer);
+        this.buffer.clear();
+    }
+
+    /**
+     * Função que escreve o que falta e força os dados para o disco.
+     * @throws IOException Se a escrita falhar.
+     */
+    public void sincroniza() throws IOException {
+        if (this.canal == null) return;
+        despeja();
+        forca();
+    }
+
+    /**
+     * Função que espera que o que já foi passado ao ficheiro por despeja chegue ao disco.
+     * Pode ser chamada ao mesmo tempo que outra thread escreve no buffer.
+     * @throws IOException Se a escrita falhar.
+     */
+    void forca() throws IOException {
+        this.canal.force(false);
+    }
+
+    /**
+     * Função que escreve o que falta no buffer e fecha o ficheiro.
+     * @throws IOException Se a escrita falhar.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.canal == null) return;
+        try {
+            despeja();
+        } finally {
+            this.canal.close();
+        }
+    }
+}
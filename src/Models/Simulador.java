@@ -0,0 +1,134 @@
+package Models;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+public class Simulador implements Serializable {
+    private final Sistema sistema;
+    private final RelogioSimulado relogio;
+    private final PriorityQueue<Evento> chegadas;
+    private final Map<String,Encomenda> porChegar;
+    private final LocalDateTime inicio;
+    private long seq;
+    private long eventos;
+    private long despachadas;
+    private long concluidas;
+    private long nanos;
+
+    /**
+     * Construtor parametrizado. A partir daqui o Sistema passa a usar o relógio da simulação.
+     * @param sistema Sistema a simular.
+     * @param inicio Momento em que a simulação começa.
+     */
+    public Simulador(Sistema sistema, LocalDateTime inicio) {
+        this.sistema = sistema;
+        this.relogio = new RelogioSimulado(inicio, ZoneId.systemDefault());
+        this.sistema.setRelogio(this.relogio);
+        this.chegadas = new PriorityQueue<>();
+        this.porChegar = new HashMap<>();
+        this.inicio = inicio;
+        this.seq = 0;
+        this.eventos = 0;
+        this.despachadas = 0;
+        this.concluidas = 0;
+        this.nanos = 0;
+    }
+
+    /**
+     * Função que agenda a chegada de uma encomenda ao Sistema, no momento indicado pelo seu qPedidoEntregue.
+     * @param e Encomenda que vai chegar.
+     */
+    public void agenda(Encomenda e) {
+        this.porChegar.put(e.getId(), e.clone());
+        this.chegadas.add(new Evento(e.getQPedidoEntregue(), null, e.getId(), this.seq++));
+    }
+
+    /**
+     * Método que dá o momento atual da simulação.
+     * @return Devolve esse momento.
+     */
+    public LocalDateTime getAgora() {
+        return this.relogio.getAgora();
+    }
+
+    /**
+     * Função que corre a simulação até um momento, saltando de evento em evento em vez de esperar pelo relógio real.
+     * Há dois tipos de eventos: a chegada de uma encomenda, que é logo entregue a um estafeta livre se houver,
+     * e o fim de uma entrega, que liberta o estafeta e volta a tentar despachar a fila de encomendas por enviar.
+     * @param ate Momento até onde simular.
+     * @return Devolve o número de eventos processados.
+     */
+    public long corre(LocalDateTime ate) {
+        long t0 = System.nanoTime();
+        long ret = 0;
+        while (true) {
+            Evento ev = this.chegadas.peek();
+            LocalDateTime entrega = this.sistema.proximaEntrega();
+            boolean haChegada = ev != null && !ev.getQuando().isAfter(ate);
+            boolean haEntrega = entrega != null && !entrega.isAfter(ate);
+            if (!haChegada && !haEntrega) break;
+            if (haChegada && (!haEntrega || !ev.getQuando().isAfter(entrega))) {
+                this.chegadas.poll();
+                Encomenda chegada = this.porChegar.remove(ev.getEncomenda());
+                this.relogio.avanca(ev.getQuando());
+                this.sistema.finalizarEncomenda(chegada);
+                if (this.sistema.aceitaEncomendaV(chegada.getId()) != null
+                        || this.sistema.aceitaEncomendaT(chegada.getId()) != null) this.despachadas++;
+            } else {
+                this.relogio.avanca(entrega);
+                this.concluidas += this.sistema.concluiEntregas(entrega);
+                this.despachadas += this.sistema.despachaPorPrioridade();
+            }
+            ret++;
+        }
+        this.relogio.avanca(ate);
+        this.eventos += ret;
+        this.nanos += System.nanoTime() - t0;
+        return ret;
+    }
+
+    /**
+     * Método que dá o número de encomendas entregues a estafetas durante a simulação.
+     * @return Devolve esse número.
+     */
+    public long getDespachadas() {
+        return this.despachadas;
+    }
+
+    /**
+     * Método que dá o número de entregas terminadas durante a simulação.
+     * @return Devolve esse número.
+     */
+    public long getConcluidas() {
+        return this.concluidas;
+    }
+
+    /**
+     * Função que dá quantas vezes a simulação andou mais depressa do que o relógio real.
+     * @return Devolve o tempo simulado a dividir pelo tempo real gasto.
+     */
+    public double aceleracao() {
+        if (this.nanos == 0) return 0;
+        return (double) Duration.between(this.inicio, getAgora()).toNanos() / this.nanos;
+    }
+
+    /**
+     * Função que traduz a classe Simulador.
+     * @return Devolve uma String com a respetiva tradução.
+     */
+    @Override
+    public String toString() {
+        return "Tempo simulado: " + Duration.between(this.inicio, getAgora()) +
+                "\nTempo real: " + (this.nanos / 1_000_000) + " ms" +
+                "\nEventos: " + this.eventos +
+                "\nEncomendas despachadas: " + this.despachadas +
+                "\nEntregas terminadas: " + this.concluidas +
+                "\nEncomendas à espera: " + this.porChegar.size() +
+                "\nAceleração: " + String.format("%.0f", aceleracao()) + "x";
+    }
+}
@@ -1,20 +1,185 @@
 package Models;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 
 public class Sistema implements Serializable {
+    private static final long serialVersionUID = 5062168810373979214L;
+
+    /*
+     * Serialização do Java (o formato dos ficheiros gravados antes do formato binário, ver carregaSerializado):
+     * o Sistema é gravado com os campos que tinha nesse formato, o histórico numa lista de encomendas e as
+     * entidades com as suas encomendas em listas, e com os campos que vieram depois, que faltam nos ficheiros
+     * antigos. A fila vai inteira em fila, com as prioridades e as métricas; nos ficheiros antigos vem na lista
+     * encomendasPorEnviar. Ao ler, as encomendas são juntadas num só HistoricoEncomendas (ver juntaHistorico).
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("utilizadores", List.class),
+            new ObjectStreamField("empresas", List.class),
+            new ObjectStreamField("voluntarios", List.class),
+            new ObjectStreamField("lojas", List.class),
+            new ObjectStreamField("historicoEncomendas", List.class),
+            new ObjectStreamField("encomendasPorEnviar", List.class),
+            new ObjectStreamField("encomendasAceites", List.class),
+            new ObjectStreamField("fila", FilaEncomendas.class),
+            new ObjectStreamField("criterio", CriterioSelecao.class),
+            new ObjectStreamField("entregasEmCurso", PriorityQueue.class),
+            new ObjectStreamField("emCursoPorEstafeta", Map.class),
+            new ObjectStreamField("seqEventos", long.class),
+            new ObjectStreamField("geracaoDiario", long.class)
+    };
 
     private List<Utilizador> utilizadores;
     private List<Transportadora> empresas;
     private List<Voluntario> voluntarios;
     private List<Loja> lojas;
-    private List<Encomenda> historicoEncomendas;
-    private List<Encomenda> encomendasPorEnviar;
+    private HistoricoEncomendas arquivo;
+    private IndicesHistorico historicoEncomendas;
+    private FilaEncomendas encomendasPorEnviar;
     private List<AceitaEncomenda> encomendasAceites;
 
+    private transient MapaIds<Utilizador> utilizadoresPorId;
+    private transient MapaIds<Transportadora> empresasPorId;
+    private transient MapaIds<Voluntario> voluntariosPorId;
+    private transient MapaIds<Loja> lojasPorId;
+    private transient Map<String,Utilizador> utilizadoresPorEmail;
+    private transient Map<String,Transportadora> empresasPorEmail;
+    private transient Map<String,Voluntario> voluntariosPorEmail;
+    private transient Map<String,Loja> lojasPorEmail;
+    private transient IndiceEspacial<Voluntario> voluntariosLivres;
+    private transient IndiceEspacial<Voluntario> voluntariosLivresMed;
+    private transient IndiceEspacial<Transportadora> empresasLivres;
+    private transient IndiceEspacial<Transportadora> empresasLivresMed;
+    private transient CacheDistancias distancias;
+    private transient Instantaneo<Utilizador> utilizadoresLeitura;
+    private transient Instantaneo<Transportadora> empresasLeitura;
+    private transient Instantaneo<Voluntario> voluntariosLeitura;
+    private transient Instantaneo<Loja> lojasLeitura;
+    private transient Instantaneo<Encomenda> historicoLeitura;
+    private transient Instantaneo<Encomenda> porEnviarLeitura;
+    private transient Instantaneo<AceitaEncomenda> aceitesLeitura;
+    private CriterioSelecao criterio;
+    private PriorityQueue<Evento> entregasEmCurso;
+    private Map<String,Integer> emCursoPorEstafeta;
+    private long seqEventos;
+    private long geracaoDiario;
+    private transient Clock relogio;
+    private transient volatile Diario diario;
+    private transient String ficheiroDiario;
+
+    /*
+     * Concorrência: as operações sobre uma só encomenda (finalizarEncomenda, aceitaEncomendaV/T, tornaLivre,
+     * concluiEntregas) partilham o lockSistema e podem correr em paralelo; as operações em bloco, os registos
+     * e a gravação ficam com ele em exclusivo. Dentro das operações partilhadas, lockEncomendas protege a fila,
+     * o histórico, os aceites e as entregas em curso, lockEstafetas protege as grelhas de estafetas livres e
+     * cada estafeta é reservado com o lock da sua faixa, de modo que nunca aceita mais do que a sua capacidade.
+     * As gravações esperam primeiro pela sua vez (o semáforo gravacao) e só depois tomam o lockSistema, também
+     * na thread de uma gravação em fundo; nenhum método pode esperar pelo semáforo com o lockSistema na mão.
+     */
+    private transient ReentrantReadWriteLock lockSistema;
+    private transient ReentrantReadWriteLock lockEstafetas;
+    private transient ReentrantLock lockEncomendas;
+    private transient Object[] lockPorEstafeta;
+    private transient Set<String> emAtribuicao;
+    private transient Semaphore gravacao;
+
+    /*
+     * Gravação incremental (ver gravaIncremental): cadeia é o ficheiro da última gravação completa (a base) e
+     * idCadeia o número que a identifica; os deltas nomeficheiro.delta.1 .. .delta.deltas seguem-se a ela.
+     * linhasGravadas, aceitesGravados e indicesGravados dizem até onde o histórico, os aceites e os índices do
+     * Sistema (que só crescem) já estão gravados, alterados tem os ids das entidades alteradas desde então e
+     * encomendasAlteradas os das encomendas que entraram ou saíram da fila.
+     */
+    private transient String cadeia;
+    private transient long idCadeia;
+    private transient int deltas;
+    private transient int linhasGravadas;
+    private transient int aceitesGravados;
+    private transient int indicesGravados;
+    private transient Set<String> alterados;
+    private transient Set<String> encomendasAlteradas;
+
+    private static final double LADO_GRELHA = 25;
+    private static final int CANDIDATOS_LOTE = 32;
+    private static final int LOTE_MAX = 256;
+    private static final int CACHE_DISTANCIAS = 1 << 16;
+    private static final int FAIXAS_ESTAFETAS = 64;
+    private static final int TENTATIVAS = 4;
+
+    /*
+     * Formato do ficheiro gravado por grava: FORMATO_MAGIA e FORMATO_VERSAO, seguidos de secções
+     * (tipo, comprimento em bytes, conteúdo) até à secção SECAO_FIM. Os números são escritos em binário,
+     * as Strings em UTF-8 precedidas do comprimento, as coordenadas como dois doubles e as datas em nanossegundos.
+     * A secção de produtos vem primeiro e as linhas de encomenda referem-se aos produtos pela posição nela.
+     * Quem lê salta as secções de tipo desconhecido, para que uma versão possa juntar secções novas.
+     * Os deltas escritos por gravaIncremental têm o mesmo formato: começam pela secção SECAO_CADEIA, que diz a que
+     * base e a que estado se aplicam, as secções de entidades só têm as entidades alteradas (que substituem as que
+     * têm o mesmo id), o histórico e os aceites só têm o que foi acrescentado, a fila só as encomendas que entraram
+     * ou saíram e as restantes secções, que são pequenas, vão inteiras.
+     * Desde a versão 2, o histórico de uma base não vai no ficheiro mas num segmento à parte,
+     * nomeficheiro.historico.idCadeia (ver HistoricoEncomendas.escreveSegmento), que pode ser mapeado em memória em
+     * vez de lido; a secção SECAO_SEGMENTO, antes da de histórico, diz qual é. Cada base tem o seu segmento, que não
+     * é reescrito depois, para que um Sistema que o tenha mapeado o possa continuar a ler.
+     */
+    private static final int FORMATO_MAGIA = 0x50504F4F;
+    private static final int FORMATO_VERSAO = 2;
+    private static final int SECAO_FIM = 0;
+    private static final int SECAO_PRODUTOS = 1;
+    private static final int SECAO_UTILIZADORES = 2;
+    private static final int SECAO_LOJAS = 3;
+    private static final int SECAO_VOLUNTARIOS = 4;
+    private static final int SECAO_EMPRESAS = 5;
+    private static final int SECAO_HISTORICO = 6;
+    private static final int SECAO_POR_ENVIAR = 7;
+    private static final int SECAO_ACEITES = 8;
+    private static final int SECAO_ENTREGAS = 9;
+    private static final int SECAO_CRITERIO = 10;
+    private static final int SECAO_DIARIO = 11;
+    private static final int SECAO_CADEIA = 12;
+    private static final int SECAO_SEGMENTO = 13;
+    private static final int DELTAS_POR_BASE = 16;
+    private static final int CRITERIO_MENOR_TEMPO = 1;
+    private static final int CRITERIO_MENOR_PRECO = 2;
+    private static final int CRITERIO_PONDERADO = 3;
+    private static final int CRITERIO_COM_CLASSIFICACAO = 4;
+    private static final int CRITERIO_SERIALIZADO = 99;
+
+    /*
+     * Tipos dos registos do diário (ver Diario). Cada alteração é registada com o lock que a ordena em relação às
+     * outras, e os métodos públicos esperam que o registo chegue ao disco antes de devolver. As atribuições são
+     * registadas pelo resultado (encomenda, estafeta e momento), para que repeti-las não volte a escolher o estafeta.
+     */
+    private static final int DIARIO_UTILIZADOR = 1;
+    private static final int DIARIO_LOJA = 2;
+    private static final int DIARIO_VOLUNTARIO = 3;
+    private static final int DIARIO_TRANSPORTADORA = 4;
+    private static final int DIARIO_FINALIZA = 5;
+    private static final int DIARIO_ATRIBUI = 6;
+    private static final int DIARIO_ROTA = 7;
+    private static final int DIARIO_CONCLUI = 8;
+    private static final int DIARIO_TORNA_LIVRE = 9;
+    private static final int DIARIO_FREE_ALL = 10;
+    private static final int DIARIO_CLASSIFICA = 11;
+    private static final int DIARIO_FILA = 12;
+    private static final int DIARIO_CRITERIO = 13;
+
 
     /**
      * Construtor por omissão.
@@ -24,10 +189,18 @@ public class Sistema implements Serializable {
         this.empresas = new ArrayList<>();
         this.voluntarios = new ArrayList<>();
         this.lojas = new ArrayList<>();
-        this.historicoEncomendas = new ArrayList<>();
-        this.encomendasPorEnviar = new ArrayList<>();
+        this.arquivo = new HistoricoEncomendas();
+        this.historicoEncomendas = new IndicesHistorico();
+        this.encomendasPorEnviar = new FilaEncomendas();
         this.encomendasAceites = new ArrayList<>();
-
+        this.criterio = new CriterioSelecao.MenorTempo();
+        this.entregasEmCurso = new PriorityQueue<>();
+        this.emCursoPorEstafeta = new HashMap<>();
+        this.seqEventos = 0;
+        this.geracaoDiario = 0;
+        this.relogio = Clock.systemDefaultZone();
+        criaLocks();
+        reconstroiIndices();
     }
 
     /**
@@ -35,85 +208,472 @@ public class Sistema implements Serializable {
      * @param - Sistema a copiar.
      */
     public Sistema(Sistema s) {
-        this.utilizadores = s.getUtilizadores();
-        this.empresas = s.getEmpresas();
-        this.voluntarios = s.getVoluntarios();
-        this.lojas = s.getLojas();
-        this.historicoEncomendas = s.getHistorico();
-        this.encomendasPorEnviar = s.getPorEnviar();
-        this.encomendasAceites = s.getAceites();
+        s.lockSistema.writeLock().lock();
+        try {
+            this.utilizadores = copia(s.utilizadores,Utilizador::clone);
+            this.empresas = copia(s.empresas,Transportadora::clone);
+            this.voluntarios = copia(s.voluntarios,Voluntario::clone);
+            this.lojas = copia(s.lojas,Loja::clone);
+            this.arquivo = s.arquivo.clone();
+            this.historicoEncomendas = s.historicoEncomendas.clone();
+            this.encomendasPorEnviar = s.encomendasPorEnviar.clone();
+            this.encomendasAceites = copia(s.encomendasAceites,AceitaEncomenda::clone);
+            this.criterio = s.getCriterio();
+            this.entregasEmCurso = new PriorityQueue<>(s.entregasEmCurso);
+            this.emCursoPorEstafeta = new HashMap<>(s.emCursoPorEstafeta);
+            this.seqEventos = s.seqEventos;
+            this.geracaoDiario = s.geracaoDiario;
+            this.relogio = s.relogio;
+        } finally {
+            s.lockSistema.writeLock().unlock();
+        }
+        criaLocks();
+        reconstroiIndices();
+    }
+
+    /**
+     * Função que reconstrói os índices por id, por email e a grelha de estafetas livres a partir das listas de entidades.
+     * Os índices, a cache de distâncias e as cópias de leitura não são gravados, por isso também é chamada depois de carregar o Sistema de um ficheiro.
+     */
+    private void reconstroiIndices() {
+        this.distancias = new CacheDistancias(CACHE_DISTANCIAS);
+        this.utilizadoresLeitura = new Instantaneo<>();
+        this.empresasLeitura = new Instantaneo<>();
+        this.voluntariosLeitura = new Instantaneo<>();
+        this.lojasLeitura = new Instantaneo<>();
+        this.historicoLeitura = new Instantaneo<>();
+        this.porEnviarLeitura = new Instantaneo<>();
+        this.aceitesLeitura = new Instantaneo<>();
+        this.utilizadoresPorId = new MapaIds<>();
+        this.utilizadoresPorEmail = new HashMap<>();
+        for(Utilizador u : this.utilizadores) indexa(u);
+        this.empresasPorId = new MapaIds<>();
+        this.empresasPorEmail = new HashMap<>();
+        this.empresasLivres = new IndiceEspacial<>(LADO_GRELHA,false);
+        this.empresasLivresMed = new IndiceEspacial<>(LADO_GRELHA,true);
+        for(Transportadora t : this.empresas) indexa(t);
+        this.voluntariosPorId = new MapaIds<>();
+        this.voluntariosPorEmail = new HashMap<>();
+        this.voluntariosLivres = new IndiceEspacial<>(LADO_GRELHA,false);
+        this.voluntariosLivresMed = new IndiceEspacial<>(LADO_GRELHA,true);
+        for(Voluntario v : this.voluntarios) indexa(v);
+        this.lojasPorId = new MapaIds<>();
+        this.lojasPorEmail = new HashMap<>();
+        for(Loja l : this.lojas) indexa(l);
+        this.alterados = ConcurrentHashMap.newKeySet();
+        this.encomendasAlteradas = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Função que cria os locks usados quando o Sistema é acedido por várias threads.
+     * Os locks não são gravados, por isso também é chamada depois de carregar o Sistema de um ficheiro.
+     */
+    private void criaLocks() {
+        this.lockSistema = new ReentrantReadWriteLock();
+        this.lockEstafetas = new ReentrantReadWriteLock();
+        this.lockEncomendas = new ReentrantLock();
+        this.lockPorEstafeta = new Object[FAIXAS_ESTAFETAS];
+        for(int i = 0; i < FAIXAS_ESTAFETAS; i++) this.lockPorEstafeta[i] = new Object();
+        this.emAtribuicao = new HashSet<>();
+        this.gravacao = new Semaphore(1);
+    }
+
+    /**
+     * Função que dá o lock da faixa de um estafeta.
+     * @param id Id do estafeta.
+     * @return Objeto usado como lock.
+     */
+    private Object lockDe(String id) {
+        return this.lockPorEstafeta[Math.floorMod(id.hashCode(),FAIXAS_ESTAFETAS)];
+    }
+
+    /**
+     * Função que adiciona um utilizador aos índices. Se houver emails repetidos, o login fica com o primeiro registado.
+     * @param u Utilizador a indexar.
+     */
+    private void indexa(Utilizador u) {
+        u.setArquivo(this.arquivo);
+        this.utilizadoresPorId.put(u.getId(),u);
+        this.utilizadoresPorEmail.putIfAbsent(u.getEmail(),u);
+        this.utilizadoresLeitura.invalida();
+    }
+
+    /**
+     * Função que adiciona uma empresa transportadora aos índices.
+     * @param t Empresa a indexar.
+     */
+    private void indexa(Transportadora t) {
+        t.setArquivo(this.arquivo);
+        this.empresasPorId.put(t.getId(),t);
+        this.empresasPorEmail.putIfAbsent(t.getEmail(),t);
+        this.empresasLeitura.invalida();
+        this.empresasLivres.regista(t);
+        this.empresasLivresMed.regista(t);
+    }
+
+    /**
+     * Função que adiciona um voluntário aos índices.
+     * @param v Voluntário a indexar.
+     */
+    private void indexa(Voluntario v) {
+        v.setArquivo(this.arquivo);
+        this.voluntariosPorId.put(v.getId(),v);
+        this.voluntariosPorEmail.putIfAbsent(v.getEmail(),v);
+        this.voluntariosLeitura.invalida();
+        this.voluntariosLivres.regista(v);
+        this.voluntariosLivresMed.regista(v);
+    }
+
+    /**
+     * Função que adiciona uma loja aos índices.
+     * @param l Loja a indexar.
+     */
+    private void indexa(Loja l) {
+        this.lojasPorId.put(l.getId(),l);
+        this.lojasPorEmail.putIfAbsent(l.getEmail(),l);
+        this.lojasLeitura.invalida();
+    }
+
+    /**
+     * Função usada pela serialização ao gravar o Sistema, no formato de serialPersistentFields.
+     * @param out Stream onde o Sistema é escrito.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        this.lockSistema.writeLock().lock();
+        try {
+            ObjectOutputStream.PutField f = out.putFields();
+            f.put("utilizadores",this.utilizadores);
+            f.put("empresas",this.empresas);
+            f.put("voluntarios",this.voluntarios);
+            f.put("lojas",this.lojas);
+            f.put("historicoEncomendas",this.arquivo.encomendas(this.historicoEncomendas));
+            f.put("encomendasAceites",this.encomendasAceites);
+            f.put("fila",this.encomendasPorEnviar);
+            f.put("criterio",this.criterio);
+            f.put("entregasEmCurso",this.entregasEmCurso);
+            f.put("emCursoPorEstafeta",this.emCursoPorEstafeta);
+            f.put("seqEventos",this.seqEventos);
+            f.put("geracaoDiario",this.geracaoDiario);
+            out.writeFields();
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Função usada pela serialização ao carregar o Sistema, também de um ficheiro no formato antigo: junta as
+     * encomendas no histórico partilhado e volta a construir os índices por id.
+     * @param in Stream de onde o Sistema é lido.
+     * @throws IOException Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        this.utilizadores = lista((List<Utilizador>) f.get("utilizadores",null));
+        this.empresas = lista((List<Transportadora>) f.get("empresas",null));
+        this.voluntarios = lista((List<Voluntario>) f.get("voluntarios",null));
+        this.lojas = lista((List<Loja>) f.get("lojas",null));
+        this.encomendasAceites = lista((List<AceitaEncomenda>) f.get("encomendasAceites",null));
+        this.criterio = (CriterioSelecao) f.get("criterio",null);
+        if(this.criterio == null) this.criterio = new CriterioSelecao.MenorTempo();
+        this.entregasEmCurso = (PriorityQueue<Evento>) f.get("entregasEmCurso",null);
+        if(this.entregasEmCurso == null) this.entregasEmCurso = new PriorityQueue<>();
+        this.emCursoPorEstafeta = (Map<String,Integer>) f.get("emCursoPorEstafeta",null);
+        if(this.emCursoPorEstafeta == null) this.emCursoPorEstafeta = new HashMap<>();
+        this.seqEventos = f.get("seqEventos",0L);
+        this.geracaoDiario = f.get("geracaoDiario",0L);
+        this.relogio = Clock.systemDefaultZone();
+        juntaHistorico(lista((List<Encomenda>) f.get("historicoEncomendas",null)));
+        criaLocks();
+        reconstroiIndices();
+        this.encomendasPorEnviar = (FilaEncomendas) f.get("fila",null);
+        if(this.encomendasPorEnviar == null){
+            this.encomendasPorEnviar = new FilaEncomendas();
+            for(Encomenda e : lista((List<Encomenda>) f.get("encomendasPorEnviar",null))){
+                Loja l = this.lojasPorId.get(e.getLoja());
+                this.encomendasPorEnviar.adiciona(e,l == null ? 0 : l.tempoDoPedido());
+            }
+        }
+    }
+
+    /**
+     * Função que dá uma lista lida pela serialização, ou uma lista vazia se o campo não estiver no ficheiro.
+     * @param l Lista lida.
+     * @return Devolve uma ArrayList com os mesmos elementos.
+     */
+    private static <T> List<T> lista(List<T> l) {
+        return l == null ? new ArrayList<>() : new ArrayList<>(l);
+    }
+
+    /**
+     * Função que junta num só HistoricoEncomendas o histórico e as encomendas das entidades lidas pela serialização,
+     * que as têm em históricos só delas. Cada encomenda do histórico fica numa linha, com o estafeta que a tem na
+     * sua lista, e as entidades passam a usar essas linhas; uma encomenda que só uma entidade tenha, ou que seja
+     * diferente da do histórico com o mesmo id, fica numa linha à parte.
+     * @param historico Histórico do Sistema, pela ordem em que as encomendas foram entregues.
+     */
+    private void juntaHistorico(List<Encomenda> historico) {
+        this.arquivo = new HistoricoEncomendas();
+        this.historicoEncomendas = new IndicesHistorico();
+        Map<String,String> estafetaDe = new HashMap<>();
+        for(Transportadora t : this.empresas)
+            for(Encomenda e : t.getEncomendasFeitas()) estafetaDe.putIfAbsent(e.getId(),t.getId());
+        for(Voluntario v : this.voluntarios)
+            for(Encomenda e : v.getHistorico()) estafetaDe.putIfAbsent(e.getId(),v.getId());
+        Map<String,Integer> linhas = new HashMap<>();
+        for(Encomenda e : historico){
+            int linha = this.arquivo.adiciona(e,estafetaDe.get(e.getId()));
+            linhas.putIfAbsent(e.getId(),linha);
+            this.historicoEncomendas.adiciona(linha);
+        }
+        for(Utilizador u : this.utilizadores)
+            u.mudaArquivo(this.arquivo,linhas(u.getEncomendas(),linhas,estafetaDe));
+        for(Transportadora t : this.empresas)
+            t.mudaArquivo(this.arquivo,linhas(t.getEncomendasFeitas(),linhas,estafetaDe));
+        for(Voluntario v : this.voluntarios)
+            v.mudaArquivo(this.arquivo,linhas(v.getHistorico(),linhas,estafetaDe));
+    }
+
+    /**
+     * Função que dá as linhas do histórico partilhado com as encomendas de uma entidade, acrescentando as que lá faltam.
+     * @param encs Encomendas da entidade.
+     * @param linhas Linha de cada id no histórico partilhado.
+     * @param estafetaDe Estafeta de cada id.
+     * @return Devolve as linhas, pela ordem das encomendas.
+     */
+    private IndicesHistorico linhas(List<Encomenda> encs, Map<String,Integer> linhas, Map<String,String> estafetaDe) {
+        IndicesHistorico ret = new IndicesHistorico();
+        for(Encomenda e : encs){
+            Integer linha = linhas.get(e.getId());
+            if(linha == null || !this.arquivo.get(linha).equals(e)){
+                linha = this.arquivo.adiciona(e,estafetaDe.get(e.getId()));
+                linhas.putIfAbsent(e.getId(),linha);
+            }
+            ret.adiciona(linha);
+        }
+        return ret;
     }
 
     /**
      * Método que dá a lista do utilizadores.
+     * A lista é só de leitura e só volta a ser copiada depois de algum utilizador mudar.
      * @return - Lista de utilizadores do sistema.
      */
     public List<Utilizador> getUtilizadores(){
-        List<Utilizador> ret = new ArrayList<>();
-        for (Utilizador u : this.utilizadores) ret.add(u.clone());
-        return ret;
+        return this.utilizadoresLeitura.obtem(() -> {
+            this.lockSistema.readLock().lock();
+            try {
+                List<Utilizador> ret = new ArrayList<>();
+                for (Utilizador u : this.utilizadores) {
+                    synchronized (u) {
+                        ret.add(u.clone());
+                    }
+                }
+                return ret;
+            } finally {
+                this.lockSistema.readLock().unlock();
+            }
+        });
     }
 
     /**
      * Método que dá a lista de empresas transportadoras do sistema.
+     * A lista é só de leitura e só volta a ser copiada depois de alguma empresa mudar.
      * @return - Lista de empresas transportadoras do sistema.
      */
     public List<Transportadora> getEmpresas(){
-        List<Transportadora> ret = new ArrayList<>();
-        for(Transportadora t : this.empresas) ret.add(t.clone());
-        return ret;
+        return this.empresasLeitura.obtem(() -> {
+            this.lockSistema.readLock().lock();
+            try {
+                List<Transportadora> ret = new ArrayList<>();
+                for(Transportadora t : this.empresas) {
+                    synchronized (lockDe(t.getId())) {
+                        ret.add(t.clone());
+                    }
+                }
+                return ret;
+            } finally {
+                this.lockSistema.readLock().unlock();
+            }
+        });
     }
 
     /**
      * Método que dá a lista de voluntários do sistema.
+     * A lista é só de leitura e só volta a ser copiada depois de algum voluntário mudar.
      * @return - Lista de voluntários do sistema.
      */
     public List<Voluntario> getVoluntarios(){
-        List<Voluntario> ret = new ArrayList<>();
-        for(Voluntario t : this.voluntarios) ret.add(t.clone());
-        return ret;
+        return this.voluntariosLeitura.obtem(() -> {
+            this.lockSistema.readLock().lock();
+            try {
+                List<Voluntario> ret = new ArrayList<>();
+                for(Voluntario t : this.voluntarios) {
+                    synchronized (lockDe(t.getId())) {
+                        ret.add(t.clone());
+                    }
+                }
+                return ret;
+            } finally {
+                this.lockSistema.readLock().unlock();
+            }
+        });
     }
 
     /**
      * Método que dá a lista de lojas do sistema.
+     * A lista é só de leitura e só volta a ser copiada depois de alguma loja ser registada.
      * @return - Lojas do sistema.
      */
     public List<Loja> getLojas() {
-        List<Loja> ret = new ArrayList<>();
-        for (Loja l : this.lojas) ret.add(l.clone());
-        return ret;
+        return this.lojasLeitura.obtem(() -> {
+            this.lockSistema.readLock().lock();
+            try {
+                return copia(this.lojas,Loja::clone);
+            } finally {
+                this.lockSistema.readLock().unlock();
+            }
+        });
     }
 
     /**
      * Método que dá a lista do histórico de encomendas.
+     * A lista é só de leitura e só volta a ser copiada depois de o histórico mudar.
      * @return - Lista do histórico de encomendas.
      */
     public List<Encomenda> getHistorico() {
-        List<Encomenda> ret = new ArrayList<>();
-        for( Encomenda e : this.historicoEncomendas) ret.add(e.clone());
-        return ret;
+        return this.historicoLeitura.obtem(() -> {
+            this.lockEncomendas.lock();
+            try {
+                return this.arquivo.encomendas(this.historicoEncomendas);
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+        });
     }
 
     /**
      * Método que dá a lista de encomendas por enviar.
-     * @return - Lista de encomendas por enviar.
+     * A lista é só de leitura e só volta a ser copiada depois de a fila mudar.
+     * @return - Lista de encomendas por enviar, pela ordem em que chegaram.
      */
     public List<Encomenda> getPorEnviar() {
-        List<Encomenda> ret = new ArrayList<>();
-        for( Encomenda e : this.encomendasPorEnviar) ret.add(e.clone());
-        return ret;
+        return this.porEnviarLeitura.obtem(() -> {
+            this.lockEncomendas.lock();
+            try {
+                return copia(this.encomendasPorEnviar.porChegada(),Encomenda::clone);
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+        });
+    }
+
+    /**
+     * Método que dá a encomenda por enviar mais urgente: médicas primeiro, depois as mais antigas
+     * e depois as de lojas que têm o pedido pronto mais cedo.
+     * @return - Encomenda mais urgente, ou null se não houver encomendas por enviar.
+     */
+    public Encomenda proximaEncomenda() {
+        this.lockEncomendas.lock();
+        try {
+            Encomenda e = this.encomendasPorEnviar.primeira();
+            return e == null ? null : e.clone();
+        } finally {
+            this.lockEncomendas.unlock();
+        }
+    }
+
+    /**
+     * Método que dá as métricas da fila de encomendas por enviar (profundidade e espera por classe).
+     * @return - String com as métricas.
+     */
+    public String estatisticasFila() {
+        this.lockEncomendas.lock();
+        try {
+            return this.encomendasPorEnviar.toString();
+        } finally {
+            this.lockEncomendas.unlock();
+        }
     }
 
     /**
      * Método que dá a lista de encomendas aceites, ou seja, a serem processadas.
+     * A lista é só de leitura e só volta a ser copiada depois de haver novas encomendas aceites.
      * @return - Lista de encomendas aceites.
      */
     public List<AceitaEncomenda> getAceites() {
-        List<AceitaEncomenda> ret = new ArrayList<>();
-        for( AceitaEncomenda a : this.encomendasAceites) ret.add(a.clone());
+        return this.aceitesLeitura.obtem(() -> {
+            this.lockEncomendas.lock();
+            try {
+                return copia(this.encomendasAceites,AceitaEncomenda::clone);
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+        });
+    }
+
+    /**
+     * Função auxiliar que faz uma cópia profunda de uma lista.
+     * @param l - Lista a copiar.
+     * @param clone - Função que copia cada elemento.
+     * @return - Nova lista com as cópias.
+     */
+    private static <T> List<T> copia(Collection<T> l, UnaryOperator<T> clone) {
+        List<T> ret = new ArrayList<>(l.size());
+        for(T x : l) ret.add(clone.apply(x));
         return ret;
     }
 
+    /**
+     * Método que dá o critério usado para escolher o estafeta de cada encomenda.
+     * @return - Critério de seleção.
+     */
+    public CriterioSelecao getCriterio() {
+        return this.criterio;
+    }
+
+    /**
+     * Método que define o critério usado para escolher o estafeta de cada encomenda.
+     * @param criterio - Critério de seleção.
+     */
+    public void setCriterio(CriterioSelecao criterio) {
+        this.lockSistema.writeLock().lock();
+        try {
+            this.criterio = criterio;
+            regista(DIARIO_CRITERIO,null,o -> escreveCriterio(o,criterio));
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
+    }
+
+    /**
+     * Método que dá o relógio usado pelo Sistema para marcar encomendas e entregas.
+     * @return - Relógio.
+     */
+    public Clock getRelogio() {
+        return this.relogio;
+    }
+
+    /**
+     * Método que define o relógio do Sistema; numa simulação é um RelogioSimulado, que avança aos saltos.
+     * O relógio não é gravado: ao carregar um Sistema volta a ser o relógio do computador.
+     * @param relogio - Relógio.
+     */
+    public void setRelogio(Clock relogio) {
+        this.relogio = relogio;
+    }
+
+    /**
+     * Função que dá o momento atual segundo o relógio do Sistema.
+     * @return - Momento atual.
+     */
+    public LocalDateTime agora() {
+        return LocalDateTime.now(this.relogio);
+    }
+
     /**
      * Função que traduz a classe Sistema.
      * @return Devolve uma String com a respetiva tradução.
@@ -125,8 +685,8 @@ public class Sistema implements Serializable {
                 ", empresas=" + empresas +
                 ", voluntarios=" + voluntarios +
                 ", lojas=" + lojas +
-                ", historicoEncomendas=" + historicoEncomendas +
-                ", encomendasPorEnviar=" + encomendasPorEnviar +
+                ", historicoEncomendas=" + getHistorico() +
+                ", encomendasPorEnviar=" + encomendasPorEnviar.porChegada() +
                 ", encomendasAceites=" + encomendasAceites +
                 '}';
     }
@@ -145,7 +705,7 @@ public class Sistema implements Serializable {
                 Objects.equals(empresas, sistema.empresas) &&
                 Objects.equals(voluntarios, sistema.voluntarios) &&
                 Objects.equals(lojas, sistema.lojas) &&
-                Objects.equals(historicoEncomendas, sistema.historicoEncomendas) &&
+                Objects.equals(getHistorico(), sistema.getHistorico()) &&
                 Objects.equals(encomendasPorEnviar, sistema.encomendasPorEnviar) &&
                 Objects.equals(encomendasAceites, sistema.encomendasAceites);
     }
@@ -160,40 +720,88 @@ public class Sistema implements Serializable {
         return new Sistema(this);
     }
 
+    /**
+     * Função que dá o estafeta que entregou a encomenda mais recente de um utilizador, para este o classificar.
+     * @param idUtilizador - Id do utilizador.
+     * @return - Id do estafeta, ou null se o utilizador não existir ou ainda não tiver encomendas entregues.
+     */
+    public String estafetaDaUltimaEncomenda(String idUtilizador){
+        this.lockSistema.readLock().lock();
+        try {
+            Utilizador u = this.utilizadoresPorId.get(idUtilizador);
+            if(u == null) return null;
+            synchronized(u){
+                return u.ultimoEstafeta();
+            }
+        } finally {
+            this.lockSistema.readLock().unlock();
+        }
+    }
+
     /**
      * Função que classifica um Voluntário.
      * @param cod Recebe uma String que representa o código de um Voluntário.
      * @param classificacao Recebe um Inteiro representante da classificação.
      */
     public void classificarTransportadora(String cod, int classificacao){
-        if(cod.charAt(0) == 'v') {
-            for(Voluntario v : this.voluntarios){
-                if(v.getId() == cod) v.addClassificacao(classificacao);
+        this.lockSistema.readLock().lock();
+        try {
+            if(cod.charAt(0) == 'v') {
+                Voluntario v = this.voluntariosPorId.get(cod);
+                if(v != null) {
+                    synchronized(lockDe(cod)){
+                        v.addClassificacao(classificacao);
+                        this.alterados.add(cod);
+                        registaClassificacao(cod,classificacao);
+                    }
+                }
+                this.voluntariosLeitura.invalida();
             }
-        }
-        if(cod.charAt(0) == 't'){
-            for(Transportadora t : this.empresas){
-                if(t.getId() == cod) t.addClassificacao(classificacao);
+            if(cod.charAt(0) == 't'){
+                Transportadora t = this.empresasPorId.get(cod);
+                if(t != null) {
+                    synchronized(lockDe(cod)){
+                        t.addClassificacao(classificacao);
+                        this.alterados.add(cod);
+                        registaClassificacao(cod,classificacao);
+                    }
+                }
+                this.empresasLeitura.invalida();
             }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-
+        confirmaDiario();
     }
 
 
 
+    /**
+     * Função que regista uma classificação no diário.
+     * @param cod - Código do estafeta.
+     * @param classificacao - Classificação dada.
+     */
+    private void registaClassificacao(String cod, int classificacao){
+        regista(DIARIO_CLASSIFICA,null,o -> {
+            o.escreveString(cod);
+            o.escreveInt(classificacao);
+        });
+    }
+
     /**
      * Função que dá o username (id) da entidade a ser criada.
      * @param s - String identificadora.
      * @return - Id (username) da entidade.
      */
     public String getNewId(String s){
-        StringBuilder sb = new StringBuilder();
-        if(s.equals("u")) sb.append(s).append(this.utilizadores.size());
-        else if (s.equals("l")) sb.append(s).append(this.lojas.size());
-        else if (s.equals("e")) sb.append(s).append(this.historicoEncomendas.size() + this.encomendasPorEnviar.size()+ this.encomendasAceites.size());
-        else if (s.equals("t")) sb.append(s).append(this.empresas.size());
-        else if(s.equals("v")) sb.append(s).append(this.voluntarios.size());
-        return sb.toString();
+        int n;
+        if(s.equals("u")) n = this.utilizadores.size();
+        else if (s.equals("l")) n = this.lojas.size();
+        else if (s.equals("e")) n = this.historicoEncomendas.tamanho() + this.encomendasPorEnviar.tamanho()+ this.encomendasAceites.size();
+        else if (s.equals("t")) n = this.empresas.size();
+        else if(s.equals("v")) n = this.voluntarios.size();
+        else return "";
+        return Id.texto(Id.de(s.charAt(0),n));
     }
 
     /**
@@ -210,7 +818,16 @@ public class Sistema implements Serializable {
         List<Encomenda> vazia = new ArrayList<>();
         GPS gps = new GPS(x,y);
         Utilizador user = new Utilizador(id,nome,gps,vazia,email,password);
-        this.utilizadores.add(user);
+        this.lockSistema.writeLock().lock();
+        try {
+            this.utilizadores.add(user);
+            indexa(user);
+            this.alterados.add(user.getId());
+            regista(DIARIO_UTILIZADOR,null,user::escreve);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
         return user;
     }
 
@@ -243,7 +860,16 @@ public class Sistema implements Serializable {
     public Loja registaLoja(String id, String nome, String email, String password, double x, double y, int atendimento, int fila){
         GPS gps = new GPS(x,y);
         Loja l = new Loja(id,nome,gps,email,password,atendimento,fila);
-        this.lojas.add(l);
+        this.lockSistema.writeLock().lock();
+        try {
+            this.lojas.add(l);
+            indexa(l);
+            this.alterados.add(l.getId());
+            regista(DIARIO_LOJA,null,l::escreve);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
         return l;
     }
 
@@ -260,7 +886,16 @@ public class Sistema implements Serializable {
     public Loja registaLoja(String id, String nome, String email, String password, double x, double y, int atendimento){
         GPS gps = new GPS(x,y);
         Loja l = new Loja(id,nome,gps,email,password,atendimento,0);
-        this.lojas.add(l);
+        this.lockSistema.writeLock().lock();
+        try {
+            this.lojas.add(l);
+            indexa(l);
+            this.alterados.add(l.getId());
+            regista(DIARIO_LOJA,null,l::escreve);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
         return l.clone();
     }
     public Loja registaLoja(String id, String nome, double x, double y){
@@ -294,7 +929,16 @@ public class Sistema implements Serializable {
         boolean bol = false;
         if(med){ bol = true;}
         Transportadora t = new Transportadora(id,nome,email,password,gps,nif,raio,true,taxa,numEnc,classif,hist,0,velMedia,med,bol);
-        this.empresas.add(t);
+        this.lockSistema.writeLock().lock();
+        try {
+            this.empresas.add(t);
+            indexa(t);
+            this.alterados.add(t.getId());
+            regista(DIARIO_TRANSPORTADORA,null,t::escreve);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
         return t.clone();
     }
 
@@ -326,7 +970,16 @@ public class Sistema implements Serializable {
         List<Integer> classif = new ArrayList<>();
         List<Encomenda> hist = new ArrayList<>();
         Voluntario v = new Voluntario(id,nome,email,password,gps,raio,true,classif,hist,velocidadeMedia,medica,bol);
-        this.voluntarios.add(v);
+        this.lockSistema.writeLock().lock();
+        try {
+            this.voluntarios.add(v);
+            indexa(v);
+            this.alterados.add(v.getId());
+            regista(DIARIO_VOLUNTARIO,null,v::escreve);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
         return v;
 
     }
@@ -339,16 +992,41 @@ public class Sistema implements Serializable {
     }
 
     /**
-     * Função que dá uma lista de voluntários livres do sistema.
-     * @return - Lista de voluntários livres.
+     * Função que dá os voluntários livres do sistema.
+     * @return - Cópia só de leitura dos voluntários livres.
      */
-    public List<Voluntario> getVoluntariosLivres(){
-        List<Voluntario> ret = new ArrayList<>();
-        for(Voluntario v : this.voluntarios){
-            if(v.isLivre()) ret.add(v.clone());
+    public Collection<Voluntario> getVoluntariosLivres(){
+        return livres(this.voluntariosLivres,Voluntario::clone);
+    }
+
+    /**
+     * Função que copia os estafetas de uma grelha de estafetas livres.
+     * A grelha é lida com o lockEstafetas e cada estafeta é copiado depois, com o lock da sua faixa, porque
+     * quem muda um estafeta toma o lock da faixa antes do lockEstafetas.
+     * @param grelha - Grelha de estafetas livres.
+     * @param clone - Função que copia um estafeta.
+     * @return - Lista só de leitura com as cópias.
+     */
+    private <T extends Estafeta> List<T> livres(IndiceEspacial<T> grelha, UnaryOperator<T> clone){
+        this.lockSistema.readLock().lock();
+        try {
+            List<T> estafetas;
+            this.lockEstafetas.readLock().lock();
+            try {
+                estafetas = new ArrayList<>(grelha.estafetas());
+            } finally {
+                this.lockEstafetas.readLock().unlock();
+            }
+            List<T> ret = new ArrayList<>(estafetas.size());
+            for(T est : estafetas){
+                synchronized(lockDe(est.getId())){
+                    ret.add(clone.apply(est));
+                }
+            }
+            return Collections.unmodifiableList(ret);
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        if(ret.size() < 1) ret = null;
-        return ret;
     }
 
     /**
@@ -357,11 +1035,13 @@ public class Sistema implements Serializable {
      * @return - Loja do sistema.
      */
     public Loja getLoja(String id){
-        Loja ret = null;
-        for(Loja l : this.lojas){
-            if(l.getId().equals(id)) ret = new Loja(l.clone());
+        this.lockSistema.readLock().lock();
+        try {
+            Loja l = this.lojasPorId.get(id);
+            return l == null ? null : l.clone();
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return ret;
     }
 
 
@@ -371,11 +1051,16 @@ public class Sistema implements Serializable {
      * @return - Utilizador do sistema.
      */
     public Utilizador getUtilizador(String id){
-        Utilizador ret = null;
-        for(Utilizador u : this.utilizadores){
-            if(u.getId().equals(id)) ret = new Utilizador(u.clone());
+        this.lockSistema.readLock().lock();
+        try {
+            Utilizador u = this.utilizadoresPorId.get(id);
+            if(u == null) return null;
+            synchronized(u){
+                return u.clone();
+            }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return ret;
     }
 
 
@@ -386,14 +1071,16 @@ public class Sistema implements Serializable {
      * @return - O utilizador que corresponde a essas credencias.
      */
     public Utilizador loginU(String email, String password){
-        Utilizador ut = null;
-        for(Utilizador u : this.utilizadores){
-            if(u.getEmail().equals(email) && u.getPassword().equals(password)) {
-                ut = new Utilizador(u.clone());
-                break;
+        this.lockSistema.readLock().lock();
+        try {
+            Utilizador u = this.utilizadoresPorEmail.get(email);
+            if(u == null || !u.getPassword().equals(password)) return null;
+            synchronized(u){
+                return u.clone();
             }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return ut;
     }
 
     /**
@@ -403,14 +1090,14 @@ public class Sistema implements Serializable {
      * @return - A loja que corresponde a essas credencias.
      */
     public Loja loginL(String email, String password){
-        Loja lj = null;
-        for(Loja l : this.lojas){
-            if(l.getEmail().equals(email) && l.getPassword().equals(password)){
-                lj = new Loja(l.clone());
-                break;
-            }
+        this.lockSistema.readLock().lock();
+        try {
+            Loja l = this.lojasPorEmail.get(email);
+            if(l == null || !l.getPassword().equals(password)) return null;
+            return l.clone();
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return lj;
     }
 
     /**
@@ -420,11 +1107,16 @@ public class Sistema implements Serializable {
      * @return - A empresa que corresponde a essas credencias.
      */
     public Transportadora loginE(String email, String password){
-        Transportadora tp = null;
-        for(Transportadora t : this.empresas){
-            if(t.getEmail().equals(email) && t.getPassword().equals(password)) tp = new Transportadora(t.clone());
+        this.lockSistema.readLock().lock();
+        try {
+            Transportadora t = this.empresasPorEmail.get(email);
+            if(t == null || !t.getPassword().equals(password)) return null;
+            synchronized(lockDe(t.getId())){
+                return t.clone();
+            }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return tp;
     }
 
     /**
@@ -434,14 +1126,16 @@ public class Sistema implements Serializable {
      * @return - O voluntário que corresponde a essas credencias.
      */
     public Voluntario loginV(String email, String password){
-            Voluntario vl = null;
-            for (Voluntario v : this.voluntarios) {
-                if (v.getEmail().equals(email) && v.getPassword().equals(password)) {
-                    vl = new Voluntario(v.clone());
-                }
-
+        this.lockSistema.readLock().lock();
+        try {
+            Voluntario v = this.voluntariosPorEmail.get(email);
+            if(v == null || !v.getPassword().equals(password)) return null;
+            synchronized(lockDe(v.getId())){
+                return v.clone();
             }
-            return vl;
+        } finally {
+            this.lockSistema.readLock().unlock();
+        }
     }
 
     /**
@@ -450,14 +1144,15 @@ public class Sistema implements Serializable {
      */
     public List<String> top10Utilizador(){
         List<String> ret = new ArrayList<>();
-        this.utilizadores.sort(new Comparator<Utilizador>() {
+        List<Utilizador> aux = new ArrayList<>(this.utilizadores);
+        aux.sort(new Comparator<Utilizador>() {
             @Override
             public int compare(Utilizador utilizador, Utilizador t1) {
-                return t1.getEncomendas().size() - utilizador.getEncomendas().size();
+                return t1.numeroEncomendas() - utilizador.numeroEncomendas();
             }
         });
         for(int i = 0; i < 10; i++){
-            ret.add(this.utilizadores.get(i).getNome());
+            ret.add(aux.get(i).getNome());
         }
         return ret;
 
@@ -469,11 +1164,8 @@ public class Sistema implements Serializable {
      */
     public List<String> top10Empresas(){
         List<String> ret = new ArrayList<>();
-        List<Transportadora> aux = new ArrayList<>();
+        List<Transportadora> aux = new ArrayList<>(this.empresas);
         int i;
-        for(Transportadora t : this.empresas){
-            aux.add(t.clone());
-        }
         aux.sort(new Comparator<Transportadora>() {
             @Override
             public int compare(Transportadora transportadora, Transportadora t1) {
@@ -501,6 +1193,7 @@ public class Sistema implements Serializable {
         ret.setLoja(loja);
         ret.setPeso(peso);
         ret.setEncomendaMedica(med);
+        ret.setQPedidoEntregue(agora());
         return ret.clone();
     }
 
@@ -515,7 +1208,7 @@ public class Sistema implements Serializable {
      */
     public Encomenda fazerEncomenda2(String id,String util, String loja,double peso, boolean med){
         List<LinhaEncomenda> ln = new ArrayList<>();
-        Encomenda ret = new Encomenda(id,util,loja,peso,ln,LocalDateTime.now(),0,0,med);
+        Encomenda ret = new Encomenda(id,util,loja,peso,ln,agora(),0,0,med);
         return ret;
     }
 
@@ -524,60 +1217,50 @@ public class Sistema implements Serializable {
      * @param e - Encomenda a adicionar.
      */
     public void finalizarEncomenda(Encomenda e){
-        this.encomendasPorEnviar.add(e);
-    }
-
-    /**
-     * Função que retorna a lista de voluntários livres e que têm certificado médico.
-     * @return - Lista de voluntários livres e que têm certificado médico.
-     */
-    public List<Voluntario> getVoluntariosLivresMed(){
-        List<Voluntario> ret = new ArrayList<>();
-        for(Voluntario v : this.voluntarios){
-            if(v.getLivreMed() && v.aceitoTransporteMedicamentos() && v.isLivre()) ret.add(v.clone());
+        this.lockSistema.readLock().lock();
+        try {
+            Loja l = this.lojasPorId.get(e.getLoja());
+            int tempoLoja = l == null ? 0 : l.tempoDoPedido();
+            this.lockEncomendas.lock();
+            try {
+                this.encomendasPorEnviar.adiciona(e,tempoLoja);
+                this.encomendasAlteradas.add(e.getId());
+                this.porEnviarLeitura.invalida();
+                regista(DIARIO_FINALIZA,e.getLE(),o -> {
+                    o.escreveInt(tempoLoja);
+                    e.escreve(o);
+                });
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        if(ret.size() < 1) ret = null;
-        return ret;
+        confirmaDiario();
     }
 
     /**
-     * Função que retorna a lista de empresas transportadoras livres.
-     * @return - Lista de empresas transportadoras livres.
+     * Função que retorna os voluntários livres e que têm certificado médico.
+     * @return - Cópia só de leitura dos voluntários livres e que têm certificado médico.
      */
-    public List<Transportadora> getTransportadorasLivres(){
-        List<Transportadora> ret = new ArrayList<>();
-        for(Transportadora t : this.empresas){
-            if(t.isLivre()) ret.add(t.clone());
-        }
-        if(ret.size() < 1) ret = null;
-        return ret;
+    public Collection<Voluntario> getVoluntariosLivresMed(){
+        return livres(this.voluntariosLivresMed,Voluntario::clone);
     }
 
     /**
-     * Função que retorna a lista de empresas transportadoras livres e que têm certificado médico.
-     * @return - Lista de empresas transportadoras livres e que têm certificado médico.
+     * Função que retorna as empresas transportadoras livres.
+     * @return - Cópia só de leitura das empresas transportadoras livres.
      */
-    public List<Transportadora> getTransportadorasLivresMed(){
-        List<Transportadora> ret = new ArrayList<>();
-        for(Transportadora t : this.empresas){
-            if(t.getLivreMed() && t.aceitoTransporteMedicamentos() && t.isLivre()) ret.add(t.clone());
-        }
-        if(ret.size() < 1) ret = null;
-        return ret;
+    public Collection<Transportadora> getTransportadorasLivres(){
+        return livres(this.empresasLivres,Transportadora::clone);
     }
 
     /**
-     * Função que retorna o índice de uma encomenda a partir do seu id.
-     * @param id - Id da encomenda.
-     * @return - Índice da encomenda.
+     * Função que retorna as empresas transportadoras livres e que têm certificado médico.
+     * @return - Cópia só de leitura das empresas transportadoras livres e que têm certificado médico.
      */
-    public int getIndiceEncomenda(String id){
-        int ret = 0;
-        for(Encomenda e : this.encomendasPorEnviar){
-            if(e.getId().equals(id)) break;
-            else ret++;
-        }
-        return ret;
+    public Collection<Transportadora> getTransportadorasLivresMed(){
+        return livres(this.empresasLivresMed,Transportadora::clone);
     }
 
     /**
@@ -586,172 +1269,483 @@ public class Sistema implements Serializable {
      * @return - Encomenda por enviar.
      */
     public Encomenda getEncomendaPorEnviar(String id){
-        Encomenda e = null;
-        for(Encomenda enc : this.encomendasPorEnviar){
-            if(enc.getId().equals(id)){
-                e = new Encomenda(enc.clone());
-                break;
-            }
+        this.lockEncomendas.lock();
+        try {
+            Encomenda e = this.encomendasPorEnviar.get(id);
+            return e == null ? null : e.clone();
+        } finally {
+            this.lockEncomendas.unlock();
         }
-        return e;
     }
 
     /**
      * Função que distribui uma encomenda a enviar a um voluntário.
+     * Só são testados os voluntários livres da grelha cujo raio pode abranger a loja e o utilizador;
+     * entre esses é escolhido o de menor custo segundo o critério de seleção.
      * @param idE - Id da encomenda.
      * @return - Voluntário que entrega a encomenda.
      */
     public Voluntario aceitaEncomendaV(String idE){
-        Encomenda e = getEncomendaPorEnviar(idE);
-        GPS gpsLoja = getLoja(e.getLoja()).getGps();
-        GPS gpsUt = getUtilizador(e.getUser()).getGps();
-        int info = getLoja(e.getLoja()).tempoDoPedido();
-        int i = getIndiceEncomenda(idE),j = indiceUtil(e.getUser());
-        int ret = 0;
-        Voluntario fn = null;
-        if(e.getEncomendaMedica()) {
-            if (getVoluntariosLivresMed() != null) {
-                for (Voluntario v : getVoluntariosLivresMed()) {
-                    if (v.dentroDoRaio(gpsLoja, gpsUt)) {
-                        if (info > v.tempoDeIda(gpsLoja)) ret = info + v.tempoDeVolta(gpsLoja, gpsUt);
-                        else ret = v.tempoDeIda(gpsLoja) + v.tempoDeVolta(gpsLoja, gpsUt);
-                        e.setPrecoEntrega(0);
-                        e.setTempoDeEspera(ret);
-                        e.setQPedidoEntregue(LocalDateTime.now().plusMinutes(ret));
-                        this.voluntarios.get(indiceVol(v.getId())).aceitaEncomenda(e.clone());
-                        fn = new Voluntario(v.clone());
-                        this.utilizadores.get(j).addEncomenda(e.clone());
-                        this.encomendasAceites.add(new AceitaEncomenda(idE));
-                        this.encomendasPorEnviar.remove(i);
-                        this.historicoEncomendas.add(e.clone());
-                        break;
-                    }
-                }
-            }
-        }
-        else{
-            if(getVoluntariosLivres() != null){
-                for(Voluntario vt : getVoluntariosLivres()){
-                    if(vt.dentroDoRaio(gpsLoja,gpsUt)){
-                        if(info > vt.tempoDeIda(gpsLoja)) ret = info + vt.tempoDeVolta(gpsLoja,gpsUt);
-                        else ret = vt.tempoDeIda(gpsLoja) + vt.tempoDeVolta(gpsLoja,gpsUt);
-                        e.setPrecoEntrega(0);
-                        e.setTempoDeEspera(ret);
-                        e.setQPedidoEntregue(LocalDateTime.now().plusMinutes(ret));
-                        this.voluntarios.get(indiceVol(vt.getId())).aceitaEncomenda(e.clone());
-                        fn = new Voluntario(vt.clone());
-                        this.utilizadores.get(j).addEncomenda(e.clone());
-                        this.encomendasAceites.add(new AceitaEncomenda(idE));
-                        this.encomendasPorEnviar.remove(i);
-                        this.historicoEncomendas.add(e.clone());
-                        break;
-                    }
-                }
-            }
+        Voluntario v = aceitaEncomenda(idE,this.voluntariosLivres,this.voluntariosLivresMed);
+        if(v == null) return null;
+        confirmaDiario();
+        synchronized(lockDe(v.getId())){
+            return v.clone();
         }
-        return fn;
     }
 
     /**
      * Função que distribui uma encomenda a enviar a uma empresa.
+     * Só são testadas as empresas livres da grelha cujo raio pode abranger a loja e o utilizador;
+     * entre essas é escolhida a de menor custo segundo o critério de seleção.
      * @param idE - Id da encomenda.
      * @return - Empresa que entrega a encomenda..
      */
     public Transportadora aceitaEncomendaT(String idE){
-        Encomenda e = getEncomendaPorEnviar(idE);
-        GPS gpsLoja = getLoja(e.getLoja()).getGps();
-        GPS gpsUt = getUtilizador(e.getUser()).getGps();
-        int info = getLoja(e.getLoja()).tempoDoPedido();
-        int i = getIndiceEncomenda(idE), j = indiceUtil(e.getUser());;
-        int ret = 0;
-        Transportadora fn = null;
-        if(e.getEncomendaMedica()){
-            if(getTransportadorasLivresMed() != null){
-                for(Transportadora t : getTransportadorasLivresMed()){
-                    if(t.dentroDoRaio(gpsLoja,gpsUt)) {
-                        if(info > t.tempoDeIda(gpsLoja)) ret = info + t.tempoDeVolta(gpsLoja,gpsUt);
-                        else ret = t.tempoDeIda(gpsLoja) + t.tempoDeVolta(gpsLoja,gpsUt);
-                        e.setPrecoEntrega(t.precoEntrega(gpsLoja,gpsUt));
-                        e.setTempoDeEspera(ret);
-                        e.setQPedidoEntregue(LocalDateTime.now().plusMinutes(ret));
-                        this.empresas.get(indiceEmp(t.getId())).aceitaEncomenda(e.clone(),gpsLoja,gpsUt);
-                        fn = new Transportadora(t.clone());
-                        this.utilizadores.get(j).addEncomenda(e.clone());
-                        this.encomendasAceites.add(new AceitaEncomenda(idE));
-                        this.encomendasPorEnviar.remove(i);
-                        this.historicoEncomendas.add(e.clone());
-                        break;
+        Transportadora t = aceitaEncomenda(idE,this.empresasLivres,this.empresasLivresMed);
+        if(t == null) return null;
+        confirmaDiario();
+        synchronized(lockDe(t.getId())){
+            return t.clone();
+        }
+    }
+
+    /**
+     * Função que entrega uma encomenda ao estafeta de menor custo de uma das grelhas.
+     * Pode ser chamada por várias threads ao mesmo tempo: a encomenda fica reservada enquanto é atribuída,
+     * para não ser entregue duas vezes, e cada estafeta é reservado com o lock da sua faixa, voltando a
+     * confirmar que ainda tem vagas. Se outra thread ocupar entretanto os TENTATIVAS melhores estafetas,
+     * a procura é repetida com a grelha já atualizada.
+     * @param idE - Id da encomenda.
+     * @param livres - Grelha de estafetas livres.
+     * @param livresMed - Grelha de estafetas livres para encomendas médicas.
+     * @return - Estafeta escolhido, ou null se a encomenda não existir ou não houver estafeta.
+     */
+    private <T extends Estafeta> T aceitaEncomenda(String idE, IndiceEspacial<T> livres, IndiceEspacial<T> livresMed){
+        this.lockSistema.readLock().lock();
+        try {
+            Encomenda e = reservaEncomenda(idE);
+            if(e == null) return null;
+            try {
+                Loja loja = this.lojasPorId.get(e.getLoja());
+                Utilizador ut = this.utilizadoresPorId.get(e.getUser());
+                GPS gpsLoja = loja.getGps();
+                GPS gpsUt = ut.getGps();
+                int info = loja.tempoDoPedido();
+                double dist = this.distancias.distancia(loja,ut);
+                boolean med = e.getEncomendaMedica();
+                IndiceEspacial<T> grelha = med ? livresMed : livres;
+                while(true){
+                    List<T> candidatos;
+                    this.lockEstafetas.readLock().lock();
+                    try {
+                        candidatos = grelha.candidatos(gpsLoja,gpsUt);
+                    } finally {
+                        this.lockEstafetas.readLock().unlock();
+                    }
+                    if(candidatos.isEmpty()) return null;
+                    for(T est : this.criterio.melhores(candidatos,TENTATIVAS,info,gpsLoja,dist)){
+                        synchronized(lockDe(est.getId())){
+                            if(est.capacidadeLivre() == 0) continue;
+                            if(med && !(est.getLivreMed() && est.aceitoTransporteMedicamentos())) continue;
+                            atribui(e,est,loja,ut,agora());
+                            return est;
+                        }
                     }
                 }
+            } finally {
+                this.lockEncomendas.lock();
+                try {
+                    this.emAtribuicao.remove(idE);
+                } finally {
+                    this.lockEncomendas.unlock();
+                }
+            }
+        } finally {
+            this.lockSistema.readLock().unlock();
+        }
+    }
+
+    /**
+     * Função que reserva uma encomenda por enviar para ser atribuída, impedindo outras threads de a atribuir.
+     * @param idE - Id da encomenda.
+     * @return - Cópia da encomenda, ou null se não estiver por enviar ou já estiver reservada.
+     */
+    private Encomenda reservaEncomenda(String idE){
+        this.lockEncomendas.lock();
+        try {
+            Encomenda e = this.encomendasPorEnviar.get(idE);
+            if(e == null || !this.emAtribuicao.add(idE)) return null;
+            return e.clone();
+        } finally {
+            this.lockEncomendas.unlock();
+        }
+    }
+
+    /**
+     * Função que percorre as encomendas por enviar da mais urgente para a menos urgente e entrega cada uma
+     * a um voluntário ou, não havendo, a uma empresa. As que não encontram estafeta ficam na fila.
+     * Uma classe de encomendas (médicas ou normais) só é percorrida se houver estafetas livres para ela.
+     * @return - Número de encomendas entregues a estafetas.
+     */
+    public int despachaPorPrioridade(){
+        int ret = 0;
+        for(boolean med : new boolean[]{true,false}){
+            IndiceEspacial<Voluntario> vs = med ? this.voluntariosLivresMed : this.voluntariosLivres;
+            IndiceEspacial<Transportadora> ts = med ? this.empresasLivresMed : this.empresasLivres;
+            if(semLivres(vs,ts)) continue;
+            List<Encomenda> fila;
+            this.lockEncomendas.lock();
+            try {
+                fila = this.encomendasPorEnviar.porPrioridade(med);
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+            for(Encomenda e : fila){
+                if(semLivres(vs,ts)) break;
+                if(aceitaEncomenda(e.getId(),this.voluntariosLivres,this.voluntariosLivresMed) != null
+                        || aceitaEncomenda(e.getId(),this.empresasLivres,this.empresasLivresMed) != null) ret++;
+            }
+        }
+        confirmaDiario();
+        return ret;
+    }
+
+    /**
+     * Função que verifica, com o lockEstafetas, se duas grelhas de estafetas livres estão vazias.
+     * @param vs - Grelha de voluntários livres.
+     * @param ts - Grelha de empresas livres.
+     * @return - True se nenhuma das grelhas tiver estafetas.
+     */
+    private boolean semLivres(IndiceEspacial<Voluntario> vs, IndiceEspacial<Transportadora> ts){
+        this.lockEstafetas.readLock().lock();
+        try {
+            return vs.tamanho() == 0 && ts.tamanho() == 0;
+        } finally {
+            this.lockEstafetas.readLock().unlock();
+        }
+    }
+
+    /**
+     * Função que distribui de uma só vez todas as encomendas por enviar.
+     * @return - Resultado da distribuição, comparado com a distribuição uma a uma.
+     */
+    public ResultadoLote distribuiLote(){
+        return distribuiLote(LocalDateTime.MIN,LocalDateTime.MAX);
+    }
+
+    /**
+     * Função que distribui de uma só vez as encomendas por enviar feitas numa janela de tempo.
+     * Em vez de dar a cada encomenda o melhor estafeta livre naquele momento, resolve a atribuição conjunta
+     * de menor custo total (segundo o critério de seleção), respeitando o raio, o certificado médico e o número
+     * de encomendas que cada empresa pode levar. Janelas grandes são resolvidas em lotes de LOTE_MAX encomendas,
+     * formados pela ordem de prioridade da fila.
+     * @param desde - Início da janela.
+     * @param ate - Fim da janela.
+     * @return - Resultado da distribuição, comparado com a distribuição uma a uma.
+     */
+    public ResultadoLote distribuiLote(LocalDateTime desde, LocalDateTime ate){
+        this.lockSistema.writeLock().lock();
+        try {
+            List<Encomenda> janela = new ArrayList<>();
+            for(Encomenda e : this.encomendasPorEnviar.porPrioridade()){
+                if(!e.getQPedidoEntregue().isBefore(desde) && !e.getQPedidoEntregue().isAfter(ate)) janela.add(e.clone());
             }
+            ResultadoLote ret = new ResultadoLote();
+            for(int i = 0; i < janela.size(); i += LOTE_MAX){
+                ret.junta(resolveLote(janela.subList(i,Math.min(i + LOTE_MAX,janela.size()))));
+            }
+            return ret;
+        } finally {
+            this.lockSistema.writeLock().unlock();
+            confirmaDiario();
         }
-        else{
-            if(getTransportadorasLivres() != null){
-                for(Transportadora tp : getTransportadorasLivres()){
-                    if(tp.dentroDoRaio(gpsLoja,gpsUt)){
-                        if(info > tp.tempoDeIda(gpsLoja)) ret = info + tp.tempoDeVolta(gpsLoja,gpsUt);
-                        else ret = tp.tempoDeIda(gpsLoja) + tp.tempoDeVolta(gpsLoja,gpsUt);
-                        e.setPrecoEntrega(tp.precoEntrega(gpsLoja,gpsUt));
-                        e.setTempoDeEspera(ret);
-                        e.setQPedidoEntregue(LocalDateTime.now().plusMinutes(ret));
-                        this.empresas.get(indiceEmp(tp.getId())).aceitaEncomenda(e.clone(),gpsLoja,gpsUt);
-                        fn = new Transportadora(tp.clone());
-                        this.utilizadores.get(j).addEncomenda(e.clone());
-                        this.encomendasAceites.add(new AceitaEncomenda(idE));
-                        this.encomendasPorEnviar.remove(i);
-                        this.historicoEncomendas.add(e.clone());
-                        break;
+    }
+
+    /**
+     * Função que resolve e aplica a atribuição conjunta de um lote de encomendas.
+     * Cada estafeta entra com tantas vagas quantas as encomendas que ainda pode aceitar; cada encomenda só
+     * considera os CANDIDATOS_LOTE estafetas de menor custo, para a matriz se manter pequena.
+     * @param lote - Encomendas do lote.
+     * @return - Resultado do lote.
+     */
+    private ResultadoLote resolveLote(List<Encomenda> lote){
+        List<Estafeta> vagas = new ArrayList<>();
+        Map<String,Integer> primeiraVaga = new HashMap<>();
+        List<List<Estafeta>> candidatos = new ArrayList<>();
+        for(Encomenda e : lote){
+            Loja loja = this.lojasPorId.get(e.getLoja());
+            Utilizador ut = this.utilizadoresPorId.get(e.getUser());
+            GPS gpsLoja = loja.getGps();
+            GPS gpsUt = ut.getGps();
+            int info = loja.tempoDoPedido();
+            List<Estafeta> todos = new ArrayList<>();
+            todos.addAll((e.getEncomendaMedica() ? this.voluntariosLivresMed : this.voluntariosLivres).candidatos(gpsLoja,gpsUt));
+            todos.addAll((e.getEncomendaMedica() ? this.empresasLivresMed : this.empresasLivres).candidatos(gpsLoja,gpsUt));
+            List<Estafeta> melhores = this.criterio.melhores(todos,CANDIDATOS_LOTE,info,gpsLoja,this.distancias.distancia(loja,ut));
+            for(Estafeta est : melhores){
+                if(primeiraVaga.containsKey(est.getId())) continue;
+                primeiraVaga.put(est.getId(),vagas.size());
+                for(int k = 0; k < est.capacidadeLivre(); k++) vagas.add(est);
+            }
+            candidatos.add(melhores);
+        }
+        double[][] custo = new double[lote.size()][vagas.size()];
+        for(int i = 0; i < lote.size(); i++){
+            Encomenda e = lote.get(i);
+            Loja loja = this.lojasPorId.get(e.getLoja());
+            double dist = this.distancias.distancia(loja,this.utilizadoresPorId.get(e.getUser()));
+            Arrays.fill(custo[i],DistribuidorLote.INVIAVEL);
+            for(Estafeta est : candidatos.get(i)){
+                double c = this.criterio.custo(est,loja.tempoDoPedido(),loja.getGps(),dist);
+                int j = primeiraVaga.get(est.getId());
+                while(j < vagas.size() && vagas.get(j) == est) custo[i][j++] = c;
+            }
+        }
+        long inicio = System.nanoTime();
+        int[] conjunta = DistribuidorLote.resolve(custo);
+        long nanos = System.nanoTime() - inicio;
+        int[] guloso = DistribuidorLote.guloso(custo);
+        for(int i = 0; i < lote.size(); i++){
+            if(conjunta[i] < 0) continue;
+            Encomenda e = lote.get(i);
+            atribui(e,vagas.get(conjunta[i]),this.lojasPorId.get(e.getLoja()),this.utilizadoresPorId.get(e.getUser()),agora());
+        }
+        return new ResultadoLote(lote.size(),DistribuidorLote.atribuidas(conjunta),DistribuidorLote.atribuidas(guloso),
+                DistribuidorLote.custoTotal(custo,conjunta),DistribuidorLote.custoTotal(custo,guloso),nanos);
+    }
+
+    /**
+     * Função que agrupa as encomendas por enviar em rotas com várias paragens, uma por empresa livre.
+     * Cada empresa começa pela encomenda que menos kms lhe custa e vai acrescentando, por inserção mais barata,
+     * as encomendas que estejam no seu raio, até preencher as vagas que lhe restam (numeroEnc).
+     * Os kms da rota são contados uma só vez e repartidos pelas encomendas no preço.
+     * @return - Rotas criadas e aplicadas.
+     */
+    public List<Rota> distribuiRotas(){
+        this.lockSistema.writeLock().lock();
+        try {
+            List<Rota> ret = new ArrayList<>();
+            List<Encomenda> pendentes = new ArrayList<>();
+            for(Encomenda e : this.encomendasPorEnviar.porPrioridade()) pendentes.add(e.clone());
+            List<Transportadora> livres = new ArrayList<>(this.empresasLivres.estafetas());
+            for(Transportadora t : livres){
+                if(pendentes.isEmpty()) break;
+                Rota r = new Rota(t);
+                int vagas = t.capacidadeLivre();
+                while(r.tamanho() < vagas){
+                    int melhor = -1;
+                    double custo = Double.POSITIVE_INFINITY;
+                    for(int i = 0; i < pendentes.size(); i++){
+                        Encomenda e = pendentes.get(i);
+                        if(e.getEncomendaMedica() && !(t.getLivreMed() && t.aceitoTransporteMedicamentos())) continue;
+                        GPS gpsLoja = this.lojasPorId.get(e.getLoja()).getGps();
+                        GPS gpsUt = this.utilizadoresPorId.get(e.getUser()).getGps();
+                        if(!t.dentroDoRaio(gpsLoja,gpsUt)) continue;
+                        double c = r.custoInsercao(gpsLoja,gpsUt);
+                        if(c < custo){
+                            custo = c;
+                            melhor = i;
+                        }
                     }
+                    if(melhor < 0) break;
+                    Encomenda e = pendentes.remove(melhor);
+                    Loja loja = this.lojasPorId.get(e.getLoja());
+                    r.insere(e,loja.getGps(),this.utilizadoresPorId.get(e.getUser()).getGps(),loja.tempoDoPedido());
                 }
+                if(r.tamanho() == 0) continue;
+                aplicaRota(t,r);
+                ret.add(r);
             }
+            return ret;
+        } finally {
+            this.lockSistema.writeLock().unlock();
+            confirmaDiario();
+        }
+    }
+
+    /**
+     * Função que entrega a uma empresa todas as encomendas de uma rota.
+     * @param t - Empresa que faz a rota.
+     * @param r - Rota a aplicar.
+     */
+    private void aplicaRota(Transportadora t, Rota r){
+        aplicaRota(t,r.getEncomendas(),r.tempos(),r.precos(t.getTaxaKm()),r.km(),agora());
+    }
+
+    /**
+     * Função que entrega a uma empresa as encomendas de uma rota já calculada. Tem de ser chamada com o lockSistema em exclusivo.
+     * @param t - Empresa que faz a rota.
+     * @param encs - Encomendas, pela ordem da rota.
+     * @param tempos - Tempo de entrega de cada encomenda.
+     * @param precos - Preço de entrega de cada encomenda.
+     * @param km - Kms da rota.
+     * @param agora - Momento em que a rota é atribuída.
+     */
+    private void aplicaRota(Transportadora t, List<Encomenda> encs, int[] tempos, double[] precos, double km, LocalDateTime agora){
+        int[] linhas = new int[encs.size()];
+        for(int i = 0; i < encs.size(); i++){
+            Encomenda e = encs.get(i);
+            e.setPrecoEntrega(precos[i]);
+            e.setTempoDeEspera(tempos[i]);
+            e.setQPedidoEntregue(agora.plusMinutes(tempos[i]));
+            linhas[i] = this.arquivo.adiciona(e,t.getId());
         }
-        return fn;
+        t.aceitaRota(linhas,km);
+        atualizaEstado(t);
+        for(Encomenda e : encs) agendaEntrega(t.getId(),e);
+        for(int i = 0; i < encs.size(); i++)
+            registaEntrega(encs.get(i),linhas[i],this.utilizadoresPorId.get(encs.get(i).getUser()),agora);
+        regista(DIARIO_ROTA,null,o -> {
+            o.escreveString(t.getId());
+            o.escreveData(agora);
+            o.escreveInt(encs.size());
+            for(Encomenda e : encs) o.escreveString(e.getId());
+            o.escreveInts(tempos,tempos.length);
+            o.escreveDoubles(precos,precos.length);
+            o.escreveDouble(km);
+        });
     }
 
+    /**
+     * Função que entrega uma encomenda por enviar a um estafeta: calcula o tempo e o preço da entrega,
+     * passa-a ao estafeta e ao utilizador e move-a para o histórico.
+     * @param e - Encomenda a entregar.
+     * @param est - Estafeta escolhido.
+     * @param loja - Loja da encomenda.
+     * @param ut - Utilizador que fez a encomenda.
+     * @param agora - Momento da atribuição.
+     */
+    private void atribui(Encomenda e, Estafeta est, Loja loja, Utilizador ut, LocalDateTime agora){
+        GPS gpsLoja = loja.getGps();
+        GPS gpsUt = ut.getGps();
+        double dist = this.distancias.distancia(loja,ut);
+        int ret = CriterioSelecao.tempoDeEntrega(est,loja.tempoDoPedido(),gpsLoja,dist);
+        e.setPrecoEntrega(est.precoEntrega(gpsLoja,dist));
+        e.setTempoDeEspera(ret);
+        e.setQPedidoEntregue(agora.plusMinutes(ret));
+        // o histórico, os eventos e o diário têm de ver as atribuições pela mesma ordem
+        this.lockEncomendas.lock();
+        try {
+            int linha = this.arquivo.adiciona(e,est.getId());
+            est.aceitaEncomenda(linha,gpsLoja,gpsUt);
+            atualizaEstado(est);
+            agendaEntrega(est.getId(),e);
+            registaEntrega(e,linha,ut,agora);
+            regista(DIARIO_ATRIBUI,null,o -> {
+                o.escreveString(e.getId());
+                o.escreveString(est.getId());
+                o.escreveData(agora);
+            });
+        } finally {
+            this.lockEncomendas.unlock();
+        }
+    }
 
     /**
-     * Função que retorna o índice de uma empresa.
-     * @param id - Id da empresa.
-     * @return - Índice da empresa.
+     * Função que passa uma encomenda já atribuída de por enviar para o histórico.
+     * A encomenda já está guardada no histórico partilhado; o Sistema e o utilizador só guardam o número da linha.
+     * @param e - Encomenda aceite.
+     * @param linha - Número da linha da encomenda no HistoricoEncomendas.
+     * @param ut - Utilizador que fez a encomenda.
+     * @param agora - Momento em que a encomenda sai da fila.
      */
-    public int indiceEmp(String id){
-        int i = 0;
-        for(Transportadora t : this.empresas){
-            if(t.getId().equals(id)) break;
-            i++;
+    private void registaEntrega(Encomenda e, int linha, Utilizador ut, LocalDateTime agora){
+        synchronized(ut){
+            ut.addEncomenda(linha);
+        }
+        this.alterados.add(ut.getId());
+        this.utilizadoresLeitura.invalida();
+        this.lockEncomendas.lock();
+        try {
+            this.encomendasAceites.add(new AceitaEncomenda(e.getId()));
+            this.encomendasPorEnviar.remove(e.getId(),agora);
+            this.encomendasAlteradas.add(e.getId());
+            this.historicoEncomendas.adiciona(linha);
+            this.aceitesLeitura.invalida();
+            this.porEnviarLeitura.invalida();
+            this.historicoLeitura.invalida();
+        } finally {
+            this.lockEncomendas.unlock();
         }
-        return i;
     }
 
     /**
-     * Função que retorna o índice de um voluntário.
-     * @param id - Id do voluntário.
-     * @return - Índice do voluntário.
+     * Função que agenda o fim de uma entrega para o momento em que a encomenda chega ao utilizador.
+     * @param estafeta - Id do estafeta que faz a entrega.
+     * @param e - Encomenda entregue.
      */
-    public int indiceVol(String id){
-        int i = 0;
-        for(Voluntario v : this.voluntarios){
-            if(v.getId().equals(id)) break;
-            i++;
+    private void agendaEntrega(String estafeta, Encomenda e){
+        this.lockEncomendas.lock();
+        try {
+            this.entregasEmCurso.add(new Evento(e.getQPedidoEntregue(),estafeta,e.getId(),this.seqEventos++));
+            this.emCursoPorEstafeta.merge(estafeta,1,Integer::sum);
+        } finally {
+            this.lockEncomendas.unlock();
         }
-        return i;
     }
 
     /**
-     * Função que retorna o índice de um utilizador.
-     * @param id - Id do utilizador.
-     * @return - Índice do utilizador.
+     * Função que dá o momento em que termina a próxima entrega em curso.
+     * @return - Esse momento, ou null se não houver entregas em curso.
      */
-    public int indiceUtil(String id){
-        int i = 0;
-        for(Utilizador u : this.utilizadores){
-            if(u.getId().equals(id)) break;
-            i++;
+    public LocalDateTime proximaEntrega(){
+        this.lockEncomendas.lock();
+        try {
+            Evento ev = this.entregasEmCurso.peek();
+            return ev == null ? null : ev.getQuando();
+        } finally {
+            this.lockEncomendas.unlock();
         }
-        return i;
     }
 
+    /**
+     * Método que dá o número de entregas em curso.
+     * @return - Número de entregas que ainda não terminaram.
+     */
+    public int entregasEmCurso(){
+        this.lockEncomendas.lock();
+        try {
+            return this.entregasEmCurso.size();
+        } finally {
+            this.lockEncomendas.unlock();
+        }
+    }
 
+    /**
+     * Função que dá por terminadas todas as entregas até um momento.
+     * Quando um estafeta acaba a última entrega que tinha em curso, volta a ficar livre.
+     * @param ate - Momento até onde as entregas terminam.
+     * @return - Número de entregas terminadas.
+     */
+    public int concluiEntregas(LocalDateTime ate){
+        int ret = 0;
+        List<String> livres = new ArrayList<>();
+        this.lockSistema.readLock().lock();
+        try {
+            this.lockEncomendas.lock();
+            try {
+                regista(DIARIO_CONCLUI,null,o -> o.escreveData(ate));
+                while(!this.entregasEmCurso.isEmpty() && !this.entregasEmCurso.peek().getQuando().isAfter(ate)){
+                    String id = this.entregasEmCurso.poll().getEstafeta();
+                    ret++;
+                    Integer n = this.emCursoPorEstafeta.get(id);
+                    if(n == null || n <= 1){
+                        this.emCursoPorEstafeta.remove(id);
+                        livres.add(id);
+                    }
+                    else this.emCursoPorEstafeta.put(id,n - 1);
+                }
+            } finally {
+                this.lockEncomendas.unlock();
+            }
+            for(String id : livres) liberta(id,false);
+        } finally {
+            this.lockSistema.readLock().unlock();
+        }
+        confirmaDiario();
+        return ret;
+    }
 
     /**
      * Função que dá uma empresa transportadora a partir do seu id.
@@ -759,14 +1753,16 @@ public class Sistema implements Serializable {
      * @return - Empresa.
      */
     public Transportadora getEmpresa(String id){
-        Transportadora ret = new Transportadora();
-        for(Transportadora t : this.empresas){
-            if(t.getId().equals(id)){
-                ret = new Transportadora(t.clone());
-                break;
+        this.lockSistema.readLock().lock();
+        try {
+            Transportadora t = this.empresasPorId.get(id);
+            if(t == null) return new Transportadora();
+            synchronized(lockDe(id)){
+                return t.clone();
             }
+        } finally {
+            this.lockSistema.readLock().unlock();
         }
-        return ret;
     }
 
     /**
@@ -784,22 +1780,441 @@ public class Sistema implements Serializable {
     }
 
     /**
-     * Grava o estado da aplicação num determinado ficheiro.
+     * Grava o estado da aplicação num determinado ficheiro, no formato binário descrito junto de FORMATO_MAGIA.
+     * O estado é escrito num ficheiro temporário que só no fim substitui o anterior, para que uma gravação
+     * interrompida não estrague o último estado gravado.
      *
      * @param nomeficheiro Recebe o nome do ficheiro.
      * @throws IOException           Exception.
      * @throws FileNotFoundException Exception.
      */
     public void grava(String nomeficheiro) throws IOException {
-        FileOutputStream o = new FileOutputStream(nomeficheiro);
-        ObjectOutputStream r = new ObjectOutputStream(o);
-        r.writeObject(this);
-        r.flush();
-        r.close();
+        this.gravacao.acquireUninterruptibly();
+        try {
+            this.lockSistema.writeLock().lock();
+            try {
+                gravaAgora(nomeficheiro);
+            } finally {
+                this.lockSistema.writeLock().unlock();
+            }
+        } finally {
+            this.gravacao.release();
+        }
+    }
+
+    /**
+     * Função que grava o estado na thread que a chama. Tem de ser chamada com o lockSistema em exclusivo
+     * e com a vez de gravar (o semáforo gravacao).
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void gravaAgora(String nomeficheiro) throws IOException {
+        Path temporario = Paths.get(nomeficheiro + ".tmp");
+        boolean comDiario = nomeficheiro.equals(this.ficheiroDiario);
+        // o diário só é apagado depois de o novo estado estar no sítio; até lá o anterior e o diário
+        // continuam a dar o estado atual
+        if(comDiario) this.geracaoDiario++;
+        this.cadeia = null;
+        this.idCadeia = novaCadeia();
+        escreveBinario(temporario,CatalogoProdutos.tamanho(),0,segmento(nomeficheiro,this.idCadeia));
+        Files.move(temporario,Paths.get(nomeficheiro),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+        marcaGravado();
+        comecaCadeia(nomeficheiro);
+        if(comDiario) reiniciaDiario(nomeficheiro);
+    }
+
+    /**
+     * Função que recomeça o diário depois de o estado com que ele acaba ter sido gravado.
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void reiniciaDiario(String nomeficheiro) throws IOException {
+        Path ficheiro = Paths.get(nomeficheiro + ".diario");
+        this.diario = this.diario == null ? new Diario(ficheiro,this.geracaoDiario,-1)
+                                          : this.diario.reinicia(ficheiro,this.geracaoDiario);
+        Files.deleteIfExists(Paths.get(nomeficheiro + ".diario.anterior"));
+    }
+
+    /**
+     * Grava só o que mudou desde a última gravação para o mesmo ficheiro, num delta nomeficheiro.delta.k que
+     * carrega aplica a seguir à base (a última gravação completa) e aos deltas anteriores: as entidades alteradas,
+     * as encomendas acrescentadas ao histórico, as que entraram ou saíram da fila e as partes pequenas do estado
+     * (entregas em curso, critério).
+     * O tempo de gravação depende assim do número de alterações e não do tamanho do histórico.
+     * Se não houver base para este ficheiro, ou se já houver DELTAS_POR_BASE deltas, é feita em vez disso uma
+     * gravação completa em fundo (ver gravaEmFundo), que passa a ser a base e apaga os deltas.
+     *
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @return Devolve o tempo de pausa e a duração da gravação.
+     * @throws IOException Exception.
+     */
+    public EstatisticasGravacao gravaIncremental(String nomeficheiro) throws IOException {
+        this.gravacao.acquireUninterruptibly();
+        try {
+            this.lockSistema.writeLock().lock();
+            try {
+                if(nomeficheiro.equals(this.cadeia) && this.deltas < DELTAS_POR_BASE) return gravaDelta(nomeficheiro);
+            } finally {
+                this.lockSistema.writeLock().unlock();
+            }
+        } finally {
+            this.gravacao.release();
+        }
+        try {
+            return gravaEmFundo(nomeficheiro).join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Função que grava o próximo delta da cadeia. Tem de ser chamada com o lockSistema em exclusivo
+     * e com a vez de gravar.
+     * @param nomeficheiro Recebe o nome do ficheiro da base.
+     * @return Devolve o tempo de pausa e a duração da gravação.
+     * @throws IOException Se a escrita falhar.
+     */
+    private EstatisticasGravacao gravaDelta(String nomeficheiro) throws IOException {
+        long inicio = System.nanoTime();
+        int k = this.deltas + 1;
+        Path destino = delta(nomeficheiro,k);
+        Path temporario = Paths.get(destino + ".tmp");
+        boolean comDiario = nomeficheiro.equals(this.ficheiroDiario);
+        if(comDiario) this.geracaoDiario++;
+        escreveBinario(temporario,CatalogoProdutos.tamanho(),k,null);
+        long bytes = Files.size(temporario);
+        Files.move(temporario,destino,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+        this.deltas = k;
+        marcaGravado();
+        if(comDiario) reiniciaDiario(nomeficheiro);
+        long duracao = System.nanoTime() - inicio;
+        return new EstatisticasGravacao(duracao,duracao,bytes);
+    }
+
+    /**
+     * Função que dá o caminho de um delta.
+     * @param nomeficheiro Nome do ficheiro da base.
+     * @param k Número do delta, a começar em 1.
+     * @return Devolve o caminho.
+     */
+    private static Path delta(String nomeficheiro, int k) {
+        return Paths.get(nomeficheiro + ".delta." + k);
+    }
+
+    /**
+     * Função que dá o caminho do segmento com o histórico de uma base.
+     * @param nomeficheiro Nome do ficheiro da base.
+     * @param idCadeia Número que identifica a base.
+     * @return Devolve o caminho.
+     */
+    private static Path segmento(String nomeficheiro, long idCadeia) {
+        return Paths.get(nomeficheiro + ".historico." + Long.toHexString(idCadeia));
+    }
+
+    /**
+     * Função que dá um número novo para identificar uma base e os deltas que se lhe seguem.
+     * @return Devolve um número diferente de 0.
+     */
+    private static long novaCadeia() {
+        long ret;
+        do ret = ThreadLocalRandom.current().nextLong(); while(ret == 0);
+        return ret;
+    }
+
+    /**
+     * Função que regista que o estado atual está todo gravado: os deltas seguintes começam aqui.
+     * Tem de ser chamada com o lockSistema em exclusivo.
+     */
+    private void marcaGravado() {
+        this.linhasGravadas = this.arquivo.tamanho();
+        this.aceitesGravados = this.encomendasAceites.size();
+        this.indicesGravados = this.historicoEncomendas.tamanho();
+        this.alterados.clear();
+        this.encomendasAlteradas.clear();
+    }
+
+    /**
+     * Função que começa uma cadeia de deltas depois de uma base ter sido gravada, apagando os deltas e os segmentos
+     * das bases anteriores. Tem de ser chamada com a vez de gravar. Toma o lockSistema em exclusivo só para mudar
+     * a cadeia, por isso a thread de uma gravação em fundo chama-a sem ele; gravaAgora chama-a já com ele em
+     * exclusivo, o que o lock permite por ser reentrante, e nesse caso os ficheiros são apagados com o lock na mão.
+     * @param nomeficheiro Nome do ficheiro da base.
+     * @throws IOException Se não for possível apagar os deltas.
+     */
+    private void comecaCadeia(String nomeficheiro) throws IOException {
+        Path atual;
+        this.lockSistema.writeLock().lock();
+        try {
+            this.cadeia = nomeficheiro;
+            this.deltas = 0;
+            atual = segmento(nomeficheiro,this.idCadeia);
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        for(int k = 1; Files.deleteIfExists(delta(nomeficheiro,k)); k++);
+        String prefixo = Paths.get(nomeficheiro).getFileName() + ".historico.";
+        Path pasta = atual.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> ps = Files.newDirectoryStream(pasta,p -> p.getFileName().toString().startsWith(prefixo))) {
+            for(Path p : ps){
+                if(p.getFileName().equals(atual.getFileName())) continue;
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    // ainda mapeado (em Windows não se pode apagar); fica para a próxima base
+                }
+            }
+        }
+    }
+
+    /**
+     * Grava o estado da aplicação noutra thread, sem parar as encomendas durante a escrita.
+     * Com o lockSistema em exclusivo só é tirada uma fotografia do estado: as entidades e a fila são copiadas e o
+     * histórico, que só cresce, é partilhado até à linha em que estava (ver HistoricoEncomendas.vista). A fotografia
+     * é depois escrita, como em grava, por uma thread própria. Se as alterações estiverem a ser registadas num diário
+     * para o mesmo ficheiro, o diário passa nesse momento para diario.anterior e as alterações seguintes vão para um
+     * diário novo, que se aplica ao estado que está a ser gravado; recupera usa os dois enquanto a gravação não acabar.
+     * Se ainda houver um diario.anterior (de uma gravação em fundo que não acabou), a gravação é feita como em grava,
+     * porque esse diário ainda é preciso. Só há uma gravação de cada vez: uma nova espera que a anterior acabe.
+     *
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @return Devolve a gravação em curso, que acaba com o tempo de pausa e a duração da gravação.
+     */
+    public CompletableFuture<EstatisticasGravacao> gravaEmFundo(String nomeficheiro) {
+        CompletableFuture<EstatisticasGravacao> ret = new CompletableFuture<>();
+        Path destino = Paths.get(nomeficheiro);
+        Path temporario = Paths.get(nomeficheiro + ".tmp");
+        Path anterior = Paths.get(nomeficheiro + ".diario.anterior");
+        this.gravacao.acquireUninterruptibly();
+        long inicio = System.nanoTime();
+        Sistema vista;
+        int nProdutos;
+        boolean comDiario;
+        long pausa;
+        try {
+            this.lockSistema.writeLock().lock();
+            long bloqueio = System.nanoTime();
+            try {
+                comDiario = nomeficheiro.equals(this.ficheiroDiario);
+                if(comDiario && Files.exists(anterior)){
+                    gravaAgora(nomeficheiro);
+                    long fim = System.nanoTime();
+                    ret.complete(new EstatisticasGravacao(fim - bloqueio,fim - inicio,Files.size(destino)));
+                    return ret;
+                }
+                if(comDiario){
+                    Path ficheiro = Paths.get(nomeficheiro + ".diario");
+                    if(this.diario != null){
+                        this.diario.close();
+                        Files.move(ficheiro,anterior,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    this.geracaoDiario++;
+                    this.diario = new Diario(ficheiro,this.geracaoDiario,-1);
+                }
+                this.cadeia = null;
+                this.idCadeia = novaCadeia();
+                vista = vista();
+                nProdutos = CatalogoProdutos.tamanho();
+                marcaGravado();
+            } finally {
+                pausa = System.nanoTime() - bloqueio;
+                this.lockSistema.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            ret.completeExceptionally(e);
+            return ret;
+        } finally {
+            if(ret.isDone()) this.gravacao.release();
+        }
+        Thread t = new Thread(() -> {
+            try {
+                vista.escreveBinario(temporario,nProdutos,0,segmento(nomeficheiro,vista.idCadeia));
+                long bytes = Files.size(temporario);
+                Files.move(temporario,destino,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+                if(comDiario) Files.deleteIfExists(anterior);
+                comecaCadeia(nomeficheiro);
+                ret.complete(new EstatisticasGravacao(pausa,System.nanoTime() - inicio,bytes));
+            } catch (Throwable e) {
+                ret.completeExceptionally(e);
+            } finally {
+                this.gravacao.release();
+            }
+        },"gravacao-" + nomeficheiro);
+        t.start();
+        return ret;
+    }
+
+    /**
+     * Função que tira uma fotografia do estado para ser gravada noutra thread. Tem de ser chamada com o lockSistema
+     * em exclusivo. A fotografia só serve para escreveBinario: não tem índices e partilha o histórico com este Sistema.
+     * @return Devolve a fotografia.
+     */
+    private Sistema vista() {
+        Sistema ret = new Sistema();
+        ret.utilizadores = copia(this.utilizadores,Utilizador::clone);
+        ret.empresas = copia(this.empresas,Transportadora::clone);
+        ret.voluntarios = copia(this.voluntarios,Voluntario::clone);
+        ret.lojas = copia(this.lojas,Loja::clone);
+        ret.arquivo = this.arquivo.vista();
+        ret.historicoEncomendas = this.historicoEncomendas.vista();
+        ret.encomendasPorEnviar = this.encomendasPorEnviar.clone();
+        ret.encomendasAceites = new ArrayList<>(this.encomendasAceites);
+        ret.criterio = this.criterio;
+        ret.entregasEmCurso = new PriorityQueue<>(this.entregasEmCurso);
+        ret.emCursoPorEstafeta = new HashMap<>(this.emCursoPorEstafeta);
+        ret.seqEventos = this.seqEventos;
+        ret.geracaoDiario = this.geracaoDiario;
+        ret.idCadeia = this.idCadeia;
+        return ret;
+    }
+
+    /**
+     * Função que escreve o estado no formato binário, inteiro ou só o que mudou desde a última gravação.
+     * Tem de ser chamada com o lockSistema em exclusivo, ou sobre uma fotografia tirada por vista.
+     * @param ficheiro Caminho do ficheiro a escrever.
+     * @param nProdutos Número de produtos do catálogo a escrever, que têm de incluir todos os do estado.
+     * @param delta 0 para escrever o estado inteiro, ou o número do delta a escrever.
+     * @param segmento Caminho do segmento onde escrever o histórico de uma base; não é usado nos deltas.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void escreveBinario(Path ficheiro, int nProdutos, int delta, Path segmento) throws IOException {
+        boolean base = delta == 0;
+        int linhas = this.linhasGravadas;
+        if(base){
+            try (SaidaBinaria o = new SaidaBinaria(segmento)) {
+                linhas = this.arquivo.escreveSegmento(o);
+                o.sincroniza();
+            }
+        }
+        try (SaidaBinaria o = new SaidaBinaria(ficheiro)) {
+            o.escreveInt(FORMATO_MAGIA);
+            o.escreveInt(FORMATO_VERSAO);
+
+            o.abreSecao(SECAO_CADEIA);
+            o.escreveLong(this.idCadeia);
+            o.escreveInt(delta);
+            o.escreveInt(base ? 0 : this.linhasGravadas);
+            o.escreveInt(base ? 0 : this.aceitesGravados);
+            o.escreveInt(base ? 0 : this.indicesGravados);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_PRODUTOS);
+            o.escreveInt(nProdutos);
+            for(int i = 0; i < nProdutos; i++){
+                Produto p = CatalogoProdutos.produto(i);
+                o.escreveString(p.getCodigo());
+                o.escreveString(p.getNome());
+            }
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_UTILIZADORES);
+            List<Utilizador> us = base ? this.utilizadores : alterados(this.utilizadores,Utilizador::getId);
+            o.escreveInt(us.size());
+            for(Utilizador u : us) u.escreve(o);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_LOJAS);
+            List<Loja> ls = base ? this.lojas : alterados(this.lojas,Loja::getId);
+            o.escreveInt(ls.size());
+            for(Loja l : ls) l.escreve(o);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_VOLUNTARIOS);
+            List<Voluntario> vs = base ? this.voluntarios : alterados(this.voluntarios,Voluntario::getId);
+            o.escreveInt(vs.size());
+            for(Voluntario v : vs) v.escreve(o);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_EMPRESAS);
+            List<Transportadora> ts = base ? this.empresas : alterados(this.empresas,Transportadora::getId);
+            o.escreveInt(ts.size());
+            for(Transportadora t : ts) t.escreve(o);
+            o.fechaSecao();
+
+            if(base){
+                o.abreSecao(SECAO_SEGMENTO);
+                o.escreveString(segmento.getFileName().toString());
+                o.escreveInt(linhas);
+                o.fechaSecao();
+            }
+
+            o.abreSecao(SECAO_HISTORICO);
+            this.arquivo.escreve(o,linhas);
+            this.historicoEncomendas.escreve(o,base ? 0 : this.indicesGravados);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_POR_ENVIAR);
+            if(base) this.encomendasPorEnviar.escreve(o);
+            else this.encomendasPorEnviar.escreve(o,this.encomendasAlteradas);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_ACEITES);
+            int desde = base ? 0 : this.aceitesGravados;
+            o.escreveInt(this.encomendasAceites.size() - desde);
+            for(AceitaEncomenda a : this.encomendasAceites.subList(desde,this.encomendasAceites.size())) o.escreveString(a.getE());
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_ENTREGAS);
+            o.escreveInt(this.entregasEmCurso.size());
+            for(Evento ev : this.entregasEmCurso) ev.escreve(o);
+            o.escreveInt(this.emCursoPorEstafeta.size());
+            for(Map.Entry<String,Integer> e : this.emCursoPorEstafeta.entrySet()){
+                o.escreveString(e.getKey());
+                o.escreveInt(e.getValue());
+            }
+            o.escreveLong(this.seqEventos);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_CRITERIO);
+            escreveCriterio(o,this.criterio);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_DIARIO);
+            o.escreveLong(this.geracaoDiario);
+            o.fechaSecao();
+
+            o.abreSecao(SECAO_FIM);
+            o.fechaSecao();
+            o.sincroniza();
+        }
+    }
+
+    /**
+     * Função que dá as entidades de uma lista que foram alteradas desde a última gravação.
+     * @param l Lista de entidades.
+     * @param id Função que dá o id de uma entidade.
+     * @return Devolve as entidades alteradas, pela ordem da lista.
+     */
+    private <T> List<T> alterados(List<T> l, Function<T,String> id) {
+        List<T> ret = new ArrayList<>();
+        for(T x : l) if(this.alterados.contains(id.apply(x))) ret.add(x);
+        return ret;
+    }
+
+    /**
+     * Função que junta a uma lista as entidades lidas de um delta: cada uma substitui a que tem o mesmo id
+     * ou, se não houver, é acrescentada no fim.
+     * @param l Lista de entidades.
+     * @param novas Entidades lidas.
+     * @param id Função que dá o id de uma entidade.
+     */
+    private static <T> void junta(List<T> l, List<T> novas, Function<T,String> id) {
+        if(novas.isEmpty()) return;
+        Map<String,Integer> posicao = new HashMap<>();
+        for(int i = 0; i < l.size(); i++) posicao.putIfAbsent(id.apply(l.get(i)),i);
+        for(T x : novas){
+            Integer i = posicao.get(id.apply(x));
+            if(i != null) l.set(i,x);
+            else {
+                posicao.put(id.apply(x),l.size());
+                l.add(x);
+            }
+        }
     }
 
     /**
      * Iniciar a aplicação com o estado guardado num determinado ficheiro.
+     * Aceita também os ficheiros antigos, gravados com a serialização do Java.
      *
      * @param nomeficheiro Recebe o nome do ficheiro.
      * @return Devolve a aplicação inciada.
@@ -808,22 +2223,530 @@ public class Sistema implements Serializable {
      * @throws FileNotFoundException  Exception.
      */
     public static Sistema carrega(String nomeficheiro) throws IOException, ClassNotFoundException {
-        FileInputStream r = new FileInputStream(nomeficheiro);
-        ObjectInputStream o = new ObjectInputStream(r);
-        Sistema g = (Sistema) o.readObject();
-        o.close();
+        return carrega(nomeficheiro,false);
+    }
+
+    /**
+     * Iniciar a aplicação com o estado guardado num determinado ficheiro, podendo deixar o histórico por ler.
+     * Com historicoMapeado, as entidades, a fila e os aceites são lidos já, mas o histórico da base fica no seu
+     * segmento, mapeado em memória, e cada encomenda só é lida quando é pedida (por exemplo por
+     * Utilizador.getEncomendas ou Transportadora.getEncomendasFeitas). O tempo até a aplicação estar pronta deixa
+     * assim de depender do tamanho do histórico. As encomendas entregues depois ficam em memória, como antes.
+     *
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @param historicoMapeado true para mapear o histórico, false para o ler todo já.
+     * @return Devolve a aplicação inciada.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    public static Sistema carrega(String nomeficheiro, boolean historicoMapeado) throws IOException, ClassNotFoundException {
+        Sistema g = new Sistema();
+        try (EntradaBinaria in = new EntradaBinaria(Paths.get(nomeficheiro))) {
+            int magia = in.leInt();
+            if ((magia >>> 16) == 0xACED) return carregaSerializado(nomeficheiro);
+            if (magia != FORMATO_MAGIA) throw new IOException("O ficheiro " + nomeficheiro + " não é um estado gravado");
+            g.leSecoes(in,Paths.get(nomeficheiro),0,historicoMapeado);
+        }
+        // os deltas aplicam-se pela ordem até faltar um ou aparecer um de outra base (de uma gravação completa
+        // que acabou antes de os deltas antigos serem apagados)
+        int k = 0;
+        for(Path p = delta(nomeficheiro,1); Files.exists(p); p = delta(nomeficheiro,k + 1)){
+            try (EntradaBinaria in = new EntradaBinaria(p)) {
+                if (in.leInt() != FORMATO_MAGIA || !g.leSecoes(in,Paths.get(nomeficheiro),k + 1,false)) break;
+            }
+            k++;
+        }
+        g.reconstroiIndices();
+        g.cadeia = g.idCadeia == 0 ? null : nomeficheiro;
+        g.deltas = k;
+        g.marcaGravado();
+        return g;
+    }
+
+    /**
+     * Função que lê as secções de uma base ou de um delta e as aplica a este Sistema.
+     * @param in Ficheiro de onde ler, a seguir à FORMATO_MAGIA.
+     * @param base Caminho da base, ao lado da qual estão os segmentos.
+     * @param delta 0 para uma base, ou o número do delta que se espera ler.
+     * @param historicoMapeado true para mapear o segmento do histórico em vez de o ler.
+     * @return Devolve false, sem alterar nada, se o delta não for o seguinte da cadeia deste Sistema.
+     * @throws IOException Se a leitura falhar.
+     */
+    private boolean leSecoes(EntradaBinaria in, Path base, int delta, boolean historicoMapeado) throws IOException {
+        int versao = in.leInt();
+        if (versao < 1 || versao > FORMATO_VERSAO) throw new IOException("Versão " + versao + " do ficheiro não suportada");
+        Produto[] produtos = new Produto[0];
+        boolean primeira = true;
+        for(int tipo = in.proximaSecao(); tipo != SECAO_FIM; tipo = in.proximaSecao()){
+            if (primeira && delta > 0 && tipo != SECAO_CADEIA) return false;
+            primeira = false;
+            switch (tipo) {
+                case SECAO_CADEIA:
+                    long id = in.leLong();
+                    int k = in.leInt(), linhas = in.leInt(), aceites = in.leInt(), indices = in.leInt();
+                    if (delta == 0) this.idCadeia = id;
+                    else if (id != this.idCadeia || k != delta || linhas != this.arquivo.tamanho()
+                            || aceites != this.encomendasAceites.size() || indices != this.historicoEncomendas.tamanho())
+                        return false;
+                    break;
+                case SECAO_PRODUTOS:
+                    produtos = new Produto[in.leInt()];
+                    for(int i = 0; i < produtos.length; i++){
+                        String codigo = in.leString();
+                        produtos[i] = CatalogoProdutos.produto(codigo,in.leString());
+                    }
+                    break;
+                case SECAO_UTILIZADORES:
+                    List<Utilizador> us = new ArrayList<>();
+                    for(int i = in.leInt(); i > 0; i--) us.add(Utilizador.le(in));
+                    if (delta == 0) this.utilizadores.addAll(us);
+                    else junta(this.utilizadores,us,Utilizador::getId);
+                    break;
+                case SECAO_LOJAS:
+                    List<Loja> ls = new ArrayList<>();
+                    for(int i = in.leInt(); i > 0; i--) ls.add(Loja.le(in));
+                    if (delta == 0) this.lojas.addAll(ls);
+                    else junta(this.lojas,ls,Loja::getId);
+                    break;
+                case SECAO_VOLUNTARIOS:
+                    List<Voluntario> vs = new ArrayList<>();
+                    for(int i = in.leInt(); i > 0; i--) vs.add(Voluntario.le(in));
+                    if (delta == 0) this.voluntarios.addAll(vs);
+                    else junta(this.voluntarios,vs,Voluntario::getId);
+                    break;
+                case SECAO_EMPRESAS:
+                    List<Transportadora> ts = new ArrayList<>();
+                    for(int i = in.leInt(); i > 0; i--) ts.add(Transportadora.le(in));
+                    if (delta == 0) this.empresas.addAll(ts);
+                    else junta(this.empresas,ts,Transportadora::getId);
+                    break;
+                case SECAO_SEGMENTO:
+                    Path segmento = base.resolveSibling(in.leString());
+                    int linhasSegmento = in.leInt();
+                    if (!Files.exists(segmento)) throw new IOException("Falta o segmento do histórico " + segmento);
+                    this.arquivo.abreSegmento(segmento,produtos,historicoMapeado);
+                    if (this.arquivo.tamanho() != linhasSegmento) throw new IOException("O segmento " + segmento + " não é o desta base");
+                    break;
+                case SECAO_HISTORICO:
+                    this.arquivo.leMais(in,produtos);
+                    this.historicoEncomendas.leMais(in);
+                    break;
+                case SECAO_POR_ENVIAR:
+                    if (delta == 0) this.encomendasPorEnviar = FilaEncomendas.le(in,produtos);
+                    else this.encomendasPorEnviar.leAlteracoes(in,produtos);
+                    break;
+                case SECAO_ACEITES:
+                    for(int i = in.leInt(); i > 0; i--) this.encomendasAceites.add(new AceitaEncomenda(in.leString()));
+                    break;
+                case SECAO_ENTREGAS:
+                    this.entregasEmCurso = new PriorityQueue<>();
+                    for(int i = in.leInt(); i > 0; i--) this.entregasEmCurso.add(Evento.le(in));
+                    this.emCursoPorEstafeta = new HashMap<>();
+                    for(int i = in.leInt(); i > 0; i--){
+                        String est = in.leString();
+                        this.emCursoPorEstafeta.put(est,in.leInt());
+                    }
+                    this.seqEventos = in.leLong();
+                    break;
+                case SECAO_CRITERIO:
+                    this.criterio = leCriterio(in);
+                    break;
+                case SECAO_DIARIO:
+                    this.geracaoDiario = in.leLong();
+                    break;
+                default:
+                    in.saltaSecao();
+            }
+            in.fimDaSecao();
+        }
+        return true;
+    }
+
+    /**
+     * Função que lê um ficheiro gravado com a serialização do Java, o formato usado antes do binário.
+     * @param nomeficheiro Recebe o nome do ficheiro.
+     * @return Devolve a aplicação lida.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    private static Sistema carregaSerializado(String nomeficheiro) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream o = new ObjectInputStream(new BufferedInputStream(new FileInputStream(nomeficheiro)))) {
+            return (Sistema) o.readObject();
+        }
+    }
+
+    /**
+     * Iniciar a aplicação depois de uma paragem, com ou sem gravação: carrega o último estado gravado (se houver),
+     * repete as alterações registadas no diário desde então e continua a registar no mesmo diário.
+     * Um registo cortado a meio no fim do diário é ignorado, porque a alteração correspondente nunca foi confirmada.
+     * O histórico gravado fica mapeado em memória (ver carrega), para que a aplicação fique pronta logo.
+     *
+     * @param nomeficheiro Recebe o nome do ficheiro; o diário é nomeficheiro + ".diario".
+     * @return Devolve a aplicação inciada.
+     * @throws IOException            Exception.
+     * @throws ClassNotFoundException Exception.
+     */
+    public static Sistema recupera(String nomeficheiro) throws IOException, ClassNotFoundException {
+        Sistema g = Files.exists(Paths.get(nomeficheiro)) ? carrega(nomeficheiro,true) : new Sistema();
+        // se uma gravação em fundo não chegou ao fim, o diário que ela fechou ainda faz falta
+        // e o diário atual é o da geração seguinte
+        if(Diario.repete(Paths.get(nomeficheiro + ".diario.anterior"),g.geracaoDiario,g::aplicaRegisto) >= 0)
+            g.geracaoDiario++;
+        Path ficheiro = Paths.get(nomeficheiro + ".diario");
+        long fim = Diario.repete(ficheiro,g.geracaoDiario,g::aplicaRegisto);
+        g.ficheiroDiario = nomeficheiro;
+        g.diario = new Diario(ficheiro,g.geracaoDiario,fim);
         return g;
     }
 
+    /**
+     * Função que passa a registar as alterações num diário, a partir de um estado gravado agora.
+     * As gravações seguintes para o mesmo ficheiro recomeçam o diário.
+     * A gravação é feita depois de largar o lockSistema, porque grava espera pela vez de gravar (o semáforo
+     * gravacao) e só depois toma o lock, a ordem que todas as gravações seguem.
+     * @param nomeficheiro Recebe o nome do ficheiro; o diário é nomeficheiro + ".diario".
+     * @throws IOException Exception.
+     */
+    public void abreDiario(String nomeficheiro) throws IOException {
+        this.lockSistema.writeLock().lock();
+        try {
+            this.ficheiroDiario = nomeficheiro;
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        grava(nomeficheiro);
+    }
+
+    /**
+     * Função que deixa de registar as alterações, depois de confirmar as que faltam.
+     * @throws IOException Exception.
+     */
+    public void fechaDiario() throws IOException {
+        this.lockSistema.writeLock().lock();
+        try {
+            if(this.diario != null) this.diario.close();
+            this.diario = null;
+            this.ficheiroDiario = null;
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Método que dá o diário onde as alterações estão a ser registadas.
+     * @return Devolve o diário, ou null se as alterações não estiverem a ser registadas.
+     */
+    public Diario getDiario(){
+        return this.diario;
+    }
+
+    /**
+     * Função que acrescenta um registo ao diário, se houver, sem esperar que chegue ao disco.
+     * Tem de ser chamada com o lock que ordena a alteração em relação às outras do mesmo estado.
+     * @param tipo - Tipo do registo.
+     * @param linhas - Linhas de encomenda cujos produtos o registo refere, ou null.
+     * @param conteudo - Conteúdo do registo.
+     */
+    private void regista(int tipo, List<LinhaEncomenda> linhas, Diario.Conteudo conteudo){
+        Diario d = this.diario;
+        if(d == null) return;
+        try {
+            if(linhas != null) d.acrescentaProdutos(linhas);
+            d.acrescenta(tipo,conteudo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Função que espera até que os registos feitos até agora estejam no disco. Deve ser chamada sem locks,
+     * para que as threads que esperam ao mesmo tempo partilhem a mesma escrita.
+     */
+    private void confirmaDiario(){
+        Diario d = this.diario;
+        if(d == null) return;
+        try {
+            d.confirma();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Função que repete uma alteração lida do diário. Enquanto o diário é repetido ainda não há diário aberto,
+     * pelo que as alterações não voltam a ser registadas.
+     * @param tipo - Tipo do registo.
+     * @param in - Conteúdo do registo.
+     * @param produtos - Produtos referidos pelos registos, pelo número que tinham quando foram escritos.
+     * @throws IOException Se o registo estiver mal formado.
+     */
+    private void aplicaRegisto(int tipo, EntradaBinaria in, Produto[] produtos) throws IOException {
+        switch (tipo) {
+            case DIARIO_UTILIZADOR:
+                Utilizador u = Utilizador.le(in);
+                this.utilizadores.add(u);
+                indexa(u);
+                this.alterados.add(u.getId());
+                break;
+            case DIARIO_LOJA:
+                Loja l = Loja.le(in);
+                this.lojas.add(l);
+                indexa(l);
+                this.alterados.add(l.getId());
+                break;
+            case DIARIO_VOLUNTARIO:
+                Voluntario v = Voluntario.le(in);
+                this.voluntarios.add(v);
+                indexa(v);
+                this.alterados.add(v.getId());
+                break;
+            case DIARIO_TRANSPORTADORA:
+                Transportadora t = Transportadora.le(in);
+                this.empresas.add(t);
+                indexa(t);
+                this.alterados.add(t.getId());
+                break;
+            case DIARIO_FINALIZA:
+                int tempoLoja = in.leInt();
+                Encomenda nova = Encomenda.le(in,produtos);
+                this.encomendasPorEnviar.adiciona(nova,tempoLoja);
+                this.encomendasAlteradas.add(nova.getId());
+                this.porEnviarLeitura.invalida();
+                break;
+            case DIARIO_ATRIBUI:
+                Encomenda e = this.encomendasPorEnviar.get(in.leString());
+                if(e != null) e = e.clone();
+                String idEst = in.leString();
+                Estafeta est = this.voluntariosPorId.get(idEst);
+                if(est == null) est = this.empresasPorId.get(idEst);
+                if(e == null || est == null) throw new IOException("Atribuição no diário sem encomenda ou estafeta");
+                atribui(e,est,this.lojasPorId.get(e.getLoja()),this.utilizadoresPorId.get(e.getUser()),in.leData());
+                break;
+            case DIARIO_ROTA:
+                Transportadora emp = this.empresasPorId.get(in.leString());
+                LocalDateTime quando = in.leData();
+                int n = in.leInt();
+                List<Encomenda> encs = new ArrayList<>(n);
+                for(int i = 0; i < n; i++){
+                    Encomenda enc = this.encomendasPorEnviar.get(in.leString());
+                    if(enc == null) throw new IOException("Rota no diário com uma encomenda que não está por enviar");
+                    encs.add(enc.clone());
+                }
+                int[] tempos = new int[n];
+                in.leInts(tempos,n);
+                double[] precos = new double[n];
+                in.leDoubles(precos,n);
+                if(emp == null) throw new IOException("Rota no diário sem empresa");
+                aplicaRota(emp,encs,tempos,precos,in.leDouble(),quando);
+                break;
+            case DIARIO_CONCLUI:
+                concluiEntregas(in.leData());
+                break;
+            case DIARIO_TORNA_LIVRE:
+                tornaLivre(in.leString());
+                break;
+            case DIARIO_FREE_ALL:
+                freeAll();
+                break;
+            case DIARIO_CLASSIFICA:
+                String cod = in.leString();
+                classificarTransportadora(cod,in.leInt());
+                break;
+            case DIARIO_FILA:
+                String idLoja = in.leString();
+                setFilaDeEspera(idLoja,in.leInt());
+                break;
+            case DIARIO_CRITERIO:
+                setCriterio(leCriterio(in));
+                break;
+            default:
+                throw new IOException("Tipo de registo do diário desconhecido: " + tipo);
+        }
+    }
+
+    /**
+     * Função que escreve o critério de seleção. Os critérios conhecidos são escritos pelo tipo e pelos pesos;
+     * os outros (por exemplo lambdas serializáveis) com a serialização do Java.
+     * @param o Ficheiro onde escrever.
+     * @param c Critério.
+     * @throws IOException Se a escrita falhar.
+     */
+    private static void escreveCriterio(SaidaBinaria o, CriterioSelecao c) throws IOException {
+        if (c.getClass() == CriterioSelecao.MenorTempo.class) {
+            o.escreveInt(CRITERIO_MENOR_TEMPO);
+        } else if (c.getClass() == CriterioSelecao.MenorPreco.class) {
+            o.escreveInt(CRITERIO_MENOR_PRECO);
+        } else if (c.getClass() == CriterioSelecao.Ponderado.class) {
+            CriterioSelecao.Ponderado p = (CriterioSelecao.Ponderado) c;
+            o.escreveInt(CRITERIO_PONDERADO);
+            o.escreveDouble(p.getPesoTempo());
+            o.escreveDouble(p.getPesoPreco());
+        } else if (c.getClass() == CriterioSelecao.ComClassificacao.class) {
+            CriterioSelecao.ComClassificacao cc = (CriterioSelecao.ComClassificacao) c;
+            o.escreveInt(CRITERIO_COM_CLASSIFICACAO);
+            escreveCriterio(o,cc.getBase());
+            o.escreveDouble(cc.getPesoPorPonto());
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream r = new ObjectOutputStream(bytes)) {
+                r.writeObject(c);
+            }
+            o.escreveInt(CRITERIO_SERIALIZADO);
+            o.escreveInt(bytes.size());
+            o.escreveBytes(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Função que lê um critério escrito por escreveCriterio.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve o critério.
+     * @throws IOException Se a leitura falhar ou o tipo for desconhecido.
+     */
+    private static CriterioSelecao leCriterio(EntradaBinaria in) throws IOException {
+        int tipo = in.leInt();
+        switch (tipo) {
+            case CRITERIO_MENOR_TEMPO:
+                return new CriterioSelecao.MenorTempo();
+            case CRITERIO_MENOR_PRECO:
+                return new CriterioSelecao.MenorPreco();
+            case CRITERIO_PONDERADO:
+                double pesoTempo = in.leDouble();
+                return new CriterioSelecao.Ponderado(pesoTempo,in.leDouble());
+            case CRITERIO_COM_CLASSIFICACAO:
+                CriterioSelecao base = leCriterio(in);
+                return new CriterioSelecao.ComClassificacao(base,in.leDouble());
+            case CRITERIO_SERIALIZADO:
+                byte[] bytes = in.leBytes(in.leInt());
+                try (ObjectInputStream r = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (CriterioSelecao) r.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException("Critério de seleção desconhecido", e);
+                }
+            default:
+                throw new IOException("Tipo de critério desconhecido: " + tipo);
+        }
+    }
+
     /**
      * Função que torna todos os voluntários e empresas transportadoras livres para transportar encomendas.
      */
     public void freeAll(){
-        for(Transportadora t : this.empresas){
-            t.tornaLivre();
+        this.lockSistema.writeLock().lock();
+        try {
+            for(Transportadora t : this.empresas){
+                t.tornaLivre();
+                atualizaEstado(t);
+            }
+            for(Voluntario v : this.voluntarios){
+                v.tornaLivre();
+                atualizaEstado(v);
+            }
+            regista(DIARIO_FREE_ALL,null,o -> {});
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
+    }
+
+    /**
+     * Função que torna um voluntário ou empresa transportadora livre para transportar encomendas.
+     * @param id - Id do estafeta.
+     * @return - True se o estafeta existir, false caso contrário.
+     */
+    public boolean tornaLivre(String id){
+        boolean ret;
+        this.lockSistema.readLock().lock();
+        try {
+            ret = liberta(id,true);
+        } finally {
+            this.lockSistema.readLock().unlock();
+        }
+        confirmaDiario();
+        return ret;
+    }
+
+    /**
+     * Função que torna um estafeta livre.
+     * @param id - Id do estafeta.
+     * @param regista - True para registar a alteração no diário; as entregas concluídas já são registadas por concluiEntregas.
+     * @return - True se o estafeta existir, false caso contrário.
+     */
+    private boolean liberta(String id, boolean regista){
+        Estafeta est = this.voluntariosPorId.get(id);
+        if(est == null) est = this.empresasPorId.get(id);
+        if(est == null) return false;
+        synchronized(lockDe(id)){
+            est.tornaLivre();
+            atualizaEstado(est);
+            if(regista) regista(DIARIO_TORNA_LIVRE,null,o -> o.escreveString(id));
         }
-        for(Voluntario v : this.voluntarios){
-            v.tornaLivre();
+        return true;
+    }
+
+    /**
+     * Função que muda o número de pessoas na fila de espera de uma loja.
+     * @param id - Id da loja.
+     * @param fila - Número de pessoas na fila.
+     * @return - True se a loja existir, false caso contrário.
+     */
+    public boolean setFilaDeEspera(String id, int fila){
+        this.lockSistema.writeLock().lock();
+        try {
+            Loja l = this.lojasPorId.get(id);
+            if(l == null) return false;
+            l.setFilaDeEspera(fila);
+            this.alterados.add(id);
+            this.lojasLeitura.invalida();
+            regista(DIARIO_FILA,null,o -> {
+                o.escreveString(id);
+                o.escreveInt(fila);
+            });
+        } finally {
+            this.lockSistema.writeLock().unlock();
+        }
+        confirmaDiario();
+        return true;
+    }
+
+    /**
+     * Função que atualiza os conjuntos de estafetas livres depois de o estado de um estafeta mudar.
+     * @param est - Estafeta cujo estado mudou.
+     */
+    private void atualizaEstado(Estafeta est){
+        if(est instanceof Voluntario) atualizaEstado((Voluntario) est);
+        else if(est instanceof Transportadora) atualizaEstado((Transportadora) est);
+    }
+
+    /**
+     * Função que atualiza os conjuntos de voluntários livres depois de o estado de um voluntário mudar.
+     * @param v - Voluntário cujo estado mudou.
+     */
+    private void atualizaEstado(Voluntario v){
+        this.lockEstafetas.writeLock().lock();
+        try {
+            this.voluntariosLivres.atualiza(v);
+            this.voluntariosLivresMed.atualiza(v);
+            this.voluntariosLeitura.invalida();
+            this.alterados.add(v.getId());
+        } finally {
+            this.lockEstafetas.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Função que atualiza os conjuntos de empresas livres depois de o estado de uma empresa mudar.
+     * @param t - Empresa cujo estado mudou.
+     */
+    private void atualizaEstado(Transportadora t){
+        this.lockEstafetas.writeLock().lock();
+        try {
+            this.empresasLivres.atualiza(t);
+            this.empresasLivresMed.atualiza(t);
+            this.empresasLeitura.invalida();
+            this.alterados.add(t.getId());
+        } finally {
+            this.lockEstafetas.writeLock().unlock();
         }
     }
 
@@ -1,8 +1,38 @@
 package Models;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.*;
 
-public class Transportadora implements Serializable {
+public class Transportadora implements Estafeta, Serializable {
+    private static final long serialVersionUID = -2934565870000263469L;
+
+    /*
+     * Serialização do Java: a empresa é gravada com os campos que tinha antes da Classificacao e do
+     * HistoricoEncomendas partilhado (as classificações e as encomendas em listas), para que os ficheiros gravados
+     * nesse formato continuem a poder ser lidos. Uma empresa lida fica com um histórico só dela, até o Sistema a
+     * passar para o partilhado (ver mudaArquivo).
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("nome", String.class),
+            new ObjectStreamField("email", String.class),
+            new ObjectStreamField("password", String.class),
+            new ObjectStreamField("gps", GPS.class),
+            new ObjectStreamField("nif", int.class),
+            new ObjectStreamField("livre", boolean.class),
+            new ObjectStreamField("raio", double.class),
+            new ObjectStreamField("taxaKm", double.class),
+            new ObjectStreamField("numeroEnc", int.class),
+            new ObjectStreamField("classif", List.class),
+            new ObjectStreamField("encomendasFeitas", List.class),
+            new ObjectStreamField("kmPercorridos", double.class),
+            new ObjectStreamField("velocidadeMedia", double.class),
+            new ObjectStreamField("medica", boolean.class),
+            new ObjectStreamField("livreMed", boolean.class)
+    };
     private String id;
     private String nome;
     private String email;
@@ -13,8 +43,9 @@ public class Transportadora implements Serializable {
     private double raio;
     private double taxaKm;
     private int numeroEnc;
-    private List<Integer> classif;
-    private List<Encomenda> encomendasFeitas;
+    private Classificacao classif;
+    private HistoricoEncomendas arquivo;
+    private IndicesHistorico encomendasFeitas;
     private double kmPercorridos;
     private double velocidadeMedia;
     private boolean medica;
@@ -34,8 +65,9 @@ public class Transportadora implements Serializable {
         this.raio = 0;
         this.taxaKm = 0;
         this.numeroEnc = 0;
-        this.classif = new ArrayList<>();
-        this.encomendasFeitas = new ArrayList<>();
+        this.classif = new Classificacao();
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendasFeitas = new IndicesHistorico();
         this.kmPercorridos = 0;
         this.velocidadeMedia = 0;
         this.medica = false;
@@ -58,16 +90,17 @@ public class Transportadora implements Serializable {
         this.nome = n;
         this.email = email;
         this.password = password;
-        this.gps = new GPS(gps);
+        this.gps = gps;
         this.nif = nif;
         this.livre = livre;
         this.raio = raio;
         this.taxaKm = taxaKm;
         this.numeroEnc = numeroEnc;
-        this.classif = new ArrayList<>();
-        for(Integer i : classif) this.classif.add(i);
-        this.encomendasFeitas = new ArrayList<>();
-        for(Encomenda e : encomendasFeitas) this.encomendasFeitas.add(e.clone());
+        this.classif = new Classificacao();
+        for(Integer i : classif) this.classif.adiciona(i);
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendasFeitas = new IndicesHistorico();
+        for(Encomenda e : encomendasFeitas) this.encomendasFeitas.adiciona(this.arquivo.adiciona(e,t));
         this.kmPercorridos = km;
         this.velocidadeMedia = vel;
         this.medica = medica;
@@ -83,14 +116,15 @@ public class Transportadora implements Serializable {
         this.nome = t.getNome();
         this.email = t.getEmail();
         this.password = t.getPassword();
-        this.gps = new GPS(t.getGps());
+        this.gps = t.getGps();
         this.nif = t.getNif();
         this.livre = t.isLivre();
         this.raio = t.getRaio();
         this.taxaKm = t.getTaxaKm();
-        this.classif = t.getClassif();
+        this.classif = t.getClassificacao();
         this.numeroEnc = t.getNumeroEnc();
-        this.encomendasFeitas = t.getEncomendasFeitas();
+        this.arquivo = t.arquivo;
+        this.encomendasFeitas = t.encomendasFeitas.clone();
         this.kmPercorridos = t.getKmPercorridos();
         this.velocidadeMedia = t.getVelocidadeMedia();
         this.medica = t.aceitoTransporteMedicamentos();
@@ -147,9 +181,7 @@ public class Transportadora implements Serializable {
      * @return Lista de en
      */
     public List<Encomenda> getEncomendasFeitas() {
-        List<Encomenda> ret = new ArrayList<>();
-        for(Encomenda e : this.encomendasFeitas) ret.add(e.clone());
-        return ret;
+        return this.arquivo.encomendas(this.encomendasFeitas);
     }
 
     /**
@@ -212,14 +244,19 @@ public class Transportadora implements Serializable {
 
 
     /**
-     * Método que dá a lista de classificações.
-     * @return Devolve uma lista de Integers que representa a lista de classificações.
+     * Método que dá as classificações da empresa.
+     * @return Devolve uma cópia das classificações.
      */
-    public List<Integer> getClassif() {
-        List<Integer> ret = new ArrayList<>();
-        for(Integer i : ret)
-            ret.add(i);
-        return ret;
+    public Classificacao getClassificacao() {
+        return this.classif.clone();
+    }
+
+    /**
+     * Método que dá a média das classificações usada para comparar estafetas.
+     * @return Devolve essa média.
+     */
+    public double mediaAjustada() {
+        return this.classif.mediaAjustada();
     }
 
     /**
@@ -238,7 +275,7 @@ public class Transportadora implements Serializable {
                 v.getNif()==(this.nif) &&
                 v.getRaio()==(this.raio) &&
                 v.getTaxaKm()==(this.taxaKm) &&
-                v.getClassif().equals(this.classif);
+                v.getClassificacao().equals(this.classif);
     }
 
     /**
@@ -261,8 +298,8 @@ public class Transportadora implements Serializable {
                 .append("\nTransporta remédios: ").append(this.livreMed)
                 .append("\nVelocidade média: ").append(this.velocidadeMedia)
                 .append("\nNúmero de Kms percorridos: ").append(this.kmPercorridos)
-                .append("\nHistórico: ").append(this.encomendasFeitas)
-                .append("\nLista de Classificações:  ").append(this.classif);
+                .append("\nHistórico: ").append(getEncomendasFeitas())
+                .append("\n").append(this.classif);
         return sb.toString();
     }
 
@@ -276,11 +313,12 @@ public class Transportadora implements Serializable {
     }
 
     /**
-     * Função que adiciona uma classificação à lista de classificações.
-     * @param classificacao Recebe um Inteiro representante do valor da classificação a adicionar.
+     * Função que adiciona uma classificação às classificações da empresa.
+     * @param classificacao Recebe um Inteiro representante do valor da classificação a adicionar, de 0 a 10.
+     * @return Devolve true se foi aceite, false se estiver fora da escala.
      */
-    public void addClassificacao(int classificacao) {
-        this.classif.add(classificacao);
+    public boolean addClassificacao(int classificacao) {
+        return this.classif.adiciona(classificacao);
     }
 
     /**
@@ -302,9 +340,7 @@ public class Transportadora implements Serializable {
      * @return - Distância entre os dois pontos.
      */
     public double auxDist(GPS gps1, GPS gps2){
-        double d1 = Math.pow((gps2.getX() - gps1.getX()),2);
-        double d2 = Math.pow((gps2.getY() - gps2.getY()),2);
-        return Math.sqrt(d1+d2);
+        return gps1.distancia(gps2);
     }
 
     /**
@@ -317,6 +353,16 @@ public class Transportadora implements Serializable {
         return this.taxaKm * distEntrega(loja,utilizador);
     }
 
+    /**
+     * Função que calula o preço do transporte da encomenda.
+     * @param loja - Coordenadas GPS da loja.
+     * @param distLojaUtil - Distância da loja ao utilizador.
+     * @return - Preço do transporte.
+     */
+    public double precoEntrega(GPS loja, double distLojaUtil){
+        return this.taxaKm * (auxDist(this.gps,loja) + distLojaUtil);
+    }
+
 
     /**
      * Função que calcula o tempo que se demora a ir do local da transportadora até à loja.
@@ -336,8 +382,16 @@ public class Transportadora implements Serializable {
      * @return - Tempo calculado.
      */
     public int tempoDeVolta(GPS loja, GPS util){
-        double d = auxDist(loja,util);
-        double t = d/this.velocidadeMedia;
+        return tempoDeVolta(auxDist(loja,util));
+    }
+
+    /**
+     * Função que calcula o tempo que se demora a ir da loja até á casa do utilizador.
+     * @param distLojaUtil - Distância da loja ao utilizador.
+     * @return - Tempo calculado.
+     */
+    public int tempoDeVolta(double distLojaUtil){
+        double t = distLojaUtil/this.velocidadeMedia;
         return (int)t;
     }
 
@@ -346,8 +400,18 @@ public class Transportadora implements Serializable {
      * @param e - Encomenda a aceitar.
      */
     public void aceitaEncomenda(Encomenda e,GPS loja, GPS util) {
-        this.encomendasFeitas.add(e);
-        if((this.encomendasFeitas.size()% this.numeroEnc) == 0) {
+        aceitaEncomenda(this.arquivo.adiciona(e,this.id),loja,util);
+    }
+
+    /**
+     * Função que aceita uma encomenda já guardada no histórico partilhado.
+     * @param linha - Número da linha no HistoricoEncomendas.
+     * @param loja - Coordenadas gps da loja.
+     * @param util - Coordenadas gps do utilizador.
+     */
+    public void aceitaEncomenda(int linha,GPS loja, GPS util) {
+        this.encomendasFeitas.adiciona(linha);
+        if((this.encomendasFeitas.tamanho()% this.numeroEnc) == 0) {
             this.livre = false;
             aceitaMedicamentos(false);
         }
@@ -355,6 +419,124 @@ public class Transportadora implements Serializable {
 
     }
 
+    /**
+     * Função que aceita as encomendas de uma rota com várias paragens.
+     * Ao contrário de aceitaEncomenda, os kms são contados uma só vez para a rota inteira.
+     * @param encs - Encomendas da rota.
+     * @param km - Kms da rota.
+     */
+    public void aceitaRota(List<Encomenda> encs, double km) {
+        int[] linhas = new int[encs.size()];
+        for(int i = 0; i < linhas.length; i++) linhas[i] = this.arquivo.adiciona(encs.get(i),this.id);
+        aceitaRota(linhas,km);
+    }
+
+    /**
+     * Função que aceita as encomendas de uma rota já guardadas no histórico partilhado.
+     * @param linhas - Números das linhas no HistoricoEncomendas, pela ordem da rota.
+     * @param km - Kms da rota.
+     */
+    public void aceitaRota(int[] linhas, double km) {
+        for(int linha : linhas) {
+            this.encomendasFeitas.adiciona(linha);
+            if(this.numeroEnc <= 1 || (this.encomendasFeitas.tamanho() % this.numeroEnc) == 0) {
+                this.livre = false;
+                aceitaMedicamentos(false);
+            }
+        }
+        this.kmPercorridos += km;
+    }
+
+    /**
+     * Função que dá o número de encomendas que a empresa ainda pode aceitar antes de ficar ocupada.
+     * @return - Número de encomendas, 0 se estiver ocupada.
+     */
+    public int capacidadeLivre(){
+        if(!this.livre) return 0;
+        if(this.numeroEnc <= 1) return 1;
+        return this.numeroEnc - (this.encomendasFeitas.tamanho() % this.numeroEnc);
+    }
+
+    /**
+     * Função que passa a empresa a usar o histórico partilhado do Sistema.
+     * Só pode ser usada se a empresa ainda não tiver encomendas, ou se o novo histórico
+     * for uma cópia do atual (as linhas têm de ter os mesmos números).
+     * @param arquivo Histórico partilhado.
+     */
+    void setArquivo(HistoricoEncomendas arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Função que passa a empresa para outro histórico, com as encomendas nas linhas dadas.
+     * É usada pelo Sistema para juntar no histórico partilhado as encomendas de uma empresa lida no formato antigo.
+     * @param arquivo Histórico partilhado.
+     * @param linhas Linhas das encomendas da empresa nesse histórico, pela mesma ordem.
+     */
+    void mudaArquivo(HistoricoEncomendas arquivo, IndicesHistorico linhas) {
+        this.arquivo = arquivo;
+        this.encomendasFeitas = linhas;
+    }
+
+    /**
+     * Função usada pela serialização ao gravar a empresa, no formato de serialPersistentFields.
+     * @param out Stream onde a empresa é escrita.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", this.id);
+        f.put("nome", this.nome);
+        f.put("email", this.email);
+        f.put("password", this.password);
+        f.put("gps", this.gps);
+        f.put("nif", this.nif);
+        f.put("livre", this.livre);
+        f.put("raio", this.raio);
+        f.put("taxaKm", this.taxaKm);
+        f.put("numeroEnc", this.numeroEnc);
+        f.put("classif", this.classif.valores());
+        f.put("encomendasFeitas", new ArrayList<>(getEncomendasFeitas()));
+        f.put("kmPercorridos", this.kmPercorridos);
+        f.put("velocidadeMedia", this.velocidadeMedia);
+        f.put("medica", this.medica);
+        f.put("livreMed", this.livreMed);
+        out.writeFields();
+    }
+
+    /**
+     * Função usada pela serialização ao ler a empresa; as encomendas ficam num histórico só dela e as
+     * classificações fora da escala são ignoradas, como em addClassificacao.
+     * @param in Stream de onde a empresa é lida.
+     * @throws IOException Se a leitura falhar.
+     * @throws ClassNotFoundException Exception.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        this.id = (String) f.get("id", "");
+        this.nome = (String) f.get("nome", "");
+        this.email = (String) f.get("email", "");
+        this.password = (String) f.get("password", "");
+        this.gps = (GPS) f.get("gps", new GPS());
+        this.nif = f.get("nif", 0);
+        this.livre = f.get("livre", true);
+        this.raio = f.get("raio", 0.0);
+        this.taxaKm = f.get("taxaKm", 0.0);
+        this.numeroEnc = f.get("numeroEnc", 0);
+        this.classif = new Classificacao();
+        List<Integer> classificacoes = (List<Integer>) f.get("classif", null);
+        if (classificacoes != null) for (Integer i : classificacoes) this.classif.adiciona(i);
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendasFeitas = new IndicesHistorico();
+        List<Encomenda> feitas = (List<Encomenda>) f.get("encomendasFeitas", null);
+        if (feitas != null) for (Encomenda e : feitas) this.encomendasFeitas.adiciona(this.arquivo.adiciona(e,this.id));
+        this.kmPercorridos = f.get("kmPercorridos", 0.0);
+        this.velocidadeMedia = f.get("velocidadeMedia", 0.0);
+        this.medica = f.get("medica", false);
+        this.livreMed = f.get("livreMed", false);
+    }
+
     /**
      * Função que verifica se uma loja e um utilizador estão dentro do raio de ação da empresa.
      * @param loja - Coordenadas gps da loja.
@@ -363,7 +545,8 @@ public class Transportadora implements Serializable {
      */
     public boolean dentroDoRaio(GPS loja, GPS util){
         boolean ret = false;
-        if(auxDist(this.gps,loja) <= this.raio && auxDist(this.gps,util) <= this.raio) ret = true;
+        double r2 = this.raio * this.raio;
+        if(this.gps.distanciaQuadrado(loja) <= r2 && this.gps.distanciaQuadrado(util) <= r2) ret = true;
         return ret;
     }
 
@@ -391,4 +574,55 @@ public class Transportadora implements Serializable {
         if(this.medica) this.livreMed = true;
     }
 
+    /**
+     * Função que escreve a empresa no formato binário (ver Sistema.grava). As encomendas feitas são escritas
+     * pelas linhas no HistoricoEncomendas do Sistema.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveString(this.id);
+        o.escreveString(this.nome);
+        o.escreveString(this.email);
+        o.escreveString(this.password);
+        o.escreveGps(this.gps);
+        o.escreveInt(this.nif);
+        o.escreveBoolean(this.livre);
+        o.escreveDouble(this.raio);
+        o.escreveDouble(this.taxaKm);
+        o.escreveInt(this.numeroEnc);
+        this.classif.escreve(o);
+        this.encomendasFeitas.escreve(o);
+        o.escreveDouble(this.kmPercorridos);
+        o.escreveDouble(this.velocidadeMedia);
+        o.escreveBoolean(this.medica);
+        o.escreveBoolean(this.livreMed);
+    }
+
+    /**
+     * Função que lê uma empresa escrita por escreve. O arquivo é ligado depois, quando o Sistema a indexa.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve a empresa lida.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Transportadora le(EntradaBinaria in) throws IOException {
+        Transportadora t = new Transportadora();
+        t.id = in.leString();
+        t.nome = in.leString();
+        t.email = in.leString();
+        t.password = in.leString();
+        t.gps = in.leGps();
+        t.nif = in.leInt();
+        t.livre = in.leBoolean();
+        t.raio = in.leDouble();
+        t.taxaKm = in.leDouble();
+        t.numeroEnc = in.leInt();
+        t.classif = Classificacao.le(in);
+        t.encomendasFeitas = IndicesHistorico.le(in);
+        t.kmPercorridos = in.leDouble();
+        t.velocidadeMedia = in.leDouble();
+        t.medica = in.leBoolean();
+        t.livreMed = in.leBoolean();
+        return t;
+    }
 }
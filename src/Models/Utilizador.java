@@ -1,15 +1,35 @@
 package Models;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Utilizador implements Serializable {
+    private static final long serialVersionUID = 6849336648663498061L;
+
+    /*
+     * Serialização do Java: o utilizador é gravado com os campos que tinha antes do HistoricoEncomendas partilhado,
+     * com as suas encomendas numa lista, para que os ficheiros gravados nesse formato continuem a poder ser lidos.
+     * Um utilizador lido fica com um histórico só dele, até o Sistema o passar para o partilhado (ver mudaArquivo).
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("nome", String.class),
+            new ObjectStreamField("g", GPS.class),
+            new ObjectStreamField("encomendas", List.class),
+            new ObjectStreamField("email", String.class),
+            new ObjectStreamField("password", String.class)
+    };
 
     private String id;
     private String nome;
     private GPS g;
-    private List<Encomenda> encomendas;
+    private HistoricoEncomendas arquivo;
+    private IndicesHistorico encomendas;
     private String email;
     private String password;
 
@@ -20,7 +40,8 @@ public class Utilizador implements Serializable {
         this.id = "";
         this.nome = "";
         this.g = new GPS();
-        this.encomendas = new ArrayList<>();
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendas = new IndicesHistorico();
         this.email = "";
         this.password = "";
     }
@@ -38,10 +59,11 @@ public class Utilizador implements Serializable {
     public Utilizador(String id, String n, GPS g,List<Encomenda> encomendas,String email, String password) {
         this.id = id;
         this.nome = n;
-        this.g = new GPS(g);
-        this.encomendas = new ArrayList<>();
+        this.g = g;
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendas = new IndicesHistorico();
         for(Encomenda e : encomendas)
-            this.encomendas.add(e);
+            addEncomenda(e);
         this.email = email;
         this.password = password;
     }
@@ -54,8 +76,9 @@ public class Utilizador implements Serializable {
     public Utilizador(Utilizador u) {
         this.id = u.getId();
         this.nome = u.getNome();
-        this.g = new GPS(u.getGps());
-        this.encomendas = u.getEncomendas();
+        this.g = u.getGps();
+        this.arquivo = u.arquivo;
+        this.encomendas = u.encomendas.clone();
         this.email =  u.getEmail();
         this.password = u.getPassword();
     }
@@ -111,10 +134,24 @@ public class Utilizador implements Serializable {
      * @return Devolve a lista.
      */
     public List<Encomenda> getEncomendas() {
-        List<Encomenda> ret = new ArrayList<>();
-        for(Encomenda e : this.encomendas)
-            ret.add(e);
-        return ret;
+        return this.arquivo.encomendas(this.encomendas);
+    }
+
+    /**
+     * Método que dá o número de encomendas feitas pelo utilizador, sem copiar a lista.
+     * @return Número de encomendas.
+     */
+    public int numeroEncomendas() {
+        return this.encomendas.tamanho();
+    }
+
+    /**
+     * Método que dá o id do estafeta que entregou a encomenda mais recente do utilizador.
+     * @return Devolve esse id, ou null se o utilizador ainda não tiver encomendas entregues.
+     */
+    public String ultimoEstafeta() {
+        int n = this.encomendas.tamanho();
+        return n == 0 ? null : this.arquivo.getEstafeta(this.encomendas.get(n - 1));
     }
 
     /**
@@ -148,7 +185,7 @@ public class Utilizador implements Serializable {
         return u.getId().equals(this.id) &&
                 u.getNome().equals(this.nome) &&
                 u.getGps().equals(this.g) &&
-                u.getEncomendas().equals(this.encomendas) &&
+                u.getEncomendas().equals(getEncomendas()) &&
                 u.getEmail().equals(this.email) &&
                 u.getPassword().equals(this.password);
     }
@@ -166,7 +203,7 @@ public class Utilizador implements Serializable {
                 .append("\nEmail: ").append(this.email)
                 .append("\nPassword: ").append(this.password)
                 .append("\nGPS:  ").append(this.g)
-                .append("\nLista de Encomendas:  ").append(this.encomendas);
+                .append("\nLista de Encomendas:  ").append(getEncomendas());
         return sb.toString();
     }
 
@@ -185,7 +222,103 @@ public class Utilizador implements Serializable {
      * @param e Recebe uma encomenda.
      */
     public void addEncomenda(Encomenda e) {
-        this.encomendas.add(e);
+        addEncomenda(this.arquivo.adiciona(e,null));
     }
 
+    /**
+     * Função que acrescenta à lista de encomendas uma encomenda já guardada no histórico partilhado.
+     * @param linha Número da linha no HistoricoEncomendas.
+     */
+    void addEncomenda(int linha) {
+        this.encomendas.adiciona(linha);
+    }
+
+    /**
+     * Função que passa o utilizador a usar o histórico partilhado do Sistema.
+     * Só pode ser usada se o utilizador ainda não tiver encomendas, ou se o novo histórico
+     * for uma cópia do atual (as linhas têm de ter os mesmos números).
+     * @param arquivo Histórico partilhado.
+     */
+    void setArquivo(HistoricoEncomendas arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Função que passa o utilizador para outro histórico, com as encomendas nas linhas dadas.
+     * É usada pelo Sistema para juntar no histórico partilhado as encomendas de um utilizador lido no formato antigo.
+     * @param arquivo Histórico partilhado.
+     * @param linhas Linhas das encomendas do utilizador nesse histórico, pela mesma ordem.
+     */
+    void mudaArquivo(HistoricoEncomendas arquivo, IndicesHistorico linhas) {
+        this.arquivo = arquivo;
+        this.encomendas = linhas;
+    }
+
+    /**
+     * Função usada pela serialização ao gravar o utilizador, no formato de serialPersistentFields.
+     * @param out Stream onde o utilizador é escrito.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", this.id);
+        f.put("nome", this.nome);
+        f.put("g", this.g);
+        f.put("encomendas", new ArrayList<>(getEncomendas()));
+        f.put("email", this.email);
+        f.put("password", this.password);
+        out.writeFields();
+    }
+
+    /**
+     * Função usada pela serialização ao ler o utilizador; as encomendas ficam num histórico só dele.
+     * @param in Stream de onde o utilizador é lido.
+     * @throws IOException Se a leitura falhar.
+     * @throws ClassNotFoundException Exception.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        this.id = (String) f.get("id", "");
+        this.nome = (String) f.get("nome", "");
+        this.g = (GPS) f.get("g", new GPS());
+        this.email = (String) f.get("email", "");
+        this.password = (String) f.get("password", "");
+        this.arquivo = new HistoricoEncomendas();
+        this.encomendas = new IndicesHistorico();
+        List<Encomenda> lidas = (List<Encomenda>) f.get("encomendas", null);
+        if (lidas != null) for (Encomenda e : lidas) addEncomenda(e);
+    }
+
+    /**
+     * Função que escreve o utilizador no formato binário (ver Sistema.grava). As encomendas são escritas
+     * pelas linhas no HistoricoEncomendas do Sistema.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveString(this.id);
+        o.escreveString(this.nome);
+        o.escreveGps(this.g);
+        o.escreveString(this.email);
+        o.escreveString(this.password);
+        this.encomendas.escreve(o);
+    }
+
+    /**
+     * Função que lê um utilizador escrito por escreve. O arquivo é ligado depois, quando o Sistema o indexa.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve o utilizador lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Utilizador le(EntradaBinaria in) throws IOException {
+        Utilizador u = new Utilizador();
+        u.id = in.leString();
+        u.nome = in.leString();
+        u.g = in.leGps();
+        u.email = in.leString();
+        u.password = in.leString();
+        u.encomendas = IndicesHistorico.le(in);
+        return u;
+    }
 }
@@ -1,9 +1,35 @@
 package Models;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Voluntario implements Serializable {
+public class Voluntario implements Estafeta, Serializable {
+    private static final long serialVersionUID = -888974067324909616L;
+
+    /*
+     * Serialização do Java: o voluntário é gravado com os campos que tinha antes da Classificacao e do
+     * HistoricoEncomendas partilhado (as classificações e as encomendas em listas), para que os ficheiros gravados
+     * nesse formato continuem a poder ser lidos. Um voluntário lido fica com um histórico só dele, até o Sistema o
+     * passar para o partilhado (ver mudaArquivo).
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", String.class),
+            new ObjectStreamField("nome", String.class),
+            new ObjectStreamField("email", String.class),
+            new ObjectStreamField("password", String.class),
+            new ObjectStreamField("gps", GPS.class),
+            new ObjectStreamField("raio", double.class),
+            new ObjectStreamField("livre", boolean.class),
+            new ObjectStreamField("classif", List.class),
+            new ObjectStreamField("historico", List.class),
+            new ObjectStreamField("velocidadeMedia", double.class),
+            new ObjectStreamField("medica", boolean.class),
+            new ObjectStreamField("livreMed", boolean.class)
+    };
     private String id;
     private String nome;
     private String email;
@@ -11,8 +37,9 @@ public class Voluntario implements Serializable {
     private GPS gps;
     private double raio;
     private boolean livre;
-    private List<Integer> classif;
-    private List<Encomenda> historico;
+    private Classificacao classif;
+    private HistoricoEncomendas arquivo;
+    private IndicesHistorico historico;
     private double velocidadeMedia;
     private boolean medica;
     private boolean livreMed;
@@ -28,8 +55,9 @@ public class Voluntario implements Serializable {
         this.gps = new GPS();
         this.raio = 0;
         this.livre = true;
-        this.classif = new ArrayList<>();
-        this.historico = new ArrayList<>();
+        this.classif = new Classificacao();
+        this.arquivo = new HistoricoEncomendas();
+        this.historico = new IndicesHistorico();
         this.velocidadeMedia = 0;
         this.medica = false;
         this.livreMed = false;
@@ -50,14 +78,15 @@ public class Voluntario implements Serializable {
         this.nome = n;
         this.email = email;
         this.password = password;
-        this.gps = new GPS(gps);
+        this.gps = gps;
         this.raio = raio;
         this.livre = livre;
-        this.historico = new ArrayList<>();
-        for(Encomenda e : historico) this.historico.add(e.clone());
-        this.classif = new ArrayList<>();
+        this.arquivo = new HistoricoEncomendas();
+        this.historico = new IndicesHistorico();
+        for(Encomenda e : historico) this.historico.adiciona(this.arquivo.adiciona(e,id));
+        this.classif = new Classificacao();
         for (Integer i : c)
-            this.classif.add(i);
+            this.classif.adiciona(i);
         this.velocidadeMedia = vel;
         this.medica = med;
         this.livreMed = livreMed;
@@ -71,13 +100,12 @@ public class Voluntario implements Serializable {
     public Voluntario(Voluntario v) {
         this.id = v.getId();
         this.nome = v.getNome();
-        this.gps = new GPS(v.getGps());
+        this.gps = v.getGps();
         this.raio = v.getRaio();
         this.livre = v.isLivre();
-        this.historico = new ArrayList<>();
-        for(Encomenda e : v.getHistorico()) this.historico.add(e.clone());
-        this.classif = new ArrayList<>();
-        for(Integer i : v.getClassif()) this.classif.add(i);
+        this.arquivo = v.arquivo;
+        this.historico = v.historico.clone();
+        this.classif = v.getClassificacao();
         this.velocidadeMedia = v.getVelocidadeMedia();
         this.medica = v.aceitoTransporteMedicamentos();
         this.livreMed = v.getLivreMed();
@@ -130,14 +158,19 @@ public class Voluntario implements Serializable {
 
 
     /**
-     * Método que dá a lista das classificações.
-     * @return Devolve uma lista de Integer representante da lista de classificações.
+     * Método que dá as classificações do voluntário.
+     * @return Devolve uma cópia das classificações.
      */
-    public List<Integer> getClassif() {
-        List<Integer> ret = new ArrayList<>();
-        for (Integer i : ret)
-            ret.add(i);
-        return ret;
+    public Classificacao getClassificacao() {
+        return this.classif.clone();
+    }
+
+    /**
+     * Método que dá a média das classificações usada para comparar estafetas.
+     * @return Devolve essa média.
+     */
+    public double mediaAjustada() {
+        return this.classif.mediaAjustada();
     }
 
     /**
@@ -163,7 +196,7 @@ public class Voluntario implements Serializable {
                 v.getNome().equals(this.nome) &&
                 v.getGps().equals(this.gps) &&
                 v.getRaio()==(this.raio) &&
-                v.getClassif().equals(this.classif);
+                v.getClassificacao().equals(this.classif);
     }
 
     /**
@@ -182,8 +215,8 @@ public class Voluntario implements Serializable {
                 .append("\nEstá livre: ").append(this.livre)
                 .append("\nTransporta remédios: ").append(this.livreMed)
                 .append("\nVelocidade média: ").append(this.velocidadeMedia)
-                .append("\nHistórico: ").append(this.historico)
-                .append("\nLista de Classificações:  ").append(this.classif);
+                .append("\nHistórico: ").append(getHistorico())
+                .append("\n").append(this.classif);
         return sb.toString();
 
     }
@@ -198,11 +231,12 @@ public class Voluntario implements Serializable {
     }
 
     /**
-     * Função que adiciona uma classificação à lista de classificações.
-     * @param classificacao Recebe um Inteiro que representa o valor da classificação.
+     * Função que adiciona uma classificação às classificações do voluntário.
+     * @param classificacao Recebe um Inteiro que representa o valor da classificação, de 0 a 10.
+     * @return Devolve true se foi aceite, false se estiver fora da escala.
      */
-    public void addClassificacao(int classificacao) {
-        this.classif.add(classificacao);
+    public boolean addClassificacao(int classificacao) {
+        return this.classif.adiciona(classificacao);
     }
 
     /**
@@ -210,9 +244,7 @@ public class Voluntario implements Serializable {
      * @return - Encomenda a transportar.
      */
     public List<Encomenda> getHistorico(){
-        List<Encomenda> ret = new ArrayList<>();
-        for(Encomenda e : this.historico) ret.add(e.clone());
-        return ret;
+        return this.arquivo.encomendas(this.historico);
     }
 
 
@@ -222,12 +254,120 @@ public class Voluntario implements Serializable {
      * @param enc - Encomenda a aceitar.
      */
     public void aceitaEncomenda(Encomenda enc){
+        aceitaEncomenda(this.arquivo.adiciona(enc,this.id));
+    }
+
+    /**
+     * Função que aceita uma encomenda já guardada no histórico partilhado.
+     * @param linha - Número da linha no HistoricoEncomendas.
+     */
+    private void aceitaEncomenda(int linha){
         this.livre = false;
         aceitaMedicamentos(false);
-        this.historico.add(enc);
+        this.historico.adiciona(linha);
+    }
+
+
+
+    /**
+     * Função que aceita uma encomenda; as coordenadas não são usadas, porque o voluntário não cobra nem conta kms.
+     * @param enc - Encomenda a aceitar.
+     * @param loja - Coordenadas gps da loja.
+     * @param util - Coordenadas gps do utilizador.
+     */
+    public void aceitaEncomenda(Encomenda enc, GPS loja, GPS util){
+        aceitaEncomenda(enc);
+    }
+
+    /**
+     * Função que aceita uma encomenda já guardada no histórico partilhado; as coordenadas não são usadas.
+     * @param linha - Número da linha no HistoricoEncomendas.
+     * @param loja - Coordenadas gps da loja.
+     * @param util - Coordenadas gps do utilizador.
+     */
+    public void aceitaEncomenda(int linha, GPS loja, GPS util){
+        aceitaEncomenda(linha);
+    }
+
+    /**
+     * Função que passa o voluntário a usar o histórico partilhado do Sistema.
+     * Só pode ser usada se o voluntário ainda não tiver encomendas, ou se o novo histórico
+     * for uma cópia do atual (as linhas têm de ter os mesmos números).
+     * @param arquivo Histórico partilhado.
+     */
+    void setArquivo(HistoricoEncomendas arquivo) {
+        this.arquivo = arquivo;
+    }
+
+    /**
+     * Função que passa o voluntário para outro histórico, com as encomendas nas linhas dadas.
+     * É usada pelo Sistema para juntar no histórico partilhado as encomendas de um voluntário lido no formato antigo.
+     * @param arquivo Histórico partilhado.
+     * @param linhas Linhas das encomendas do voluntário nesse histórico, pela mesma ordem.
+     */
+    void mudaArquivo(HistoricoEncomendas arquivo, IndicesHistorico linhas) {
+        this.arquivo = arquivo;
+        this.historico = linhas;
     }
 
+    /**
+     * Função usada pela serialização ao gravar o voluntário, no formato de serialPersistentFields.
+     * @param out Stream onde o voluntário é escrito.
+     * @throws IOException Se a escrita falhar.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", this.id);
+        f.put("nome", this.nome);
+        f.put("email", this.email);
+        f.put("password", this.password);
+        f.put("gps", this.gps);
+        f.put("raio", this.raio);
+        f.put("livre", this.livre);
+        f.put("classif", this.classif.valores());
+        f.put("historico", new ArrayList<>(getHistorico()));
+        f.put("velocidadeMedia", this.velocidadeMedia);
+        f.put("medica", this.medica);
+        f.put("livreMed", this.livreMed);
+        out.writeFields();
+    }
 
+    /**
+     * Função usada pela serialização ao ler o voluntário; as encomendas ficam num histórico só dele e as
+     * classificações fora da escala são ignoradas, como em addClassificacao.
+     * @param in Stream de onde o voluntário é lido.
+     * @throws IOException Se a leitura falhar.
+     * @throws ClassNotFoundException Exception.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        this.id = (String) f.get("id", "");
+        this.nome = (String) f.get("nome", "");
+        this.email = (String) f.get("email", "");
+        this.password = (String) f.get("password", "");
+        this.gps = (GPS) f.get("gps", new GPS());
+        this.raio = f.get("raio", 0.0);
+        this.livre = f.get("livre", true);
+        this.classif = new Classificacao();
+        List<Integer> classificacoes = (List<Integer>) f.get("classif", null);
+        if (classificacoes != null) for (Integer i : classificacoes) this.classif.adiciona(i);
+        this.arquivo = new HistoricoEncomendas();
+        this.historico = new IndicesHistorico();
+        List<Encomenda> feitas = (List<Encomenda>) f.get("historico", null);
+        if (feitas != null) for (Encomenda e : feitas) this.historico.adiciona(this.arquivo.adiciona(e,this.id));
+        this.velocidadeMedia = f.get("velocidadeMedia", 0.0);
+        this.medica = f.get("medica", false);
+        this.livreMed = f.get("livreMed", false);
+    }
+
+    /**
+     * Função que dá o número de encomendas que o voluntário ainda pode aceitar: uma de cada vez.
+     * @return - 1 se estiver livre, 0 caso contrário.
+     */
+    public int capacidadeLivre(){
+        return this.livre ? 1 : 0;
+    }
 
     /**
      * Função auxiliar que calcula a distância entre duas coordenadas GPS.
@@ -236,9 +376,7 @@ public class Voluntario implements Serializable {
      * @return - Distância entre os dois pontos.
      */
     public double auxDist(GPS gps1, GPS gps2){
-        double d1 = Math.pow((gps2.getX() - gps1.getX()),2);
-        double d2 = Math.pow((gps2.getY() - gps2.getY()),2);
-        return Math.sqrt(d1+d2);
+        return gps1.distancia(gps2);
     }
 
 
@@ -250,7 +388,8 @@ public class Voluntario implements Serializable {
      */
     public boolean dentroDoRaio(GPS loja, GPS util){
         boolean ret = false;
-        if(auxDist(this.gps,loja) <= this.raio && auxDist(this.gps,util) <= this.raio) ret = true;
+        double r2 = this.raio * this.raio;
+        if(this.gps.distanciaQuadrado(loja) <= r2 && this.gps.distanciaQuadrado(util) <= r2) ret = true;
         return ret;
     }
 
@@ -261,8 +400,16 @@ public class Voluntario implements Serializable {
      * @return - Tempo calculado.
      */
     public int tempoDeVolta(GPS loja, GPS util){
-        double d = auxDist(loja,util);
-        double t = d/this.velocidadeMedia;
+        return tempoDeVolta(auxDist(loja,util));
+    }
+
+    /**
+     * Função que calcula o tempo que se demora a ir da loja até á casa do utilizador.
+     * @param distLojaUtil - Distância da loja ao utilizador.
+     * @return - Tempo calculado.
+     */
+    public int tempoDeVolta(double distLojaUtil){
+        double t = distLojaUtil/this.velocidadeMedia;
         return (int)t;
     }
 
@@ -277,6 +424,26 @@ public class Voluntario implements Serializable {
         return (int)t;
     }
 
+    /**
+     * Função que calcula o preço do transporte da encomenda. Os voluntários não cobram pelas entregas.
+     * @param loja - Coordenadas GPS da loja.
+     * @param util - Coordenadas GPS do utilizador.
+     * @return - Preço do transporte.
+     */
+    public double precoEntrega(GPS loja, GPS util){
+        return 0;
+    }
+
+    /**
+     * Função que calcula o preço do transporte da encomenda. Os voluntários não cobram pelas entregas.
+     * @param loja - Coordenadas GPS da loja.
+     * @param distLojaUtil - Distância da loja ao utilizador.
+     * @return - Preço do transporte.
+     */
+    public double precoEntrega(GPS loja, double distLojaUtil){
+        return 0;
+    }
+
     /**
      * Função que retorna a velocidade média do voluntário.
      * @return - Velocidade média do voluntário.
@@ -325,4 +492,48 @@ public class Voluntario implements Serializable {
         this.livre = true;
         if(this.medica) this.livreMed = true;
     }
+
+    /**
+     * Função que escreve o voluntário no formato binário (ver Sistema.grava). O histórico é escrito
+     * pelas linhas no HistoricoEncomendas do Sistema.
+     * @param o Ficheiro onde escrever.
+     * @throws IOException Se a escrita falhar.
+     */
+    void escreve(SaidaBinaria o) throws IOException {
+        o.escreveString(this.id);
+        o.escreveString(this.nome);
+        o.escreveString(this.email);
+        o.escreveString(this.password);
+        o.escreveGps(this.gps);
+        o.escreveDouble(this.raio);
+        o.escreveBoolean(this.livre);
+        this.classif.escreve(o);
+        this.historico.escreve(o);
+        o.escreveDouble(this.velocidadeMedia);
+        o.escreveBoolean(this.medica);
+        o.escreveBoolean(this.livreMed);
+    }
+
+    /**
+     * Função que lê um voluntário escrito por escreve. O arquivo é ligado depois, quando o Sistema o indexa.
+     * @param in Ficheiro de onde ler.
+     * @return Devolve o voluntário lido.
+     * @throws IOException Se a leitura falhar.
+     */
+    static Voluntario le(EntradaBinaria in) throws IOException {
+        Voluntario v = new Voluntario();
+        v.id = in.leString();
+        v.nome = in.leString();
+        v.email = in.leString();
+        v.password = in.leString();
+        v.gps = in.leGps();
+        v.raio = in.leDouble();
+        v.livre = in.leBoolean();
+        v.classif = Classificacao.le(in);
+        v.historico = IndicesHistorico.le(in);
+        v.velocidadeMedia = in.leDouble();
+        v.medica = in.leBoolean();
+        v.livreMed = in.leBoolean();
+        return v;
+    }
 }
@@ -10,7 +10,7 @@ public class ViewGeral {
     }
 
     public int viewGeral(){
-        System.out.println("\nBem Vindo ao TrazAqui!\n  Login(1)\n  Signup(2)\n  Carregar ficheiro de texto(3)\n  Carregar ficheiro binario(4)\n  Sair(0)");
+        System.out.println("\nBem Vindo ao TrazAqui!\n  Login(1)\n  Signup(2)\n  Carregar ficheiro de texto(3)\n  Carregar ficheiro binario(4)\n  Carregar ficheiro de texto em paralelo(5)\n  Sair(0)");
         Scanner n2 = new Scanner(System.in);
         n1 = n2.nextInt();
 
@@ -254,6 +254,10 @@ public class ViewGeral {
         System.out.println("Fila de espera: "+a);
     }
 
+    public void showEstatisticas(String est){
+        System.out.println(est);
+    }
+
     public void showS(int a){
         System.out.println(a);
     }
@@ -0,0 +1,116 @@
+package Models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testes do despacho por prioridade: com um só estafeta, o despachaPorPrioridade tem de entregar primeiro as
+ * encomendas médicas, depois as mais antigas e, entre as da mesma hora, as da loja que tem o pedido pronto mais
+ * cedo, e o estafeta só volta a receber uma encomenda quando o concluiEntregas acaba a que tem. O critério de
+ * seleção escolhido com setCriterio decide entre duas empresas.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.DespachoTeste
+ */
+public class DespachoTeste {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    public static void main(String[] args) {
+        ordemDePrioridade();
+        medicasSoComCertificado();
+        criterioDeSelecao();
+        System.out.println("DespachoTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Um voluntário em (0,0), a 1 km por minuto, leva cada encomenda em 7 minutos (3 até à loja em (3,0) e 4 até
+     * ao utilizador em (3,4), sem esperar pelas lojas). A médica é a mais recente mas sai primeiro; das normais,
+     * a mais antiga e depois, entre as duas da mesma hora, a da loja mais rápida.
+     */
+    private static void ordemDePrioridade() {
+        RelogioSimulado relogio = new RelogioSimulado(INICIO, ZoneId.systemDefault());
+        Sistema s = sistema(relogio);
+        s.finalizarEncomenda(encomenda("n1", "lenta", -10, false));
+        s.finalizarEncomenda(encomenda("n2", "lenta", -30, false));
+        s.finalizarEncomenda(encomenda("n3", "rapida", -10, false));
+        s.finalizarEncomenda(encomenda("m1", "lenta", 0, true));
+        s.registaVoluntario("v1", "V1", "v1", "p", 0, 0, 100, 1, true);
+
+        List<String> esperadas = List.of("m1", "n2", "n3", "n1");
+        for (int i = 0; i < esperadas.size(); i++) {
+            verifica(s.despachaPorPrioridade() == 1, "Devia ser despachada uma encomenda na volta " + i);
+            verifica(ids(s.getHistorico()).equals(esperadas.subList(0, i + 1)),
+                    "Ordem de despacho errada: " + ids(s.getHistorico()));
+            verifica(s.getVoluntariosLivres().isEmpty(), "O voluntário continua livre com uma encomenda");
+            verifica(s.despachaPorPrioridade() == 0, "Despachada uma encomenda sem estafetas livres");
+
+            LocalDateTime fim = relogio.getAgora().plusMinutes(7);
+            verifica(fim.equals(s.proximaEntrega()), "A entrega devia acabar aos 7 minutos e acaba em " + s.proximaEntrega());
+            verifica(s.concluiEntregas(fim.minusMinutes(1)) == 0, "Entrega terminada antes da hora");
+            relogio.avanca(fim);
+            verifica(s.concluiEntregas(fim) == 1, "A entrega não terminou à hora");
+            verifica(s.getVoluntariosLivres().size() == 1 && s.getVoluntariosLivresMed().size() == 1,
+                    "O voluntário não ficou livre depois da entrega");
+        }
+        verifica(s.getPorEnviar().isEmpty() && s.entregasEmCurso() == 0, "Ficaram encomendas por enviar ou entregas em curso");
+    }
+
+    /**
+     * Um voluntário sem certificado passa à frente a médica, que fica na fila, e leva a normal.
+     */
+    private static void medicasSoComCertificado() {
+        Sistema s = sistema(new RelogioSimulado(INICIO, ZoneId.systemDefault()));
+        s.finalizarEncomenda(encomenda("m1", "lenta", -30, true));
+        s.finalizarEncomenda(encomenda("n1", "lenta", 0, false));
+        s.registaVoluntario("v1", "V1", "v1", "p", 0, 0, 100, 1, false);
+        verifica(s.despachaPorPrioridade() == 1, "Devia ser despachada só a encomenda normal");
+        verifica(ids(s.getHistorico()).equals(List.of("n1")), "Despachada a encomenda errada: " + ids(s.getHistorico()));
+        verifica(ids(s.getPorEnviar()).equals(List.of("m1")), "A encomenda médica devia ficar na fila");
+    }
+
+    /**
+     * Loja em (3,0) e utilizador em (3,4): a t1, em (3,-1), entrega em 5 minutos por 50; a t2, em (-10,0), em 17
+     * minutos por 17. MenorTempo escolhe a t1 e MenorPreco a t2.
+     */
+    private static void criterioDeSelecao() {
+        for (boolean preco : new boolean[]{false, true}) {
+            Sistema s = sistema(new RelogioSimulado(INICIO, ZoneId.systemDefault()));
+            s.registaTransportadora("t1", "T1", "t1", "p", 3, -1, 1, 100, 10, 1, 1, false);
+            s.registaTransportadora("t2", "T2", "t2", "p", -10, 0, 2, 100, 1, 1, 1, false);
+            if (preco) s.setCriterio(new CriterioSelecao.MenorPreco());
+            s.finalizarEncomenda(encomenda("e1", "rapida", 0, false));
+            Transportadora t = s.aceitaEncomendaT("e1");
+            verifica(t != null && t.getId().equals(preco ? "t2" : "t1"),
+                    "O critério " + (preco ? "MenorPreco" : "MenorTempo") + " escolheu " + (t == null ? null : t.getId()));
+            Encomenda e = s.getHistorico().get(0);
+            verifica(e.getTempoEntrega() == (preco ? 17 : 5) && Math.abs(e.getPrecoEntrega() - (preco ? 17 : 50)) < 1e-9,
+                    "Tempo ou preço da entrega errados: " + e.getTempoEntrega() + " " + e.getPrecoEntrega());
+        }
+    }
+
+    /**
+     * Sistema com um utilizador em (3,4) e duas lojas em (3,0), uma com o pedido pronto em 1 minuto e outra em 3.
+     */
+    private static Sistema sistema(RelogioSimulado relogio) {
+        Sistema s = new Sistema();
+        s.setRelogio(relogio);
+        s.registaUtilizador("u1", "U1", 3, 4);
+        s.registaLoja("rapida", "Rápida", "rapida", "p", 3, 0, 1);
+        s.registaLoja("lenta", "Lenta", "lenta", "p", 3, 0, 3);
+        return s;
+    }
+
+    private static Encomenda encomenda(String id, String loja, int minutos, boolean medica) {
+        return new Encomenda(id, "u1", loja, 1, new ArrayList<>(), INICIO.plusMinutes(minutos), 0, 0, medica);
+    }
+
+    private static List<String> ids(List<Encomenda> encs) {
+        List<String> ret = new ArrayList<>();
+        for (Encomenda e : encs) ret.add(e.getId());
+        return ret;
+    }
+}
@@ -0,0 +1,82 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medição do custo dos candidatos: 1000 encomendas contra 4100 empresas com o critério ponderado, como o Sistema
+ * faz agora (distância loja-utilizador pedida uma vez por encomenda à CacheDistancias e raio comparado ao quadrado),
+ * ao lado da mesma conta com as distâncias calculadas com pow e sqrt para cada candidato, como se fazia antes da
+ * cache. As duas somas de custos têm de dar o mesmo; os tempos são os da melhor de várias repetições.
+ * Corre sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.DistanciasDesempenho
+ */
+public class DistanciasDesempenho {
+    private static final int ENCOMENDAS = 1000;
+    private static final int EMPRESAS = 4100;
+    private static final int REPETICOES = 10;
+
+    public static void main(String[] args) {
+        Random r = new Random(5);
+        List<Loja> lojas = new ArrayList<>();
+        List<Utilizador> utilizadores = new ArrayList<>();
+        List<Transportadora> empresas = new ArrayList<>();
+        Sistema s = new Sistema();
+        for (int i = 0; i < 100; i++) lojas.add(s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100));
+        for (int i = 0; i < 500; i++)
+            utilizadores.add(s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100));
+        for (int i = 0; i < EMPRESAS; i++)
+            empresas.add(s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 200 - 100,
+                    r.nextDouble() * 200 - 100, 1, 120, 1.0, 1000, 40, false));
+        Loja[] l = new Loja[ENCOMENDAS];
+        Utilizador[] u = new Utilizador[ENCOMENDAS];
+        for (int i = 0; i < ENCOMENDAS; i++) {
+            l[i] = lojas.get(r.nextInt(lojas.size()));
+            u[i] = utilizadores.get(r.nextInt(utilizadores.size()));
+        }
+        CriterioSelecao c = new CriterioSelecao.Ponderado(1, 1);
+
+        double melhorCache = Double.POSITIVE_INFINITY, melhorAntes = Double.POSITIVE_INFINITY;
+        double somaCache = 0, somaAntes = 0;
+        long candidatos = 0;
+        for (int rep = 0; rep < REPETICOES; rep++) {
+            CacheDistancias cache = new CacheDistancias(1 << 16);
+            long t0 = System.nanoTime();
+            somaCache = 0;
+            candidatos = 0;
+            for (int i = 0; i < ENCOMENDAS; i++) {
+                GPS gl = l[i].getGps(), gu = u[i].getGps();
+                int info = l[i].tempoDoPedido();
+                double d = cache.distancia(l[i], u[i]);
+                for (Transportadora t : empresas) {
+                    if (!t.dentroDoRaio(gl, gu)) continue;
+                    somaCache += c.custo(t, info, gl, d);
+                    candidatos++;
+                }
+            }
+            melhorCache = Math.min(melhorCache, (System.nanoTime() - t0) / 1e6);
+
+            t0 = System.nanoTime();
+            somaAntes = 0;
+            for (int i = 0; i < ENCOMENDAS; i++) {
+                GPS gl = l[i].getGps(), gu = u[i].getGps();
+                int info = l[i].tempoDoPedido();
+                for (Transportadora t : empresas) {
+                    if (distancia(t.getGps(), gl) > t.getRaio() || distancia(t.getGps(), gu) > t.getRaio()) continue;
+                    somaAntes += c.custo(t, info, gl, distancia(gl, gu));
+                }
+            }
+            melhorAntes = Math.min(melhorAntes, (System.nanoTime() - t0) / 1e6);
+        }
+        System.out.printf("%d custos de candidatos: com a cache %.1f ms, distâncias por candidato %.1f ms%n",
+                candidatos, melhorCache, melhorAntes);
+        System.out.printf("soma dos custos: %.6f e %.6f%n", somaCache, somaAntes);
+    }
+
+    /**
+     * Distância calculada como antes da cache, com pow e sqrt.
+     */
+    private static double distancia(GPS a, GPS b) {
+        return Math.sqrt(Math.pow(a.getX() - b.getX(), 2) + Math.pow(a.getY() - b.getY(), 2));
+    }
+}
@@ -0,0 +1,139 @@
+package Models;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Testes da distribuição em lote: o DistribuidorLote tem de dar a atribuição de custo mínimo em matrizes em que
+ * ela se vê à mão e na procura exaustiva de matrizes pequenas, deixando por atribuir só o que não cabe nas vagas
+ * ou não tem estafeta possível, e o distribuiLote do Sistema tem de respeitar as vagas de cada estafeta.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.DistribuidorLoteTeste
+ */
+public class DistribuidorLoteTeste {
+    private static final double X = DistribuidorLote.INVIAVEL;
+
+    public static void main(String[] args) {
+        atribuicoesConhecidas();
+        vagasAMenosEInviaveis();
+        igualAProcuraExaustiva();
+        distribuiLoteDoSistema();
+        System.out.println("DistribuidorLoteTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Matrizes com a atribuição ótima conhecida, uma delas com o guloso a ficar pior.
+     */
+    private static void atribuicoesConhecidas() {
+        double[][] c = {{4, 1, 3}, {2, 0, 5}, {3, 2, 2}};
+        int[] a = DistribuidorLote.resolve(c);
+        verifica(Arrays.equals(a, new int[]{1, 0, 2}), "Atribuição 3x3 errada: " + Arrays.toString(a));
+        verifica(DistribuidorLote.custoTotal(c, a) == 5, "Custo 3x3 errado");
+
+        // o guloso dá a vaga 0 à encomenda 0 (1 < 2) e deixa a 1 com a vaga de custo 10
+        double[][] d = {{1, 2}, {1, 10}};
+        int[] conjunta = DistribuidorLote.resolve(d), guloso = DistribuidorLote.guloso(d);
+        verifica(Arrays.equals(conjunta, new int[]{1, 0}), "Atribuição conjunta errada: " + Arrays.toString(conjunta));
+        verifica(Arrays.equals(guloso, new int[]{0, 1}), "Atribuição gulosa errada: " + Arrays.toString(guloso));
+        verifica(DistribuidorLote.custoTotal(d, conjunta) == 3 && DistribuidorLote.custoTotal(d, guloso) == 11,
+                "Custos da atribuição conjunta e gulosa errados");
+    }
+
+    /**
+     * Com menos vagas do que encomendas fica por atribuir a que menos poupa; um par INVIAVEL nunca é atribuído.
+     */
+    private static void vagasAMenosEInviaveis() {
+        int[] a = DistribuidorLote.resolve(new double[][]{{5}, {3}, {4}});
+        verifica(Arrays.equals(a, new int[]{-1, 0, -1}), "Vaga única mal atribuída: " + Arrays.toString(a));
+        verifica(DistribuidorLote.atribuidas(a) == 1, "Número de atribuídas errado");
+
+        a = DistribuidorLote.resolve(new double[][]{{X, 1}, {X, 2}});
+        verifica(Arrays.equals(a, new int[]{1, -1}), "Par inviável atribuído: " + Arrays.toString(a));
+
+        a = DistribuidorLote.resolve(new double[][]{{X, X}, {X, X}});
+        verifica(DistribuidorLote.atribuidas(a) == 0, "Encomendas sem estafeta possível atribuídas");
+        verifica(DistribuidorLote.resolve(new double[0][0]).length == 0, "Lote vazio");
+    }
+
+    /**
+     * Em matrizes pequenas ao acaso, o resultado tem de atribuir tantas encomendas e custar o mesmo que o melhor
+     * de todas as atribuições possíveis, e nunca mais do que o guloso.
+     */
+    private static void igualAProcuraExaustiva() {
+        Random r = new Random(9);
+        for (int caso = 0; caso < 500; caso++) {
+            int n = 1 + r.nextInt(6), m = 1 + r.nextInt(5);
+            double[][] c = new double[n][m];
+            for (double[] linha : c)
+                for (int j = 0; j < m; j++) linha[j] = r.nextInt(4) == 0 ? X : r.nextInt(50);
+            int[] a = DistribuidorLote.resolve(c);
+            boolean[] usada = new boolean[m];
+            for (int i = 0; i < n; i++) {
+                if (a[i] < 0) continue;
+                verifica(!usada[a[i]] && c[i][a[i]] < X, "Vaga repetida ou par inviável no caso " + caso);
+                usada[a[i]] = true;
+            }
+            double melhor = melhor(c, 0, new boolean[m]);
+            verifica(Math.abs(objetivo(c, a) - melhor) < 1e-6, "Atribuição não ótima no caso " + caso + ": "
+                    + objetivo(c, a) + " em vez de " + melhor);
+            verifica(objetivo(c, DistribuidorLote.guloso(c)) >= melhor - 1e-6, "Guloso melhor do que o ótimo no caso " + caso);
+        }
+    }
+
+    /**
+     * Custo de uma atribuição contando SEM_ESTAFETA por cada encomenda por atribuir.
+     */
+    private static double objetivo(double[][] c, int[] a) {
+        double ret = 0;
+        for (int i = 0; i < a.length; i++) ret += a[i] < 0 ? DistribuidorLote.SEM_ESTAFETA : c[i][a[i]];
+        return ret;
+    }
+
+    private static double melhor(double[][] c, int i, boolean[] usada) {
+        if (i == c.length) return 0;
+        double ret = DistribuidorLote.SEM_ESTAFETA + melhor(c, i + 1, usada);
+        for (int j = 0; j < usada.length; j++) {
+            if (usada[j] || c[i][j] >= X) continue;
+            usada[j] = true;
+            ret = Math.min(ret, c[i][j] + melhor(c, i + 1, usada));
+            usada[j] = false;
+        }
+        return ret;
+    }
+
+    /**
+     * O distribuiLote do Sistema atribui pelo menos tantas encomendas como o guloso, a um custo não maior quando
+     * atribui as mesmas, sem passar as vagas das empresas nem dar mais do que uma encomenda a cada voluntário.
+     */
+    private static void distribuiLoteDoSistema() {
+        Random r = new Random(4);
+        Sistema s = new Sistema();
+        for (int i = 0; i < 30; i++) s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 100 - 50, r.nextDouble() * 100 - 50);
+        for (int i = 0; i < 10; i++) s.registaLoja("l" + i, "L" + i, r.nextDouble() * 100 - 50, r.nextDouble() * 100 - 50);
+        for (int i = 0; i < 8; i++) {
+            s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 100 - 50, r.nextDouble() * 100 - 50,
+                    1, 70, 1.0, 1 + i % 3, 40, i % 2 == 0);
+            s.registaVoluntario("v" + i, "V" + i, "v" + i, "p", r.nextDouble() * 100 - 50, r.nextDouble() * 100 - 50,
+                    70, 20, i % 3 == 0);
+        }
+        int n = 40;
+        for (int i = 0; i < n; i++)
+            s.finalizarEncomenda(s.fazerEncomenda2("e" + i, "u" + r.nextInt(30), "l" + r.nextInt(10), 1, r.nextInt(5) == 0));
+
+        ResultadoLote res = s.distribuiLote();
+        verifica(res.getEncomendas() == n, "O lote não tem todas as encomendas por enviar");
+        verifica(res.getAtribuidas() > 0 && res.getAtribuidas() >= res.getAtribuidasGuloso(), "O lote atribuiu menos do que o guloso");
+        if (res.getAtribuidas() == res.getAtribuidasGuloso())
+            verifica(res.getCusto() <= res.getCustoGuloso() + 1e-6, "O lote custa mais do que o guloso");
+        verifica(s.getHistorico().size() == res.getAtribuidas(), "Histórico com " + s.getHistorico().size()
+                + " encomendas e " + res.getAtribuidas() + " atribuídas");
+        verifica(s.getPorEnviar().size() == n - res.getAtribuidas(), "Encomendas por enviar erradas");
+        for (Transportadora t : s.getEmpresas())
+            verifica(t.getEncomendasFeitas().size() <= t.getNumeroEnc(), t.getId() + " passou as suas vagas");
+        for (Voluntario v : s.getVoluntarios())
+            verifica(v.getHistorico().size() <= 1, v.getId() + " aceitou mais do que uma encomenda");
+    }
+}
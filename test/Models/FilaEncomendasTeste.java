@@ -0,0 +1,91 @@
+package Models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testes da gravação da FilaEncomendas: uma fila lida de uma base e dos deltas seguintes tem de dar as encomendas
+ * pela mesma ordem de chegada e de prioridade que a fila gravada, mesmo quando um delta traz encomendas que não
+ * mudaram de lugar.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.FilaEncomendasTeste
+ */
+public class FilaEncomendasTeste {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    public static void main(String[] args) throws Exception {
+        deltaSemMudancaDeLugar();
+        deltaComEntradasESaidas();
+        System.out.println("FilaEncomendasTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Um delta com encomendas que continuam na fila no mesmo lugar não as pode passar para o fim.
+     */
+    private static void deltaSemMudancaDeLugar() throws Exception {
+        FilaEncomendas f = new FilaEncomendas();
+        for (int i = 0; i < 6; i++) f.adiciona(encomenda("e" + i, i, i % 4 == 0), 3);
+        FilaEncomendas lida = releBase(f);
+        aplicaDelta(lida, f, List.of("e3", "e0", "e4"));
+        verificaIgual(f, lida, "delta sem mudanças");
+    }
+
+    /**
+     * Vários deltas com encomendas que entram, saem e voltam a entrar dão a ordem da fila gravada.
+     */
+    private static void deltaComEntradasESaidas() throws Exception {
+        FilaEncomendas f = new FilaEncomendas();
+        for (int i = 0; i < 10; i++) f.adiciona(encomenda("e" + i, i, i % 3 == 0), i % 2);
+        FilaEncomendas lida = releBase(f);
+
+        f.remove("e2", INICIO.plusHours(1));
+        f.adiciona(encomenda("e5", 20, false), 1);
+        f.adiciona(encomenda("e10", 5, true), 0);
+        aplicaDelta(lida, f, List.of("e10", "e2", "e7", "e5", "e1"));
+        verificaIgual(f, lida, "primeiro delta");
+
+        f.adiciona(encomenda("e2", 2, false), 0);
+        f.remove("e0", INICIO.plusHours(2));
+        aplicaDelta(lida, f, List.of("e0", "e9", "e2", "e3"));
+        verificaIgual(f, lida, "segundo delta");
+    }
+
+    private static FilaEncomendas releBase(FilaEncomendas f) throws Exception {
+        SaidaBinaria o = new SaidaBinaria();
+        f.escreve(o);
+        return FilaEncomendas.le(new EntradaBinaria(o.bytes()), produtos());
+    }
+
+    private static void aplicaDelta(FilaEncomendas lida, FilaEncomendas f, List<String> ids) throws Exception {
+        SaidaBinaria o = new SaidaBinaria();
+        f.escreve(o, ids);
+        lida.leAlteracoes(new EntradaBinaria(o.bytes()), produtos());
+    }
+
+    private static void verificaIgual(FilaEncomendas f, FilaEncomendas lida, String caso) {
+        verifica(ids(f.porChegada()).equals(ids(lida.porChegada())),
+                "Ordem de chegada diferente depois do " + caso + ": " + ids(f.porChegada()) + " e " + ids(lida.porChegada()));
+        verifica(ids(f.porPrioridade()).equals(ids(lida.porPrioridade())), "Ordem de prioridade diferente depois do " + caso);
+        verifica(f.equals(lida) && f.hashCode() == lida.hashCode(), "Filas diferentes depois do " + caso);
+    }
+
+    private static List<String> ids(List<Encomenda> encs) {
+        List<String> ret = new ArrayList<>();
+        for (Encomenda e : encs) ret.add(e.getId());
+        return ret;
+    }
+
+    private static Encomenda encomenda(String id, int minutos, boolean medica) {
+        return new Encomenda(id, "u1", "l1", 1, new ArrayList<>(), INICIO.plusMinutes(minutos), 0, 0, medica);
+    }
+
+    private static Produto[] produtos() {
+        Produto[] ret = new Produto[CatalogoProdutos.tamanho()];
+        for (int i = 0; i < ret.length; i++) ret[i] = CatalogoProdutos.produto(i);
+        return ret;
+    }
+}
@@ -0,0 +1,100 @@
+package Models;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Testes da gravação do Sistema: uma gravação em fundo seguida de abreDiario para o mesmo ficheiro não pode
+ * bloquear (a gravação em fundo toma o lockSistema depois do semáforo gravacao e abreDiario não pode fazer o
+ * contrário), e o estado recuperado no fim é o do Sistema.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.GravacaoTeste
+ */
+public class GravacaoTeste {
+    private static final int RONDAS = 10;
+    private static final long ESPERA_MAXIMA = 60;
+
+    public static void main(String[] args) throws Exception {
+        Path pasta = Files.createTempDirectory("gravacao");
+        ExecutorService ex = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "teste-gravacao");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<?> f = ex.submit(() -> {
+                for (int ronda = 0; ronda < RONDAS; ronda++) gravaEmFundoSeguidaDeAbreDiario(pasta, ronda);
+                return null;
+            });
+            f.get(ESPERA_MAXIMA, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("GravacaoTeste: gravaEmFundo seguida de abreDiario não acabou em " + ESPERA_MAXIMA + " s");
+            System.exit(1);
+        } finally {
+            apaga(pasta);
+        }
+        System.out.println("GravacaoTeste: OK");
+        System.exit(0);
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    private static void gravaEmFundoSeguidaDeAbreDiario(Path pasta, int semente) throws Exception {
+        String nome = pasta.resolve("j" + semente).toString();
+        Sistema s = sistema(semente);
+        CompletableFuture<EstatisticasGravacao> fundo = s.gravaEmFundo(nome);
+        s.abreDiario(nome);
+        fundo.join();
+        Sistema r = Sistema.recupera(nome);
+        try {
+            verifica(s.equals(r), "O estado recuperado de " + nome + " não é o do Sistema");
+            Encomenda e = s.fazerEncomenda2("depois", "u0", "l0", 1, false);
+            s.finalizarEncomenda(e);
+            s.fechaDiario();
+            Sistema r2 = Sistema.recupera(nome);
+            verifica(s.equals(r2), "O diário aberto por abreDiario não tem as alterações seguintes");
+            r2.fechaDiario();
+        } finally {
+            r.fechaDiario();
+        }
+    }
+
+    /**
+     * Sistema com entidades e encomendas entregues suficientes para a gravação em fundo demorar.
+     */
+    private static Sistema sistema(int semente) {
+        Random r = new Random(semente);
+        Sistema s = new Sistema();
+        for (int i = 0; i < 50; i++) s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 20; i++) s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 100; i++)
+            s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    1, 80, 1.0, 5, 40, i % 3 == 0);
+        for (int i = 0; i < 2000; i++) {
+            Encomenda e = s.fazerEncomenda2("e" + i, "u" + r.nextInt(50), "l" + r.nextInt(20), 1, false);
+            for (int k = 0; k < 5; k++) e.addProduto("p" + r.nextInt(80), "Produto " + k, 1 + r.nextInt(5), 2.5);
+            s.finalizarEncomenda(e);
+            s.aceitaEncomendaT(e.getId());
+            if (i % 50 == 0) s.concluiEntregas(LocalDateTime.now().plusDays(1));
+        }
+        return s;
+    }
+
+    private static void apaga(Path pasta) throws IOException {
+        try (Stream<Path> ps = Files.walk(pasta)) {
+            ps.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
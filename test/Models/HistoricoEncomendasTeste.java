@@ -0,0 +1,82 @@
+package Models;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Testes do segmento do HistoricoEncomendas: um segmento escrito por escreveSegmento tem de dar as mesmas encomendas
+ * lido para os arrays ou mapeado, com janelas de qualquer tamanho (as pequenas põem números e ids a passar de uma
+ * janela para a seguinte, como acontece com as de 1 GB num segmento maior do que 2 GB).
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.HistoricoEncomendasTeste
+ */
+public class HistoricoEncomendasTeste {
+    private static final int ENCOMENDAS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        HistoricoEncomendas h = historico();
+        Path segmento = Files.createTempFile("historico", ".segmento");
+        try {
+            try (SaidaBinaria o = new SaidaBinaria(segmento)) {
+                h.escreveSegmento(o);
+            }
+            Produto[] produtos = new Produto[CatalogoProdutos.tamanho()];
+            for (int i = 0; i < produtos.length; i++) produtos[i] = CatalogoProdutos.produto(i);
+
+            HistoricoEncomendas lido = new HistoricoEncomendas();
+            lido.abreSegmento(segmento, produtos, false);
+            verifica(h.equals(lido), "O segmento lido não dá as mesmas encomendas");
+
+            for (int bits : new int[]{4, 5, 7, 10, 16, HistoricoEncomendas.BITS_JANELA}) {
+                HistoricoEncomendas mapeado = new HistoricoEncomendas();
+                mapeado.abreSegmento(segmento, produtos, true, bits);
+                verifica(h.equals(mapeado), "O segmento mapeado com janelas de 2^" + bits + " bytes não dá as mesmas encomendas");
+                for (int i = 0; i < h.tamanho(); i++)
+                    verifica(h.getEstafeta(i) == null ? mapeado.getEstafeta(i) == null : h.getEstafeta(i).equals(mapeado.getEstafeta(i)),
+                            "Estafeta errado na linha " + i + " com janelas de 2^" + bits + " bytes");
+
+                // as linhas acrescentadas depois ficam nos arrays, a seguir às do segmento
+                Encomenda e = encomenda(new Random(bits), ENCOMENDAS + bits);
+                int linha = mapeado.adiciona(e, "t1");
+                verifica(linha == ENCOMENDAS && mapeado.get(linha).equals(e), "Linha acrescentada ao segmento mapeado errada");
+                verifica(mapeado.get(ENCOMENDAS - 1).equals(h.get(ENCOMENDAS - 1)), "Última linha do segmento mudou");
+            }
+        } finally {
+            Files.deleteIfExists(segmento);
+        }
+        System.out.println("HistoricoEncomendasTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Histórico com ids de tamanhos diferentes e alguns utilizadores e estafetas fora do formato letra + número.
+     */
+    private static HistoricoEncomendas historico() {
+        Random r = new Random(7);
+        HistoricoEncomendas h = new HistoricoEncomendas();
+        for (int i = 0; i < ENCOMENDAS; i++) {
+            String est = i % 11 == 0 ? null : i % 13 == 0 ? "estafeta-" + (i % 5) : "t" + r.nextInt(100);
+            h.adiciona(encomenda(r, i), est);
+        }
+        return h;
+    }
+
+    private static Encomenda encomenda(Random r, int i) {
+        String id = "e" + i + "-".repeat(r.nextInt(9)) + (i % 17 == 0 ? "ç" : "");
+        String user = i % 7 == 0 ? "cliente " + (i % 3) : "u" + r.nextInt(1000);
+        Encomenda e = new Encomenda(id, user, "l" + r.nextInt(50), r.nextDouble() * 10, new ArrayList<>(),
+                LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(r.nextInt(1_000_000)).plusNanos(r.nextInt(1000)),
+                r.nextInt(120), r.nextDouble() * 20, r.nextInt(10) == 0);
+        List<LinhaEncomenda> linhas = new ArrayList<>();
+        for (int k = r.nextInt(6); k > 0; k--)
+            linhas.add(new LinhaEncomenda(CatalogoProdutos.produto("p" + r.nextInt(40), "Produto " + k), 1 + r.nextInt(5), 2.5));
+        e.setLE(linhas);
+        return e;
+    }
+}
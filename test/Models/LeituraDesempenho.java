@@ -0,0 +1,71 @@
+package Models;
+
+import Controller.Ficheiro;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Medição das listas do Sistema: memória alocada e tempo de cada chamada aos getters, com o Sistema carregado de
+ * src/logs_apresentacao.txt (ou do ficheiro passado como argumento), ao lado de copiar a lista devolvida clonando
+ * cada elemento, que é o que os getters faziam em todas as chamadas antes dos instantâneos. Precisa de uma JVM que
+ * conte a memória alocada por thread (com.sun.management.ThreadMXBean).
+ * Corre sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.LeituraDesempenho [logs]
+ */
+public class LeituraDesempenho {
+    private static final int AQUECIMENTO = 200;
+    private static final int CHAMADAS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (!(mx instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Esta JVM não conta a memória alocada por thread");
+            return;
+        }
+        Sistema s = new Sistema();
+        Ficheiro.carregaLogs(s, args.length > 0 ? args[0] : "src/logs_apresentacao.txt");
+        com.sun.management.ThreadMXBean alocacao = (com.sun.management.ThreadMXBean) mx;
+        System.out.printf("%-16s %14s %14s %16s%n", "", "KB/chamada", "us/chamada", "KB com cópia");
+        mede(alocacao, "getLojas", s::getLojas, Loja::clone);
+        mede(alocacao, "getUtilizadores", s::getUtilizadores, Utilizador::clone);
+        mede(alocacao, "getEmpresas", s::getEmpresas, Transportadora::clone);
+        mede(alocacao, "getVoluntarios", s::getVoluntarios, Voluntario::clone);
+        mede(alocacao, "getHistorico", s::getHistorico, Encomenda::clone);
+        mede(alocacao, "getPorEnviar", s::getPorEnviar, Encomenda::clone);
+        mede(alocacao, "getAceites", s::getAceites, a -> new AceitaEncomenda(a.getE()));
+        mede(alocacao, "top10Utilizador", s::top10Utilizador, null);
+        mede(alocacao, "top10Empresas", s::top10Empresas, null);
+    }
+
+    /**
+     * Mede um getter e, se houver forma de clonar os elementos, a cópia da lista que ele devolve.
+     */
+    private static <T> void mede(com.sun.management.ThreadMXBean mx, String nome, Supplier<? extends List<T>> getter,
+                                 UnaryOperator<T> clone) {
+        double[] chamada = mede(mx, getter::get);
+        String copia = clone == null ? "-" : String.format("%.1f", mede(mx, () -> copia(getter.get(), clone))[0]);
+        System.out.printf("%-16s %14.1f %14.1f %16s%n", nome, chamada[0], chamada[1], copia);
+    }
+
+    /**
+     * Dá os KB alocados e os microssegundos gastos em média por chamada.
+     */
+    private static double[] mede(com.sun.management.ThreadMXBean mx, Runnable r) {
+        for (int i = 0; i < AQUECIMENTO; i++) r.run();
+        long id = Thread.currentThread().getId();
+        long b0 = mx.getThreadAllocatedBytes(id), t0 = System.nanoTime();
+        for (int i = 0; i < CHAMADAS; i++) r.run();
+        long bytes = mx.getThreadAllocatedBytes(id) - b0, nanos = System.nanoTime() - t0;
+        return new double[]{bytes / 1024.0 / CHAMADAS, nanos / 1e3 / CHAMADAS};
+    }
+
+    private static <T> List<T> copia(List<T> l, UnaryOperator<T> clone) {
+        List<T> ret = new ArrayList<>(l.size());
+        for (T x : l) ret.add(clone.apply(x));
+        return ret;
+    }
+}
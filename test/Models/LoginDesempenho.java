@@ -0,0 +1,53 @@
+package Models;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medição do login: tempo de cada loginU com o índice por email, para 1 000, 100 000 e 1 000 000 de contas (ou os
+ * tamanhos passados como argumentos), ao lado do tempo de procurar a mesma conta percorrendo todos os utilizadores,
+ * como se fazia antes do índice. Não verifica nada; só imprime os tempos.
+ * Corre sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.LoginDesempenho [contas...]
+ */
+public class LoginDesempenho {
+    private static final int LOGINS = 200_000;
+    private static final int PROCURAS = 200;
+
+    public static void main(String[] args) {
+        int[] tamanhos = args.length == 0 ? new int[]{1_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) tamanhos[i] = Integer.parseInt(args[i]);
+        for (int n : tamanhos) mede(n);
+    }
+
+    private static void mede(int n) {
+        Sistema s = new Sistema();
+        for (int i = 0; i < n; i++) s.registaUtilizador("u" + i, "U" + i, "u" + i + "@x", "p", 0, 0);
+        Random r = new Random(1);
+
+        // aquecimento, para medir o código já compilado
+        for (int i = 0; i < LOGINS; i++) s.loginU("u" + r.nextInt(n) + "@x", "p");
+        long t0 = System.nanoTime();
+        int encontrados = 0;
+        for (int i = 0; i < LOGINS; i++) if (s.loginU("u" + r.nextInt(n) + "@x", "p") != null) encontrados++;
+        double indice = (System.nanoTime() - t0) / 1e3 / LOGINS;
+
+        List<Utilizador> todos = s.getUtilizadores();
+        for (int i = 0; i < PROCURAS; i++) procura(todos, "u" + r.nextInt(n) + "@x", "p");
+        t0 = System.nanoTime();
+        for (int i = 0; i < PROCURAS; i++) if (procura(todos, "u" + r.nextInt(n) + "@x", "p") != null) encontrados++;
+        double percorrendo = (System.nanoTime() - t0) / 1e3 / PROCURAS;
+
+        System.out.printf("%9d contas: loginU %8.2f us/login, percorrendo a lista %10.2f us/login (%d encontrados)%n",
+                n, indice, percorrendo, encontrados);
+    }
+
+    /**
+     * Procura de uma conta sem índice, comparando o email e a password de cada utilizador.
+     */
+    private static Utilizador procura(List<Utilizador> todos, String email, String password) {
+        Utilizador ret = null;
+        for (Utilizador u : todos)
+            if (u.getEmail().equals(email) && u.getPassword().equals(password)) ret = u;
+        return ret;
+    }
+}
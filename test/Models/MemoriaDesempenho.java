@@ -0,0 +1,60 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Medição da memória das linhas de encomenda: heap ocupada por 100 001 encomendas com 10 linhas cada (ou o número
+ * de encomendas passado como argumento), depois de as carregar e depois de um clone do Sistema, que partilha as
+ * LinhaEncomenda imutáveis, ao lado do que ocuparia copiar cada linha, como fazia o clone antes. Os valores vêm
+ * de Runtime depois de System.gc(), por isso são aproximados.
+ * Corre sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.MemoriaDesempenho [encomendas]
+ */
+public class MemoriaDesempenho {
+    private static final int LINHAS_POR_ENCOMENDA = 10;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_001;
+        long linhas = (long) n * LINHAS_POR_ENCOMENDA;
+        Random r = new Random(3);
+
+        long h0 = usado();
+        Sistema s = new Sistema();
+        for (int i = 0; i < 1000; i++) s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 100; i++) s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < n; i++) {
+            Encomenda e = s.fazerEncomenda2("e" + i, "u" + r.nextInt(1000), "l" + r.nextInt(100), 1 + r.nextInt(5), false);
+            for (int k = 0; k < LINHAS_POR_ENCOMENDA; k++)
+                e.addProduto("p" + r.nextInt(500), "Produto " + r.nextInt(500), 1 + r.nextInt(9), 0.5 * (1 + r.nextInt(40)));
+            s.finalizarEncomenda(e);
+        }
+        long h1 = usado();
+
+        Sistema clone = s.clone();
+        long h2 = usado();
+
+        List<Encomenda> encs = clone.getPorEnviar();
+        List<LinhaEncomenda> copias = new ArrayList<>((int) linhas);
+        long h3 = usado();
+        for (Encomenda e : encs)
+            for (LinhaEncomenda l : e.getLE()) copias.add(new LinhaEncomenda(l.getP(), l.getNome(), l.getQ(), l.getU()));
+        long h4 = usado();
+
+        System.out.printf("%d linhas em %d encomendas%n", linhas, n);
+        imprime("depois de carregar", h1 - h0, linhas);
+        imprime("clone do Sistema (linhas partilhadas)", h2 - h1, linhas);
+        imprime("cópia de cada linha, além do clone", h4 - h3, linhas);
+        if (!clone.equals(s) || copias.size() != linhas) throw new AssertionError("O clone não é igual ao Sistema");
+    }
+
+    private static void imprime(String nome, long bytes, long linhas) {
+        System.out.printf("  %-38s %8.1f MB (%.0f B/linha)%n", nome, bytes / 1048576.0, (double) bytes / linhas);
+    }
+
+    private static long usado() {
+        Runtime r = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) System.gc();
+        return r.totalMemory() - r.freeMemory();
+    }
+}
@@ -0,0 +1,103 @@
+package Models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Testes das rotas com várias paragens: com as lojas e os utilizadores numa linha reta, a inserção mais barata,
+ * os kms, os tempos e os preços de uma rota são contas que se fazem à mão, e o distribuiRotas do Sistema tem de
+ * escolher as encomendas por essa ordem e entregá-las todas à mesma empresa.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.RotaTeste
+ */
+public class RotaTeste {
+    private static final double EPS = 1e-9;
+
+    public static void main(String[] args) {
+        insercaoMaisBarata();
+        distribuiRotasDoSistema();
+        System.out.println("RotaTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Empresa em (0,0) a 1 km por minuto. a: loja (1,0) e utilizador (2,0); b: loja (3,0), pronta aos 10 minutos,
+     * e utilizador (4,0); c: loja (1,0) e utilizador (3,0). A c entra sem aumentar a rota: recolha junto à da a e
+     * entrega a caminho da loja da b.
+     */
+    private static void insercaoMaisBarata() {
+        Sistema s = new Sistema();
+        Transportadora t = s.registaTransportadora("t1", "T1", "t1", "p", 0, 0, 1, 100, 2.0, 3, 1, false);
+        Rota r = new Rota(t);
+        GPS la = new GPS(1, 0), ua = new GPS(2, 0), lb = new GPS(3, 0), ub = new GPS(4, 0), uc = new GPS(3, 0);
+
+        verifica(Math.abs(r.custoInsercao(la, ua) - 2) < EPS, "Inserção numa rota vazia devia custar 2 km");
+        r.insere(encomenda("a"), la, ua, 0);
+        verifica(Math.abs(r.custoInsercao(lb, ub) - 2) < EPS, "A b devia ficar no fim, a 2 km");
+        r.insere(encomenda("b"), lb, ub, 10);
+        verifica(Math.abs(r.custoInsercao(la, uc)) < EPS, "A c devia entrar sem aumentar a rota");
+        r.insere(encomenda("c"), la, uc, 0);
+
+        verifica(ids(r.getEncomendas()).equals(List.of("a", "b", "c")), "Encomendas fora da ordem de inserção");
+        verifica(Math.abs(r.km() - 4) < EPS, "A rota devia ter 4 km e tem " + r.km());
+        verifica(Math.abs(r.kmIsolados() - 9) < EPS, "Em viagens separadas seriam 2 + 4 + 3 km");
+        // a entregue aos 2 minutos, c aos 3; na loja da b espera até aos 10 e entrega aos 11
+        verifica(Arrays.equals(r.tempos(), new int[]{2, 11, 3}), "Tempos errados: " + Arrays.toString(r.tempos()));
+        double[] p = r.precos(2.0);
+        verifica(Math.abs(p[0] - 16.0 / 9) < EPS && Math.abs(p[1] - 32.0 / 9) < EPS && Math.abs(p[2] - 24.0 / 9) < EPS,
+                "Os 8 de custo da rota deviam ser repartidos 2:4:3: " + Arrays.toString(p));
+
+        Rota copia = r.clone();
+        copia.insere(encomenda("d"), new GPS(10, 0), new GPS(11, 0), 0);
+        verifica(r.tamanho() == 3 && copia.tamanho() == 4, "O clone partilha as paragens com a rota original");
+    }
+
+    /**
+     * As mesmas encomendas no Sistema, com lojas que demoram 3 minutos: a empresa começa pela a (2 km), junta a c
+     * (mais 1 km) e só depois a b (mais 1 km), e leva as três numa rota de 4 km.
+     */
+    private static void distribuiRotasDoSistema() {
+        Sistema s = new Sistema();
+        s.registaUtilizador("ua", "UA", 2, 0);
+        s.registaUtilizador("ub", "UB", 4, 0);
+        s.registaUtilizador("uc", "UC", 3, 0);
+        s.registaLoja("la", "LA", 1, 0);
+        s.registaLoja("lb", "LB", 3, 0);
+        s.registaTransportadora("t1", "T1", "t1", "p", 0, 0, 1, 100, 2.0, 3, 1, false);
+        s.finalizarEncomenda(s.fazerEncomenda2("a", "ua", "la", 1, false));
+        s.finalizarEncomenda(s.fazerEncomenda2("b", "ub", "lb", 1, false));
+        s.finalizarEncomenda(s.fazerEncomenda2("c", "uc", "la", 1, false));
+
+        List<Rota> rotas = s.distribuiRotas();
+        verifica(rotas.size() == 1, "Devia haver uma só rota");
+        Rota r = rotas.get(0);
+        verifica(ids(r.getEncomendas()).equals(List.of("a", "c", "b")), "Ordem de inserção errada: " + ids(r.getEncomendas()));
+        verifica(Math.abs(r.km() - 4) < EPS, "A rota devia ter 4 km e tem " + r.km());
+        // recolhas esperam pelos 3 minutos das lojas: a entregue aos 4, c aos 5 e b aos 6
+        verifica(Arrays.equals(r.tempos(), new int[]{4, 5, 6}), "Tempos errados: " + Arrays.toString(r.tempos()));
+
+        verifica(s.getPorEnviar().isEmpty(), "Ficaram encomendas por enviar");
+        Transportadora t = s.getEmpresa("t1");
+        verifica(ids(t.getEncomendasFeitas()).equals(List.of("a", "c", "b")), "A empresa não ficou com a rota");
+        verifica(Math.abs(t.getKmPercorridos() - 4) < EPS, "Os kms da rota deviam contar uma só vez");
+        verifica(!t.isLivre(), "A empresa preencheu as vagas e continua livre");
+        double total = 0;
+        for (Encomenda e : s.getHistorico()) total += e.getPrecoEntrega();
+        verifica(Math.abs(total - 8) < EPS, "Os preços deviam somar os 8 da rota e somam " + total);
+        verifica(s.entregasEmCurso() == 3, "Deviam estar 3 entregas em curso");
+    }
+
+    private static Encomenda encomenda(String id) {
+        return new Encomenda(id, "u1", "l1", 1, new ArrayList<>(), LocalDateTime.of(2026, 1, 1, 0, 0), 0, 0, false);
+    }
+
+    private static List<String> ids(List<Encomenda> encs) {
+        List<String> ret = new ArrayList<>();
+        for (Encomenda e : encs) ret.add(e.getId());
+        return ret;
+    }
+}
@@ -0,0 +1,117 @@
+package Models;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Testes da serialização do Java do Sistema: as classes gravadas mantêm o serialVersionUID e os campos do formato
+ * antigo (sem isso os ficheiros gravados antes do formato binário deixam de abrir), e um Sistema com entregas em
+ * curso, classificações e critério gravado e lido assim é igual ao original.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.SerializacaoTeste
+ */
+public class SerializacaoTeste {
+
+    public static void main(String[] args) throws Exception {
+        formatoAntigo();
+        idaEVolta();
+        System.out.println("SerializacaoTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * O serialVersionUID e os campos (nome e tipo) de cada classe têm de ser os do formato antigo.
+     */
+    private static void formatoAntigo() {
+        Map<Class<?>,Long> uids = Map.of(
+                Sistema.class, 5062168810373979214L,
+                Utilizador.class, 6849336648663498061L,
+                Transportadora.class, -2934565870000263469L,
+                Voluntario.class, -888974067324909616L,
+                Loja.class, 4766064368824762521L,
+                Encomenda.class, -7714445648223107568L,
+                LinhaEncomenda.class, 4610961351506712287L,
+                GPS.class, -7174219493840076044L,
+                AceitaEncomenda.class, -2273794656583178267L);
+        for (Map.Entry<Class<?>,Long> e : uids.entrySet())
+            verifica(ObjectStreamClass.lookup(e.getKey()).getSerialVersionUID() == e.getValue(),
+                    "serialVersionUID de " + e.getKey().getSimpleName() + " mudou");
+
+        verificaCampos(Sistema.class, "utilizadores", "empresas", "voluntarios", "lojas", "historicoEncomendas",
+                "encomendasPorEnviar", "encomendasAceites");
+        verificaCampos(Utilizador.class, "encomendas");
+        verificaCampos(Transportadora.class, "classif", "encomendasFeitas");
+        verificaCampos(Voluntario.class, "classif", "historico");
+    }
+
+    private static void verificaCampos(Class<?> c, String... listas) {
+        ObjectStreamClass osc = ObjectStreamClass.lookup(c);
+        for (String nome : listas) {
+            ObjectStreamField f = osc.getField(nome);
+            verifica(f != null && f.getType() == List.class, c.getSimpleName() + "." + nome + " já não é uma List");
+        }
+    }
+
+    /**
+     * Um Sistema gravado e lido pela serialização do Java tem de ser igual e continuar a funcionar.
+     */
+    private static void idaEVolta() throws Exception {
+        Random r = new Random(5);
+        Sistema s = new Sistema();
+        for (int i = 0; i < 30; i++) s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 10; i++) s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 40; i++) {
+            s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    1, 80, 1.0, 3, 40, i % 3 == 0);
+            s.registaVoluntario("v" + i, "V" + i, "v" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    60, 20, i % 4 == 0);
+        }
+        s.setCriterio(new CriterioSelecao.MenorPreco());
+        for (int i = 0; i < 600; i++) {
+            Encomenda e = s.fazerEncomenda2("e" + i, "u" + r.nextInt(30), "l" + r.nextInt(10), 1 + r.nextInt(5), r.nextInt(8) == 0);
+            e.addProduto("p" + r.nextInt(50), "Produto " + r.nextInt(50), 1 + r.nextInt(4), 2.5);
+            s.finalizarEncomenda(e);
+            if (i % 100 == 99) {
+                s.despachaPorPrioridade();
+                s.concluiEntregas(LocalDateTime.now().plusDays(1));
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            s.classificarTransportadora("t" + i, r.nextInt(Classificacao.MAXIMO + 1));
+            s.classificarTransportadora("v" + i, r.nextInt(Classificacao.MAXIMO + 1));
+        }
+        s.despachaPorPrioridade();
+
+        Sistema lido = idaEVolta(s);
+        verifica(s.equals(lido), "O Sistema lido não é o gravado");
+        verifica(s.getHistorico().equals(lido.getHistorico()), "Histórico diferente depois da leitura");
+        verifica(s.getPorEnviar().equals(lido.getPorEnviar()), "Encomendas por enviar diferentes depois da leitura");
+
+        // o Sistema lido continua a aceitar encomendas e a concluir as entregas em curso
+        Encomenda e = lido.fazerEncomenda2("depois", "u0", "l0", 1, false);
+        lido.finalizarEncomenda(e);
+        lido.concluiEntregas(LocalDateTime.now().plusDays(2));
+        lido.despachaPorPrioridade();
+        verifica(lido.equals(idaEVolta(lido)), "O Sistema alterado depois da leitura não é o gravado");
+    }
+
+    private static Sistema idaEVolta(Sistema s) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream o = new ObjectOutputStream(bytes)) {
+            o.writeObject(s);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Sistema) in.readObject();
+        }
+    }
+}
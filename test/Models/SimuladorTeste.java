@@ -0,0 +1,87 @@
+package Models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Testes da simulação por eventos: o RelogioSimulado só anda para a frente, e o Simulador, com um só voluntário,
+ * tem de lhe dar uma encomenda quando chega, deixar as seguintes na fila e, no fim de cada entrega, libertá-lo e
+ * dar-lhe a mais urgente das que esperam, tudo nos momentos que se calculam à mão.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.SimuladorTeste
+ */
+public class SimuladorTeste {
+    private static final LocalDateTime INICIO = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    public static void main(String[] args) {
+        relogio();
+        entregasLibertamOEstafeta();
+        System.out.println("SimuladorTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    private static void relogio() {
+        RelogioSimulado r = new RelogioSimulado(INICIO, ZoneId.systemDefault());
+        r.avanca(INICIO.plusMinutes(10));
+        r.avanca(INICIO.plusMinutes(5));
+        verifica(r.getAgora().equals(INICIO.plusMinutes(10)), "O relógio andou para trás");
+        verifica(r.instant().equals(INICIO.plusMinutes(10).atZone(ZoneId.systemDefault()).toInstant()), "Instante errado");
+
+        RelogioSimulado copia = r.clone();
+        r.avanca(INICIO.plusHours(1));
+        verifica(copia.getAgora().equals(INICIO.plusMinutes(10)), "O clone avançou com o original");
+        verifica(r.withZone(ZoneOffset.UTC).instant().equals(r.instant()), "withZone mudou o instante");
+    }
+
+    /**
+     * Voluntário em (0,0) a 1 km por minuto, loja em (3,0) e utilizador em (3,4): cada entrega demora 7 minutos.
+     * Chegam e0 (normal) às 12:00, e1 (normal) às 12:01 e e2 (médica) às 12:02. O voluntário leva a e0 até às
+     * 12:07, depois a e2, que passa à frente da e1, até às 12:14, e por fim a e1 até às 12:21.
+     */
+    private static void entregasLibertamOEstafeta() {
+        Sistema s = new Sistema();
+        s.registaUtilizador("u1", "U1", 3, 4);
+        s.registaLoja("l1", "L1", "l1", "p", 3, 0, 3);
+        s.registaVoluntario("v1", "V1", "v1", "p", 0, 0, 100, 1, true);
+        Simulador sim = new Simulador(s, INICIO);
+        verifica(s.agora().equals(INICIO), "O Sistema não passou a usar o relógio da simulação");
+        sim.agenda(encomenda("e0", 0, false));
+        sim.agenda(encomenda("e1", 1, false));
+        sim.agenda(encomenda("e2", 2, true));
+
+        verifica(sim.corre(INICIO.plusMinutes(5)) == 3, "Deviam ser processadas as três chegadas");
+        verifica(sim.getAgora().equals(INICIO.plusMinutes(5)) && s.agora().equals(INICIO.plusMinutes(5)),
+                "O relógio não ficou no fim do intervalo simulado");
+        verifica(sim.getDespachadas() == 1 && sim.getConcluidas() == 0, "Só a e0 devia estar despachada");
+        verifica(ids(s.getPorEnviar()).equals(List.of("e1", "e2")), "A e1 e a e2 deviam estar na fila");
+        verifica(INICIO.plusMinutes(7).equals(s.proximaEntrega()), "A e0 devia chegar às 12:07");
+
+        verifica(sim.corre(INICIO.plusMinutes(7)) == 1, "Devia ser processado o fim da entrega da e0");
+        verifica(sim.getDespachadas() == 2 && sim.getConcluidas() == 1, "O voluntário não levou outra encomenda às 12:07");
+        verifica(ids(s.getHistorico()).equals(List.of("e0", "e2")), "A médica devia passar à frente: " + ids(s.getHistorico()));
+        verifica(s.getHistorico().get(1).getQPedidoEntregue().equals(INICIO.plusMinutes(14)), "A e2 devia chegar às 12:14");
+
+        verifica(sim.corre(INICIO.plusHours(1)) == 2, "Deviam ser processados os fins da e2 e da e1");
+        verifica(sim.getDespachadas() == 3 && sim.getConcluidas() == 3, "Faltam encomendas despachadas ou entregues");
+        verifica(ids(s.getHistorico()).equals(List.of("e0", "e2", "e1")), "Ordem de entrega errada: " + ids(s.getHistorico()));
+        verifica(s.getHistorico().get(2).getQPedidoEntregue().equals(INICIO.plusMinutes(21)), "A e1 devia chegar às 12:21");
+        verifica(s.getPorEnviar().isEmpty() && s.proximaEntrega() == null, "Ficaram encomendas na fila ou entregas em curso");
+        verifica(s.getVoluntariosLivres().size() == 1, "O voluntário não ficou livre no fim");
+        verifica(sim.getAgora().equals(INICIO.plusHours(1)), "O relógio não ficou no fim da simulação");
+    }
+
+    private static Encomenda encomenda(String id, int minutos, boolean medica) {
+        return new Encomenda(id, "u1", "l1", 1, new ArrayList<>(), INICIO.plusMinutes(minutos), 0, 0, medica);
+    }
+
+    private static List<String> ids(List<Encomenda> encs) {
+        List<String> ret = new ArrayList<>();
+        for (Encomenda e : encs) ret.add(e.getId());
+        return ret;
+    }
+}
@@ -0,0 +1,231 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Testes da concorrência do Sistema: várias threads a aceitar encomendas nunca põem um estafeta acima da sua
+ * capacidade nem aceitam a mesma encomenda duas vezes, as listas, os logins e as procuras por id do Sistema
+ * podem ser feitos enquanto há registos e os estafetas livres podem ser percorridos enquanto há aceitações.
+ * Correm sem bibliotecas: javac -d out $(find src test -name '*.java') && java -cp out Models.SistemaConcorrenciaTeste
+ */
+public class SistemaConcorrenciaTeste {
+    private static final int THREADS = 8;
+    private static final int RONDAS = 5;
+
+    public static void main(String[] args) throws Exception {
+        for (int ronda = 0; ronda < RONDAS; ronda++) aceitacoesRespeitamCapacidade(ronda);
+        leiturasDuranteRegistos();
+        loginsDuranteRegistos();
+        livresDuranteAceitacoes();
+        System.out.println("SistemaConcorrenciaTeste: OK");
+    }
+
+    private static void verifica(boolean condicao, String mensagem) {
+        if (!condicao) throw new AssertionError(mensagem);
+    }
+
+    /**
+     * Várias threads fazem e aceitam encomendas ao mesmo tempo, sem que nenhuma entrega acabe: cada transportadora
+     * tem de ficar com no máximo numeroEnc encomendas e cada voluntário com no máximo uma.
+     */
+    private static void aceitacoesRespeitamCapacidade(int semente) throws Exception {
+        Random r = new Random(semente);
+        Sistema s = new Sistema();
+        List<String> us = new ArrayList<>(), ls = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+            us.add("u" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+            ls.add("l" + i);
+        }
+        Map<String,Integer> capacidade = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            int n = 1 + r.nextInt(5);
+            capacidade.put("t" + i, n);
+            s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    1, 60, 1.0, n, 40, i % 3 == 0);
+        }
+        for (int i = 0; i < 100; i++)
+            s.registaVoluntario("v" + i, "V" + i, "v" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    40, 20, i % 4 == 0);
+
+        int n = 5000;
+        List<Encomenda> encs = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            encs.add(s.fazerEncomenda2("e" + i, us.get(r.nextInt(us.size())), ls.get(r.nextInt(ls.size())), 1, r.nextInt(10) == 0));
+
+        ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int k = 0; k < THREADS; k++) {
+                int primeira = k;
+                fs.add(ex.submit(() -> {
+                    for (int i = primeira; i < n; i += THREADS) {
+                        Encomenda e = encs.get(i);
+                        s.finalizarEncomenda(e.clone());
+                        if (s.aceitaEncomendaT(e.getId()) == null) s.aceitaEncomendaV(e.getId());
+                        verifica(s.aceitaEncomendaT(e.getId()) == null, "Encomenda " + e.getId() + " aceite duas vezes");
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+
+        int aceites = 0;
+        for (Transportadora t : s.getEmpresas()) {
+            int feitas = t.getEncomendasFeitas().size();
+            verifica(feitas <= capacidade.get(t.getId()),
+                    t.getId() + " aceitou " + feitas + " encomendas com capacidade " + capacidade.get(t.getId()));
+            aceites += feitas;
+        }
+        for (Voluntario v : s.getVoluntarios()) {
+            verifica(v.getHistorico().size() <= 1, v.getId() + " aceitou mais do que uma encomenda");
+            aceites += v.getHistorico().size();
+        }
+        Set<String> ids = new HashSet<>();
+        for (Encomenda e : s.getHistorico()) ids.add(e.getId());
+        verifica(ids.size() == s.getHistorico().size(), "Encomendas repetidas no histórico");
+        verifica(aceites == ids.size(), "Os estafetas têm " + aceites + " encomendas e o histórico " + ids.size());
+        verifica(aceites + s.getPorEnviar().size() == n, "Encomendas perdidas: " + aceites + " + " + s.getPorEnviar().size());
+    }
+
+    /**
+     * Uma thread regista utilizadores e lojas enquanto outras leem as listas: as leituras não podem falhar
+     * nem ver menos entidades do que uma leitura anterior.
+     */
+    private static void leiturasDuranteRegistos() throws Exception {
+        Sistema s = new Sistema();
+        int n = 3000;
+        AtomicBoolean acabou = new AtomicBoolean();
+        ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int k = 1; k < THREADS; k++) {
+                fs.add(ex.submit(() -> {
+                    int utilizadores = 0, lojas = 0;
+                    while (!acabou.get()) {
+                        List<Utilizador> u = s.getUtilizadores();
+                        List<Loja> l = s.getLojas();
+                        verifica(u.size() >= utilizadores && l.size() >= lojas, "Lista de entidades encolheu");
+                        for (Utilizador x : u) verifica(x != null, "Utilizador null na lista");
+                        for (Loja x : l) verifica(x != null, "Loja null na lista");
+                        utilizadores = u.size();
+                        lojas = l.size();
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < n; i++) {
+                s.registaUtilizador("u" + i, "U" + i, i % 100, i / 100);
+                s.registaLoja("l" + i, "L" + i, i % 100, i / 100);
+            }
+            acabou.set(true);
+            for (Future<?> f : fs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+        verifica(s.getUtilizadores().size() == n && s.getLojas().size() == n, "Faltam entidades registadas");
+    }
+
+    /**
+     * Uma thread regista utilizadores e lojas enquanto outras fazem login e procuram por id as entidades que já
+     * foram registadas: os índices por email e por id têm de as encontrar sempre, mesmo quando crescem.
+     */
+    private static void loginsDuranteRegistos() throws Exception {
+        Sistema s = new Sistema();
+        int n = 20000;
+        AtomicInteger registados = new AtomicInteger();
+        ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> fs = new ArrayList<>();
+            for (int k = 1; k < THREADS; k++) {
+                int semente = k;
+                fs.add(ex.submit(() -> {
+                    Random r = new Random(semente);
+                    for (int feitos = registados.get(); feitos < n; feitos = registados.get()) {
+                        if (feitos == 0) continue;
+                        String u = "u" + r.nextInt(feitos), l = "l" + r.nextInt(feitos);
+                        verifica(s.loginU(u + "@gmail.com", u) != null, "Login de " + u + " falhou depois do registo");
+                        verifica(s.loginL(l + "@gmail.com", l) != null, "Login de " + l + " falhou depois do registo");
+                        verifica(s.getUtilizador(u) != null, "Utilizador " + u + " não encontrado depois do registo");
+                        verifica(s.getLoja(l) != null, "Loja " + l + " não encontrada depois do registo");
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < n; i++) {
+                s.registaUtilizador("u" + i, "U" + i, i % 100, i / 100);
+                s.registaLoja("l" + i, "L" + i, i % 100, i / 100);
+                registados.incrementAndGet();
+            }
+            for (Future<?> f : fs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+    }
+
+    /**
+     * Várias threads aceitam encomendas enquanto outra percorre os estafetas livres: as coleções devolvidas
+     * são cópias, por isso percorrê-las não pode falhar mesmo quando os estafetas deixam de estar livres.
+     */
+    private static void livresDuranteAceitacoes() throws Exception {
+        Random r = new Random(11);
+        Sistema s = new Sistema();
+        for (int i = 0; i < 50; i++) s.registaUtilizador("u" + i, "U" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 20; i++) s.registaLoja("l" + i, "L" + i, r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100);
+        for (int i = 0; i < 500; i++) {
+            s.registaTransportadora("t" + i, "T" + i, "t" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    1, 60, 1.0, 1, 40, i % 3 == 0);
+            s.registaVoluntario("v" + i, "V" + i, "v" + i, "p", r.nextDouble() * 200 - 100, r.nextDouble() * 200 - 100,
+                    60, 20, i % 4 == 0);
+        }
+        int n = 4000;
+        for (int i = 0; i < n; i++)
+            s.finalizarEncomenda(s.fazerEncomenda2("e" + i, "u" + r.nextInt(50), "l" + r.nextInt(20), 1, r.nextInt(10) == 0));
+        AtomicBoolean acabou = new AtomicBoolean();
+        ExecutorService ex = Executors.newFixedThreadPool(THREADS);
+        try {
+            Future<?> leitor = ex.submit(() -> {
+                while (!acabou.get()) {
+                    for (Voluntario v : s.getVoluntariosLivres()) verifica(v.getId().startsWith("v"), "Voluntário livre inválido");
+                    for (Transportadora t : s.getTransportadorasLivres()) verifica(t.getId().startsWith("t"), "Empresa livre inválida");
+                    verifica(s.getVoluntariosLivresMed().size() <= s.getVoluntarios().size(), "Demasiados voluntários livres");
+                }
+                return null;
+            });
+            List<Future<?>> fs = new ArrayList<>();
+            for (int k = 1; k < THREADS - 1; k++) {
+                int primeira = k;
+                fs.add(ex.submit(() -> {
+                    for (int i = primeira; i < n; i += THREADS - 2)
+                        if (s.aceitaEncomendaV("e" + i) == null) s.aceitaEncomendaT("e" + i);
+                    return null;
+                }));
+            }
+            fs.add(ex.submit(s::despachaPorPrioridade));
+            for (Future<?> f : fs) f.get();
+            acabou.set(true);
+            leitor.get();
+        } finally {
+            ex.shutdown();
+        }
+        for (Voluntario v : s.getVoluntariosLivres()) verifica(v.isLivre(), v.getId() + " está nos livres mas ocupado");
+        for (Transportadora t : s.getTransportadorasLivres()) verifica(t.isLivre(), t.getId() + " está nos livres mas ocupada");
+    }
+}